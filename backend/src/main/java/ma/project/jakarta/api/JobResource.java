@@ -0,0 +1,161 @@
+package ma.project.jakarta.api;
+
+import jakarta.ws.rs.*;
+
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.SecurityContext;
+import jakarta.ws.rs.core.StreamingOutput;
+import jakarta.ws.rs.core.UriInfo;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.Principal;
+import java.util.Locale;
+import ma.project.jakarta.jobs.JobScheduler;
+import ma.project.jakarta.jobs.TranslationJob;
+import ma.project.jakarta.service.TranslationRequest;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Traductions en masse : un fichier JSONL ou CSV est envoyé, traduit en
+ * arrière-plan (voir {@link JobScheduler}), et ses résultats téléchargés
+ * au fur et à mesure.
+ *
+ * Chaque tâche appartient à l'utilisateur authentifié (BASIC) qui l'a
+ * créée ; les autres reçoivent 404.
+ */
+@Path("/translator/jobs")
+public class JobResource {
+
+    public static final String STATE_HEADER = "X-Job-State";
+    public static final String NEXT_HEADER = "X-Job-Next";
+
+    private final JobScheduler scheduler;
+
+    public JobResource() {
+        this(JobScheduler.isEnabled() ? JobScheduler.shared() : null);
+    }
+
+    JobResource(JobScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Crée une tâche. Corps : le fichier lui-même ; format d'après ?format=
+     * (jsonl, csv) ou le Content-Type ; langues en ?source=, ?target=, ?script=.
+     * Réponse 202 avec l'avancement et l'adresse de la tâche.
+     */
+    @POST
+    @Consumes({"application/x-ndjson", "application/jsonl", "text/csv", MediaType.TEXT_PLAIN,
+            MediaType.APPLICATION_OCTET_STREAM})
+    @Produces(MediaType.APPLICATION_JSON + ";charset=UTF-8")
+    public Response submit(InputStream body, @QueryParam("format") String format,
+                           @QueryParam("source") String source, @QueryParam("target") String target,
+                           @QueryParam("script") String script, @HeaderParam("Content-Type") String contentType,
+                           @Context SecurityContext security, @Context UriInfo uri) {
+        if (scheduler == null) {
+            return disabled();
+        }
+        TranslationJob job;
+        try {
+            String direction = TranslationRequest.parseDirection(source, target, script);
+            job = scheduler.submit(owner(security), direction, JobScheduler.format(format, contentType), body);
+        } catch (IllegalArgumentException e) {
+            return error(400, e.getMessage());
+        } catch (IllegalStateException e) {
+            return error(429, e.getMessage());
+        } catch (IOException e) {
+            return error(500, "Enregistrement de la tâche impossible : " + e.getMessage());
+        }
+        return Response.accepted(job.toJson().toString())
+                .location(uri.getAbsolutePathBuilder().path(job.getId()).build())
+                .build();
+    }
+
+    @GET
+    @Produces(MediaType.APPLICATION_JSON + ";charset=UTF-8")
+    public Response list(@Context SecurityContext security) {
+        if (scheduler == null) {
+            return disabled();
+        }
+        JSONArray jobs = new JSONArray();
+        for (TranslationJob job : scheduler.list(owner(security))) {
+            jobs.put(job.toJson());
+        }
+        return Response.ok(new JSONObject().put("jobs", jobs).toString()).build();
+    }
+
+    @GET
+    @Path("/{id}")
+    @Produces(MediaType.APPLICATION_JSON + ";charset=UTF-8")
+    public Response progress(@PathParam("id") String id, @Context SecurityContext security) {
+        TranslationJob job = scheduler == null ? null : scheduler.get(owner(security), id);
+        if (job == null) {
+            return notFound();
+        }
+        return Response.ok(job.toJson().toString()).build();
+    }
+
+    /**
+     * Résultats déjà traduits, dans l'ordre du fichier, à partir du segment
+     * ?from= (0 par défaut). L'en-tête X-Job-Next donne l'indice à demander
+     * ensuite : en le repassant en ?from=, le client reprend un téléchargement
+     * interrompu ou récupère les paquets terminés depuis.
+     */
+    @GET
+    @Path("/{id}/results")
+    public Response results(@PathParam("id") String id, @QueryParam("format") String format,
+                            @QueryParam("from") @DefaultValue("0") int from, @Context SecurityContext security) {
+        TranslationJob job = scheduler == null ? null : scheduler.get(owner(security), id);
+        if (job == null) {
+            return notFound();
+        }
+        boolean csv = format != null && format.trim().toLowerCase(Locale.ROOT).equals("csv");
+        // État lu avant l'écriture : "done" garantit que le corps est complet
+        TranslationJob.State state = job.getState();
+        int next = scheduler.resultsEnd(job, from);
+        StreamingOutput output = out -> scheduler.writeResults(job, from, next, csv, out);
+        return Response.ok(output)
+                .type(csv ? "text/csv;charset=UTF-8" : "application/x-ndjson;charset=UTF-8")
+                .header(STATE_HEADER, state.name().toLowerCase(Locale.ROOT))
+                .header(NEXT_HEADER, next)
+                .build();
+    }
+
+    /**
+     * Annule la tâche si elle est en cours et supprime ses fichiers.
+     */
+    @DELETE
+    @Path("/{id}")
+    public Response delete(@PathParam("id") String id, @Context SecurityContext security) {
+        TranslationJob job = scheduler == null ? null : scheduler.get(owner(security), id);
+        if (job == null) {
+            return notFound();
+        }
+        scheduler.delete(job);
+        return Response.noContent().build();
+    }
+
+    // Utilisateur BASIC ; "anonymous" si la sécurité est désactivée (développement)
+    private static String owner(SecurityContext security) {
+        Principal principal = security == null ? null : security.getUserPrincipal();
+        return principal == null ? "anonymous" : principal.getName();
+    }
+
+    private static Response disabled() {
+        return error(503, "Tâches en masse désactivées (translator.jobs.enabled)");
+    }
+
+    private static Response notFound() {
+        return error(404, "Tâche inconnue");
+    }
+
+    private static Response error(int status, String message) {
+        return Response.status(status)
+                .type(MediaType.APPLICATION_JSON + ";charset=UTF-8")
+                .entity(new JSONObject().put("error", message).toString())
+                .build();
+    }
+}
@@ -0,0 +1,49 @@
+package ma.project.jakarta.api;
+
+import jakarta.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.function.LongConsumer;
+
+import ma.project.jakarta.json.JsonWriter;
+
+/**
+ * Corps de réponse JSON écrit directement dans le flux du conteneur, sans
+ * String ni tableau d'octets intermédiaire. La taille n'est connue qu'une
+ * fois le corps écrit : {@link #onWritten(LongConsumer)} la reçoit alors
+ * (-1 si le client est parti pendant l'écriture).
+ */
+final class JsonBody implements StreamingOutput {
+
+    /**
+     * Contenu du corps, écrit avec le JsonWriter fourni.
+     */
+    interface Content {
+        void writeTo(JsonWriter out) throws IOException;
+    }
+
+    private final Content content;
+    private volatile LongConsumer onWritten = bytes -> { };
+
+    JsonBody(Content content) {
+        this.content = content;
+    }
+
+    JsonBody onWritten(LongConsumer onWritten) {
+        this.onWritten = onWritten;
+        return this;
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException {
+        JsonWriter writer = new JsonWriter(output);
+        try {
+            content.writeTo(writer);
+            writer.flush();
+        } catch (IOException e) {
+            onWritten.accept(-1);
+            throw e;
+        }
+        onWritten.accept(writer.bytesWritten());
+    }
+}
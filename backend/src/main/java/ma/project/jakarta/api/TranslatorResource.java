@@ -2,109 +2,418 @@ package ma.project.jakarta.api;
 
 import jakarta.ws.rs.*;
 
+import jakarta.ws.rs.container.AsyncResponse;
+import jakarta.ws.rs.container.Suspended;
+import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
+import jakarta.ws.rs.sse.OutboundSseEvent;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseEventSink;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import ma.project.jakarta.config.TranslatorConfig;
+import ma.project.jakarta.jobs.JobScheduler;
+import ma.project.jakarta.json.JsonScanner;
+import ma.project.jakarta.metrics.PrometheusFormat;
+import ma.project.jakarta.metrics.TranslatorMetrics;
+import ma.project.jakarta.service.Translation;
+import ma.project.jakarta.service.TranslationRequest;
+import ma.project.jakarta.service.TranslationService;
+import ma.project.jakarta.upstream.Deadline;
+import ma.project.jakarta.upstream.UpstreamException;
+import org.json.JSONException;
 import org.json.JSONObject;
-import org.json.JSONArray;
 
 @Path("/translator")
 public class TranslatorResource {
 
-    private final String GEMINI_API_KEY = "VOTRE_CLE_API_ICI";
-    private final String GEMINI_URL = "https://generativelanguage.googleapis.com/v1beta/models/gemini-2.5-flash:generateContent?key=" + GEMINI_API_KEY;
-    
-    //  MODE SIMULATION - Mettez à true pour tester sans Gemini
-    private final boolean SIMULATION_MODE = false ;
+    public static final String DEADLINE_HEADER = "X-Deadline-Ms";
 
+    // Journal du conteneur (java.util.logging, redirigé par WildFly)
+    private static final Logger LOG = Logger.getLogger(TranslatorResource.class.getName());
+
+    private static final int BATCH_MAX_SEGMENTS = TranslatorConfig.getInt("translator.batch.max-segments", 1000);
+
+    // Au-delà, /translate passe par le découpage en phrases (voir /translate/document)
+    private static final int DOCUMENT_THRESHOLD_CHARS =
+            TranslatorConfig.getInt("translator.document.threshold-chars", 1000);
+
+    // Délai maximal avant de reprendre la requête suspendue avec une erreur 504
+    private static final long ASYNC_TIMEOUT_MS = TranslatorConfig.getLong("translator.async.timeout-ms", 60_000);
+
+    // Budget d'une requête sans en-tête X-Deadline-Ms
+    private static final long DEFAULT_DEADLINE_MS = TranslatorConfig.getLong("translator.deadline.default-ms", 30_000);
+
+    private static final TranslatorMetrics METRICS = TranslatorMetrics.shared();
+    private static final TranslatorMetrics.Endpoint TRANSLATE = METRICS.endpoint("translate");
+    private static final TranslatorMetrics.Endpoint DOCUMENT = METRICS.endpoint("document");
+    private static final TranslatorMetrics.Endpoint STREAM = METRICS.endpoint("stream");
+    private static final TranslatorMetrics.Endpoint BATCH = METRICS.endpoint("batch");
+
+    // Chaîne cache -> mémoire -> Gemini partagée (voir TranslationService.fromConfig)
+    private final TranslationService service;
+
+    public TranslatorResource() {
+        this(TranslationService.shared());
+    }
+
+    TranslatorResource(TranslationService service) {
+        this.service = service;
+    }
+
+    /**
+     * Requête suspendue : le thread du conteneur est libéré pendant l'appel
+     * Gemini et la réponse est reprise à l'arrivée du résultat.
+     *
+     * Corps {"v": 1, "text": "...", "source": "en", "target": "ary"} ou
+     * l'ancien {"text": "..."} (voir {@link TranslationRequest}). Il est lu
+     * en octets sans construire d'arbre ; la réponse est écrite directement
+     * dans le flux (voir {@link JsonBody}).
+     */
     @POST
     @Path("/translate")
     @Consumes(MediaType.APPLICATION_JSON)
     // @Produces(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON + ";charset=UTF-8")
-    public Response translate(String jsonInput) {
+    public void translate(byte[] body, @HeaderParam(DEADLINE_HEADER) String deadlineMs,
+                          @Suspended AsyncResponse asyncResponse) {
+        long start = TRANSLATE.started(body.length);
+        Deadline deadline = deadline(deadlineMs);
+        suspend(asyncResponse, deadline, TRANSLATE, start);
+        TranslationRequest request;
         try {
-            JSONObject inputBody = new JSONObject(jsonInput);
-            String englishText = inputBody.getString("text");
-
-            //  MODE SIMULATION
-            if (SIMULATION_MODE) {
-                String simulatedTranslation = simulateDarijaTranslation(englishText);
-                JSONObject result = new JSONObject()
-                        .put("original", englishText)
-                        .put("translation", simulatedTranslation)
-                        .put("mode", "simulation");
-                return Response.ok(result.toString()).build();
-            }
+            request = parseRequest(body);
+        } catch (Exception e) {
+            resume(asyncResponse, invalidRequest(e, TRANSLATE), TRANSLATE, start);
+            return;
+        }
 
-            // MODE REEL AVEC GEMINI
-            String prompt = "Translate the following English text to Moroccan Darija (Arabic dialect). " +
-                           "Provide only the translation: " + englishText;
-            
-            JSONObject textPart = new JSONObject().put("text", prompt);
-            JSONArray partsArray = new JSONArray().put(textPart);
-            JSONObject contentObj = new JSONObject().put("parts", partsArray);
-            JSONArray contentsArray = new JSONArray().put(contentObj);
-            JSONObject payload = new JSONObject().put("contents", contentsArray);
-
-            HttpClient client = HttpClient.newHttpClient();
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(GEMINI_URL))
-                    .header("Content-Type", "application/json")
-                    .POST(HttpRequest.BodyPublishers.ofString(payload.toString()))
-                    .build();
+        CompletableFuture<Translation> result = request.getText().length() > DOCUMENT_THRESHOLD_CHARS
+                ? service.translateDocumentAsync(request, deadline)
+                : service.translateAsync(request, deadline);
+        result.whenComplete((translation, error) -> resume(asyncResponse,
+                error == null ? ok(translation) : errorResponse(error, TRANSLATE), TRANSLATE, start));
+    }
 
-            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+    /**
+     * Document long, même corps que /translate : traduit par morceaux en parallèle.
+     * Si certains morceaux échouent, le texte source reste à leur place et
+     * la réponse porte un champ "error".
+     */
+    @POST
+    @Path("/translate/document")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON + ";charset=UTF-8")
+    public void translateDocument(byte[] body, @HeaderParam(DEADLINE_HEADER) String deadlineMs,
+                                  @Suspended AsyncResponse asyncResponse) {
+        long start = DOCUMENT.started(body.length);
+        Deadline deadline = deadline(deadlineMs);
+        suspend(asyncResponse, deadline, DOCUMENT, start);
+        TranslationRequest document;
+        try {
+            document = parseRequest(body);
+        } catch (Exception e) {
+            resume(asyncResponse, invalidRequest(e, DOCUMENT), DOCUMENT, start);
+            return;
+        }
+
+        service.translateDocumentAsync(document, deadline).whenComplete((translation, error) -> resume(asyncResponse,
+                error == null ? ok(translation) : errorResponse(error, DOCUMENT), DOCUMENT, start));
+    }
+
+    /**
+     * Traduction en flux (Server-Sent Events) : un évènement "chunk" par
+     * morceau reçu de Gemini, puis "done" avec le résultat complet, ou "error".
+     * GET /translate/stream?text=...&source=en&target=ary pour EventSource.
+     */
+    @GET
+    @Path("/translate/stream")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    public void translateStream(@QueryParam("text") String text,
+                                @QueryParam("source") String source, @QueryParam("target") String target,
+                                @QueryParam("script") String script,
+                                @HeaderParam(DEADLINE_HEADER) String deadlineMs,
+                                @Context SseEventSink sink, @Context Sse sse) {
+        long start = STREAM.started(TranslatorMetrics.utf8Length(text));
+        if (text == null || text.isBlank()) {
+            sendAndClose(sink, errorEvent(sse, 400, "Texte manquant"), STREAM, start);
+            return;
+        }
+        TranslationRequest request;
+        try {
+            request = source == null && target == null
+                    ? TranslationRequest.legacy(text)
+                    : TranslationRequest.of(text, source, target, script);
+        } catch (IllegalArgumentException e) {
+            sendAndClose(sink, errorEvent(sse, 400, e.getMessage()), STREAM, start);
+            return;
+        }
+        stream(request, deadline(deadlineMs), sink, sse, start);
+    }
+
+    /**
+     * Même flux que le GET, corps de /translate.
+     */
+    @POST
+    @Path("/translate/stream")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    public void translateStreamJson(byte[] body, @HeaderParam(DEADLINE_HEADER) String deadlineMs,
+                                    @Context SseEventSink sink, @Context Sse sse) {
+        long start = STREAM.started(body.length);
+        TranslationRequest request;
+        try {
+            request = parseRequest(body);
+        } catch (Exception e) {
+            sendAndClose(sink, errorEvent(sse, 400, e.getMessage()), STREAM, start);
+            return;
+        }
+        if (request.getText().isBlank()) {
+            sendAndClose(sink, errorEvent(sse, 400, "Texte manquant"), STREAM, start);
+            return;
+        }
+        stream(request, deadline(deadlineMs), sink, sse, start);
+    }
 
-            if (response.statusCode() != 200) {
-                return Response.status(response.statusCode())
-                        .entity(response.body())
-                        .build();
+    private void stream(TranslationRequest request, Deadline deadline, SseEventSink sink, Sse sse, long start) {
+        service.translateStream(request, chunk -> {
+            // Client déconnecté : l'exception interrompt l'appel Gemini
+            if (sink.isClosed()) {
+                throw new IllegalStateException("Client déconnecté");
+            }
+            sink.send(sse.newEventBuilder().name("chunk").data(chunk).build())
+                    .whenComplete((sent, error) -> {
+                        if (error != null) {
+                            sink.close();
+                        }
+                    });
+        }, deadline).whenComplete((translation, error) -> {
+            if (sink.isClosed()) {
+                // 499 : client parti avant la fin (convention nginx)
+                STREAM.finished(start, 499, 0);
+                return;
+            }
+            if (error == null) {
+                sendAndClose(sink, sse.newEventBuilder()
+                        .name("done")
+                        .mediaType(MediaType.APPLICATION_JSON_TYPE)
+                        .data(translation.toJsonString())
+                        .build(), STREAM, start);
+                return;
             }
+            Throwable cause = TranslationService.unwrap(error);
+            if (cause instanceof UpstreamException) {
+                UpstreamException upstreamError = (UpstreamException) cause;
+                sendAndClose(sink, errorEvent(sse, upstreamError.getStatusCode(), upstreamError.getMessage(),
+                        upstreamError.getRetryAfterSeconds()), STREAM, start);
+                return;
+            }
+            logFailure(STREAM, 500, cause);
+            sendAndClose(sink, errorEvent(sse, 500, String.valueOf(cause.getMessage())), STREAM, start);
+        });
+    }
 
-            JSONObject responseJson = new JSONObject(response.body());
-            String translatedText = responseJson
-                    .getJSONArray("candidates")
-                    .getJSONObject(0)
-                    .getJSONObject("content")
-                    .getJSONArray("parts")
-                    .getJSONObject(0)
-                    .getString("text");
+    private static OutboundSseEvent errorEvent(Sse sse, int status, String message) {
+        return errorEvent(sse, status, message, 0);
+    }
 
-            JSONObject result = new JSONObject()
-                    .put("original", englishText)
-                    .put("translation", translatedText)
-                    .put("mode", "gemini");
+    private static OutboundSseEvent errorEvent(Sse sse, int status, String message, long retryAfterSeconds) {
+        JSONObject data = new JSONObject().put("status", status).put("error", message);
+        if (retryAfterSeconds > 0) {
+            data.put("retryAfter", retryAfterSeconds);
+        }
+        return sse.newEventBuilder()
+                .name("error")
+                .mediaType(MediaType.APPLICATION_JSON_TYPE)
+                .data(data.toString())
+                .build();
+    }
 
-            return Response.ok(result.toString()).build();
+    // Dernier évènement du flux : statut "error" s'il y en a un, sinon 200
+    private static void sendAndClose(SseEventSink sink, OutboundSseEvent event,
+                                     TranslatorMetrics.Endpoint endpoint, long start) {
+        String data = String.valueOf(event.getData());
+        int status = "error".equals(event.getName()) ? new JSONObject(data).optInt("status", 500) : 200;
+        sink.send(event).whenComplete((sent, error) -> {
+            sink.close();
+            endpoint.finished(start, error == null ? status : 499, TranslatorMetrics.utf8Length(data));
+        });
+    }
 
+    /**
+     * Corps : {"segments": ["...", "..."]} ou directement un tableau JSON
+     * (anglais -> darija). L'objet accepte aussi "v", "source", "target" et
+     * "options" comme /translate, communs à tous les segments.
+     */
+    @POST
+    @Path("/translate/batch")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON + ";charset=UTF-8")
+    public void translateBatch(byte[] body, @HeaderParam(DEADLINE_HEADER) String deadlineMs,
+                               @Suspended AsyncResponse asyncResponse) {
+        long start = BATCH.started(body.length);
+        Deadline deadline = deadline(deadlineMs);
+        suspend(asyncResponse, deadline, BATCH, start);
+        List<String> texts;
+        String direction;
+        try {
+            long parseStart = System.nanoTime();
+            JsonScanner scanner = JsonScanner.of(body);
+            boolean array = scanner.rootType() == '[';
+            texts = array ? scanner.findStringArray() : scanner.findStringArray("segments");
+            direction = array ? TranslationService.DIRECTION : TranslationRequest.parseDirection(scanner);
+            METRICS.requestParsed(System.nanoTime() - parseStart);
+            if (texts == null) {
+                throw new JSONException("JSONObject[\"segments\"] not found.");
+            }
+            if (texts.size() > BATCH_MAX_SEGMENTS) {
+                resume(asyncResponse, Response.status(400)
+                        .entity(new JSONObject().put("error", "Trop de segments (max " + BATCH_MAX_SEGMENTS + ")").toString())
+                        .build(), BATCH, start);
+                return;
+            }
         } catch (Exception e) {
-            e.printStackTrace();
-            return Response.status(500)
-                    .entity("{\"error\": \"" + e.getMessage() + "\"}")
+            resume(asyncResponse, invalidRequest(e, BATCH), BATCH, start);
+            return;
+        }
+
+        service.translateBatchAsync(texts, direction, deadline).whenComplete((translations, error) -> {
+            if (error != null) {
+                resume(asyncResponse, errorResponse(error, BATCH), BATCH, start);
+                return;
+            }
+            resume(asyncResponse, Response.ok(new JsonBody(out -> {
+                out.raw("{\"results\":[");
+                for (int i = 0; i < translations.size(); i++) {
+                    if (i > 0) {
+                        out.raw(",");
+                    }
+                    translations.get(i).writeJson(out);
+                }
+                out.raw("]}");
+            })).build(), BATCH, start);
+        });
+    }
+
+    @GET
+    @Path("/stats")
+    @Produces(MediaType.APPLICATION_JSON + ";charset=UTF-8")
+    public Response stats() {
+        return Response.ok(allStats().toString()).build();
+    }
+
+    /**
+     * Mesures au format texte Prometheus : latences (percentiles), tailles,
+     * statuts, analyse JSON, et les compteurs de /stats en jauges.
+     */
+    @GET
+    @Path("/metrics")
+    @Produces(PrometheusFormat.CONTENT_TYPE)
+    public Response metrics() {
+        return Response.ok(PrometheusFormat.format(METRICS, allStats())).build();
+    }
+
+    // Statistiques du service, et des tâches en masse si le planificateur tourne
+    private JSONObject allStats() {
+        JSONObject stats = service.stats();
+        JSONObject jobs = JobScheduler.sharedStats();
+        if (jobs != null) {
+            stats.put("jobs", jobs);
+        }
+        return stats;
+    }
+
+    /**
+     * Budget de la requête : en-tête X-Deadline-Ms du client (millisecondes),
+     * sinon translator.deadline.default-ms, plafonné par translator.async.timeout-ms.
+     */
+    private static Deadline deadline(String header) {
+        long budget = DEFAULT_DEADLINE_MS;
+        if (header != null && !header.isBlank()) {
+            try {
+                budget = Long.parseLong(header.trim());
+            } catch (NumberFormatException e) {
+                // En-tête illisible : budget par défaut
+            }
+        }
+        return Deadline.afterMillis(Math.min(Math.max(1, budget), ASYNC_TIMEOUT_MS));
+    }
+
+    // Le conteneur reprend la requête à l'expiration du budget si rien n'a répondu avant
+    private static void suspend(AsyncResponse asyncResponse, Deadline deadline,
+                                TranslatorMetrics.Endpoint endpoint, long start) {
+        asyncResponse.setTimeout(Math.max(1, deadline.remainingMillis()), TimeUnit.MILLISECONDS);
+        asyncResponse.setTimeoutHandler(response -> resume(response, Response.status(504)
+                .entity(new JSONObject().put("error", "Délai de traduction dépassé").toString())
+                .build(), endpoint, start));
+    }
+
+    // Mesurée une seule fois : une reprise après le timeout est ignorée par le conteneur
+    private static void resume(AsyncResponse asyncResponse, Response response,
+                               TranslatorMetrics.Endpoint endpoint, long start) {
+        if (response.getEntity() instanceof JsonBody) {
+            // Corps écrit après la reprise : mesuré quand sa taille est connue
+            int status = response.getStatus();
+            ((JsonBody) response.getEntity()).onWritten(bytes ->
+                    endpoint.finished(start, bytes < 0 ? 499 : status, (int) Math.max(0, bytes)));
+            asyncResponse.resume(response);
+            return;
+        }
+        if (asyncResponse.resume(response)) {
+            Object entity = response.getEntity();
+            endpoint.finished(start, response.getStatus(),
+                    entity instanceof String ? TranslatorMetrics.utf8Length((String) entity) : 0);
+        }
+    }
+
+    private static Response ok(Translation translation) {
+        return Response.ok(new JsonBody(translation::writeJson)).build();
+    }
+
+    /**
+     * Corps d'une traduction, lu sans construire de JSONObject.
+     */
+    static TranslationRequest parseRequest(byte[] json) {
+        long start = System.nanoTime();
+        TranslationRequest request = TranslationRequest.parse(json);
+        METRICS.requestParsed(System.nanoTime() - start);
+        return request;
+    }
+
+    // Version, langue ou option refusée : 400 ; les autres erreurs de lecture comme avant
+    private static Response invalidRequest(Exception error, TranslatorMetrics.Endpoint endpoint) {
+        if (error instanceof IllegalArgumentException) {
+            return Response.status(400)
+                    .entity(new JSONObject().put("error", error.getMessage()).toString())
                     .build();
         }
+        return errorResponse(error, endpoint);
     }
 
-    // Fonction de simulation simple
-    private String simulateDarijaTranslation(String englishText) {
-    // Quelques traductions simulées pour les tests
-        switch (englishText.toLowerCase()) {
-            case "hello":
-                return "سلام (salam)";
-            case "good morning":
-                return "صباح الخير (sbah lkhir)";
-            case "how are you":
-                return "كيداير؟ (kidayer?)";
-            case "thank you":
-                return "شكرا (shukran)";
-            case "goodbye":
-                return "بسلامة (bslama)";
-            default:
-                return "[SIMULATION] Traduction darija de: " + englishText;
+    private static Response errorResponse(Throwable error, TranslatorMetrics.Endpoint endpoint) {
+        Throwable cause = TranslationService.unwrap(error);
+        if (cause instanceof UpstreamException) {
+            UpstreamException upstreamError = (UpstreamException) cause;
+            Response.ResponseBuilder response = Response.status(upstreamError.getStatusCode())
+                    .entity(upstreamError.getBody());
+            // Le client réessaie après le délai demandé au lieu d'immédiatement
+            if (upstreamError.getRetryAfterSeconds() > 0) {
+                response.header("Retry-After", upstreamError.getRetryAfterSeconds());
+            }
+            return response.build();
         }
+        logFailure(endpoint, 500, cause);
+        return Response.status(500)
+                .entity(new JSONObject().put("error", String.valueOf(cause.getMessage())).toString())
+                .build();
+    }
+
+    // Erreurs internes seulement : les refus de Gemini sont déjà comptés par statut
+    private static void logFailure(TranslatorMetrics.Endpoint endpoint, int status, Throwable cause) {
+        LOG.log(Level.SEVERE, cause, () -> "Requête " + endpoint.name() + " en échec (HTTP " + status + ")");
     }
-}
\ No newline at end of file
+}
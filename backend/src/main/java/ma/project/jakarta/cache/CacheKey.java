@@ -0,0 +1,87 @@
+package ma.project.jakarta.cache;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Clé de cache : texte normalisé + direction + modèle.
+ * "Hello ", "hello" et "HELLO" partagent la même entrée.
+ */
+public final class CacheKey {
+
+    private final String text;
+    private final String direction;
+    private final String model;
+    private final int hash;
+
+    private CacheKey(String text, String direction, String model) {
+        this.text = text;
+        this.direction = direction;
+        this.model = model;
+        this.hash = Objects.hash(text, direction, model);
+    }
+
+    public static CacheKey of(String text, String direction, String model) {
+        return new CacheKey(normalize(text), direction, model);
+    }
+
+    /**
+     * Normalisation Unicode (NFC), espaces réduits et minuscules.
+     */
+    public static String normalize(String text) {
+        String nfc = Normalizer.normalize(text, Normalizer.Form.NFC);
+        StringBuilder sb = new StringBuilder(nfc.length());
+        boolean space = false;
+        for (int i = 0; i < nfc.length(); i++) {
+            char c = nfc.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = sb.length() > 0;
+            } else {
+                if (space) {
+                    sb.append(' ');
+                    space = false;
+                }
+                sb.append(c);
+            }
+        }
+        return sb.toString().toLowerCase(Locale.ROOT);
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public String getDirection() {
+        return direction;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CacheKey)) {
+            return false;
+        }
+        CacheKey other = (CacheKey) o;
+        return hash == other.hash
+                && text.equals(other.text)
+                && direction.equals(other.direction)
+                && model.equals(other.model);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return direction + "/" + model + ":" + text;
+    }
+}
@@ -0,0 +1,285 @@
+package ma.project.jakarta.cache;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+import ma.project.jakarta.config.TranslatorConfig;
+import org.json.JSONObject;
+
+/**
+ * Cache mémoire des traductions devant Gemini.
+ *
+ * Politique W-TinyLFU simplifiée : les nouvelles entrées arrivent dans une
+ * petite fenêtre LRU (1 % du poids) ; à la sortie de la fenêtre, un candidat
+ * n'entre dans la zone principale que s'il est plus fréquent (d'après le
+ * sketch) que la victime LRU qu'il remplacerait. Les chaînes vues une seule
+ * fois ne chassent donc pas les salutations demandées des milliers de fois.
+ *
+ * Les lectures passent par une ConcurrentHashMap ; la mise à jour de l'ordre
+ * d'accès est faite sous tryLock et simplement ignorée en cas de contention.
+ */
+public class TranslationCache {
+
+    private static volatile TranslationCache shared;
+
+    private final ConcurrentHashMap<CacheKey, Node> data = new ConcurrentHashMap<>();
+    private final LinkedHashMap<CacheKey, Node> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<CacheKey, Node> main = new LinkedHashMap<>(16, 0.75f, true);
+    private final ReentrantLock lock = new ReentrantLock();
+    private final FrequencySketch sketch;
+
+    private final long maximumWeight;
+    private final int maximumSize;
+    private final long windowMaxWeight;
+    private final int windowMaxSize;
+    private final long ttlNanos;
+
+    private long windowWeight;
+    private long mainWeight;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    /**
+     * @param maximumWeight poids maximal (somme des caractères clé + traduction)
+     * @param maximumSize   nombre maximal d'entrées
+     * @param ttl           durée de vie d'une entrée après écriture
+     */
+    public TranslationCache(long maximumWeight, int maximumSize, Duration ttl) {
+        this.maximumWeight = Math.max(1, maximumWeight);
+        this.maximumSize = Math.max(1, maximumSize);
+        this.windowMaxWeight = Math.max(1, this.maximumWeight / 100);
+        this.windowMaxSize = Math.max(1, this.maximumSize / 100);
+        this.ttlNanos = ttl.toNanos();
+        this.sketch = new FrequencySketch(this.maximumSize);
+    }
+
+    public static TranslationCache fromConfig() {
+        return new TranslationCache(
+                TranslatorConfig.getLong("translator.cache.maximum-weight", 8_000_000),
+                TranslatorConfig.getInt("translator.cache.maximum-size", 100_000),
+                Duration.ofSeconds(TranslatorConfig.getLong("translator.cache.ttl-seconds", 86_400)));
+    }
+
+    public static TranslationCache shared() {
+        TranslationCache cache = shared;
+        if (cache == null) {
+            synchronized (TranslationCache.class) {
+                cache = shared;
+                if (cache == null) {
+                    cache = fromConfig();
+                    shared = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    public String get(CacheKey key) {
+        Node node = data.get(key);
+        if (node != null && isExpired(node, System.nanoTime())) {
+            expire(node);
+            node = null;
+        }
+        recordAccess(key, node);
+        if (node == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return node.value;
+    }
+
+    public void put(CacheKey key, String translation) {
+        long weight = key.getText().length() + (long) translation.length();
+        if (weight > maximumWeight - windowMaxWeight) {
+            rejections.increment();
+            return;
+        }
+        Node node = new Node(key, translation, weight, System.nanoTime());
+        lock.lock();
+        try {
+            Node previous = data.put(key, node);
+            if (previous != null) {
+                unlink(previous);
+            }
+            window.put(key, node);
+            node.inWindow = true;
+            windowWeight += weight;
+            evict();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void invalidate(CacheKey key) {
+        lock.lock();
+        try {
+            Node node = data.remove(key);
+            if (node != null) {
+                unlink(node);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void invalidateAll() {
+        lock.lock();
+        try {
+            data.clear();
+            window.clear();
+            main.clear();
+            windowWeight = 0;
+            mainWeight = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        return data.size();
+    }
+
+    /**
+     * Parcourt les entrées non expirées (transfert vers un autre nœud du cluster).
+     */
+    public void forEach(BiConsumer<CacheKey, String> action) {
+        long now = System.nanoTime();
+        for (Node node : data.values()) {
+            if (!isExpired(node, now)) {
+                action.accept(node.key, node.value);
+            }
+        }
+    }
+
+    public JSONObject stats() {
+        long h = hits.sum();
+        long m = misses.sum();
+        return new JSONObject()
+                .put("size", data.size())
+                .put("weight", windowWeight + mainWeight)
+                .put("hits", h)
+                .put("misses", m)
+                .put("hitRatio", h + m == 0 ? 0.0 : (double) h / (h + m))
+                .put("evictions", evictions.sum())
+                .put("expirations", expirations.sum())
+                .put("admissionRejections", rejections.sum());
+    }
+
+    // Enregistre la fréquence et l'ordre d'accès, sans bloquer la lecture
+    private void recordAccess(CacheKey key, Node node) {
+        if (!lock.tryLock()) {
+            return;
+        }
+        try {
+            sketch.increment(key);
+            if (node != null && data.get(key) == node) {
+                (node.inWindow ? window : main).get(key);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void expire(Node node) {
+        lock.lock();
+        try {
+            if (data.remove(node.key, node)) {
+                unlink(node);
+                expirations.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void unlink(Node node) {
+        if (node.inWindow) {
+            if (window.remove(node.key, node)) {
+                windowWeight -= node.weight;
+            }
+        } else if (main.remove(node.key, node)) {
+            mainWeight -= node.weight;
+        }
+    }
+
+    // Fenêtre -> zone principale, avec admission TinyLFU
+    private void evict() {
+        long mainMaxWeight = maximumWeight - windowMaxWeight;
+        while (windowWeight > windowMaxWeight || window.size() > windowMaxSize) {
+            Iterator<Map.Entry<CacheKey, Node>> it = window.entrySet().iterator();
+            Node candidate = it.next().getValue();
+            it.remove();
+            windowWeight -= candidate.weight;
+
+            if (isExpired(candidate, System.nanoTime())) {
+                data.remove(candidate.key, candidate);
+                expirations.increment();
+                continue;
+            }
+            if (admit(candidate, mainMaxWeight)) {
+                candidate.inWindow = false;
+                main.put(candidate.key, candidate);
+                mainWeight += candidate.weight;
+            } else {
+                data.remove(candidate.key, candidate);
+                rejections.increment();
+                evictions.increment();
+            }
+        }
+    }
+
+    private boolean admit(Node candidate, long mainMaxWeight) {
+        int candidateFrequency = sketch.frequency(candidate.key);
+        while (mainWeight + candidate.weight > mainMaxWeight
+                || main.size() + window.size() + 1 > maximumSize) {
+            Iterator<Map.Entry<CacheKey, Node>> it = main.entrySet().iterator();
+            if (!it.hasNext()) {
+                return false;
+            }
+            Node victim = it.next().getValue();
+            boolean victimExpired = isExpired(victim, System.nanoTime());
+            if (!victimExpired && sketch.frequency(victim.key) >= candidateFrequency) {
+                return false;
+            }
+            it.remove();
+            mainWeight -= victim.weight;
+            data.remove(victim.key, victim);
+            if (victimExpired) {
+                expirations.increment();
+            } else {
+                evictions.increment();
+            }
+        }
+        return true;
+    }
+
+    private boolean isExpired(Node node, long now) {
+        return now - node.writeTime > ttlNanos;
+    }
+
+    private static final class Node {
+        final CacheKey key;
+        final String value;
+        final long weight;
+        final long writeTime;
+        boolean inWindow;
+
+        Node(CacheKey key, String value, long weight, long writeTime) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+            this.writeTime = writeTime;
+        }
+    }
+}
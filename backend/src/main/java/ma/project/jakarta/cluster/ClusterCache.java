@@ -0,0 +1,416 @@
+package ma.project.jakarta.cluster;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import ma.project.jakarta.cache.CacheKey;
+import ma.project.jakarta.cache.TranslationCache;
+import ma.project.jakarta.config.TranslatorConfig;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Cache de traductions partagé entre les nœuds d'un cluster, sans serveur
+ * central : chaque clé appartient à un nœud (hachage cohérent) qui en garde
+ * la traduction. Une traduction obtenue par un nœud est envoyée à son
+ * propriétaire ; les autres nœuds l'y demandent au lieu de rappeler Gemini.
+ *
+ * Les membres sont fixés par configuration ("hôte:port", le même ordre n'est
+ * pas nécessaire). Un battement de cœur ouvre les connexions et retire de
+ * l'anneau un nœud qui ne répond plus ; il y revient dès qu'il répond. Un nœud
+ * qui s'arrête proprement transmet ses entrées à leurs nouveaux propriétaires
+ * puis annonce son départ ; quand un nœud revient, les entrées qui lui
+ * appartiennent à nouveau lui sont transmises.
+ *
+ * Le cache local ("cache", placé avant dans la chaîne) sert de cache proche :
+ * une traduction obtenue d'un autre nœud y est gardée.
+ *
+ * Seuls les membres qui prouvent connaître translator.cluster.secret sont
+ * servis (voir {@link PeerServer}) ; le port doit rester sur un réseau privé.
+ */
+public class ClusterCache implements Closeable {
+
+    private static volatile ClusterCache shared;
+
+    private final String self;
+    private final Map<String, Member> peers = new LinkedHashMap<>();
+    private final TranslationCache owned;
+    private final int virtualNodes;
+    private final long timeoutMs;
+    private final long pingMs;
+    private final int maxFailures;
+    private final PeerServer server;
+    private final ScheduledExecutorService heartbeat;
+
+    private volatile HashRing ring;
+    private volatile boolean leaving;
+
+    private final LongAdder localHits = new LongAdder();
+    private final LongAdder localMisses = new LongAdder();
+    private final LongAdder remoteHits = new LongAdder();
+    private final LongAdder remoteMisses = new LongAdder();
+    private final LongAdder remoteErrors = new LongAdder();
+    private final LongAdder putsSent = new LongAdder();
+    private final LongAdder putsDropped = new LongAdder();
+    private final LongAdder getsServed = new LongAdder();
+    private final LongAdder putsReceived = new LongAdder();
+    private final LongAdder transferred = new LongAdder();
+    private final LongAdder ringChanges = new LongAdder();
+
+    /**
+     * @param self    ce nœud, "hôte:port" (port d'écoute du protocole)
+     * @param members tous les nœuds, ce nœud compris ou non
+     * @param owned   entrées dont ce nœud est propriétaire
+     * @param secret  secret partagé, exigé de chaque nœud qui se connecte
+     */
+    public ClusterCache(String self, List<String> members, TranslationCache owned, byte[] secret, int virtualNodes,
+                        long timeoutMs, long pingMs, int maxFailures, int connectTimeoutMs) {
+        if (secret == null || secret.length < 16) {
+            throw new IllegalStateException("translator.cluster.secret manquant ou trop court (16 octets minimum)");
+        }
+        this.self = self;
+        this.owned = owned;
+        this.virtualNodes = Math.max(1, virtualNodes);
+        this.timeoutMs = Math.max(1, timeoutMs);
+        this.pingMs = Math.max(10, pingMs);
+        this.maxFailures = Math.max(1, maxFailures);
+        for (String member : members) {
+            if (!member.equals(self) && !peers.containsKey(member)) {
+                peers.put(member, new Member(member,
+                        new PeerConnection(member, address(member), self, secret, Math.max(1, connectTimeoutMs))));
+            }
+        }
+        this.server = new PeerServer(new InetSocketAddress(
+                TranslatorConfig.getString("translator.cluster.bind", host(self)), port(self)), new PeerHandler(),
+                self, secret, peers.keySet(), Math.max(1_000, connectTimeoutMs));
+        this.heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cluster-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Membres statiques : tous les nœuds partent du même anneau
+        rebuildRing();
+    }
+
+    /**
+     * Cluster configuré ("translator.cluster.members" non vide).
+     */
+    public static boolean isEnabled() {
+        return !TranslatorConfig.getString("translator.cluster.members", "").isBlank();
+    }
+
+    public static ClusterCache fromConfig() {
+        List<String> members = new ArrayList<>();
+        for (String member : TranslatorConfig.getString("translator.cluster.members", "").split(",")) {
+            if (!member.isBlank()) {
+                members.add(member.trim());
+            }
+        }
+        String self = TranslatorConfig.getString("translator.cluster.self", null);
+        if (self == null) {
+            throw new IllegalStateException("translator.cluster.self manquant (hôte:port de ce nœud)");
+        }
+        TranslationCache owned = new TranslationCache(
+                TranslatorConfig.getLong("translator.cluster.maximum-weight", 16_000_000),
+                TranslatorConfig.getInt("translator.cluster.maximum-size", 200_000),
+                Duration.ofSeconds(TranslatorConfig.getLong("translator.cache.ttl-seconds", 86_400)));
+        String secret = TranslatorConfig.getString("translator.cluster.secret", "");
+        return new ClusterCache(self, members, owned, secret.getBytes(StandardCharsets.UTF_8),
+                TranslatorConfig.getInt("translator.cluster.virtual-nodes", 128),
+                TranslatorConfig.getLong("translator.cluster.timeout-ms", 100),
+                TranslatorConfig.getLong("translator.cluster.ping-ms", 1000),
+                TranslatorConfig.getInt("translator.cluster.max-failures", 3),
+                TranslatorConfig.getInt("translator.cluster.connect-timeout-ms", 200));
+    }
+
+    public static ClusterCache shared() {
+        ClusterCache cluster = shared;
+        if (cluster == null) {
+            synchronized (ClusterCache.class) {
+                cluster = shared;
+                if (cluster == null) {
+                    cluster = fromConfig();
+                    try {
+                        cluster.start();
+                    } catch (IOException e) {
+                        cluster.close();
+                        throw new IllegalStateException("Port du cluster indisponible : " + cluster.self, e);
+                    }
+                    shared = cluster;
+                }
+            }
+        }
+        return cluster;
+    }
+
+    /**
+     * Départ annoncé aux autres nœuds, entrées transmises, puis fermeture.
+     */
+    public static synchronized void closeShared() {
+        if (shared != null) {
+            shared.leave();
+            shared.close();
+            shared = null;
+        }
+    }
+
+    public void start() throws IOException {
+        server.start();
+        heartbeat.scheduleWithFixedDelay(this::beat, 0, pingMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Traduction gardée par le propriétaire de la clé, null si absente ou si
+     * le propriétaire ne répond pas dans le délai.
+     */
+    public CompletableFuture<String> get(CacheKey key) {
+        String owner = ring.owner(key);
+        Member member = owner == null ? null : peers.get(owner);
+        if (member == null) {
+            String value = owned.get(key);
+            (value != null ? localHits : localMisses).increment();
+            return CompletableFuture.completedFuture(value);
+        }
+        return member.connection.request(PeerProtocol.GET, key, timeoutMs).handle((frame, error) -> {
+            if (error != null) {
+                remoteErrors.increment();
+                failed(member);
+                return null;
+            }
+            if (frame.op == PeerProtocol.VALUE) {
+                remoteHits.increment();
+                return frame.value;
+            }
+            remoteMisses.increment();
+            return null;
+        });
+    }
+
+    /**
+     * Confie la traduction au propriétaire de la clé (sans attendre).
+     */
+    public void put(CacheKey key, String value) {
+        String owner = ring.owner(key);
+        Member member = owner == null ? null : peers.get(owner);
+        if (member == null) {
+            owned.put(key, value);
+        } else if (member.connection.send(PeerProtocol.PUT, key, value)) {
+            putsSent.increment();
+        } else {
+            putsDropped.increment();
+        }
+    }
+
+    // ---------------------------------------------------------------- requêtes des autres nœuds
+
+    private final class PeerHandler implements PeerServer.Handler {
+        @Override
+        public String get(CacheKey key) {
+            getsServed.increment();
+            return owned.get(key);
+        }
+
+        @Override
+        public void put(CacheKey key, String value) {
+            putsReceived.increment();
+            owned.put(key, value);
+        }
+
+        @Override
+        public void left(String node) {
+            Member member = peers.get(node);
+            if (member == null) {
+                return;
+            }
+            synchronized (member) {
+                member.left = true;
+                member.up = false;
+            }
+            rebuildRing();
+        }
+    }
+
+    // ---------------------------------------------------------------- membres
+
+    private void beat() {
+        for (Member member : peers.values()) {
+            PeerConnection connection = member.connection;
+            if (!connection.isConnected()) {
+                try {
+                    connection.connect();
+                } catch (IOException e) {
+                    failed(member);
+                    continue;
+                }
+                // Nouvelle connexion : un nœud parti a redémarré
+                member.left = false;
+            }
+            connection.request(PeerProtocol.PING, null, Math.max(timeoutMs, pingMs / 2))
+                    .whenComplete((pong, error) -> {
+                        if (error == null) {
+                            reachable(member);
+                        } else {
+                            failed(member);
+                        }
+                    });
+        }
+    }
+
+    private void failed(Member member) {
+        boolean changed;
+        synchronized (member) {
+            member.failures++;
+            changed = member.up && member.failures >= maxFailures;
+            if (changed) {
+                member.up = false;
+            }
+        }
+        if (changed) {
+            rebuildRing();
+        }
+    }
+
+    private void reachable(Member member) {
+        boolean changed;
+        synchronized (member) {
+            member.failures = 0;
+            changed = !member.up && !member.left;
+            if (changed) {
+                member.up = true;
+            }
+        }
+        if (changed) {
+            rebuildRing();
+            // Les entrées qui lui reviennent lui sont transmises
+            heartbeat.execute(() -> transfer(true));
+        }
+    }
+
+    private synchronized void rebuildRing() {
+        List<String> nodes = new ArrayList<>();
+        if (!leaving) {
+            nodes.add(self);
+        }
+        for (Member member : peers.values()) {
+            if (member.up) {
+                nodes.add(member.id);
+            }
+        }
+        ring = new HashRing(nodes, virtualNodes);
+        ringChanges.increment();
+    }
+
+    /**
+     * Envoie à leur propriétaire actuel les entrées qui n'appartiennent plus à ce nœud.
+     *
+     * @param forget retirer ensuite ces entrées d'ici (false au départ : les
+     *               autres nœuds peuvent encore les demander jusqu'à l'annonce)
+     */
+    private void transfer(boolean forget) {
+        HashRing current = ring;
+        owned.forEach((key, value) -> {
+            String owner = current.owner(key);
+            Member member = owner == null ? null : peers.get(owner);
+            if (member != null && member.connection.send(PeerProtocol.PUT, key, value)) {
+                transferred.increment();
+                if (forget) {
+                    owned.invalidate(key);
+                }
+            }
+        });
+    }
+
+    /**
+     * Arrêt propre : entrées transmises aux nœuds qui en héritent, puis départ annoncé.
+     */
+    public void leave() {
+        leaving = true;
+        rebuildRing();
+        transfer(false);
+        for (Member member : peers.values()) {
+            member.connection.send(PeerProtocol.LEAVE, null, self);
+        }
+    }
+
+    @Override
+    public void close() {
+        heartbeat.shutdownNow();
+        for (Member member : peers.values()) {
+            member.connection.close();
+        }
+        server.close();
+    }
+
+    public JSONObject stats() {
+        JSONArray members = new JSONArray();
+        for (Member member : peers.values()) {
+            members.put(new JSONObject()
+                    .put("node", member.id)
+                    .put("state", member.left ? "left" : member.up ? "up" : "down")
+                    .put("connected", member.connection.isConnected()));
+        }
+        return new JSONObject()
+                .put("self", self)
+                .put("members", members)
+                .put("ringNodes", ring.nodes().size())
+                .put("ringChanges", ringChanges.sum())
+                .put("owned", owned.size())
+                .put("localHits", localHits.sum())
+                .put("localMisses", localMisses.sum())
+                .put("remoteHits", remoteHits.sum())
+                .put("remoteMisses", remoteMisses.sum())
+                .put("remoteErrors", remoteErrors.sum())
+                .put("putsSent", putsSent.sum())
+                .put("putsDropped", putsDropped.sum())
+                .put("getsServed", getsServed.sum())
+                .put("putsReceived", putsReceived.sum())
+                .put("transferred", transferred.sum())
+                .put("rejectedConnections", server.rejected());
+    }
+
+    private static InetSocketAddress address(String member) {
+        return new InetSocketAddress(host(member), port(member));
+    }
+
+    static String host(String member) {
+        int colon = member.lastIndexOf(':');
+        if (colon <= 0) {
+            throw new IllegalArgumentException("Membre du cluster invalide (hôte:port attendu) : " + member);
+        }
+        return member.substring(0, colon);
+    }
+
+    private static int port(String member) {
+        try {
+            return Integer.parseInt(member.substring(member.lastIndexOf(':') + 1));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Membre du cluster invalide (hôte:port attendu) : " + member, e);
+        }
+    }
+
+    private static final class Member {
+        final String id;
+        final PeerConnection connection;
+        // Sous le moniteur du membre
+        int failures;
+        volatile boolean up = true;
+        volatile boolean left;
+
+        Member(String id, PeerConnection connection) {
+            this.id = id;
+            this.connection = connection;
+        }
+    }
+}
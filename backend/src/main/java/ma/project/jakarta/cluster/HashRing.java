@@ -0,0 +1,85 @@
+package ma.project.jakarta.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import ma.project.jakarta.cache.CacheKey;
+
+/**
+ * Anneau de hachage cohérent : chaque nœud y occupe virtualNodes points,
+ * une clé appartient au premier point qui suit son hash. Retirer un nœud ne
+ * déplace que ses propres clés, réparties sur les autres nœuds.
+ *
+ * Immuable : un changement de membres construit un nouvel anneau.
+ */
+final class HashRing {
+
+    private final long[] points;
+    private final String[] owners;
+    private final List<String> nodes;
+
+    HashRing(Collection<String> nodes, int virtualNodes) {
+        this.nodes = List.copyOf(nodes);
+        int perNode = Math.max(1, virtualNodes);
+        long[] hashes = new long[this.nodes.size() * perNode];
+        int position = 0;
+        for (String node : this.nodes) {
+            for (int i = 0; i < perNode; i++) {
+                hashes[position++] = hash(node + '#' + i);
+            }
+        }
+        // Tri des points en gardant leur propriétaire : indices triés par hash
+        Integer[] order = new Integer[hashes.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(hashes[a], hashes[b]));
+        this.points = new long[hashes.length];
+        this.owners = new String[hashes.length];
+        for (int i = 0; i < order.length; i++) {
+            points[i] = hashes[order[i]];
+            owners[i] = this.nodes.get(order[i] / perNode);
+        }
+    }
+
+    /**
+     * Nœud propriétaire de la clé, null si l'anneau est vide.
+     */
+    String owner(CacheKey key) {
+        return owner(hash(key));
+    }
+
+    String owner(long hash) {
+        if (points.length == 0) {
+            return null;
+        }
+        int index = Arrays.binarySearch(points, hash);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return owners[index == points.length ? 0 : index];
+    }
+
+    List<String> nodes() {
+        return nodes;
+    }
+
+    static long hash(CacheKey key) {
+        return hash(key.getDirection() + '\u0001' + key.getModel() + '\u0001' + key.getText());
+    }
+
+    // FNV-1a 64 bits suivi d'un mélange final, comme la mémoire de traduction
+    static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,197 @@
+package ma.project.jakarta.cluster;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ma.project.jakarta.cache.CacheKey;
+
+/**
+ * Connexion sortante vers un autre nœud : une seule socket, requêtes
+ * multiplexées par identifiant et réponses lues par un thread dédié.
+ *
+ * La connexion est ouverte (et rouverte) par le battement de cœur de
+ * {@link ClusterCache}, jamais sur le chemin d'une traduction : vers un nœud
+ * injoignable, une requête échoue aussitôt au lieu d'attendre un connect.
+ * Elle n'est utilisée qu'une fois le nœud appelé authentifié : un autre
+ * processus à son adresse ne peut pas fournir de traductions.
+ */
+final class PeerConnection {
+
+    private final String node;
+    private final InetSocketAddress address;
+    private final String self;
+    private final byte[] secret;
+    private final int connectTimeoutMs;
+    private final AtomicLong ids = new AtomicLong();
+    private final ConcurrentHashMap<Long, CompletableFuture<PeerProtocol.Frame>> pending = new ConcurrentHashMap<>();
+
+    private volatile Link link;
+
+    /**
+     * @param self nom de ce nœud, prouvé à l'autre avec le secret partagé
+     */
+    PeerConnection(String node, InetSocketAddress address, String self, byte[] secret, int connectTimeoutMs) {
+        this.node = node;
+        this.address = address;
+        this.self = self;
+        this.secret = secret.clone();
+        this.connectTimeoutMs = connectTimeoutMs;
+    }
+
+    boolean isConnected() {
+        return link != null;
+    }
+
+    synchronized void connect() throws IOException {
+        if (link != null) {
+            return;
+        }
+        Socket socket = new Socket();
+        Link opened;
+        try {
+            socket.setTcpNoDelay(true);
+            socket.connect(address, connectTimeoutMs);
+            opened = new Link(socket, new DataInputStream(new BufferedInputStream(socket.getInputStream(), 8192)),
+                    new BufferedOutputStream(socket.getOutputStream(), 8192));
+            authenticate(opened);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+        link = opened;
+        Thread reader = new Thread(() -> read(opened), "cluster-peer-" + node);
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    // Réponse au nonce du serveur, puis vérification de sa preuve pour le nôtre
+    private void authenticate(Link opened) throws IOException {
+        opened.socket.setSoTimeout(connectTimeoutMs);
+        PeerProtocol.Frame challenge = PeerProtocol.read(opened.in);
+        if (challenge.op != PeerProtocol.CHALLENGE) {
+            throw new IOException("Poignée de main attendue de " + node);
+        }
+        String nonce = PeerProtocol.challenge();
+        opened.out.write(PeerProtocol.encode(PeerProtocol.AUTH, 0, null,
+                PeerProtocol.proof(secret, challenge.value, self)));
+        opened.send(PeerProtocol.encode(PeerProtocol.CHALLENGE, 0, null, nonce));
+        // Preuve refusée : le serveur ferme la connexion, la lecture échoue
+        PeerProtocol.Frame auth = PeerProtocol.read(opened.in);
+        if (auth.op != PeerProtocol.AUTH || !node.equals(PeerProtocol.verify(secret, nonce, auth.value))) {
+            throw new IOException("Nœud " + node + " non authentifié");
+        }
+        opened.socket.setSoTimeout(0);
+    }
+
+    /**
+     * Requête avec réponse (GET, PING) ; échoue après timeoutMs ou si la connexion tombe.
+     */
+    CompletableFuture<PeerProtocol.Frame> request(byte op, CacheKey key, long timeoutMs) {
+        Link current = link;
+        if (current == null) {
+            return CompletableFuture.failedFuture(new ConnectException("Nœud " + node + " non connecté"));
+        }
+        long id = ids.incrementAndGet();
+        CompletableFuture<PeerProtocol.Frame> response = new CompletableFuture<>();
+        pending.put(id, response);
+        try {
+            current.send(PeerProtocol.encode(op, id, key, null));
+        } catch (IOException e) {
+            close(current, e);
+        }
+        return response.orTimeout(timeoutMs, TimeUnit.MILLISECONDS)
+                .whenComplete((frame, error) -> pending.remove(id));
+    }
+
+    /**
+     * Envoi sans réponse (PUT, LEAVE) ; false si la connexion n'est pas ouverte.
+     */
+    boolean send(byte op, CacheKey key, String value) {
+        Link current = link;
+        if (current == null) {
+            return false;
+        }
+        try {
+            current.send(PeerProtocol.encode(op, 0, key, value));
+            return true;
+        } catch (IOException e) {
+            close(current, e);
+            return false;
+        }
+    }
+
+    /**
+     * Ferme après envoi de tout ce qui a été écrit (départ du nœud).
+     */
+    void close() {
+        Link current = link;
+        if (current != null) {
+            try {
+                current.socket.shutdownOutput();
+            } catch (IOException e) {
+                // fermée de toute façon ci-dessous
+            }
+            close(current, new IOException("Connexion vers " + node + " fermée"));
+        }
+    }
+
+    private void read(Link current) {
+        try {
+            while (true) {
+                PeerProtocol.Frame frame = PeerProtocol.read(current.in);
+                CompletableFuture<PeerProtocol.Frame> response = pending.remove(frame.id);
+                if (response != null) {
+                    response.complete(frame);
+                }
+            }
+        } catch (IOException e) {
+            close(current, e);
+        }
+    }
+
+    private synchronized void close(Link current, IOException cause) {
+        if (link != current) {
+            return;
+        }
+        link = null;
+        try {
+            current.socket.close();
+        } catch (IOException e) {
+            // ignoré
+        }
+        // Réponses en attente sur cette socket : elles ne viendront plus
+        for (Long id : pending.keySet()) {
+            CompletableFuture<PeerProtocol.Frame> response = pending.remove(id);
+            if (response != null) {
+                response.completeExceptionally(cause);
+            }
+        }
+    }
+
+    private static final class Link {
+        final Socket socket;
+        final DataInputStream in;
+        final OutputStream out;
+
+        Link(Socket socket, DataInputStream in, OutputStream out) {
+            this.socket = socket;
+            this.in = in;
+            this.out = out;
+        }
+
+        synchronized void send(byte[] frame) throws IOException {
+            out.write(frame);
+            out.flush();
+        }
+    }
+}
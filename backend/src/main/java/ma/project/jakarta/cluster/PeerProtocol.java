@@ -0,0 +1,198 @@
+package ma.project.jakarta.cluster;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import ma.project.jakarta.cache.CacheKey;
+
+/**
+ * Protocole binaire entre nœuds, sur une connexion TCP persistante :
+ * [longueur int][opération byte][identifiant long][données].
+ * Les chaînes sont écrites [longueur int][UTF-8], une clé est
+ * direction, modèle puis texte normalisé.
+ *
+ * Les requêtes GET et PING reçoivent une réponse portant le même
+ * identifiant, dans l'ordre d'arrivée ; PUT, LEAVE ne reçoivent rien.
+ *
+ * Poignée de main, dans les deux sens : à l'ouverture, le serveur envoie
+ * CHALLENGE (nonce aléatoire) ; le client répond AUTH "nœud preuve", la
+ * preuve étant le HMAC-SHA256, avec le secret partagé du cluster, du nonce
+ * et du nom du nœud, suivi de son propre CHALLENGE. Une fois le client
+ * vérifié, le serveur répond AUTH avec sa preuve pour ce second nonce. Aucune
+ * autre trame n'est acceptée, d'un côté comme de l'autre, avant une preuve
+ * valide.
+ */
+final class PeerProtocol {
+
+    static final byte GET = 1;
+    static final byte VALUE = 2;
+    static final byte MISS = 3;
+    static final byte PUT = 4;
+    static final byte PING = 5;
+    static final byte PONG = 6;
+    static final byte LEAVE = 7;
+    static final byte CHALLENGE = 8;
+    static final byte AUTH = 9;
+
+    // Une traduction de document tient largement dans 4 Mo
+    static final int MAX_FRAME = 4 << 20;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private PeerProtocol() {
+    }
+
+    /**
+     * Trame décodée ; les champs inutilisés par l'opération sont null.
+     */
+    static final class Frame {
+        final byte op;
+        final long id;
+        final CacheKey key;
+        final String value;
+
+        Frame(byte op, long id, CacheKey key, String value) {
+            this.op = op;
+            this.id = id;
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    static byte[] encode(byte op, long id, CacheKey key, String value) {
+        byte[][] strings = key == null
+                ? (value == null ? new byte[0][] : new byte[][]{utf8(value)})
+                : (value == null
+                        ? new byte[][]{utf8(key.getDirection()), utf8(key.getModel()), utf8(key.getText())}
+                        : new byte[][]{utf8(key.getDirection()), utf8(key.getModel()), utf8(key.getText()),
+                                utf8(value)});
+        int length = 1 + 8;
+        for (byte[] string : strings) {
+            length += 4 + string.length;
+        }
+        byte[] frame = new byte[4 + length];
+        int position = putInt(frame, 0, length);
+        frame[position++] = op;
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            frame[position++] = (byte) (id >>> shift);
+        }
+        for (byte[] string : strings) {
+            position = putInt(frame, position, string.length);
+            System.arraycopy(string, 0, frame, position, string.length);
+            position += string.length;
+        }
+        return frame;
+    }
+
+    static Frame read(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 9 || length > MAX_FRAME) {
+            throw new IOException("Trame invalide : " + length + " octets");
+        }
+        byte op = in.readByte();
+        long id = in.readLong();
+        int remaining = length - 9;
+        switch (op) {
+            case GET:
+                return new Frame(op, id, readKey(in), null);
+            case PUT:
+                return new Frame(op, id, readKey(in), readString(in));
+            case VALUE:
+            case LEAVE:
+            case CHALLENGE:
+            case AUTH:
+                return new Frame(op, id, null, readString(in));
+            case MISS:
+            case PING:
+            case PONG:
+                in.skipNBytes(remaining);
+                return new Frame(op, id, null, null);
+            default:
+                throw new IOException("Opération inconnue : " + op);
+        }
+    }
+
+    /**
+     * Nonce d'une poignée de main, en Base64.
+     */
+    static String challenge() {
+        byte[] nonce = new byte[32];
+        RANDOM.nextBytes(nonce);
+        return Base64.getEncoder().encodeToString(nonce);
+    }
+
+    /**
+     * Réponse AUTH du nœud node au nonce challenge.
+     */
+    static String proof(byte[] secret, String challenge, String node) {
+        return node + " " + Base64.getEncoder().encodeToString(mac(secret, challenge, node));
+    }
+
+    /**
+     * Nœud authentifié par la réponse AUTH, null si la preuve est fausse.
+     */
+    static String verify(byte[] secret, String challenge, String proof) {
+        int space = proof == null ? -1 : proof.lastIndexOf(' ');
+        if (space <= 0) {
+            return null;
+        }
+        String node = proof.substring(0, space);
+        byte[] expected = mac(secret, challenge, node);
+        byte[] received;
+        try {
+            received = Base64.getDecoder().decode(proof.substring(space + 1));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        return MessageDigest.isEqual(expected, received) ? node : null;
+    }
+
+    private static byte[] mac(byte[] secret, String challenge, String node) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret, "HmacSHA256"));
+            mac.update(utf8(challenge));
+            mac.update((byte) 0);
+            return mac.doFinal(utf8(node));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 indisponible", e);
+        }
+    }
+
+    private static CacheKey readKey(DataInputStream in) throws IOException {
+        String direction = readString(in);
+        String model = readString(in);
+        String text = readString(in);
+        // Texte déjà normalisé par l'émetteur : CacheKey.of ne le modifie plus
+        return CacheKey.of(text, direction, model);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_FRAME) {
+            throw new IOException("Chaîne invalide : " + length + " octets");
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int putInt(byte[] target, int position, int value) {
+        target[position] = (byte) (value >>> 24);
+        target[position + 1] = (byte) (value >>> 16);
+        target[position + 2] = (byte) (value >>> 8);
+        target[position + 3] = (byte) value;
+        return position + 4;
+    }
+}
@@ -0,0 +1,214 @@
+package ma.project.jakarta.cluster;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.UnknownHostException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import ma.project.jakarta.cache.CacheKey;
+
+/**
+ * Côté serveur du protocole entre nœuds : un thread par connexion entrante
+ * (une par autre nœud), requêtes traitées dans l'ordre. Les réponses d'une
+ * rafale de requêtes sont envoyées ensemble, au premier creux de lecture.
+ *
+ * Une connexion n'est servie qu'après la poignée de main (voir
+ * {@link PeerProtocol}) : preuve du secret partagé, nœud présent dans
+ * translator.cluster.members, et adresse source résolue depuis son hôte.
+ * Sinon elle est fermée sans réponse. Ce nœud prouve ensuite son propre nom
+ * au client, qui n'accepte aucune réponse avant.
+ */
+final class PeerServer implements Closeable {
+
+    /**
+     * Opérations servies aux autres nœuds.
+     */
+    interface Handler {
+        String get(CacheKey key);
+
+        void put(CacheKey key, String value);
+
+        void left(String node);
+    }
+
+    private final InetSocketAddress address;
+    private final Handler handler;
+    private final String self;
+    private final byte[] secret;
+    private final Set<String> members;
+    private final int handshakeTimeoutMs;
+    private final LongAdder rejected = new LongAdder();
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    private final ExecutorService executor;
+    private volatile ServerSocket serverSocket;
+
+    /**
+     * @param self    nom de ce nœud, prouvé aux clients avec le secret partagé
+     * @param secret  secret partagé du cluster
+     * @param members nœuds autorisés à se connecter ("hôte:port")
+     */
+    PeerServer(InetSocketAddress address, Handler handler, String self, byte[] secret, Set<String> members,
+               int handshakeTimeoutMs) {
+        this.address = address;
+        this.handler = handler;
+        this.self = self;
+        this.secret = secret.clone();
+        this.members = Set.copyOf(members);
+        this.handshakeTimeoutMs = Math.max(1, handshakeTimeoutMs);
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "cluster-serve-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    void start() throws IOException {
+        ServerSocket socket = new ServerSocket();
+        socket.setReuseAddress(true);
+        socket.bind(address);
+        serverSocket = socket;
+        Thread acceptor = new Thread(this::accept, "cluster-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    private void accept() {
+        ServerSocket socket = serverSocket;
+        while (!socket.isClosed()) {
+            try {
+                Socket connection = socket.accept();
+                connection.setTcpNoDelay(true);
+                connections.add(connection);
+                executor.execute(() -> serve(connection));
+            } catch (IOException e) {
+                // Socket fermée par close(), ou erreur passagère d'accept
+            }
+        }
+    }
+
+    private void serve(Socket connection) {
+        try (connection) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream(), 8192));
+            OutputStream out = new BufferedOutputStream(connection.getOutputStream(), 8192);
+            String node = handshake(connection, in, out);
+            if (node == null) {
+                rejected.increment();
+                return;
+            }
+            while (true) {
+                PeerProtocol.Frame frame = PeerProtocol.read(in);
+                switch (frame.op) {
+                    case PeerProtocol.GET:
+                        String value = handler.get(frame.key);
+                        out.write(value != null
+                                ? PeerProtocol.encode(PeerProtocol.VALUE, frame.id, null, value)
+                                : PeerProtocol.encode(PeerProtocol.MISS, frame.id, null, null));
+                        break;
+                    case PeerProtocol.PING:
+                        out.write(PeerProtocol.encode(PeerProtocol.PONG, frame.id, null, null));
+                        break;
+                    case PeerProtocol.PUT:
+                        handler.put(frame.key, frame.value);
+                        break;
+                    case PeerProtocol.LEAVE:
+                        // Un nœud n'annonce que son propre départ
+                        if (node.equals(frame.value)) {
+                            handler.left(node);
+                        }
+                        break;
+                    default:
+                        throw new IOException("Opération inattendue : " + frame.op);
+                }
+                if (in.available() == 0) {
+                    out.flush();
+                }
+            }
+        } catch (IOException e) {
+            // Nœud parti ou trame invalide : la connexion est abandonnée, il en rouvrira une
+        } finally {
+            connections.remove(connection);
+        }
+    }
+
+    /**
+     * Nœud authentifié, ou null : preuve absente ou fausse, nœud hors des
+     * membres, ou connexion venue d'une autre adresse que la sienne. Le
+     * client authentifié reçoit ensuite la preuve de ce nœud pour son nonce.
+     */
+    private String handshake(Socket connection, DataInputStream in, OutputStream out) throws IOException {
+        connection.setSoTimeout(handshakeTimeoutMs);
+        String challenge = PeerProtocol.challenge();
+        out.write(PeerProtocol.encode(PeerProtocol.CHALLENGE, 0, null, challenge));
+        out.flush();
+        PeerProtocol.Frame auth = PeerProtocol.read(in);
+        if (auth.op != PeerProtocol.AUTH) {
+            return null;
+        }
+        String node = PeerProtocol.verify(secret, challenge, auth.value);
+        if (node == null || !members.contains(node) || !comesFrom(node, connection.getInetAddress())) {
+            return null;
+        }
+        PeerProtocol.Frame challenged = PeerProtocol.read(in);
+        if (challenged.op != PeerProtocol.CHALLENGE) {
+            return null;
+        }
+        out.write(PeerProtocol.encode(PeerProtocol.AUTH, 0, null, PeerProtocol.proof(secret, challenged.value, self)));
+        out.flush();
+        connection.setSoTimeout(0);
+        return node;
+    }
+
+    private static boolean comesFrom(String node, InetAddress source) {
+        try {
+            for (InetAddress address : InetAddress.getAllByName(ClusterCache.host(node))) {
+                if (address.equals(source)) {
+                    return true;
+                }
+            }
+        } catch (UnknownHostException e) {
+            // Hôte du membre introuvable : connexion refusée
+        }
+        return false;
+    }
+
+    /**
+     * Connexions refusées à la poignée de main.
+     */
+    long rejected() {
+        return rejected.sum();
+    }
+
+    @Override
+    public void close() {
+        ServerSocket socket = serverSocket;
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // ignoré
+            }
+        }
+        for (Socket connection : connections) {
+            try {
+                connection.close();
+            } catch (IOException e) {
+                // ignoré
+            }
+        }
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,51 @@
+package ma.project.jakarta.config;
+
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import jakarta.servlet.annotation.WebListener;
+import ma.project.jakarta.cluster.ClusterCache;
+import ma.project.jakarta.jobs.JobScheduler;
+import ma.project.jakarta.memory.TranslationMemory;
+import ma.project.jakarta.service.TranslationService;
+import ma.project.jakarta.upstream.UpstreamClient;
+import org.json.JSONObject;
+
+/**
+ * Ouvre les ressources partagées au déploiement et les ferme proprement
+ * au retrait de l'application.
+ */
+@WebListener
+public class TranslatorLifecycle implements ServletContextListener {
+
+    @Override
+    public void contextInitialized(ServletContextEvent event) {
+        // Ouverture (et récupération) de la mémoire avant la première requête
+        if (TranslatorConfig.getBoolean("translator.memory.enabled", true)) {
+            TranslationMemory memory = TranslationMemory.shared();
+            event.getServletContext().log("Mémoire de traduction chargée : " + memory.size() + " entrées");
+        }
+        // Écoute des autres nœuds avant la première requête
+        if (ClusterCache.isEnabled()) {
+            JSONObject cluster = ClusterCache.shared().stats();
+            event.getServletContext().log("Cluster : nœud " + cluster.getString("self") + ", "
+                    + cluster.getJSONArray("members").length() + " autres nœuds");
+        }
+        // Chaîne de moteurs (et lexique) construite au déploiement
+        TranslationService service = TranslationService.shared();
+        event.getServletContext().log("Moteurs de traduction : " + service.engineNames());
+        // Reprise des tâches en masse interrompues par l'arrêt précédent
+        if (JobScheduler.isEnabled()) {
+            JSONObject jobs = JobScheduler.shared().stats();
+            event.getServletContext().log("Tâches en masse : " + jobs.getInt("active") + " en cours");
+        }
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent event) {
+        JobScheduler.closeShared();
+        // Entrées transmises aux nœuds restants avant l'arrêt
+        ClusterCache.closeShared();
+        TranslationMemory.closeShared();
+        UpstreamClient.setShared(null);
+    }
+}
@@ -0,0 +1,123 @@
+package ma.project.jakarta.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Regroupe plusieurs segments dans un seul appel generateContent et
+ * redécoupe la réponse. Chaque segment est numéroté et Gemini doit
+ * renvoyer un tableau JSON [{"id": n, "translation": "..."}] : l'id permet
+ * de détecter un décalage au lieu de se fier à l'ordre.
+ */
+final class BatchPacker {
+
+    private BatchPacker() {
+    }
+
+    /**
+     * Découpe les indices des segments en paquets respectant le nombre
+     * maximal de segments et de caractères par appel.
+     */
+    static List<List<Integer>> pack(List<String> texts, int maxSegments, int maxChars) {
+        List<List<Integer>> packs = new ArrayList<>();
+        List<Integer> current = new ArrayList<>();
+        int chars = 0;
+        for (int i = 0; i < texts.size(); i++) {
+            int length = texts.get(i).length();
+            if (!current.isEmpty() && (current.size() >= maxSegments || chars + length > maxChars)) {
+                packs.add(current);
+                current = new ArrayList<>();
+                chars = 0;
+            }
+            current.add(i);
+            chars += length;
+        }
+        if (!current.isEmpty()) {
+            packs.add(current);
+        }
+        return packs;
+    }
+
+    /**
+     * @param instruction début de consigne propre à la direction (voir {@link PromptTemplates})
+     */
+    static JSONObject payload(String instruction, List<String> texts) {
+        JSONArray input = new JSONArray();
+        for (int i = 0; i < texts.size(); i++) {
+            input.put(new JSONObject().put("id", i + 1).put("text", texts.get(i)));
+        }
+        String prompt = instruction +
+                "Answer with a JSON array containing exactly " + texts.size() + " objects " +
+                "{\"id\": <same id>, \"translation\": <translation only>}, one per input, same ids. " +
+                "Input: " + input;
+
+        JSONObject item = new JSONObject()
+                .put("type", "OBJECT")
+                .put("properties", new JSONObject()
+                        .put("id", new JSONObject().put("type", "INTEGER"))
+                        .put("translation", new JSONObject().put("type", "STRING")))
+                .put("required", new JSONArray().put("id").put("translation"));
+        JSONObject generationConfig = new JSONObject()
+                .put("responseMimeType", "application/json")
+                .put("responseSchema", new JSONObject().put("type", "ARRAY").put("items", item));
+
+        JSONObject textPart = new JSONObject().put("text", prompt);
+        JSONObject contentObj = new JSONObject().put("parts", new JSONArray().put(textPart));
+        return new JSONObject()
+                .put("contents", new JSONArray().put(contentObj))
+                .put("generationConfig", generationConfig);
+    }
+
+    /**
+     * Associe chaque traduction à son segment. Les entrées manquantes,
+     * en double ou hors bornes restent null et seront retraduites une à une.
+     */
+    static String[] parse(String modelText, int expected) {
+        String[] result = new String[expected];
+        JSONArray array;
+        try {
+            array = new JSONArray(stripFences(modelText));
+        } catch (JSONException e) {
+            return result;
+        }
+        boolean[] duplicate = new boolean[expected];
+        for (int i = 0; i < array.length(); i++) {
+            JSONObject entry = array.optJSONObject(i);
+            if (entry == null) {
+                continue;
+            }
+            int id = entry.optInt("id", -1) - 1;
+            String translation = entry.optString("translation", null);
+            if (id < 0 || id >= expected || translation == null || translation.isBlank()) {
+                continue;
+            }
+            if (result[id] != null) {
+                duplicate[id] = true;
+            }
+            result[id] = translation.trim();
+        }
+        for (int i = 0; i < expected; i++) {
+            if (duplicate[i]) {
+                result[i] = null;
+            }
+        }
+        return result;
+    }
+
+    // Retire un éventuel bloc ```json ... ``` autour de la réponse
+    private static String stripFences(String text) {
+        String trimmed = text.trim();
+        if (trimmed.startsWith("```")) {
+            int start = trimmed.indexOf('\n');
+            int end = trimmed.lastIndexOf("```");
+            if (start > 0 && end > start) {
+                return trimmed.substring(start + 1, end);
+            }
+        }
+        return trimmed;
+    }
+}
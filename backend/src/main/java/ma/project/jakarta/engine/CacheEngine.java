@@ -0,0 +1,41 @@
+package ma.project.jakarta.engine;
+
+import java.util.concurrent.CompletableFuture;
+
+import ma.project.jakarta.cache.CacheKey;
+import ma.project.jakarta.cache.TranslationCache;
+import ma.project.jakarta.service.Translation;
+import org.json.JSONObject;
+
+/**
+ * Cache mémoire TinyLFU ; apprend les réponses des moteurs suivants.
+ */
+public class CacheEngine implements TranslationEngine {
+
+    private final TranslationCache cache;
+
+    public CacheEngine(TranslationCache cache) {
+        this.cache = cache;
+    }
+
+    @Override
+    public String name() {
+        return "cache";
+    }
+
+    @Override
+    public CompletableFuture<Translation> translate(CacheKey key, String text) {
+        String cached = cache.get(key);
+        return CompletableFuture.completedFuture(cached != null ? new Translation(text, cached, "cache") : null);
+    }
+
+    @Override
+    public void learn(CacheKey key, String translation) {
+        cache.put(key, translation);
+    }
+
+    @Override
+    public JSONObject stats() {
+        return cache.stats();
+    }
+}
@@ -0,0 +1,42 @@
+package ma.project.jakarta.engine;
+
+import java.util.concurrent.CompletableFuture;
+
+import ma.project.jakarta.cache.CacheKey;
+import ma.project.jakarta.cluster.ClusterCache;
+import ma.project.jakarta.service.Translation;
+import org.json.JSONObject;
+
+/**
+ * Cache partagé entre les nœuds du cluster : demande la traduction au nœud
+ * propriétaire de la clé ("mode": "cluster") ; lui confie les réponses des
+ * moteurs suivants.
+ */
+public class ClusterEngine implements TranslationEngine {
+
+    private final ClusterCache cluster;
+
+    public ClusterEngine(ClusterCache cluster) {
+        this.cluster = cluster;
+    }
+
+    @Override
+    public String name() {
+        return "cluster";
+    }
+
+    @Override
+    public CompletableFuture<Translation> translate(CacheKey key, String text) {
+        return cluster.get(key).thenApply(value -> value != null ? new Translation(text, value, "cluster") : null);
+    }
+
+    @Override
+    public void learn(CacheKey key, String translation) {
+        cluster.put(key, translation);
+    }
+
+    @Override
+    public JSONObject stats() {
+        return cluster.stats();
+    }
+}
@@ -0,0 +1,47 @@
+package ma.project.jakarta.engine;
+
+import java.util.concurrent.CompletableFuture;
+
+import ma.project.jakarta.cache.CacheKey;
+import ma.project.jakarta.memory.FuzzyIndex;
+import ma.project.jakarta.service.Translation;
+import org.json.JSONObject;
+
+/**
+ * Mémoire approchée : reprend la traduction d'un texte presque identique
+ * ("mode": "tm-fuzzy", avec son "score") ; apprend les réponses des moteurs
+ * suivants.
+ */
+public class FuzzyMemoryEngine implements TranslationEngine {
+
+    public static final String MODE = "tm-fuzzy";
+
+    private final FuzzyIndex index;
+
+    public FuzzyMemoryEngine(FuzzyIndex index) {
+        this.index = index;
+    }
+
+    @Override
+    public String name() {
+        return "fuzzy";
+    }
+
+    @Override
+    public CompletableFuture<Translation> translate(CacheKey key, String text) {
+        FuzzyIndex.Match match = index.find(key);
+        return CompletableFuture.completedFuture(match != null
+                ? Translation.approximate(text, match.getTranslation(), MODE, match.getScore())
+                : null);
+    }
+
+    @Override
+    public void learn(CacheKey key, String translation) {
+        index.put(key, translation);
+    }
+
+    @Override
+    public JSONObject stats() {
+        return index.stats();
+    }
+}
@@ -0,0 +1,274 @@
+package ma.project.jakarta.engine;
+
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import ma.project.jakarta.cache.CacheKey;
+import ma.project.jakarta.config.TranslatorConfig;
+import ma.project.jakarta.json.JsonScanner;
+import ma.project.jakarta.metrics.TranslatorMetrics;
+import ma.project.jakarta.service.SingleFlight;
+import ma.project.jakarta.service.Translation;
+import ma.project.jakarta.service.TranslationService;
+import ma.project.jakarta.upstream.Deadline;
+import ma.project.jakarta.upstream.DeadlineExceededException;
+import ma.project.jakarta.upstream.UpstreamClient;
+import ma.project.jakarta.upstream.UpstreamException;
+import ma.project.jakarta.upstream.UpstreamRouter;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Traduction par l'API Gemini. Répond toujours (ou échoue) : à placer en fin
+ * de chaîne. Les requêtes identiques en cours sont regroupées en un seul
+ * appel ; les lots sont envoyés en paquets numérotés (voir {@link BatchPacker}).
+ * Les textes courts sont adressés au niveau de modèle rapide du pool, le
+ * reste (textes longs, lots, flux) au niveau qualité (voir {@link UpstreamRouter}).
+ */
+public class GeminiEngine implements TranslationEngine {
+
+    private final UpstreamClient upstream;
+    private final SingleFlight<CacheKey, Translation> flights = new SingleFlight<>();
+
+    // Limites d'un appel groupé (~4 caractères par token)
+    private final int batchMaxSegments = TranslatorConfig.getInt("translator.batch.max-segments-per-call", 50);
+    private final int batchMaxChars = TranslatorConfig.getInt("translator.batch.max-chars-per-call", 12_000);
+    private final LongAdder batchCalls = new LongAdder();
+    private final LongAdder batchSegments = new LongAdder();
+    private final LongAdder batchFallbacks = new LongAdder();
+
+    // Tokens facturés, lus dans usageMetadata (appels en flux exclus)
+    private final LongAdder promptTokens = new LongAdder();
+    private final LongAdder outputTokens = new LongAdder();
+
+    // Au plus ce nombre de caractères : modèle rapide
+    private final int shortMaxChars = TranslatorConfig.getInt("translator.routing.short-max-chars", 60);
+
+    public GeminiEngine(UpstreamClient upstream) {
+        this.upstream = upstream;
+    }
+
+    @Override
+    public String name() {
+        return "gemini";
+    }
+
+    @Override
+    public CompletableFuture<Translation> translate(CacheKey key, String text) {
+        return translate(key, text, Deadline.none());
+    }
+
+    /**
+     * Un seul appel par texte normalisé, partagé par les requêtes
+     * concurrentes. L'appel partagé ne porte aucun budget : chaque requête
+     * applique le sien à sa copie du résultat, pour qu'un budget court
+     * n'échoue pas les requêtes qui attendent le même texte.
+     */
+    @Override
+    public CompletableFuture<Translation> translate(CacheKey key, String text, Deadline deadline) {
+        if (deadline.isExpired()) {
+            return CompletableFuture.failedFuture(new DeadlineExceededException("Délai dépassé avant l'appel Gemini"));
+        }
+        String hint = text.length() <= shortMaxChars ? UpstreamRouter.FAST : UpstreamRouter.QUALITY;
+        return within(deadline, flights.execute(key,
+                () -> generate(promptPayload(text, key.getDirection()), Deadline.none(), hint)
+                        .thenApply(translatedText -> new Translation(text, translatedText, "gemini"))));
+    }
+
+    // La copie propre à l'appelant échoue en 504 à la fin de son budget ; l'appel partagé continue
+    private static CompletableFuture<Translation> within(Deadline deadline, CompletableFuture<Translation> copy) {
+        if (!deadline.isBounded()) {
+            return copy;
+        }
+        CompletableFuture.delayedExecutor(deadline.remainingMillis(), TimeUnit.MILLISECONDS).execute(() ->
+                copy.completeExceptionally(new DeadlineExceededException("Pas de réponse de Gemini dans le délai")));
+        return copy;
+    }
+
+    /**
+     * Regroupe les textes dans le moins d'appels possible, envoyés en
+     * parallèle. Un segment en échec porte une erreur au lieu de faire
+     * échouer le lot.
+     */
+    @Override
+    public CompletableFuture<List<Translation>> translateAll(List<CacheKey> keys, List<String> texts) {
+        return translateAll(keys, texts, Deadline.none());
+    }
+
+    @Override
+    public CompletableFuture<List<Translation>> translateAll(List<CacheKey> keys, List<String> texts,
+                                                             Deadline deadline) {
+        Translation[] results = new Translation[texts.size()];
+        List<CompletableFuture<Void>> packs = new ArrayList<>();
+        for (List<Integer> pack : BatchPacker.pack(texts, batchMaxSegments, batchMaxChars)) {
+            List<CacheKey> packKeys = new ArrayList<>();
+            List<String> packTexts = new ArrayList<>();
+            for (int index : pack) {
+                packKeys.add(keys.get(index));
+                packTexts.add(texts.get(index));
+            }
+            packs.add(translatePack(packKeys, packTexts, deadline).thenAccept(translations -> {
+                for (int j = 0; j < pack.size(); j++) {
+                    results[pack.get(j)] = translations.get(j);
+                }
+            }));
+        }
+
+        return CompletableFuture.allOf(packs.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+            List<Translation> ordered = new ArrayList<>(results.length);
+            for (Translation translation : results) {
+                ordered.add(translation);
+            }
+            return ordered;
+        });
+    }
+
+    // Un paquet : un appel groupé, puis appels unitaires pour les segments mal alignés
+    private CompletableFuture<List<Translation>> translatePack(List<CacheKey> packKeys, List<String> packTexts,
+                                                              Deadline deadline) {
+        if (packTexts.size() == 1) {
+            return translateOrFail(packKeys.get(0), packTexts.get(0), deadline).thenApply(List::of);
+        }
+        batchCalls.increment();
+        batchSegments.add(packTexts.size());
+        // Un lot ne mélange pas les directions : celle du premier segment vaut pour le paquet
+        String instruction = PromptTemplates.forDirection(packKeys.get(0).getDirection()).batchInstruction();
+        return generate(BatchPacker.payload(instruction, packTexts).toString(), deadline, UpstreamRouter.QUALITY)
+                .handle((modelText, error) -> {
+                    String[] translated = error == null
+                            ? BatchPacker.parse(modelText, packTexts.size())
+                            : new String[packTexts.size()];
+                    Throwable cause = error == null ? null : TranslationService.unwrap(error);
+
+                    List<CompletableFuture<Translation>> items = new ArrayList<>();
+                    for (int j = 0; j < packTexts.size(); j++) {
+                        String text = packTexts.get(j);
+                        if (translated[j] != null) {
+                            items.add(CompletableFuture.completedFuture(
+                                    new Translation(text, translated[j], "gemini-batch")));
+                        } else if (cause instanceof UpstreamException) {
+                            // Quota ou panne : inutile de multiplier les appels
+                            items.add(CompletableFuture.completedFuture(
+                                    Translation.failed(text, cause.getMessage())));
+                        } else {
+                            // Réponse mal alignée : appel unitaire
+                            batchFallbacks.increment();
+                            items.add(translateOrFail(packKeys.get(j), text, deadline));
+                        }
+                    }
+                    return CompletableFuture.allOf(items.toArray(new CompletableFuture<?>[0]))
+                            .thenApply(done -> {
+                                List<Translation> translations = new ArrayList<>(items.size());
+                                for (CompletableFuture<Translation> item : items) {
+                                    translations.add(item.join());
+                                }
+                                return translations;
+                            });
+                })
+                .thenCompose(future -> future);
+    }
+
+    private CompletableFuture<Translation> translateOrFail(CacheKey key, String text, Deadline deadline) {
+        return translate(key, text, deadline)
+                .exceptionally(error -> Translation.failed(text, TranslationService.unwrap(error).getMessage()));
+    }
+
+    /**
+     * Appel streamGenerateContent : chaque morceau est transmis dès sa
+     * réception. Si onChunk lève une exception (client déconnecté), l'appel
+     * Gemini est abandonné.
+     */
+    @Override
+    public CompletableFuture<Translation> translateStream(CacheKey key, String text, Consumer<String> onChunk) {
+        return translateStream(key, text, onChunk, Deadline.none());
+    }
+
+    @Override
+    public CompletableFuture<Translation> translateStream(CacheKey key, String text, Consumer<String> onChunk,
+                                                          Deadline deadline) {
+        TranslationStream stream = new TranslationStream(onChunk);
+        CompletableFuture<HttpResponse<String>> call =
+                upstream.streamGenerateContent(promptPayload(text, key.getDirection()), stream, deadline,
+                        UpstreamRouter.QUALITY);
+        // Abonné annulé (client parti) : l'appel Gemini est abandonné aussi
+        stream.completion().whenComplete((translatedText, error) -> {
+            if (stream.isCancelled()) {
+                call.cancel(true);
+            }
+        });
+        return call.thenCompose(response -> {
+                    if (response.statusCode() != 200) {
+                        throw new CompletionException(UpstreamException.of(response));
+                    }
+                    return stream.completion();
+                })
+                .thenApply(translatedText -> new Translation(text, translatedText.trim(), "gemini-stream"));
+    }
+
+    /**
+     * Corps generateContent de la consigne de la direction (voir {@link PromptTemplates}).
+     */
+    static String promptPayload(String text, String direction) {
+        return PromptTemplates.forDirection(direction).payload(text);
+    }
+
+    private CompletableFuture<String> generate(String payload, Deadline deadline, String hint) {
+        return upstream.generateContentAsync(payload, deadline, hint).thenApply(response -> {
+            String text = extractText(response);
+            countTokens(response.body());
+            return text;
+        });
+    }
+
+    // Second passage sur le corps : usageMetadata suit candidates
+    private void countTokens(String body) {
+        JsonScanner scanner = JsonScanner.of(body);
+        promptTokens.add(scanner.findLong(0, "usageMetadata", "promptTokenCount"));
+        outputTokens.add(scanner.findLong(0, "usageMetadata", "candidatesTokenCount"));
+    }
+
+    /**
+     * candidates[0].content.parts[0].text, lu en un passage sur le corps
+     * sans en construire l'arbre ; usageMetadata est lu à part (tokens).
+     */
+    static String extractText(HttpResponse<String> response) {
+        if (response.statusCode() != 200) {
+            throw new CompletionException(UpstreamException.of(response));
+        }
+
+        long start = System.nanoTime();
+        String text = JsonScanner.of(response.body()).findString("candidates", 0, "content", "parts", 0, "text");
+        TranslatorMetrics.shared().responseParsed(System.nanoTime() - start);
+        if (text == null) {
+            throw new JSONException("Réponse Gemini sans candidates[0].content.parts[0].text");
+        }
+        return text;
+    }
+
+    @Override
+    public JSONObject stats() {
+        return new JSONObject()
+                .put("coalescing", flights.stats())
+                .put("batch", new JSONObject()
+                        .put("calls", batchCalls.sum())
+                        .put("segments", batchSegments.sum())
+                        .put("fallbacks", batchFallbacks.sum()))
+                .put("tokens", new JSONObject()
+                        .put("prompt", promptTokens.sum())
+                        .put("output", outputTokens.sum())
+                        .put("instructions", instructionTokens()));
+    }
+
+    // Coût estimé de la consigne de chaque direction, ajouté à chaque appel unitaire
+    private static JSONObject instructionTokens() {
+        JSONObject tokens = new JSONObject();
+        PromptTemplates.all().forEach((direction, template) -> tokens.put(direction, template.instructionTokens()));
+        return tokens;
+    }
+}
@@ -0,0 +1,43 @@
+package ma.project.jakarta.engine;
+
+import java.util.concurrent.CompletableFuture;
+
+import ma.project.jakarta.cache.CacheKey;
+import ma.project.jakarta.memory.TranslationMemory;
+import ma.project.jakarta.service.Translation;
+import org.json.JSONObject;
+
+/**
+ * Mémoire de traduction persistante (fichier mappé) ; apprend les réponses
+ * des moteurs suivants.
+ */
+public class MemoryEngine implements TranslationEngine {
+
+    private final TranslationMemory memory;
+
+    public MemoryEngine(TranslationMemory memory) {
+        this.memory = memory;
+    }
+
+    @Override
+    public String name() {
+        return "memory";
+    }
+
+    @Override
+    public CompletableFuture<Translation> translate(CacheKey key, String text) {
+        String remembered = memory.get(key);
+        return CompletableFuture.completedFuture(
+                remembered != null ? new Translation(text, remembered, "memory") : null);
+    }
+
+    @Override
+    public void learn(CacheKey key, String translation) {
+        memory.put(key, translation);
+    }
+
+    @Override
+    public JSONObject stats() {
+        return memory.stats();
+    }
+}
@@ -0,0 +1,143 @@
+package ma.project.jakarta.engine;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Trie de caractères figé dans des tableaux : les fils d'un nœud sont
+ * contigus et triés par étiquette, la recherche d'un fils est une
+ * recherche dichotomique. Quelques dizaines d'octets par nœud, aucune
+ * allocation à la lecture.
+ */
+final class PhraseTrie {
+
+    private final char[] labels;
+    private final int[] firstChild;
+    private final int[] childCount;
+    // Indice dans values, -1 si aucune phrase ne se termine sur ce nœud
+    private final int[] valueIndex;
+    private final String[] values;
+
+    private PhraseTrie(char[] labels, int[] firstChild, int[] childCount, int[] valueIndex, String[] values) {
+        this.labels = labels;
+        this.firstChild = firstChild;
+        this.childCount = childCount;
+        this.valueIndex = valueIndex;
+        this.values = values;
+    }
+
+    int size() {
+        return values.length;
+    }
+
+    int nodeCount() {
+        return labels.length;
+    }
+
+    String value(int index) {
+        return values[index];
+    }
+
+    /**
+     * Plus longue phrase commençant à from et finissant en limite de mot
+     * (fin du texte ou espace). Retourne (fin << 32 | indice de la valeur),
+     * ou -1 si aucune.
+     */
+    long longestMatch(String text, int from) {
+        long best = -1;
+        int node = 0;
+        for (int i = from; i < text.length(); i++) {
+            node = child(node, text.charAt(i));
+            if (node < 0) {
+                break;
+            }
+            int end = i + 1;
+            if (valueIndex[node] >= 0 && (end == text.length() || text.charAt(end) == ' ')) {
+                best = ((long) end << 32) | valueIndex[node];
+            }
+        }
+        return best;
+    }
+
+    private int child(int node, char c) {
+        int low = firstChild[node];
+        int high = low + childCount[node] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char label = labels[mid];
+            if (label < c) {
+                low = mid + 1;
+            } else if (label > c) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    static final class Builder {
+
+        private final Node root = new Node();
+        private final List<String> values = new ArrayList<>();
+
+        /**
+         * La première valeur ajoutée pour une clé est conservée.
+         */
+        Builder add(String key, String value) {
+            if (key.isEmpty()) {
+                return this;
+            }
+            Node node = root;
+            for (int i = 0; i < key.length(); i++) {
+                node = node.children.computeIfAbsent(key.charAt(i), c -> new Node());
+            }
+            if (node.value < 0) {
+                node.value = values.size();
+                values.add(value);
+            }
+            return this;
+        }
+
+        // Parcours en largeur : les fils de chaque nœud reçoivent des indices contigus
+        PhraseTrie build() {
+            List<Node> order = new ArrayList<>();
+            List<Character> nodeLabels = new ArrayList<>();
+            ArrayDeque<Node> queue = new ArrayDeque<>();
+            order.add(root);
+            nodeLabels.add('\0');
+            queue.add(root);
+            List<int[]> ranges = new ArrayList<>();
+            while (!queue.isEmpty()) {
+                Node node = queue.poll();
+                ranges.add(new int[] {order.size(), node.children.size()});
+                for (Map.Entry<Character, Node> entry : node.children.entrySet()) {
+                    order.add(entry.getValue());
+                    nodeLabels.add(entry.getKey());
+                    queue.add(entry.getValue());
+                }
+            }
+
+            int count = order.size();
+            char[] labels = new char[count];
+            int[] first = new int[count];
+            int[] children = new int[count];
+            int[] valueIndex = new int[count];
+            for (int i = 0; i < count; i++) {
+                labels[i] = nodeLabels.get(i);
+                first[i] = ranges.get(i)[0];
+                children[i] = ranges.get(i)[1];
+                valueIndex[i] = order.get(i).value;
+            }
+            return new PhraseTrie(labels, first, children, valueIndex, values.toArray(new String[0]));
+        }
+
+        private static final class Node {
+            final TreeMap<Character, Node> children = new TreeMap<>();
+            int value = -1;
+        }
+    }
+}
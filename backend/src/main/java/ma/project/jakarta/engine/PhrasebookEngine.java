@@ -0,0 +1,203 @@
+package ma.project.jakarta.engine;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+
+import ma.project.jakarta.cache.CacheKey;
+import ma.project.jakarta.config.TranslatorConfig;
+import ma.project.jakarta.service.Translation;
+import ma.project.jakarta.service.TranslationRequest;
+import org.json.JSONObject;
+
+/**
+ * Lexique hors ligne English ↔ Darija : répond sans quitter la JVM quand le
+ * texte entier (normalisé) est une expression connue, sinon passe la main
+ * au moteur suivant.
+ *
+ * Le lexique est un fichier TSV "anglais \t darija (arabe) \t arabizi" :
+ * /phrasebook.tsv sur le classpath, précédé du fichier
+ * "translator.phrasebook.file" s'il est défini (ses entrées sont prioritaires).
+ */
+public class PhrasebookEngine implements TranslationEngine {
+
+    private final PhraseTrie englishToDarija;
+    // Colonne arabizi, pour les demandes de darija en lettres latines
+    private final PhraseTrie englishToArabizi;
+    // Arabe et arabizi vers l'anglais
+    private final PhraseTrie darijaToEnglish;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    PhrasebookEngine(PhraseTrie englishToDarija, PhraseTrie englishToArabizi, PhraseTrie darijaToEnglish) {
+        this.englishToDarija = englishToDarija;
+        this.englishToArabizi = englishToArabizi;
+        this.darijaToEnglish = darijaToEnglish;
+    }
+
+    public static PhrasebookEngine fromConfig() {
+        PhraseTrie.Builder forward = new PhraseTrie.Builder();
+        PhraseTrie.Builder arabizi = new PhraseTrie.Builder();
+        PhraseTrie.Builder reverse = new PhraseTrie.Builder();
+        try {
+            String file = TranslatorConfig.getString("translator.phrasebook.file", null);
+            if (file != null) {
+                try (Reader reader = Files.newBufferedReader(Path.of(file), StandardCharsets.UTF_8)) {
+                    load(reader, forward, arabizi, reverse);
+                }
+            }
+            try (InputStream in = PhrasebookEngine.class.getResourceAsStream("/phrasebook.tsv")) {
+                if (in != null) {
+                    load(new InputStreamReader(in, StandardCharsets.UTF_8), forward, arabizi, reverse);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Lecture du lexique impossible", e);
+        }
+        return new PhrasebookEngine(forward.build(), arabizi.build(), reverse.build());
+    }
+
+    static void load(Reader source, PhraseTrie.Builder forward, PhraseTrie.Builder arabizi,
+                     PhraseTrie.Builder reverse) throws IOException {
+        BufferedReader reader = new BufferedReader(source);
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank() || line.startsWith("#")) {
+                continue;
+            }
+            String[] columns = line.split("\t");
+            if (columns.length < 2) {
+                continue;
+            }
+            String english = columns[0].trim();
+            String darija = columns[1].trim();
+            forward.add(normalize(english), darija);
+            reverse.add(normalize(darija), english);
+            if (columns.length > 2) {
+                arabizi.add(normalize(english), columns[2].trim());
+                reverse.add(normalize(columns[2]), english);
+            }
+        }
+    }
+
+    @Override
+    public String name() {
+        return "phrasebook";
+    }
+
+    /**
+     * Nombre d'expressions anglaises du lexique.
+     */
+    public int size() {
+        return englishToDarija.size();
+    }
+
+    @Override
+    public CompletableFuture<Translation> translate(CacheKey key, String text) {
+        PhraseTrie trie;
+        switch (key.getDirection()) {
+            case TranslationRequest.EN_DARIJA:
+                trie = englishToDarija;
+                break;
+            case TranslationRequest.EN_DARIJA_LATIN:
+                trie = englishToArabizi;
+                break;
+            case TranslationRequest.DARIJA_EN:
+                trie = darijaToEnglish;
+                break;
+            default:
+                return CompletableFuture.completedFuture(null);
+        }
+        String translated = lookup(trie, normalize(text));
+        if (translated == null) {
+            misses.increment();
+            return CompletableFuture.completedFuture(null);
+        }
+        hits.increment();
+        return CompletableFuture.completedFuture(new Translation(text, translated, "phrasebook"));
+    }
+
+    /**
+     * Traduction du texte entier s'il est lui-même une entrée du lexique,
+     * sinon null. Les entrées ne sont pas mises bout à bout : un mot à mot
+     * ("right now" -> "ليمن دابا") serait pire que la réponse de Gemini.
+     */
+    static String lookup(PhraseTrie trie, String normalized) {
+        if (normalized.isEmpty()) {
+            return null;
+        }
+        long match = trie.longestMatch(normalized, 0);
+        if (match < 0 || (int) (match >>> 32) != normalized.length()) {
+            return null;
+        }
+        return trie.value((int) match);
+    }
+
+    /**
+     * Minuscules, ponctuation retirée, espaces réduits ; côté arabe, sans
+     * voyelles ni tatweel et avec les variantes d'alif/ya/ta marbuta unifiées.
+     */
+    static String normalize(String text) {
+        String nfc = Normalizer.normalize(text, Normalizer.Form.NFC).toLowerCase(Locale.ROOT);
+        StringBuilder out = new StringBuilder(nfc.length());
+        boolean space = true;
+        for (int i = 0; i < nfc.length(); i++) {
+            char c = nfc.charAt(i);
+            // Harakat, alif suscrit et tatweel
+            if ((c >= '\u064B' && c <= '\u065F') || c == '\u0670' || c == '\u0640') {
+                continue;
+            }
+            switch (c) {
+                case 'أ': case 'إ': case 'آ': case 'ٱ':
+                    c = 'ا';
+                    break;
+                case 'ى':
+                    c = 'ي';
+                    break;
+                case 'ة':
+                    c = 'ه';
+                    break;
+                case '’':
+                    c = '\'';
+                    break;
+                default:
+                    break;
+            }
+            if (Character.isLetterOrDigit(c) || c == '\'') {
+                out.append(c);
+                space = false;
+            } else if (!space) {
+                out.append(' ');
+                space = true;
+            }
+        }
+        int length = out.length();
+        if (length > 0 && out.charAt(length - 1) == ' ') {
+            out.setLength(length - 1);
+        }
+        return out.toString();
+    }
+
+    @Override
+    public JSONObject stats() {
+        long h = hits.sum();
+        long m = misses.sum();
+        return new JSONObject()
+                .put("entries", englishToDarija.size())
+                .put("nodes", englishToDarija.nodeCount() + englishToArabizi.nodeCount()
+                        + darijaToEnglish.nodeCount())
+                .put("hits", h)
+                .put("misses", m)
+                .put("hitRatio", h + m == 0 ? 0.0 : (double) h / (h + m));
+    }
+}
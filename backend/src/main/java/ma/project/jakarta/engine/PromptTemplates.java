@@ -0,0 +1,85 @@
+package ma.project.jakarta.engine;
+
+import java.util.Map;
+
+import ma.project.jakarta.json.JsonWriter;
+import ma.project.jakarta.service.TranslationRequest;
+
+/**
+ * Consignes envoyées à Gemini, une par direction. Elles appartiennent au
+ * serveur : les clients n'envoient que le texte. Chaque corps
+ * generateContent est précalculé en deux parties, seul le texte échappé est
+ * inséré entre elles.
+ *
+ * Les consignes restent courtes : elles sont facturées à chaque appel
+ * (environ 4 caractères par token pour l'anglais).
+ */
+final class PromptTemplates {
+
+    static final class Template {
+        private final String instruction;
+        private final String batchInstruction;
+        private final String payloadPrefix;
+
+        private Template(String instruction, String batchInstruction) {
+            this.instruction = instruction;
+            this.batchInstruction = batchInstruction;
+            this.payloadPrefix = JsonWriter.escape(instruction,
+                    new StringBuilder("{\"contents\":[{\"parts\":[{\"text\":\"")).toString();
+        }
+
+        /**
+         * {"contents":[{"parts":[{"text": consigne + texte}]}]}, par concaténation.
+         */
+        String payload(String text) {
+            StringBuilder payload = new StringBuilder(payloadPrefix.length() + text.length() + 16);
+            JsonWriter.escape(text, payload.append(payloadPrefix));
+            return payload.append(PAYLOAD_SUFFIX).toString();
+        }
+
+        /**
+         * Début de la consigne d'un appel groupé ; le format de réponse est ajouté par {@link BatchPacker}.
+         */
+        String batchInstruction() {
+            return batchInstruction;
+        }
+
+        // Estimation seulement : les comptes exacts viennent de usageMetadata
+        int instructionTokens() {
+            return (instruction.length() + 3) / 4;
+        }
+    }
+
+    private static final String PAYLOAD_SUFFIX = "\"}]}]}";
+
+    private static final Map<String, Template> TEMPLATES = Map.of(
+            TranslationRequest.EN_DARIJA, new Template(
+                    "Translate this English text to Moroccan Darija, in Arabic script only. "
+                            + "Reply with the translation only: ",
+                    "Translate each of the following English texts to Moroccan Darija, in Arabic script only. "),
+            TranslationRequest.EN_DARIJA_LATIN, new Template(
+                    "Translate this English text to Moroccan Darija, in Latin letters (Arabizi). "
+                            + "Reply with the translation only: ",
+                    "Translate each of the following English texts to Moroccan Darija, in Latin letters (Arabizi). "),
+            TranslationRequest.DARIJA_EN, new Template(
+                    "Translate this Moroccan Darija text to English. Reply with the translation only: ",
+                    "Translate each of the following Moroccan Darija texts to English. "));
+
+    private PromptTemplates() {
+    }
+
+    /**
+     * @throws IllegalArgumentException direction sans consigne
+     */
+    static Template forDirection(String direction) {
+        Template template = TEMPLATES.get(direction);
+        if (template == null) {
+            throw new IllegalArgumentException("Direction non prise en charge : " + direction);
+        }
+        return template;
+    }
+
+    static Map<String, Template> all() {
+        return TEMPLATES;
+    }
+}
@@ -0,0 +1,93 @@
+package ma.project.jakarta.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import ma.project.jakarta.cache.CacheKey;
+import ma.project.jakarta.service.Translation;
+import ma.project.jakarta.upstream.Deadline;
+import org.json.JSONObject;
+
+/**
+ * Moteur de traduction, maillon de la chaîne configurée par
+ * "translator.engines" (voir {@link TranslationEngines}).
+ *
+ * Un moteur qui n'a pas de réponse termine son futur avec null : la chaîne
+ * passe au moteur suivant. Quand un moteur répond, les moteurs placés avant
+ * lui reçoivent la traduction par {@link #learn} (cache, mémoire...).
+ */
+public interface TranslationEngine {
+
+    /**
+     * Nom utilisé dans "translator.engines" et dans les statistiques.
+     */
+    String name();
+
+    CompletableFuture<Translation> translate(CacheKey key, String text);
+
+    /**
+     * Traduction dans le budget de la requête. Seuls les moteurs qui
+     * appellent un service distant en tiennent compte ; par défaut,
+     * {@link #translate(CacheKey, String)}.
+     */
+    default CompletableFuture<Translation> translate(CacheKey key, String text, Deadline deadline) {
+        return translate(key, text);
+    }
+
+    /**
+     * Plusieurs textes à la fois ; un élément null = pas de réponse.
+     * Par défaut, un appel {@link #translate} par texte.
+     */
+    default CompletableFuture<List<Translation>> translateAll(List<CacheKey> keys, List<String> texts) {
+        List<CompletableFuture<Translation>> items = new ArrayList<>(texts.size());
+        for (int i = 0; i < texts.size(); i++) {
+            items.add(translate(keys.get(i), texts.get(i)));
+        }
+        return CompletableFuture.allOf(items.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+            List<Translation> results = new ArrayList<>(items.size());
+            for (CompletableFuture<Translation> item : items) {
+                results.add(item.join());
+            }
+            return results;
+        });
+    }
+
+    default CompletableFuture<List<Translation>> translateAll(List<CacheKey> keys, List<String> texts,
+                                                              Deadline deadline) {
+        return translateAll(keys, texts);
+    }
+
+    /**
+     * Traduction transmise morceau par morceau à onChunk. Par défaut, la
+     * réponse complète est transmise en un seul morceau. Une exception levée
+     * par onChunk (client déconnecté) interrompt la traduction.
+     */
+    default CompletableFuture<Translation> translateStream(CacheKey key, String text, Consumer<String> onChunk) {
+        return translate(key, text).thenApply(translation -> {
+            if (translation != null && translation.getError() == null) {
+                onChunk.accept(translation.getTranslation());
+            }
+            return translation;
+        });
+    }
+
+    default CompletableFuture<Translation> translateStream(CacheKey key, String text, Consumer<String> onChunk,
+                                                           Deadline deadline) {
+        return translateStream(key, text, onChunk);
+    }
+
+    /**
+     * Traduction obtenue d'un moteur placé plus loin dans la chaîne.
+     */
+    default void learn(CacheKey key, String translation) {
+    }
+
+    /**
+     * Statistiques exposées par /stats, null si aucune.
+     */
+    default JSONObject stats() {
+        return null;
+    }
+}
@@ -0,0 +1,79 @@
+package ma.project.jakarta.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ma.project.jakarta.cache.TranslationCache;
+import ma.project.jakarta.cluster.ClusterCache;
+import ma.project.jakarta.config.TranslatorConfig;
+import ma.project.jakarta.memory.FuzzyIndex;
+import ma.project.jakarta.memory.TranslationMemory;
+import ma.project.jakarta.upstream.UpstreamClient;
+
+/**
+ * Construit la chaîne de moteurs à partir de "translator.engines", liste
+ * ordonnée de noms séparés par des virgules :
+ * phrasebook, cache, memory, cluster, fuzzy, gemini, simulation.
+ * "cluster" est ignoré tant que "translator.cluster.members" est vide.
+ */
+public final class TranslationEngines {
+
+    public static final String DEFAULT_CHAIN = "phrasebook,cache,memory,cluster,fuzzy,gemini";
+    public static final String SIMULATION_CHAIN = "phrasebook,simulation";
+
+    private TranslationEngines() {
+    }
+
+    public static List<TranslationEngine> fromConfig(UpstreamClient upstream) {
+        // translator.simulation=true reste un raccourci pour la chaîne hors ligne
+        String defaultChain = TranslatorConfig.getBoolean("translator.simulation", false)
+                ? SIMULATION_CHAIN
+                : DEFAULT_CHAIN;
+        return create(TranslatorConfig.getString("translator.engines", defaultChain), upstream);
+    }
+
+    public static List<TranslationEngine> create(String chain, UpstreamClient upstream) {
+        List<TranslationEngine> engines = new ArrayList<>();
+        for (String name : chain.split(",")) {
+            switch (name.trim().toLowerCase()) {
+                case "":
+                    break;
+                case "phrasebook":
+                    engines.add(PhrasebookEngine.fromConfig());
+                    break;
+                case "cache":
+                    if (TranslatorConfig.getBoolean("translator.cache.enabled", true)) {
+                        engines.add(new CacheEngine(TranslationCache.shared()));
+                    }
+                    break;
+                case "memory":
+                    if (TranslatorConfig.getBoolean("translator.memory.enabled", true)) {
+                        engines.add(new MemoryEngine(TranslationMemory.shared()));
+                    }
+                    break;
+                case "cluster":
+                    if (ClusterCache.isEnabled()) {
+                        engines.add(new ClusterEngine(ClusterCache.shared()));
+                    }
+                    break;
+                case "fuzzy":
+                    if (TranslatorConfig.getBoolean("translator.fuzzy.enabled", true)) {
+                        engines.add(new FuzzyMemoryEngine(FuzzyIndex.shared()));
+                    }
+                    break;
+                case "gemini":
+                    engines.add(new GeminiEngine(upstream));
+                    break;
+                case "simulation":
+                    engines.add(new SimulationEngine());
+                    break;
+                default:
+                    throw new IllegalArgumentException("Moteur de traduction inconnu : " + name.trim());
+            }
+        }
+        if (engines.isEmpty()) {
+            throw new IllegalArgumentException("Aucun moteur de traduction configuré");
+        }
+        return engines;
+    }
+}
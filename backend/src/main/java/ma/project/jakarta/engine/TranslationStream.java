@@ -0,0 +1,109 @@
+package ma.project.jakarta.engine;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Abonné aux lignes SSE de streamGenerateContent : chaque ligne "data: {...}"
+ * est décodée et son texte transmis immédiatement au consommateur.
+ * {@link #cancel()} interrompt l'appel Gemini (client déconnecté).
+ */
+public class TranslationStream implements Flow.Subscriber<String> {
+
+    private final Consumer<String> onChunk;
+    private final StringBuilder text = new StringBuilder();
+    private final CompletableFuture<String> completion = new CompletableFuture<>();
+    private volatile Flow.Subscription subscription;
+    private volatile boolean cancelled;
+
+    public TranslationStream(Consumer<String> onChunk) {
+        this.onChunk = onChunk;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        if (cancelled) {
+            subscription.cancel();
+        } else {
+            subscription.request(Long.MAX_VALUE);
+        }
+    }
+
+    @Override
+    public void onNext(String line) {
+        if (cancelled || !line.startsWith("data:")) {
+            return;
+        }
+        String chunk = extractChunk(line.substring(5).trim());
+        if (chunk.isEmpty()) {
+            return;
+        }
+        text.append(chunk);
+        try {
+            onChunk.accept(chunk);
+        } catch (RuntimeException e) {
+            cancel();
+        }
+    }
+
+    @Override
+    public void onError(Throwable error) {
+        completion.completeExceptionally(error);
+    }
+
+    @Override
+    public void onComplete() {
+        completion.complete(text.toString());
+    }
+
+    /**
+     * Arrête la réception ; la complétion échoue avec CancellationException.
+     */
+    public void cancel() {
+        cancelled = true;
+        Flow.Subscription current = subscription;
+        if (current != null) {
+            current.cancel();
+        }
+        completion.completeExceptionally(new CancellationException("Flux annulé par le client"));
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Texte complet, disponible à la fin du flux.
+     */
+    public CompletableFuture<String> completion() {
+        return completion;
+    }
+
+    private static String extractChunk(String json) {
+        try {
+            JSONArray candidates = new JSONObject(json).optJSONArray("candidates");
+            if (candidates == null || candidates.isEmpty()) {
+                return "";
+            }
+            JSONObject content = candidates.getJSONObject(0).optJSONObject("content");
+            JSONArray parts = content == null ? null : content.optJSONArray("parts");
+            if (parts == null) {
+                return "";
+            }
+            StringBuilder chunk = new StringBuilder();
+            for (int i = 0; i < parts.length(); i++) {
+                chunk.append(parts.getJSONObject(i).optString("text", ""));
+            }
+            return chunk.toString();
+        } catch (JSONException e) {
+            return "";
+        }
+    }
+}
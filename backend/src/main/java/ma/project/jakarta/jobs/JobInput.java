@@ -0,0 +1,196 @@
+package ma.project.jakarta.jobs;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import ma.project.jakarta.json.JsonScanner;
+import org.json.JSONException;
+
+/**
+ * Lecture du fichier envoyé pour une tâche.
+ *
+ * JSONL : une ligne par texte, soit une chaîne JSON, soit un objet
+ * {"text": "...", "id": "..."} ("id" facultatif, rendu tel quel dans les
+ * résultats). Lignes vides ignorées.
+ *
+ * CSV (RFC 4180, séparateur virgule, guillemets doublés) : si la première
+ * ligne contient une colonne "text", c'est un en-tête et les colonnes "text"
+ * et "id" sont utilisées ; sinon chaque ligne est un texte dans sa première
+ * colonne.
+ */
+final class JobInput {
+
+    static final String JSONL = "jsonl";
+    static final String CSV = "csv";
+
+    /**
+     * Texte à traduire et son identifiant dans le fichier du client (ou null).
+     */
+    static final class Segment {
+        final String id;
+        final String text;
+
+        Segment(String id, String text) {
+            this.id = id;
+            this.text = text;
+        }
+    }
+
+    private JobInput() {
+    }
+
+    /**
+     * @throws IllegalArgumentException ligne illisible, texte manquant ou trop de segments
+     */
+    static List<Segment> parse(Path file, String format, int maxSegments) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            // BOM des fichiers exportés par un tableur
+            reader.mark(1);
+            if (reader.read() != '\uFEFF') {
+                reader.reset();
+            }
+            return CSV.equals(format) ? parseCsv(reader, maxSegments) : parseJsonl(reader, maxSegments);
+        }
+    }
+
+    /**
+     * Format d'après le paramètre explicite, sinon d'après le Content-Type.
+     */
+    static String format(String requested, String contentType) {
+        if (requested != null && !requested.isBlank()) {
+            String format = requested.trim().toLowerCase(Locale.ROOT);
+            if (format.equals(JSONL) || format.equals("ndjson")) {
+                return JSONL;
+            }
+            if (format.equals(CSV)) {
+                return CSV;
+            }
+            throw new IllegalArgumentException("Format non pris en charge : " + requested + " (jsonl ou csv)");
+        }
+        return contentType != null && contentType.toLowerCase(Locale.ROOT).contains("csv") ? CSV : JSONL;
+    }
+
+    private static List<Segment> parseJsonl(BufferedReader reader, int maxSegments) throws IOException {
+        List<Segment> segments = new ArrayList<>();
+        String line;
+        int number = 0;
+        while ((line = reader.readLine()) != null) {
+            number++;
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                JsonScanner scanner = JsonScanner.of(line);
+                String text;
+                String id = null;
+                if (scanner.rootType() == '"') {
+                    text = scanner.findString();
+                } else {
+                    String[] fields = scanner.findStrings("text", "id");
+                    text = fields[0];
+                    id = fields[1];
+                }
+                if (text == null) {
+                    throw new IllegalArgumentException("Ligne " + number + " : champ \"text\" manquant");
+                }
+                add(segments, new Segment(id, text), maxSegments);
+            } catch (JSONException e) {
+                throw new IllegalArgumentException("Ligne " + number + " : JSON invalide (" + e.getMessage() + ")");
+            }
+        }
+        return segments;
+    }
+
+    private static List<Segment> parseCsv(BufferedReader reader, int maxSegments) throws IOException {
+        List<Segment> segments = new ArrayList<>();
+        List<String> record = new ArrayList<>();
+        int textColumn = 0;
+        int idColumn = -1;
+        boolean first = true;
+        while (readRecord(reader, record)) {
+            if (first) {
+                first = false;
+                int header = indexOf(record, "text");
+                if (header >= 0) {
+                    textColumn = header;
+                    idColumn = indexOf(record, "id");
+                    continue;
+                }
+            }
+            if (record.size() == 1 && record.get(0).isEmpty()) {
+                continue;
+            }
+            String text = textColumn < record.size() ? record.get(textColumn) : "";
+            String id = idColumn >= 0 && idColumn < record.size() ? record.get(idColumn) : null;
+            add(segments, new Segment(id, text), maxSegments);
+        }
+        return segments;
+    }
+
+    private static void add(List<Segment> segments, Segment segment, int maxSegments) {
+        if (segments.size() >= maxSegments) {
+            throw new IllegalArgumentException("Trop de segments (max " + maxSegments + ")");
+        }
+        segments.add(segment);
+    }
+
+    private static int indexOf(List<String> record, String column) {
+        for (int i = 0; i < record.size(); i++) {
+            if (record.get(i).trim().equalsIgnoreCase(column)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Un enregistrement CSV, éventuellement sur plusieurs lignes (champ entre
+     * guillemets) ; false en fin de fichier.
+     */
+    private static boolean readRecord(BufferedReader reader, List<String> record) throws IOException {
+        record.clear();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean any = false;
+        int c;
+        while ((c = reader.read()) != -1) {
+            any = true;
+            if (quoted) {
+                if (c == '"') {
+                    reader.mark(1);
+                    int next = reader.read();
+                    if (next == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        if (next != -1) {
+                            reader.reset();
+                        }
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else if (c == ',') {
+                record.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n') {
+                break;
+            } else if (c != '\r') {
+                field.append((char) c);
+            }
+        }
+        if (!any) {
+            return false;
+        }
+        record.add(field.toString());
+        return true;
+    }
+}
@@ -0,0 +1,492 @@
+package ma.project.jakarta.jobs;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+import ma.project.jakarta.config.TranslatorConfig;
+import ma.project.jakarta.service.Translation;
+import ma.project.jakarta.service.TranslationService;
+import ma.project.jakarta.upstream.Deadline;
+import ma.project.jakarta.upstream.UpstreamClient;
+import org.json.JSONObject;
+
+/**
+ * Exécution des tâches de traduction en masse.
+ *
+ * Au plus "workers" paquets sont traduits en même temps, chacun par la
+ * chaîne habituelle (lexique, cache, mémoire, Gemini par lots). Un paquet
+ * n'est lancé que s'il reste de la place pour les requêtes interactives
+ * (voir {@link UpstreamClient#hasHeadroom}) : sous charge, les tâches
+ * attendent au lieu de prendre la file d'admission.
+ *
+ * Équité : les utilisateurs sont servis à tour de rôle, un paquet chacun ;
+ * les tâches d'un même utilisateur passent dans l'ordre d'envoi. Un paquet
+ * dont un segment échoue est relancé plus tard (les segments déjà traduits
+ * sont alors servis par le cache) ; après maxAttempts essais, il est
+ * enregistré avec ses erreurs.
+ *
+ * Tout l'état d'ordonnancement est confiné au thread "translator-jobs".
+ */
+public class JobScheduler {
+
+    private static volatile JobScheduler shared;
+
+    private final JobStore store;
+    private final TranslationService service;
+    private final BooleanSupplier headroom;
+    private final int workers;
+    private final int chunkSize;
+    private final int maxAttempts;
+    private final long retryDelayNanos;
+    private final long pollMs;
+    private final long maxBytes;
+    private final int maxSegments;
+    private final int maxActivePerUser;
+    private final long retentionMs;
+
+    private final ScheduledExecutorService executor;
+    private final Map<String, TranslationJob> jobs = new ConcurrentHashMap<>();
+    // Thread du planificateur : tâches actives par utilisateur, et utilisateurs à tour de rôle
+    private final Map<String, ArrayDeque<TranslationJob>> queues = new LinkedHashMap<>();
+    private final ArrayDeque<String> turns = new ArrayDeque<>();
+    private int running;
+    private ScheduledFuture<?> wakeUp;
+
+    private final LongAdder chunksTranslated = new LongAdder();
+    private final LongAdder chunksRetried = new LongAdder();
+    private final LongAdder deferred = new LongAdder();
+
+    /**
+     * @param headroom vrai quand un paquet peut partir sans retarder le trafic interactif
+     */
+    JobScheduler(JobStore store, TranslationService service, BooleanSupplier headroom, int workers,
+                 int chunkSize, int maxAttempts, long retryDelayMs, long pollMs, long maxBytes, int maxSegments,
+                 int maxActivePerUser, long retentionMs) {
+        this.store = store;
+        this.service = service;
+        this.headroom = headroom;
+        this.workers = Math.max(1, workers);
+        this.chunkSize = Math.max(1, chunkSize);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, retryDelayMs));
+        this.pollMs = Math.max(10, pollMs);
+        this.maxBytes = Math.max(1, maxBytes);
+        this.maxSegments = Math.max(1, maxSegments);
+        this.maxActivePerUser = Math.max(1, maxActivePerUser);
+        this.retentionMs = Math.max(0, retentionMs);
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "translator-jobs");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Tâches en masse activées ("translator.jobs.enabled", vrai par défaut).
+     */
+    public static boolean isEnabled() {
+        return TranslatorConfig.getBoolean("translator.jobs.enabled", true);
+    }
+
+    public static JobScheduler fromConfig() throws IOException {
+        UpstreamClient upstream = UpstreamClient.shared();
+        double share = TranslatorConfig.getDouble("translator.jobs.bulk-share", 0.5);
+        return new JobScheduler(
+                new JobStore(Paths.get(TranslatorConfig.getString("translator.jobs.dir", defaultDirectory()))),
+                TranslationService.shared(),
+                () -> upstream.hasHeadroom(share),
+                TranslatorConfig.getInt("translator.jobs.workers", 2),
+                TranslatorConfig.getInt("translator.jobs.chunk-size", 50),
+                TranslatorConfig.getInt("translator.jobs.max-attempts", 4),
+                TranslatorConfig.getLong("translator.jobs.retry-delay-ms", 5_000),
+                TranslatorConfig.getLong("translator.jobs.poll-ms", 200),
+                TranslatorConfig.getLong("translator.jobs.max-bytes", 64L << 20),
+                TranslatorConfig.getInt("translator.jobs.max-segments", 200_000),
+                TranslatorConfig.getInt("translator.jobs.max-active-per-user", 5),
+                TimeUnit.HOURS.toMillis(TranslatorConfig.getLong("translator.jobs.retention-hours", 72)));
+    }
+
+    /**
+     * Instance partagée, démarrée : les tâches interrompues par un arrêt reprennent.
+     */
+    public static JobScheduler shared() {
+        JobScheduler scheduler = shared;
+        if (scheduler == null) {
+            synchronized (JobScheduler.class) {
+                scheduler = shared;
+                if (scheduler == null) {
+                    try {
+                        scheduler = fromConfig();
+                        scheduler.start();
+                    } catch (IOException e) {
+                        throw new IllegalStateException("Répertoire des tâches inaccessible", e);
+                    }
+                    shared = scheduler;
+                }
+            }
+        }
+        return scheduler;
+    }
+
+    /**
+     * Statistiques de l'instance partagée, null si elle n'a pas été créée.
+     */
+    public static JSONObject sharedStats() {
+        JobScheduler scheduler = shared;
+        return scheduler == null ? null : scheduler.stats();
+    }
+
+    public static synchronized void closeShared() {
+        if (shared != null) {
+            shared.close();
+            shared = null;
+        }
+    }
+
+    // Répertoire de données WildFly si disponible, sinon le home de l'utilisateur
+    private static String defaultDirectory() {
+        String jbossData = System.getProperty("jboss.server.data.dir");
+        if (jbossData != null) {
+            return Paths.get(jbossData, "darija-translator", "jobs").toString();
+        }
+        return Paths.get(System.getProperty("user.home"), ".darija-translator", "jobs").toString();
+    }
+
+    /**
+     * Recharge les tâches enregistrées et relance celles qui n'étaient pas terminées.
+     */
+    public void start() throws IOException {
+        List<TranslationJob> loaded = store.loadAll();
+        for (TranslationJob job : loaded) {
+            jobs.put(job.getId(), job);
+        }
+        executor.execute(() -> {
+            for (TranslationJob job : loaded) {
+                if (job.isActive()) {
+                    enqueue(job);
+                }
+            }
+            purge();
+            pump();
+        });
+        executor.scheduleWithFixedDelay(this::purge, 1, 1, TimeUnit.HOURS);
+    }
+
+    /**
+     * Crée une tâche à partir du fichier envoyé et la met en file.
+     *
+     * @throws IllegalArgumentException fichier illisible, trop gros, ou trop de segments
+     * @throws IllegalStateException    trop de tâches en cours pour cet utilisateur
+     */
+    public TranslationJob submit(String owner, String direction, String format, InputStream body)
+            throws IOException {
+        if (activeJobs(owner) >= maxActivePerUser) {
+            throw new IllegalStateException("Trop de tâches en cours (max " + maxActivePerUser + ")");
+        }
+        TranslationJob job = store.create(owner, direction, format, body, maxBytes, maxSegments, chunkSize);
+        jobs.put(job.getId(), job);
+        executor.execute(() -> {
+            enqueue(job);
+            pump();
+        });
+        return job;
+    }
+
+    private int activeJobs(String owner) {
+        int active = 0;
+        for (TranslationJob job : jobs.values()) {
+            if (job.getOwner().equals(owner) && job.isActive()) {
+                active++;
+            }
+        }
+        return active;
+    }
+
+    /**
+     * Tâche de cet utilisateur, null si elle n'existe pas ou appartient à un autre.
+     */
+    public TranslationJob get(String owner, String id) {
+        TranslationJob job = jobs.get(id);
+        return job != null && job.getOwner().equals(owner) ? job : null;
+    }
+
+    public List<TranslationJob> list(String owner) {
+        List<TranslationJob> owned = new ArrayList<>();
+        for (TranslationJob job : jobs.values()) {
+            if (job.getOwner().equals(owner)) {
+                owned.add(job);
+            }
+        }
+        owned.sort(Comparator.comparingLong(TranslationJob::createdAt));
+        return owned;
+    }
+
+    /**
+     * Format du fichier envoyé : paramètre explicite (jsonl, csv), sinon d'après le Content-Type.
+     *
+     * @throws IllegalArgumentException format inconnu
+     */
+    public static String format(String requested, String contentType) {
+        return JobInput.format(requested, contentType);
+    }
+
+    /**
+     * Indice du premier segment dont le résultat n'est pas encore disponible
+     * en lisant depuis from.
+     */
+    public int resultsEnd(TranslationJob job, int from) {
+        return job.doneUntil(from);
+    }
+
+    /**
+     * Résultats des segments [from, end), end obtenu par {@link #resultsEnd}.
+     */
+    public void writeResults(TranslationJob job, int from, int end, boolean csv, OutputStream out)
+            throws IOException {
+        store.writeResults(job, from, end, csv, out);
+    }
+
+    /**
+     * Annule la tâche et supprime ses fichiers.
+     */
+    public void delete(TranslationJob job) {
+        jobs.remove(job.getId());
+        executor.execute(() -> {
+            if (job.isActive()) {
+                job.finish(TranslationJob.State.CANCELLED, System.currentTimeMillis());
+            }
+            dequeue(job);
+            try {
+                store.delete(job);
+            } catch (IOException e) {
+                // Fichiers restants effacés au prochain démarrage (voir JobStore.loadAll)
+            }
+        });
+    }
+
+    // ---------------------------------------------------------------- planificateur
+
+    private void enqueue(TranslationJob job) {
+        if (job.chunks() == 0) {
+            complete(job);
+            return;
+        }
+        ArrayDeque<TranslationJob> queue = queues.get(job.getOwner());
+        if (queue == null) {
+            queue = new ArrayDeque<>();
+            queues.put(job.getOwner(), queue);
+            turns.add(job.getOwner());
+        }
+        queue.add(job);
+    }
+
+    private void dequeue(TranslationJob job) {
+        ArrayDeque<TranslationJob> queue = queues.get(job.getOwner());
+        if (queue != null) {
+            queue.remove(job);
+            if (queue.isEmpty()) {
+                queues.remove(job.getOwner());
+                turns.remove(job.getOwner());
+            }
+        }
+    }
+
+    /**
+     * Lance des paquets tant qu'il y a des places ; sinon se reprogramme
+     * (capacité interactive occupée, ou prochaine reprise à venir).
+     */
+    private void pump() {
+        long now = System.nanoTime();
+        while (running < workers) {
+            if (turns.isEmpty()) {
+                return;
+            }
+            if (!headroom.getAsBoolean()) {
+                deferred.increment();
+                wakeUpIn(TimeUnit.MILLISECONDS.toNanos(pollMs));
+                return;
+            }
+            if (!dispatchNext(now)) {
+                long soonest = soonestRetry(now);
+                if (soonest >= 0) {
+                    wakeUpIn(soonest);
+                }
+                return;
+            }
+        }
+    }
+
+    // Un paquet pour le prochain utilisateur qui en a un à lancer
+    private boolean dispatchNext(long now) {
+        for (int i = turns.size(); i > 0; i--) {
+            String owner = turns.poll();
+            turns.add(owner);
+            for (TranslationJob job : queues.get(owner)) {
+                int chunk = job.nextChunk(now);
+                if (chunk >= 0) {
+                    launch(job, chunk);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private long soonestRetry(long now) {
+        long soonest = -1;
+        for (ArrayDeque<TranslationJob> queue : queues.values()) {
+            for (TranslationJob job : queue) {
+                long at = job.nextRetryAt();
+                if (at != -1) {
+                    long delay = Math.max(0, at - now);
+                    soonest = soonest < 0 ? delay : Math.min(soonest, delay);
+                }
+            }
+        }
+        return soonest;
+    }
+
+    private void wakeUpIn(long nanos) {
+        if (wakeUp != null) {
+            return;
+        }
+        wakeUp = executor.schedule(() -> {
+            wakeUp = null;
+            pump();
+        }, Math.max(1, nanos), TimeUnit.NANOSECONDS);
+    }
+
+    private void launch(TranslationJob job, int chunk) {
+        if (job.segments() == null) {
+            try {
+                job.segments(store.readInput(job));
+            } catch (IOException | RuntimeException e) {
+                // Fichier d'entrée perdu ou corrompu : la tâche ne peut pas reprendre
+                job.finish(TranslationJob.State.FAILED, System.currentTimeMillis());
+                save(job);
+                dequeue(job);
+                return;
+            }
+        }
+        if (job.getState() == TranslationJob.State.QUEUED) {
+            job.started(System.currentTimeMillis());
+            save(job);
+        }
+        List<JobInput.Segment> segments = job.segments();
+        List<String> texts = new ArrayList<>(job.chunkEnd(chunk) - job.chunkStart(chunk));
+        for (int i = job.chunkStart(chunk); i < job.chunkEnd(chunk); i++) {
+            texts.add(segments.get(i).text);
+        }
+        running++;
+        job.running(1);
+        service.translateBatchAsync(texts, job.direction(), Deadline.none())
+                .whenCompleteAsync((results, error) -> finished(job, chunk, results, error), executor);
+    }
+
+    private void finished(TranslationJob job, int chunk, List<Translation> results, Throwable error) {
+        running--;
+        job.running(-1);
+        if (!job.isActive()) {
+            pump();
+            return;
+        }
+        if (error != null) {
+            results = new ArrayList<>();
+            String message = String.valueOf(TranslationService.unwrap(error).getMessage());
+            for (int i = job.chunkStart(chunk); i < job.chunkEnd(chunk); i++) {
+                results.add(Translation.failed(job.segments().get(i).text, message));
+            }
+        }
+        int failed = 0;
+        for (Translation result : results) {
+            if (result.getError() != null) {
+                failed++;
+            }
+        }
+        int attempt = job.attempt(chunk);
+        if (failed > 0 && attempt < maxAttempts) {
+            chunksRetried.increment();
+            job.retryLater(chunk, System.nanoTime() + (retryDelayNanos << Math.min(attempt - 1, 10)));
+        } else {
+            try {
+                store.writeChunk(job, chunk, job.segments(), results);
+                job.forget(chunk);
+                chunksTranslated.increment();
+                if (job.chunkDone(chunk, failed)) {
+                    complete(job);
+                }
+            } catch (IOException e) {
+                // Disque plein ou indisponible : le paquet sera retraduit
+                job.retryLater(chunk, System.nanoTime() + retryDelayNanos);
+            }
+        }
+        pump();
+    }
+
+    private void complete(TranslationJob job) {
+        job.finish(TranslationJob.State.DONE, System.currentTimeMillis());
+        save(job);
+        dequeue(job);
+        // Les segments restent sur disque pour un téléchargement ultérieur
+        job.segments(null);
+    }
+
+    private void save(TranslationJob job) {
+        try {
+            store.save(job);
+        } catch (IOException e) {
+            // État recalculé à partir des paquets présents au prochain démarrage
+        }
+    }
+
+    // Tâches terminées depuis plus de retention-hours
+    private void purge() {
+        long limit = System.currentTimeMillis() - retentionMs;
+        for (TranslationJob job : new ArrayList<>(jobs.values())) {
+            if (!job.isActive() && job.finishedAt() > 0 && job.finishedAt() < limit) {
+                jobs.remove(job.getId());
+                try {
+                    store.delete(job);
+                } catch (IOException e) {
+                    // Nouvel essai au prochain nettoyage
+                    jobs.put(job.getId(), job);
+                }
+            }
+        }
+    }
+
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    public JSONObject stats() {
+        int active = 0;
+        for (TranslationJob job : jobs.values()) {
+            if (job.isActive()) {
+                active++;
+            }
+        }
+        return new JSONObject()
+                .put("jobs", jobs.size())
+                .put("active", active)
+                .put("workers", workers)
+                .put("chunksTranslated", chunksTranslated.sum())
+                .put("chunksRetried", chunksRetried.sum())
+                .put("deferred", deferred.sum());
+    }
+}
@@ -0,0 +1,302 @@
+package ma.project.jakarta.jobs;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import ma.project.jakarta.json.JsonScanner;
+import ma.project.jakarta.json.JsonWriter;
+import ma.project.jakarta.service.Translation;
+import org.json.JSONObject;
+
+/**
+ * Tâches sur disque, un répertoire par tâche :
+ * job.json (métadonnées), input.jsonl (segments lus dans le fichier envoyé)
+ * et un fichier chunk-NNNNNN.jsonl par paquet traduit.
+ *
+ * Chaque fichier est écrit à côté puis renommé atomiquement : après un arrêt
+ * brutal, un paquet est soit complet, soit absent (et sera retraduit).
+ */
+final class JobStore {
+
+    private static final String META = "job.json";
+    private static final String INPUT = "input.jsonl";
+
+    private final Path dir;
+
+    JobStore(Path dir) throws IOException {
+        this.dir = dir;
+        Files.createDirectories(dir);
+    }
+
+    /**
+     * Enregistre le fichier envoyé, le lit et crée la tâche.
+     *
+     * @throws IllegalArgumentException fichier trop gros ou illisible
+     */
+    TranslationJob create(String owner, String direction, String format, InputStream body, long maxBytes,
+                          int maxSegments, int chunkSize) throws IOException {
+        String id = UUID.randomUUID().toString();
+        Path jobDir = dir.resolve(id);
+        Files.createDirectories(jobDir);
+        try {
+            Path upload = jobDir.resolve("upload.tmp");
+            copyBounded(body, upload, maxBytes);
+            List<JobInput.Segment> segments = JobInput.parse(upload, format, maxSegments);
+            writeInput(jobDir, segments);
+            Files.delete(upload);
+            TranslationJob job = new TranslationJob(id, owner, direction, format, segments.size(), chunkSize,
+                    System.currentTimeMillis(), TranslationJob.State.QUEUED, 0);
+            job.segments(segments);
+            save(job);
+            return job;
+        } catch (IOException | RuntimeException e) {
+            deleteTree(jobDir);
+            throw e;
+        }
+    }
+
+    private static void copyBounded(InputStream body, Path target, long maxBytes) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        long copied = 0;
+        try (OutputStream out = Files.newOutputStream(target)) {
+            int read;
+            while ((read = body.read(buffer)) != -1) {
+                copied += read;
+                if (copied > maxBytes) {
+                    throw new IllegalArgumentException("Fichier trop volumineux (max " + maxBytes + " octets)");
+                }
+                out.write(buffer, 0, read);
+            }
+        }
+    }
+
+    private static void writeInput(Path jobDir, List<JobInput.Segment> segments) throws IOException {
+        Path tmp = jobDir.resolve(INPUT + ".tmp");
+        try (OutputStream file = Files.newOutputStream(tmp)) {
+            JsonWriter out = new JsonWriter(file);
+            for (JobInput.Segment segment : segments) {
+                out.raw("{").field("text", segment.text, true);
+                if (segment.id != null) {
+                    out.field("id", segment.id, false);
+                }
+                out.raw("}\n");
+            }
+            out.flush();
+        }
+        Files.move(tmp, jobDir.resolve(INPUT), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Segments d'une tâche reprise après redémarrage.
+     */
+    List<JobInput.Segment> readInput(TranslationJob job) throws IOException {
+        List<JobInput.Segment> segments = new ArrayList<>(job.total());
+        try (BufferedReader reader = Files.newBufferedReader(dir.resolve(job.getId()).resolve(INPUT),
+                StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = JsonScanner.of(line).findStrings("text", "id");
+                segments.add(new JobInput.Segment(fields[1], fields[0]));
+            }
+        }
+        return segments;
+    }
+
+    void save(TranslationJob job) throws IOException {
+        Path jobDir = dir.resolve(job.getId());
+        Path tmp = jobDir.resolve(META + ".tmp");
+        Files.writeString(tmp, job.toMeta().toString(), StandardCharsets.UTF_8);
+        Files.move(tmp, jobDir.resolve(META), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Résultats d'un paquet, une ligne JSON par segment :
+     * {"index": 12, "id": "...", "original": "...", "translation": "...", "mode": "..."}
+     * ("error" à la place de "translation" pour un segment en échec).
+     */
+    void writeChunk(TranslationJob job, int chunk, List<JobInput.Segment> segments, List<Translation> results)
+            throws IOException {
+        Path jobDir = dir.resolve(job.getId());
+        Path tmp = jobDir.resolve(chunkName(chunk) + ".tmp");
+        try (OutputStream file = new BufferedOutputStream(Files.newOutputStream(tmp))) {
+            JsonWriter out = new JsonWriter(file);
+            int start = job.chunkStart(chunk);
+            for (int i = 0; i < results.size(); i++) {
+                Translation result = results.get(i);
+                JobInput.Segment segment = segments.get(start + i);
+                out.raw("{\"index\":").raw(start + i);
+                if (segment.id != null) {
+                    out.field("id", segment.id, false);
+                }
+                out.field("original", segment.text, false);
+                if (result.getTranslation() != null) {
+                    out.field("translation", result.getTranslation(), false);
+                }
+                out.field("mode", result.getMode(), false);
+                if (result.getScore() != null) {
+                    out.raw(",\"score\":").raw(Double.toString(result.getScore()));
+                }
+                if (result.getError() != null) {
+                    out.field("error", result.getError(), false);
+                }
+                out.raw("}\n");
+            }
+            out.flush();
+        }
+        Files.move(tmp, jobDir.resolve(chunkName(chunk)), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Tâches enregistrées, avec les paquets déjà traduits ; les répertoires
+     * incomplets (envoi interrompu) sont supprimés.
+     */
+    List<TranslationJob> loadAll() throws IOException {
+        List<TranslationJob> jobs = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+            for (Path jobDir : entries) {
+                if (!Files.isDirectory(jobDir)) {
+                    continue;
+                }
+                Path meta = jobDir.resolve(META);
+                if (!Files.exists(meta)) {
+                    deleteTree(jobDir);
+                    continue;
+                }
+                TranslationJob job = TranslationJob.fromMeta(new JSONObject(Files.readString(meta)));
+                for (int chunk = 0; chunk < job.chunks(); chunk++) {
+                    Path file = jobDir.resolve(chunkName(chunk));
+                    if (Files.exists(file)) {
+                        job.chunkDone(chunk, countErrors(file));
+                    }
+                }
+                jobs.add(job);
+            }
+        }
+        jobs.sort(Comparator.comparingLong(TranslationJob::createdAt));
+        return jobs;
+    }
+
+    private static int countErrors(Path chunkFile) throws IOException {
+        int errors = 0;
+        try (BufferedReader reader = Files.newBufferedReader(chunkFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (JsonScanner.of(line).findString("error") != null) {
+                    errors++;
+                }
+            }
+        }
+        return errors;
+    }
+
+    /**
+     * Résultats des segments [from, end) (paquets terminés, voir
+     * {@link TranslationJob#doneUntil}), en JSONL (copie directe des
+     * fichiers) ou en CSV. L'en-tête CSV n'est écrit qu'au début du fichier
+     * (from = 0) : une reprise s'ajoute telle quelle à ce qui a été reçu.
+     */
+    void writeResults(TranslationJob job, int from, int end, boolean csv, OutputStream output) throws IOException {
+        Path jobDir = dir.resolve(job.getId());
+        Writer csvOut = csv ? new OutputStreamWriter(output, StandardCharsets.UTF_8) : null;
+        if (csvOut != null && from <= 0) {
+            csvOut.write("id,original,translation,mode,error\r\n");
+        }
+        int next = Math.max(0, from);
+        try {
+            for (int chunk = job.chunkOf(next); next < end; chunk++) {
+                Path file = jobDir.resolve(chunkName(chunk));
+                if (csvOut == null && next == job.chunkStart(chunk)) {
+                    // Paquet entier : copie du fichier tel quel
+                    Files.copy(file, output);
+                    next = job.chunkEnd(chunk);
+                    continue;
+                }
+                try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                    String line;
+                    int index = job.chunkStart(chunk);
+                    while ((line = reader.readLine()) != null) {
+                        if (index++ < next) {
+                            continue;
+                        }
+                        if (csvOut == null) {
+                            output.write(line.getBytes(StandardCharsets.UTF_8));
+                            output.write('\n');
+                        } else {
+                            writeCsv(csvOut, line);
+                        }
+                    }
+                }
+                next = job.chunkEnd(chunk);
+            }
+        } catch (NoSuchFileException e) {
+            // Tâche supprimée pendant l'envoi : réponse tronquée
+        }
+        if (csvOut != null) {
+            csvOut.flush();
+        }
+    }
+
+    private static void writeCsv(Writer out, String line) throws IOException {
+        String[] fields = JsonScanner.of(line).findStrings("id", "original", "translation", "mode", "error");
+        for (int f = 0; f < fields.length; f++) {
+            if (f > 0) {
+                out.write(',');
+            }
+            out.write(csvField(fields[f]));
+        }
+        out.write("\r\n");
+    }
+
+    private static String csvField(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0
+                && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    void delete(TranslationJob job) throws IOException {
+        Path jobDir = dir.resolve(job.getId());
+        // Sans job.json, un reste de suppression interrompue est effacé au chargement
+        Files.deleteIfExists(jobDir.resolve(META));
+        deleteTree(jobDir);
+    }
+
+    private static String chunkName(int chunk) {
+        return String.format("chunk-%06d.jsonl", chunk);
+    }
+
+    private static void deleteTree(Path root) throws IOException {
+        if (!Files.exists(root)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(root)) {
+            List<Path> all = new ArrayList<>();
+            paths.forEach(all::add);
+            // Fichiers avant leur répertoire
+            for (int i = all.size() - 1; i >= 0; i--) {
+                Files.deleteIfExists(all.get(i));
+            }
+        }
+    }
+}
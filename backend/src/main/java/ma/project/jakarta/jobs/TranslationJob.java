@@ -0,0 +1,285 @@
+package ma.project.jakarta.jobs;
+
+import java.time.Instant;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.json.JSONObject;
+
+/**
+ * Tâche de traduction en masse : les textes d'un fichier, traduits par
+ * paquets de chunkSize segments. Chaque paquet terminé est enregistré sur
+ * disque ({@link JobStore}) ; après un redémarrage, seuls les paquets
+ * manquants sont traduits.
+ *
+ * L'avancement est lu par les requêtes (méthodes synchronisées) ; l'état
+ * d'ordonnancement n'est touché que par le thread de {@link JobScheduler}.
+ */
+public final class TranslationJob {
+
+    public enum State { QUEUED, RUNNING, DONE, FAILED, CANCELLED }
+
+    private final String id;
+    private final String owner;
+    private final String direction;
+    private final String format;
+    private final int total;
+    private final int chunkSize;
+    private final long createdAt;
+
+    // Avancement, sous le moniteur de la tâche
+    private State state;
+    private long finishedAt;
+    private final BitSet done = new BitSet();
+    private int chunksDone;
+    private int segmentsDone;
+    private int segmentsFailed;
+    private long startedAt;
+    private int segmentsAtStart;
+
+    // Ordonnancement, thread du planificateur seulement
+    private List<JobInput.Segment> segments;
+    private int nextChunk;
+    private int running;
+    private final PriorityQueue<Retry> retries = new PriorityQueue<>((a, b) -> Long.signum(a.at - b.at));
+    private final Map<Integer, Integer> attempts = new HashMap<>();
+
+    TranslationJob(String id, String owner, String direction, String format, int total, int chunkSize,
+                   long createdAt, State state, long finishedAt) {
+        this.id = id;
+        this.owner = owner;
+        this.direction = direction;
+        this.format = format;
+        this.total = total;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.createdAt = createdAt;
+        this.state = state;
+        this.finishedAt = finishedAt;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    String direction() {
+        return direction;
+    }
+
+    String format() {
+        return format;
+    }
+
+    int total() {
+        return total;
+    }
+
+    long createdAt() {
+        return createdAt;
+    }
+
+    int chunks() {
+        return (total + chunkSize - 1) / chunkSize;
+    }
+
+    int chunkOf(int index) {
+        return index / chunkSize;
+    }
+
+    int chunkStart(int chunk) {
+        return chunk * chunkSize;
+    }
+
+    int chunkEnd(int chunk) {
+        return Math.min(total, (chunk + 1) * chunkSize);
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    synchronized boolean isActive() {
+        return state == State.QUEUED || state == State.RUNNING;
+    }
+
+    synchronized long finishedAt() {
+        return finishedAt;
+    }
+
+    synchronized boolean isChunkDone(int chunk) {
+        return done.get(chunk);
+    }
+
+    /**
+     * Paquet enregistré (au chargement ou après traduction).
+     *
+     * @return true si c'était le dernier
+     */
+    synchronized boolean chunkDone(int chunk, int failed) {
+        if (done.get(chunk)) {
+            return chunksDone == chunks();
+        }
+        done.set(chunk);
+        chunksDone++;
+        segmentsDone += chunkEnd(chunk) - chunkStart(chunk);
+        segmentsFailed += failed;
+        return chunksDone == chunks();
+    }
+
+    /**
+     * Fin de la suite de paquets terminés qui contient le segment from :
+     * les résultats [from, fin) peuvent être envoyés dans l'ordre.
+     */
+    synchronized int doneUntil(int from) {
+        int index = Math.min(Math.max(0, from), total);
+        int chunk = chunkOf(index);
+        while (chunk < chunks() && done.get(chunk)) {
+            index = chunkEnd(chunk++);
+        }
+        return index;
+    }
+
+    synchronized void started(long now) {
+        if (state == State.QUEUED) {
+            state = State.RUNNING;
+            startedAt = now;
+            segmentsAtStart = segmentsDone;
+        }
+    }
+
+    synchronized void finish(State finalState, long now) {
+        state = finalState;
+        finishedAt = now;
+    }
+
+    // ---------------------------------------------------------------- ordonnancement
+
+    List<JobInput.Segment> segments() {
+        return segments;
+    }
+
+    void segments(List<JobInput.Segment> segments) {
+        this.segments = segments;
+    }
+
+    /**
+     * Prochain paquet à traduire : d'abord une reprise arrivée à échéance,
+     * sinon le premier paquet jamais lancé ; -1 s'il n'y en a pas pour l'instant.
+     */
+    int nextChunk(long now) {
+        Retry retry = retries.peek();
+        if (retry != null && now - retry.at >= 0) {
+            retries.poll();
+            return retry.chunk;
+        }
+        while (nextChunk < chunks() && isChunkDone(nextChunk)) {
+            nextChunk++;
+        }
+        return nextChunk < chunks() ? nextChunk++ : -1;
+    }
+
+    /**
+     * Échéance de la prochaine reprise, ou -1.
+     */
+    long nextRetryAt() {
+        Retry retry = retries.peek();
+        return retry == null ? -1 : retry.at;
+    }
+
+    /**
+     * Paquet à relancer à l'instant at (nanoTime).
+     */
+    void retryLater(int chunk, long at) {
+        retries.add(new Retry(chunk, at));
+    }
+
+    int attempt(int chunk) {
+        return attempts.merge(chunk, 1, Integer::sum);
+    }
+
+    void forget(int chunk) {
+        attempts.remove(chunk);
+    }
+
+    int running() {
+        return running;
+    }
+
+    void running(int delta) {
+        running += delta;
+    }
+
+    // ---------------------------------------------------------------- JSON
+
+    /**
+     * Avancement renvoyé au client.
+     */
+    public synchronized JSONObject toJson() {
+        JSONObject json = new JSONObject()
+                .put("id", id)
+                .put("state", state.name().toLowerCase(Locale.ROOT))
+                .put("format", format)
+                .put("direction", direction)
+                .put("total", total)
+                .put("completed", segmentsDone)
+                .put("failed", segmentsFailed)
+                .put("progress", total == 0 ? 1.0 : Math.round(segmentsDone * 1000.0 / total) / 1000.0)
+                .put("createdAt", Instant.ofEpochMilli(createdAt).toString());
+        if (finishedAt > 0) {
+            json.put("finishedAt", Instant.ofEpochMilli(finishedAt).toString());
+        }
+        if (state == State.RUNNING && startedAt > 0) {
+            long elapsed = System.currentTimeMillis() - startedAt;
+            int translated = segmentsDone - segmentsAtStart;
+            if (translated > 0 && elapsed > 0) {
+                json.put("etaSeconds", (long) Math.ceil((total - segmentsDone) * (elapsed / 1000.0) / translated));
+            }
+        }
+        return json;
+    }
+
+    /**
+     * Métadonnées enregistrées dans job.json (l'avancement se déduit des paquets présents).
+     */
+    synchronized JSONObject toMeta() {
+        JSONObject meta = new JSONObject()
+                .put("id", id)
+                .put("owner", owner)
+                .put("direction", direction)
+                .put("format", format)
+                .put("total", total)
+                .put("chunkSize", chunkSize)
+                .put("createdAt", createdAt)
+                .put("state", state.name());
+        if (finishedAt > 0) {
+            meta.put("finishedAt", finishedAt);
+        }
+        return meta;
+    }
+
+    static TranslationJob fromMeta(JSONObject meta) {
+        State state = State.valueOf(meta.getString("state"));
+        // Une tâche en cours à l'arrêt reprend en file
+        boolean active = state == State.QUEUED || state == State.RUNNING;
+        return new TranslationJob(meta.getString("id"), meta.getString("owner"), meta.getString("direction"),
+                meta.getString("format"), meta.getInt("total"), meta.getInt("chunkSize"), meta.getLong("createdAt"),
+                active ? State.QUEUED : state, active ? 0 : meta.optLong("finishedAt", 0));
+    }
+
+    private static final class Retry {
+        final int chunk;
+        final long at;
+
+        Retry(int chunk, long at) {
+            this.chunk = chunk;
+            this.at = at;
+        }
+    }
+}
@@ -0,0 +1,537 @@
+package ma.project.jakarta.json;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.json.JSONException;
+
+/**
+ * Lecture d'une valeur précise dans un document JSON sans en construire
+ * l'arbre : le texte est parcouru une fois, les valeurs hors du chemin sont
+ * sautées et la lecture s'arrête dès la valeur trouvée. Seule la chaîne
+ * renvoyée est allouée (plus un tampon si elle contient des échappements).
+ *
+ * L'entrée est un String ou directement les octets UTF-8 du corps reçu : les
+ * caractères de structure étant ASCII, ils ne peuvent pas apparaître au
+ * milieu d'un caractère multi-octets. Les clés cherchées doivent être ASCII.
+ *
+ * Un document mal formé sur le chemin parcouru lève {@link JSONException},
+ * comme org.json ; ce qui suit la valeur trouvée n'est pas vérifié.
+ */
+public abstract class JsonScanner {
+
+    private int position;
+
+    JsonScanner() {
+    }
+
+    public static JsonScanner of(String json) {
+        return new Chars(json);
+    }
+
+    public static JsonScanner of(byte[] utf8) {
+        return new Bytes(utf8);
+    }
+
+    abstract int length();
+
+    // Caractère (ou octet) à l'indice donné
+    abstract int at(int index);
+
+    abstract String slice(int from, int to);
+
+    // Contenu d'une chaîne avec échappements, guillemets exclus
+    abstract String unescape(int from, int to);
+
+    /**
+     * Chaîne au chemin donné, fait de clés (String) et d'indices (Integer) :
+     * findString("candidates", 0, "content", "parts", 0, "text").
+     * null si le chemin n'existe pas ou mène à null.
+     */
+    public String findString(Object... path) {
+        if (!navigate(path)) {
+            return null;
+        }
+        int c = peek();
+        if (c == '"') {
+            position++;
+            return readString();
+        }
+        if (c == 'n') {
+            skipValue();
+            return null;
+        }
+        throw error("Chaîne attendue");
+    }
+
+    /**
+     * Plusieurs champs de l'objet racine lus en un seul passage, dans l'ordre
+     * des clés demandées. Une valeur chaîne est décodée ; un nombre ou un
+     * littéral (true, false) est rendu tel qu'écrit ; null, un objet, un
+     * tableau ou un champ absent donnent null.
+     */
+    public String[] findStrings(String... keys) {
+        String[] values = new String[keys.length];
+        position = 0;
+        if (peek() != '{') {
+            return values;
+        }
+        position++;
+        if (peek() == '}') {
+            return values;
+        }
+        int remaining = keys.length;
+        while (remaining > 0) {
+            expect('"');
+            String key = readString();
+            expect(':');
+            int index = indexOf(keys, key);
+            int c = peek();
+            if (index >= 0 && values[index] == null && c == '"') {
+                position++;
+                values[index] = readString();
+                remaining--;
+            } else if (index >= 0 && values[index] == null && c != '{' && c != '[' && c != 'n') {
+                int start = position;
+                skipValue();
+                values[index] = slice(start, position);
+                remaining--;
+            } else {
+                skipValue();
+            }
+            c = next();
+            if (c == '}') {
+                break;
+            }
+            if (c != ',') {
+                throw error("',' ou '}' attendu");
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Nombre entier au chemin donné ; missing si le chemin n'existe pas ou
+     * mène à null.
+     */
+    public long findLong(long missing, Object... path) {
+        if (!navigate(path)) {
+            return missing;
+        }
+        int start = position;
+        skipValue();
+        String number = slice(start, position);
+        if ("null".equals(number)) {
+            return missing;
+        }
+        try {
+            return Long.parseLong(number);
+        } catch (NumberFormatException e) {
+            position = start;
+            throw error("Nombre entier attendu");
+        }
+    }
+
+    private static int indexOf(String[] keys, String key) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i].equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Tableau de chaînes au chemin donné (chemin vide : le document entier).
+     * null si le chemin n'existe pas.
+     */
+    public List<String> findStringArray(Object... path) {
+        if (!navigate(path)) {
+            return null;
+        }
+        expect('[');
+        List<String> values = new ArrayList<>();
+        if (peek() == ']') {
+            position++;
+            return values;
+        }
+        while (true) {
+            expect('"');
+            values.add(readString());
+            int c = next();
+            if (c == ']') {
+                return values;
+            }
+            if (c != ',') {
+                throw error("',' ou ']' attendu");
+            }
+        }
+    }
+
+    /**
+     * Type de la valeur racine : '{', '[', '"'... (premier caractère significatif).
+     */
+    public int rootType() {
+        position = 0;
+        return peek();
+    }
+
+    private boolean navigate(Object[] path) {
+        position = 0;
+        for (Object step : path) {
+            boolean found = step instanceof Integer
+                    ? enterIndex((Integer) step)
+                    : enterKey((String) step);
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Place la lecture sur la valeur de la clé ; false si l'objet ne la contient pas
+    private boolean enterKey(String key) {
+        if (peek() != '{') {
+            return false;
+        }
+        position++;
+        if (peek() == '}') {
+            return false;
+        }
+        while (true) {
+            expect('"');
+            boolean match = matchKey(key);
+            expect(':');
+            if (match) {
+                skipWhitespace();
+                return true;
+            }
+            skipValue();
+            int c = next();
+            if (c == '}') {
+                return false;
+            }
+            if (c != ',') {
+                throw error("',' ou '}' attendu");
+            }
+        }
+    }
+
+    private boolean enterIndex(int index) {
+        if (peek() != '[') {
+            return false;
+        }
+        position++;
+        if (peek() == ']') {
+            return false;
+        }
+        for (int i = 0; ; i++) {
+            if (i == index) {
+                skipWhitespace();
+                return true;
+            }
+            skipValue();
+            int c = next();
+            if (c == ']') {
+                return false;
+            }
+            if (c != ',') {
+                throw error("',' ou ']' attendu");
+            }
+        }
+    }
+
+    // Compare la clé en place, sans la copier ; lecture placée après le guillemet fermant
+    private boolean matchKey(String key) {
+        int start = position;
+        int length = key.length();
+        int end = start + length;
+        if (end < length() && at(end) == '"') {
+            boolean equal = true;
+            for (int i = 0; i < length; i++) {
+                int c = at(start + i);
+                if (c != key.charAt(i) || c == '\\') {
+                    equal = false;
+                    break;
+                }
+            }
+            if (equal) {
+                position = end + 1;
+                return true;
+            }
+        }
+        // Clé différente ou avec échappements : décodage complet
+        return key.equals(readString());
+    }
+
+    // Lecture placée après le guillemet ouvrant
+    private String readString() {
+        int start = position;
+        int length = length();
+        for (int i = start; i < length; i++) {
+            int c = at(i);
+            if (c == '"') {
+                position = i + 1;
+                return slice(start, i);
+            }
+            if (c == '\\') {
+                return readEscaped(start, i);
+            }
+        }
+        throw error("Chaîne non terminée");
+    }
+
+    // Fin de la chaîne repérée d'abord, puis décodage en une seule fois
+    private String readEscaped(int start, int escape) {
+        int length = length();
+        int end = escape;
+        while (end < length) {
+            int c = at(end);
+            if (c == '"') {
+                position = end + 1;
+                return unescape(start, end);
+            }
+            end += c == '\\' ? 2 : 1;
+        }
+        throw error("Chaîne non terminée");
+    }
+
+    /**
+     * Caractère désigné par l'échappement qui commence à index (la barre
+     * oblique) ; l'échappement fait 6 caractères pour un code hexadécimal, 2 sinon.
+     */
+    char escapedChar(int index) {
+        int escaped = at(index + 1);
+        switch (escaped) {
+            case '"': case '\\': case '/':
+                return (char) escaped;
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'u':
+                int code = 0;
+                for (int k = 2; k < 6; k++) {
+                    int digit = index + k < length() ? Character.digit(at(index + k), 16) : -1;
+                    if (digit < 0) {
+                        position = index;
+                        throw error("Code hexadécimal d'échappement invalide");
+                    }
+                    code = (code << 4) | digit;
+                }
+                return (char) code;
+            default:
+                position = index;
+                throw error("Échappement invalide");
+        }
+    }
+
+    static int escapeLength(int escaped) {
+        return escaped == 'u' ? 6 : 2;
+    }
+
+    private void skipValue() {
+        int c = peek();
+        if (c == '"') {
+            position++;
+            skipString();
+            return;
+        }
+        if (c == '{' || c == '[') {
+            skipContainer();
+            return;
+        }
+        // Nombre, true, false, null
+        int start = position;
+        int length = length();
+        while (position < length) {
+            int d = at(position);
+            if (d == ',' || d == '}' || d == ']' || d <= ' ') {
+                break;
+            }
+            position++;
+        }
+        if (position == start) {
+            throw error("Valeur attendue");
+        }
+    }
+
+    private void skipString() {
+        int length = length();
+        while (position < length) {
+            int c = at(position++);
+            if (c == '"') {
+                return;
+            }
+            if (c == '\\') {
+                position++;
+            }
+        }
+        throw error("Chaîne non terminée");
+    }
+
+    // Objet ou tableau entier, en ne suivant que la profondeur
+    private void skipContainer() {
+        int depth = 0;
+        int length = length();
+        while (position < length) {
+            int c = at(position++);
+            if (c == '"') {
+                skipString();
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                if (--depth == 0) {
+                    return;
+                }
+            }
+        }
+        throw error("Document tronqué");
+    }
+
+    private void skipWhitespace() {
+        int length = length();
+        while (position < length) {
+            int c = at(position);
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                return;
+            }
+            position++;
+        }
+    }
+
+    private int peek() {
+        skipWhitespace();
+        if (position >= length()) {
+            throw error("Fin de document inattendue");
+        }
+        return at(position);
+    }
+
+    private int next() {
+        int c = peek();
+        position++;
+        return c;
+    }
+
+    private void expect(char expected) {
+        if (next() != expected) {
+            position--;
+            throw error("'" + expected + "' attendu");
+        }
+    }
+
+    private JSONException error(String message) {
+        return new JSONException(message + " à la position " + position);
+    }
+
+    private static final class Chars extends JsonScanner {
+        private final String json;
+
+        Chars(String json) {
+            this.json = json;
+        }
+
+        @Override
+        int length() {
+            return json.length();
+        }
+
+        @Override
+        int at(int index) {
+            return json.charAt(index);
+        }
+
+        @Override
+        String slice(int from, int to) {
+            return json.substring(from, to);
+        }
+
+        @Override
+        String unescape(int from, int to) {
+            StringBuilder out = new StringBuilder(to - from);
+            int i = from;
+            while (i < to) {
+                char c = json.charAt(i);
+                if (c == '\\') {
+                    out.append(escapedChar(i));
+                    i += escapeLength(json.charAt(i + 1));
+                } else {
+                    out.append(c);
+                    i++;
+                }
+            }
+            return out.toString();
+        }
+    }
+
+    private static final class Bytes extends JsonScanner {
+        private final byte[] utf8;
+
+        Bytes(byte[] utf8) {
+            this.utf8 = utf8;
+        }
+
+        @Override
+        int length() {
+            return utf8.length;
+        }
+
+        @Override
+        int at(int index) {
+            // Octets >= 0x80 négatifs : jamais confondus avec la structure
+            return utf8[index];
+        }
+
+        @Override
+        String slice(int from, int to) {
+            return new String(utf8, from, to - from, StandardCharsets.UTF_8);
+        }
+
+        // Octets décodés dans un tampon de la taille de la source (un échappement n'allonge jamais)
+        @Override
+        String unescape(int from, int to) {
+            byte[] out = new byte[to - from];
+            int count = 0;
+            int i = from;
+            while (i < to) {
+                byte b = utf8[i];
+                if (b != '\\') {
+                    out[count++] = b;
+                    i++;
+                    continue;
+                }
+                char c = escapedChar(i);
+                i += escapeLength(utf8[i + 1]);
+                if (c < 0x80) {
+                    out[count++] = (byte) c;
+                } else if (c < 0x800) {
+                    out[count++] = (byte) (0xC0 | (c >> 6));
+                    out[count++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i + 1 < to && utf8[i] == '\\' && utf8[i + 1] == 'u'
+                        && Character.isLowSurrogate(escapedChar(i))) {
+                    // Paire de substitution échappée en deux codes : un seul caractère de 4 octets
+                    int code = Character.toCodePoint(c, escapedChar(i));
+                    i += 6;
+                    out[count++] = (byte) (0xF0 | (code >> 18));
+                    out[count++] = (byte) (0x80 | ((code >> 12) & 0x3F));
+                    out[count++] = (byte) (0x80 | ((code >> 6) & 0x3F));
+                    out[count++] = (byte) (0x80 | (code & 0x3F));
+                } else {
+                    // Demi-paire isolée comprise : encodée telle quelle, remplacée au décodage
+                    out[count++] = (byte) (0xE0 | (c >> 12));
+                    out[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    out[count++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+            return new String(out, 0, count, StandardCharsets.UTF_8);
+        }
+    }
+}
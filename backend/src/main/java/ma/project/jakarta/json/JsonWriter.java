@@ -0,0 +1,194 @@
+package ma.project.jakarta.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Écriture JSON directement en UTF-8 dans un flux, à travers un tampon
+ * fixe : pas d'arbre intermédiaire ni de String du document complet.
+ * L'appelant place lui-même la ponctuation ({@link #raw(String)}) ; les
+ * chaînes sont échappées par {@link #string(String)}.
+ */
+public final class JsonWriter {
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+
+    private final OutputStream out;
+    private final byte[] buffer;
+    private int count;
+    private long written;
+
+    // Petit tampon : les flux des conteneurs ont déjà le leur, il sert à regrouper les écritures
+    public JsonWriter(OutputStream out) {
+        this(out, 512);
+    }
+
+    public JsonWriter(OutputStream out, int bufferSize) {
+        this.out = out;
+        this.buffer = new byte[Math.max(16, bufferSize)];
+    }
+
+    /**
+     * Texte ASCII écrit tel quel : ponctuation, noms de champs, nombres.
+     */
+    public JsonWriter raw(String ascii) throws IOException {
+        for (int i = 0; i < ascii.length(); i++) {
+            put((byte) ascii.charAt(i));
+        }
+        return this;
+    }
+
+    public JsonWriter raw(long number) throws IOException {
+        return raw(Long.toString(number));
+    }
+
+    /**
+     * Chaîne JSON entre guillemets, ou null.
+     */
+    public JsonWriter string(String value) throws IOException {
+        if (value == null) {
+            return raw("null");
+        }
+        put((byte) '"');
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                if (c == '"' || c == '\\') {
+                    put((byte) '\\');
+                    put((byte) c);
+                } else if (c < 0x20) {
+                    escapeControl(c);
+                } else {
+                    put((byte) c);
+                }
+            } else if (c < 0x800) {
+                put((byte) (0xC0 | (c >> 6)));
+                put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int code = Character.toCodePoint(c, value.charAt(++i));
+                put((byte) (0xF0 | (code >> 18)));
+                put((byte) (0x80 | ((code >> 12) & 0x3F)));
+                put((byte) (0x80 | ((code >> 6) & 0x3F)));
+                put((byte) (0x80 | (code & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                // Demi-paire isolée : illisible en UTF-8, remplacée comme le fait String.getBytes
+                put((byte) '?');
+            } else {
+                put((byte) (0xE0 | (c >> 12)));
+                put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+        put((byte) '"');
+        return this;
+    }
+
+    /**
+     * "nom": valeur chaîne, précédé d'une virgule si ce n'est pas le premier champ.
+     */
+    public JsonWriter field(String name, String value, boolean first) throws IOException {
+        if (!first) {
+            put((byte) ',');
+        }
+        return string(name).raw(":").string(value);
+    }
+
+    private void escapeControl(char c) throws IOException {
+        put((byte) '\\');
+        switch (c) {
+            case '\n':
+                put((byte) 'n');
+                break;
+            case '\r':
+                put((byte) 'r');
+                break;
+            case '\t':
+                put((byte) 't');
+                break;
+            case '\b':
+                put((byte) 'b');
+                break;
+            case '\f':
+                put((byte) 'f');
+                break;
+            default:
+                put((byte) 'u');
+                put((byte) '0');
+                put((byte) '0');
+                put(HEX[c >> 4]);
+                put(HEX[c & 0xF]);
+        }
+    }
+
+    private void put(byte b) throws IOException {
+        if (count == buffer.length) {
+            drain();
+        }
+        buffer[count++] = b;
+    }
+
+    private void drain() throws IOException {
+        out.write(buffer, 0, count);
+        written += count;
+        count = 0;
+    }
+
+    /**
+     * Vide le tampon dans le flux (sans le fermer).
+     */
+    public void flush() throws IOException {
+        drain();
+        out.flush();
+    }
+
+    /**
+     * Octets écrits jusqu'ici, tampon compris.
+     */
+    public long bytesWritten() {
+        return written + count;
+    }
+
+    /**
+     * Chaîne JSON entre guillemets, échappée comme {@link #string(String)},
+     * dans un StringBuilder.
+     */
+    public static StringBuilder quote(String value, StringBuilder out) {
+        return escape(value, out.append('"')).append('"');
+    }
+
+    /**
+     * Contenu échappé, sans les guillemets : pour insérer un texte dans une
+     * chaîne d'un corps précalculé.
+     */
+    public static StringBuilder escape(String value, StringBuilder out) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.append("\\u00").append((char) HEX[c >> 4]).append((char) HEX[c & 0xF]);
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        return out;
+    }
+}
@@ -0,0 +1,669 @@
+package ma.project.jakarta.memory;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import ma.project.jakarta.cache.CacheKey;
+import ma.project.jakarta.config.TranslatorConfig;
+import org.json.JSONObject;
+
+/**
+ * Mémoire de traduction approchée : retrouve la traduction d'un texte
+ * presque identique à un texte déjà traduit (nombres, ponctuation, casse,
+ * voyelles arabes ou tatweel différents, quelques lettres changées).
+ *
+ * Chaque texte est réduit à un gabarit : décomposition Unicode (NFKD) sans
+ * signes diacritiques, minuscules, ponctuation retirée, variantes d'alif, de
+ * ya et de ta marbuta unifiées comme dans le lexique, chaque nombre remplacé
+ * par {@link #NUMBER}. Un gabarit déjà connu est retrouvé directement ;
+ * sinon, les gabarits sont indexés par trigrammes de caractères. Une
+ * recherche admettant k éditions ne lit que les 3k+1
+ * trigrammes les plus rares du texte demandé (un texte à k éditions en
+ * garde forcément un), puis vérifie les candidats par une distance d'édition
+ * bornée à k. Le nombre d'identifiants lus par recherche est plafonné : sur
+ * un corpus fait de quelques mots très fréquents, une correspondance peut
+ * être manquée plutôt que de dépasser la milliseconde.
+ *
+ * Quand le texte demandé ne diffère que par ses nombres, ceux de la
+ * traduction trouvée sont remplacés, dans l'écriture de chiffres de la
+ * traduction. Si la traduction ne reprend pas les nombres de sa source
+ * (écrits en lettres par exemple), le candidat est écarté.
+ */
+public class FuzzyIndex {
+
+    // '#' est retiré par la normalisation : aucun texte ne le contient déjà
+    static final char NUMBER = '#';
+    // Bords du gabarit : début et fin de texte ont leurs propres trigrammes
+    private static final char EDGE = '\u0002';
+    private static final Postings NO_POSTINGS = new Postings();
+
+    private static volatile FuzzyIndex shared;
+
+    private final double minScore;
+    private final int maxLength;
+    private final int maxEntries;
+    private final int maxCandidates;
+    private final int maxPostings;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Un index par direction et modèle : une traduction n'est reprise que pour la même paire
+    private final Map<String, Shard> shards = new HashMap<>();
+    private int size;
+
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder substitutions = new LongAdder();
+    private final LongAdder verified = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder truncated = new LongAdder();
+    private final LongAdder lookupNanos = new LongAdder();
+
+    /**
+     * @param minScore      ressemblance minimale, 1 - distance / longueur du plus long gabarit
+     * @param maxLength     gabarits plus longs ignorés (paragraphes)
+     * @param maxEntries    au-delà, les nouveaux textes ne sont plus indexés
+     * @param maxCandidates candidats vérifiés au plus par recherche
+     * @param maxPostings   identifiants lus au plus dans l'index par recherche
+     */
+    public FuzzyIndex(double minScore, int maxLength, int maxEntries, int maxCandidates, int maxPostings) {
+        this.minScore = Math.min(1.0, Math.max(0.5, minScore));
+        this.maxLength = Math.max(1, maxLength);
+        this.maxEntries = Math.max(0, maxEntries);
+        this.maxCandidates = Math.max(1, maxCandidates);
+        this.maxPostings = Math.max(1, maxPostings);
+    }
+
+    public static FuzzyIndex fromConfig() {
+        return new FuzzyIndex(
+                TranslatorConfig.getDouble("translator.fuzzy.min-score", 0.9),
+                TranslatorConfig.getInt("translator.fuzzy.max-length", 300),
+                TranslatorConfig.getInt("translator.fuzzy.max-entries", 200_000),
+                TranslatorConfig.getInt("translator.fuzzy.max-candidates", 64),
+                TranslatorConfig.getInt("translator.fuzzy.max-postings", 50_000));
+    }
+
+    /**
+     * Instance partagée, amorcée avec le contenu de la mémoire persistante.
+     */
+    public static FuzzyIndex shared() {
+        FuzzyIndex index = shared;
+        if (index == null) {
+            synchronized (FuzzyIndex.class) {
+                index = shared;
+                if (index == null) {
+                    index = fromConfig();
+                    if (TranslatorConfig.getBoolean("translator.memory.enabled", true)) {
+                        TranslationMemory.shared().forEach(index::put);
+                    }
+                    shared = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    public void put(CacheKey key, String translation) {
+        if (translation == null || translation.isBlank()) {
+            return;
+        }
+        Template template = template(key.getText());
+        if (template.text.isEmpty() || template.text.length() > maxLength) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            Shard shard = shards.computeIfAbsent(scope(key), s -> new Shard());
+            Integer existing = shard.byText.get(key.getText());
+            if (existing != null) {
+                shard.entries[existing].translation = translation;
+                return;
+            }
+            if (size >= maxEntries) {
+                skipped.increment();
+                return;
+            }
+            int id = shard.add(new Entry(template.text.toCharArray(), template.numbers, translation));
+            shard.byText.put(key.getText(), id);
+            shard.byTemplate.put(template.text, id);
+            for (long gram : grams(template.text)) {
+                shard.postings.getOrCreate(gram).add(id);
+            }
+            size++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Traduction du texte indexé le plus ressemblant, nombres remplacés ;
+     * null si aucun n'atteint la ressemblance minimale.
+     */
+    public Match find(CacheKey key) {
+        long start = System.nanoTime();
+        lookups.increment();
+        Match match = null;
+        Template query = template(key.getText());
+        if (!query.text.isEmpty() && query.text.length() <= maxLength) {
+            lock.readLock().lock();
+            try {
+                Shard shard = shards.get(scope(key));
+                if (shard != null) {
+                    match = search(shard, query);
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+        if (match != null) {
+            hits.increment();
+        }
+        lookupNanos.add(System.nanoTime() - start);
+        return match;
+    }
+
+    private Match search(Shard shard, Template query) {
+        // Même gabarit : seuls les nombres, la casse, la ponctuation ou les diacritiques changent
+        Integer same = shard.byTemplate.get(query.text);
+        if (same != null) {
+            Match match = match(shard.entries[same], query, 1.0);
+            if (match != null) {
+                verified.increment();
+                return match;
+            }
+        }
+
+        char[] text = query.text.toCharArray();
+        // score >= s  <=>  d <= (1 - s) * max(|a|, |b|), et |b| <= |a| + d
+        int maxDistance = (int) ((1 - minScore) * text.length / minScore + 1e-9);
+
+        long[] grams = grams(query.text);
+        Postings[] lists = new Postings[grams.length];
+        for (int i = 0; i < grams.length; i++) {
+            Postings postings = shard.postings.get(grams[i]);
+            lists[i] = postings != null ? postings : NO_POSTINGS;
+        }
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+        int probes = Math.min(lists.length, 3 * maxDistance + 1);
+
+        Scratch work = scratch.get();
+        work.ensure(shard.size);
+        int[] counts = work.counts;
+        int[] touched = work.touched;
+        int candidates = 0;
+        int read = 0;
+        for (int g = 0; g < probes; g++) {
+            Postings postings = lists[g];
+            read += postings.size;
+            if (read > maxPostings && g > 0) {
+                truncated.increment();
+                break;
+            }
+            for (int j = 0; j < postings.size; j++) {
+                int id = postings.ids[j];
+                if (counts[id]++ == 0) {
+                    touched[candidates++] = id;
+                }
+            }
+        }
+
+        // Les maxCandidates candidats de longueur compatible partageant le plus de
+        // trigrammes rares : tri par comptage, le nombre de trigrammes lus est petit
+        int[] buckets = new int[probes + 2];
+        for (int c = 0; c < candidates; c++) {
+            int id = touched[c];
+            if (Math.abs(shard.entries[id].template.length - text.length) > maxDistance) {
+                counts[id] = 0;
+            } else {
+                buckets[counts[id]]++;
+            }
+        }
+        int selected = 0;
+        int cutoff = probes + 1;
+        while (cutoff > 1 && selected + buckets[cutoff - 1] <= maxCandidates) {
+            cutoff--;
+            selected += buckets[cutoff];
+        }
+        // Dernier palier partiellement retenu, dans l'ordre d'insertion
+        int partial = cutoff > 1 ? Math.min(buckets[cutoff - 1], maxCandidates - selected) : 0;
+        int[] chosen = new int[selected + partial];
+        int chosenCount = 0;
+        for (int c = 0; c < candidates; c++) {
+            int id = touched[c];
+            int count = counts[id];
+            counts[id] = 0;
+            if (count >= cutoff || (count == cutoff - 1 && count > 0 && partial-- > 0)) {
+                chosen[chosenCount++] = id;
+            }
+        }
+
+        Match best = null;
+        for (int c = 0; c < chosenCount; c++) {
+            Entry entry = shard.entries[chosen[c]];
+            int distance = distance(text, entry.template, maxDistance);
+            if (distance > maxDistance) {
+                continue;
+            }
+            double score = 1.0 - (double) distance / Math.max(text.length, entry.template.length);
+            if (score < minScore || (best != null && score <= best.score)) {
+                continue;
+            }
+            Match match = match(entry, query, score);
+            if (match != null) {
+                best = match;
+            }
+        }
+        verified.add(chosenCount);
+        return best;
+    }
+
+    private Match match(Entry entry, Template query, double score) {
+        String translation = substitute(entry.translation, entry.numbers, query.numbers);
+        if (translation == null) {
+            return null;
+        }
+        if (translation != entry.translation) {
+            substitutions.increment();
+        }
+        return new Match(translation, Math.round(score * 1000) / 1000.0);
+    }
+
+    public JSONObject stats() {
+        int entries;
+        int gramCount = 0;
+        lock.readLock().lock();
+        try {
+            entries = size;
+            for (Shard shard : shards.values()) {
+                gramCount += shard.postings.size;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        long lookupCount = lookups.sum();
+        return new JSONObject()
+                .put("entries", entries)
+                .put("trigrams", gramCount)
+                .put("minScore", minScore)
+                .put("lookups", lookupCount)
+                .put("hits", hits.sum())
+                .put("numberSubstitutions", substitutions.sum())
+                .put("candidatesVerified", verified.sum())
+                .put("skippedFull", skipped.sum())
+                .put("truncatedLookups", truncated.sum())
+                .put("averageLookupMicros", lookupCount == 0 ? 0.0
+                        : Math.round(lookupNanos.sum() / 10.0 / lookupCount) / 100.0);
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static String scope(CacheKey key) {
+        return key.getDirection() + '\u0001' + key.getModel();
+    }
+
+    // ---------------------------------------------------------------- gabarits
+
+    static final class Template {
+        final String text;
+        // Nombres du texte dans l'ordre, en chiffres ASCII
+        final String[] numbers;
+
+        Template(String text, String[] numbers) {
+            this.text = text;
+            this.numbers = numbers;
+        }
+    }
+
+    static Template template(String text) {
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFKD);
+        StringBuilder out = new StringBuilder(decomposed.length());
+        List<String> numbers = new ArrayList<>(2);
+        boolean space = false;
+        int i = 0;
+        while (i < decomposed.length()) {
+            char c = decomposed.charAt(i);
+            if (Character.digit(c, 10) >= 0) {
+                int end = numberEnd(decomposed, i);
+                numbers.add(asciiNumber(decomposed, i, end));
+                space = append(out, NUMBER, space);
+                i = end;
+                continue;
+            }
+            i++;
+            int type = Character.getType(c);
+            // Harakat, hamza suscrite, accents latins (séparés par NFKD), tatweel, apostrophes
+            if (type == Character.NON_SPACING_MARK || type == Character.COMBINING_SPACING_MARK
+                    || type == Character.ENCLOSING_MARK || c == 'ـ'
+                    || c == '\'' || c == '’' || c == 'ʼ') {
+                continue;
+            }
+            switch (c) {
+                case 'ٱ':
+                    c = 'ا';
+                    break;
+                case 'ى': case 'ی':
+                    c = 'ي';
+                    break;
+                case 'ة':
+                    c = 'ه';
+                    break;
+                case 'ک':
+                    c = 'ك';
+                    break;
+                default:
+                    break;
+            }
+            if (Character.isLetter(c)) {
+                space = append(out, Character.toLowerCase(c), space);
+            } else {
+                space = true;
+            }
+        }
+        return new Template(out.toString(), numbers.toArray(new String[0]));
+    }
+
+    private static boolean append(StringBuilder out, char c, boolean space) {
+        if (space && out.length() > 0) {
+            out.append(' ');
+        }
+        out.append(c);
+        return false;
+    }
+
+    // Chiffres, avec séparateurs décimaux ou de milliers entre deux chiffres (3.5, 1,000, ٣٫٥)
+    private static int numberEnd(String text, int start) {
+        int i = start;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (Character.digit(c, 10) >= 0) {
+                i++;
+            } else if (isSeparator(c) && i + 1 < text.length() && Character.digit(text.charAt(i + 1), 10) >= 0) {
+                i += 2;
+            } else {
+                break;
+            }
+        }
+        return i;
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == '.' || c == ',' || c == '٫' || c == '٬';
+    }
+
+    private static String asciiNumber(String text, int start, int end) {
+        StringBuilder ascii = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            int digit = Character.digit(c, 10);
+            if (digit >= 0) {
+                ascii.append((char) ('0' + digit));
+            } else {
+                ascii.append(c == '٫' ? '.' : c == '٬' ? ',' : c);
+            }
+        }
+        return ascii.toString();
+    }
+
+    /**
+     * Remplace dans la traduction les nombres de la source indexée par ceux du
+     * texte demandé ; null si la traduction ne les reprend pas tous.
+     */
+    static String substitute(String translation, String[] from, String[] to) {
+        if (Arrays.equals(from, to)) {
+            return translation;
+        }
+        if (from.length != to.length) {
+            return null;
+        }
+        Map<String, String> replacements = new HashMap<>();
+        for (int i = 0; i < from.length; i++) {
+            String previous = replacements.putIfAbsent(from[i], to[i]);
+            if (previous != null && !previous.equals(to[i])) {
+                return null;
+            }
+        }
+        replacements.entrySet().removeIf(e -> e.getKey().equals(e.getValue()));
+
+        Set<String> replaced = new HashSet<>();
+        StringBuilder out = new StringBuilder(translation.length() + 8);
+        int i = 0;
+        while (i < translation.length()) {
+            char c = translation.charAt(i);
+            int digit = Character.digit(c, 10);
+            if (digit < 0) {
+                out.append(c);
+                i++;
+                continue;
+            }
+            int end = numberEnd(translation, i);
+            String value = asciiNumber(translation, i, end);
+            String replacement = replacements.get(value);
+            if (replacement == null) {
+                out.append(translation, i, end);
+            } else {
+                // Même écriture de chiffres que la traduction (ASCII, arabe-indien...)
+                char zero = (char) (c - digit);
+                for (int j = 0; j < replacement.length(); j++) {
+                    char r = replacement.charAt(j);
+                    out.append(r >= '0' && r <= '9' ? (char) (zero + (r - '0')) : r);
+                }
+                replaced.add(value);
+            }
+            i = end;
+        }
+        return replaced.size() == replacements.size() ? out.toString() : null;
+    }
+
+    // Trigrammes distincts du gabarit bordé de deux EDGE de chaque côté
+    static long[] grams(String template) {
+        int n = template.length();
+        long[] grams = new long[n + 2];
+        for (int j = 0; j < n + 2; j++) {
+            grams[j] = ((long) at(template, j - 2) << 32) | ((long) at(template, j - 1) << 16) | at(template, j);
+        }
+        Arrays.sort(grams);
+        int distinct = 0;
+        for (int j = 0; j < grams.length; j++) {
+            if (j == 0 || grams[j] != grams[j - 1]) {
+                grams[distinct++] = grams[j];
+            }
+        }
+        return Arrays.copyOf(grams, distinct);
+    }
+
+    private static char at(String template, int index) {
+        return index < 0 || index >= template.length() ? EDGE : template.charAt(index);
+    }
+
+    /**
+     * Distance de Levenshtein si elle ne dépasse pas max, sinon max + 1 ;
+     * seule la bande de largeur 2 * max + 1 autour de la diagonale est calculée.
+     */
+    static int distance(char[] a, char[] b, int max) {
+        int n = a.length;
+        int m = b.length;
+        int over = max + 1;
+        if (Math.abs(n - m) > max) {
+            return over;
+        }
+        int[] previous = new int[m + 1];
+        int[] current = new int[m + 1];
+        for (int j = 0; j <= m; j++) {
+            previous[j] = Math.min(j, over);
+        }
+        for (int i = 1; i <= n; i++) {
+            int from = Math.max(1, i - max);
+            int to = Math.min(m, i + max);
+            current[from - 1] = from == 1 ? Math.min(i, over) : over;
+            int rowMin = current[from - 1];
+            for (int j = from; j <= to; j++) {
+                int cost = a[i - 1] == b[j - 1] ? 0 : 1;
+                int value = Math.min(previous[j - 1] + cost, Math.min(previous[j], current[j - 1]) + 1);
+                current[j] = Math.min(value, over);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (to < m) {
+                current[to + 1] = over;
+            }
+            if (rowMin > max) {
+                return over;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[m];
+    }
+
+    // ---------------------------------------------------------------- structures
+
+    /**
+     * Traduction retrouvée et sa ressemblance (0..1] avec le texte indexé.
+     */
+    public static final class Match {
+        private final String translation;
+        private final double score;
+
+        Match(String translation, double score) {
+            this.translation = translation;
+            this.score = score;
+        }
+
+        public String getTranslation() {
+            return translation;
+        }
+
+        public double getScore() {
+            return score;
+        }
+    }
+
+    private static final class Entry {
+        final char[] template;
+        final String[] numbers;
+        // Modifiée sous le verrou d'écriture
+        String translation;
+
+        Entry(char[] template, String[] numbers, String translation) {
+            this.template = template;
+            this.numbers = numbers;
+            this.translation = translation;
+        }
+    }
+
+    private static final class Shard {
+        final Map<String, Integer> byText = new HashMap<>();
+        // Dernier texte indexé pour chaque gabarit
+        final Map<String, Integer> byTemplate = new HashMap<>();
+        final GramTable postings = new GramTable();
+        Entry[] entries = new Entry[64];
+        int size;
+
+        int add(Entry entry) {
+            if (size == entries.length) {
+                entries = Arrays.copyOf(entries, size * 2);
+            }
+            entries[size] = entry;
+            return size++;
+        }
+    }
+
+    // Trigramme -> liste d'identifiants, adressage ouvert sans objets Long (jamais de trigramme 0 : EDGE != 0)
+    private static final class GramTable {
+        long[] keys = new long[1024];
+        Postings[] values = new Postings[1024];
+        int size;
+
+        Postings get(long gram) {
+            int mask = keys.length - 1;
+            for (int slot = mix(gram) & mask; keys[slot] != 0; slot = (slot + 1) & mask) {
+                if (keys[slot] == gram) {
+                    return values[slot];
+                }
+            }
+            return null;
+        }
+
+        Postings getOrCreate(long gram) {
+            int mask = keys.length - 1;
+            int slot = mix(gram) & mask;
+            for (; keys[slot] != 0; slot = (slot + 1) & mask) {
+                if (keys[slot] == gram) {
+                    return values[slot];
+                }
+            }
+            Postings postings = new Postings();
+            keys[slot] = gram;
+            values[slot] = postings;
+            if (++size > keys.length / 2) {
+                grow();
+            }
+            return postings;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            Postings[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new Postings[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    int slot = mix(oldKeys[i]) & mask;
+                    while (keys[slot] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+
+        private static int mix(long gram) {
+            long h = gram * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+
+    private static final class Postings {
+        int[] ids = new int[2];
+        int size;
+
+        void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+    }
+
+    // Compteurs par thread, remis à zéro après chaque recherche
+    private static final class Scratch {
+        int[] counts = new int[0];
+        int[] touched = new int[0];
+
+        void ensure(int entries) {
+            if (counts.length < entries) {
+                int capacity = Math.max(entries, counts.length * 2);
+                counts = new int[capacity];
+                touched = new int[capacity];
+            }
+        }
+    }
+}
@@ -0,0 +1,718 @@
+package ma.project.jakarta.memory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+import ma.project.jakarta.cache.CacheKey;
+import ma.project.jakarta.config.TranslatorConfig;
+import org.json.JSONObject;
+
+/**
+ * Mémoire de traduction persistante : survit aux redéploiements WildFly.
+ *
+ * Deux fichiers par génération dans le répertoire de données :
+ * <ul>
+ *   <li>tm-&lt;gen&gt;.log : journal append-only d'enregistrements
+ *       [longueur][crc32][longueur clé][clé][traduction] ;</li>
+ *   <li>tm-&lt;gen&gt;.&lt;capacité&gt;.idx : table de hachage à adressage
+ *       ouvert (hash 64 bits, offset dans le journal).</li>
+ * </ul>
+ * Les deux sont mappés en mémoire : une recherche est un sondage dans l'index
+ * puis une lecture directe dans le journal, sans appel système.
+ *
+ * Au démarrage le journal est relu jusqu'au premier enregistrement invalide
+ * (CRC) et l'index est reconstruit s'il n'a pas été fermé proprement.
+ * Le compactage réécrit les seuls enregistrements vivants dans une nouvelle
+ * génération, ce qui évite de renommer un fichier encore mappé.
+ */
+public class TranslationMemory implements Closeable {
+
+    private static final int LOG_MAGIC = 0x44544D4C;   // "DTML"
+    private static final int INDEX_MAGIC = 0x44544D49; // "DTMI"
+    private static final int VERSION = 1;
+
+    // En-tête journal : magic, version, complet
+    private static final int LOG_HEADER = 16;
+    private static final int LOG_COMPLETE = 8;
+    private static final int RECORD_HEADER = 8;
+    private static final long LOG_CHUNK = 16L << 20;
+
+    // En-tête index : magic, version, capacité, nombre, fin couverte, octets vivants, propre
+    private static final int INDEX_HEADER = 64;
+    private static final int IDX_CAPACITY = 8;
+    private static final int IDX_COUNT = 16;
+    private static final int IDX_COVERED = 24;
+    private static final int IDX_LIVE = 32;
+    private static final int IDX_CLEAN = 40;
+    private static final int SLOT = 16;
+    private static final int MIN_CAPACITY = 1024;
+
+    private static final Pattern LOG_FILE = Pattern.compile("tm-(\\d+)\\.log");
+    private static final Pattern INDEX_FILE = Pattern.compile("tm-(\\d+)\\.(\\d+)\\.idx");
+
+    private static final Logger LOG = Logger.getLogger(TranslationMemory.class.getName());
+
+    private static volatile TranslationMemory shared;
+
+    private final Path dir;
+    private final long compactionThreshold;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private long generation;
+    private FileChannel logChannel;
+    private MappedByteBuffer log;
+    private int logEnd;
+
+    private FileChannel indexChannel;
+    private MappedByteBuffer index;
+    private long capacity;
+    private long count;
+    private long liveBytes;
+    private boolean closed;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder compactions = new LongAdder();
+
+    private TranslationMemory(Path dir, long compactionThreshold) {
+        this.dir = dir;
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    /**
+     * Ouvre (ou crée) la mémoire dans le répertoire donné, avec récupération
+     * après arrêt brutal.
+     */
+    public static TranslationMemory open(Path dir, long compactionThreshold) throws IOException {
+        Files.createDirectories(dir);
+        TranslationMemory memory = new TranslationMemory(dir, compactionThreshold);
+        memory.load();
+        return memory;
+    }
+
+    public static TranslationMemory fromConfig() throws IOException {
+        return open(Paths.get(TranslatorConfig.getString("translator.memory.dir", defaultDirectory())),
+                TranslatorConfig.getLong("translator.memory.compaction-threshold-bytes", 8L << 20));
+    }
+
+    public static TranslationMemory shared() {
+        TranslationMemory memory = shared;
+        if (memory == null) {
+            synchronized (TranslationMemory.class) {
+                memory = shared;
+                if (memory == null) {
+                    try {
+                        memory = fromConfig();
+                    } catch (IOException e) {
+                        throw new IllegalStateException("Mémoire de traduction inaccessible", e);
+                    }
+                    shared = memory;
+                }
+            }
+        }
+        return memory;
+    }
+
+    public static synchronized void closeShared() {
+        if (shared != null) {
+            shared.close();
+            shared = null;
+        }
+    }
+
+    // Répertoire de données WildFly si disponible, sinon le home de l'utilisateur
+    private static String defaultDirectory() {
+        String jbossData = System.getProperty("jboss.server.data.dir");
+        if (jbossData != null) {
+            return Paths.get(jbossData, "darija-translator", "memory").toString();
+        }
+        return Paths.get(System.getProperty("user.home"), ".darija-translator", "memory").toString();
+    }
+
+    public String get(CacheKey key) {
+        byte[] keyBytes = keyBytes(key);
+        long hash = hash64(keyBytes);
+        lock.readLock().lock();
+        try {
+            if (closed) {
+                return null;
+            }
+            int offset = find(hash, keyBytes);
+            if (offset < 0) {
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            int payloadLength = log.getInt(offset);
+            int keyLength = log.getInt(offset + RECORD_HEADER);
+            int valueStart = offset + RECORD_HEADER + 4 + keyLength;
+            int valueLength = payloadLength - 4 - keyLength;
+            return StandardCharsets.UTF_8.decode(log.slice(valueStart, valueLength)).toString();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void put(CacheKey key, String translation) {
+        byte[] keyBytes = keyBytes(key);
+        byte[] valueBytes = translation.getBytes(StandardCharsets.UTF_8);
+        long hash = hash64(keyBytes);
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            int existing = find(hash, keyBytes);
+            if (existing >= 0 && valueEquals(existing, valueBytes)) {
+                return;
+            }
+            int offset = append(keyBytes, valueBytes);
+            insert(index, capacity, hash, offset, keyBytes);
+            index.putLong(IDX_COVERED, logEnd);
+            writes.increment();
+            if (count > capacity * 7 / 10) {
+                resize(capacity * 2);
+            }
+            if (logEnd > compactionThreshold && liveBytes < (logEnd - LOG_HEADER) / 2) {
+                compact();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Écriture impossible dans la mémoire de traduction", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Parcourt les entrées vivantes, dans l'ordre de l'index : sert à
+     * construire un index secondaire (mémoire approchée) au démarrage.
+     */
+    public void forEach(BiConsumer<CacheKey, String> action) {
+        lock.readLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            for (long slot = 0; slot < capacity; slot++) {
+                int slotPosition = slotPosition(slot);
+                if (index.getLong(slotPosition) == 0) {
+                    continue;
+                }
+                int offset = (int) index.getLong(slotPosition + 8);
+                int keyLength = log.getInt(offset + RECORD_HEADER);
+                int keyStart = offset + RECORD_HEADER + 4;
+                int valueLength = log.getInt(offset) - 4 - keyLength;
+                String key = StandardCharsets.UTF_8.decode(log.slice(keyStart, keyLength)).toString();
+                // direction \u0001 modèle \u0001 texte, voir keyBytes
+                int first = key.indexOf('\u0001');
+                int second = key.indexOf('\u0001', first + 1);
+                if (first < 0 || second < 0) {
+                    continue;
+                }
+                String value = StandardCharsets.UTF_8.decode(log.slice(keyStart + keyLength, valueLength)).toString();
+                action.accept(CacheKey.of(key.substring(second + 1), key.substring(0, first),
+                        key.substring(first + 1, second)), value);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Réécrit les enregistrements vivants dans une nouvelle génération.
+     */
+    public void compact() throws IOException {
+        lock.writeLock().lock();
+        try {
+            long nextGeneration = generation + 1;
+            Path nextLogPath = logPath(nextGeneration);
+            Files.deleteIfExists(nextLogPath);
+            long newCapacity = capacityFor(count);
+            try (FileChannel out = FileChannel.open(nextLogPath, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer newLog = out.map(FileChannel.MapMode.READ_WRITE, 0,
+                        roundToChunk(LOG_HEADER + liveBytes));
+                writeLogHeader(newLog, false);
+                int position = LOG_HEADER;
+                for (long slot = 0; slot < capacity; slot++) {
+                    int slotPosition = slotPosition(slot);
+                    if (index.getLong(slotPosition) == 0) {
+                        continue;
+                    }
+                    int offset = (int) index.getLong(slotPosition + 8);
+                    int length = RECORD_HEADER + log.getInt(offset);
+                    newLog.put(position, log, offset, length);
+                    position += length;
+                }
+                newLog.force();
+                newLog.putInt(LOG_COMPLETE, 1);
+                newLog.force();
+            }
+            closeChannels(false);
+            Path previousLog = logPath(generation);
+            long previousGeneration = generation;
+            openGeneration(nextGeneration, newCapacity);
+            compactions.increment();
+            deleteQuietly(previousLog);
+            deleteIndexes(previousGeneration, -1);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public JSONObject stats() {
+        lock.readLock().lock();
+        try {
+            return new JSONObject()
+                    .put("directory", dir.toString())
+                    .put("generation", generation)
+                    .put("entries", count)
+                    .put("logBytes", logEnd)
+                    .put("liveBytes", liveBytes)
+                    .put("hits", hits.sum())
+                    .put("misses", misses.sum())
+                    .put("writes", writes.sum())
+                    .put("compactions", compactions.sum());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long size() {
+        lock.readLock().lock();
+        try {
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (!closed) {
+                closeChannels(true);
+                closed = true;
+            }
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Fermeture de la mémoire de traduction incomplète : " + dir, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ---------------------------------------------------------------- ouverture
+
+    private void load() throws IOException {
+        long latest = -1;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "tm-*.log")) {
+            for (Path file : files) {
+                Matcher m = LOG_FILE.matcher(file.getFileName().toString());
+                if (m.matches() && isCompleteLog(file)) {
+                    latest = Math.max(latest, Long.parseLong(m.group(1)));
+                }
+            }
+        }
+        openGeneration(Math.max(0, latest), -1);
+        cleanupOtherGenerations();
+    }
+
+    private void openGeneration(long gen, long preferredCapacity) throws IOException {
+        generation = gen;
+        Path logPath = logPath(gen);
+        boolean created = !Files.exists(logPath);
+        logChannel = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        log = logChannel.map(FileChannel.MapMode.READ_WRITE, 0, roundToChunk(logChannel.size()));
+        if (created) {
+            writeLogHeader(log, true);
+        } else if (log.getInt(0) != LOG_MAGIC || log.getInt(4) != VERSION) {
+            throw new IOException("Format de journal inconnu : " + logPath);
+        }
+        recoverLog();
+
+        Path indexPath = preferredCapacity > 0 ? null : findIndex(gen);
+        if (indexPath != null && openIndex(indexPath)) {
+            replay(index.getLong(IDX_COVERED));
+        } else {
+            rebuildIndex(preferredCapacity > 0 ? preferredCapacity : capacityFor(countRecords()));
+        }
+        index.putInt(IDX_CLEAN, 0);
+        index.force();
+        closed = false;
+    }
+
+    // Relit le journal jusqu'au premier enregistrement tronqué ou corrompu
+    private void recoverLog() {
+        int position = LOG_HEADER;
+        int limit = log.capacity();
+        CRC32 crc = new CRC32();
+        while (position + RECORD_HEADER <= limit) {
+            int length = log.getInt(position);
+            if (length <= 4 || position + RECORD_HEADER + length > limit) {
+                break;
+            }
+            crc.reset();
+            crc.update(log.slice(position + RECORD_HEADER, length));
+            if ((int) crc.getValue() != log.getInt(position + 4)) {
+                break;
+            }
+            position += RECORD_HEADER + length;
+        }
+        logEnd = position;
+        // Efface une éventuelle écriture partielle pour que la suite du journal reste lisible
+        for (int i = position; i < limit && i < position + RECORD_HEADER; i++) {
+            if (log.get(i) != 0) {
+                for (int j = position; j < limit; j++) {
+                    log.put(j, (byte) 0);
+                }
+                break;
+            }
+        }
+    }
+
+    private boolean openIndex(Path indexPath) throws IOException {
+        FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        boolean valid = buffer.capacity() >= INDEX_HEADER
+                && buffer.getInt(0) == INDEX_MAGIC
+                && buffer.getInt(4) == VERSION
+                && buffer.getInt(IDX_CLEAN) == 1
+                && buffer.getLong(IDX_COVERED) <= logEnd
+                && buffer.capacity() == INDEX_HEADER + buffer.getLong(IDX_CAPACITY) * SLOT;
+        if (!valid) {
+            channel.close();
+            return false;
+        }
+        indexChannel = channel;
+        index = buffer;
+        capacity = buffer.getLong(IDX_CAPACITY);
+        count = buffer.getLong(IDX_COUNT);
+        liveBytes = buffer.getLong(IDX_LIVE);
+        return true;
+    }
+
+    private void rebuildIndex(long newCapacity) throws IOException {
+        createIndex(newCapacity);
+        replay(LOG_HEADER);
+    }
+
+    private void resize(long newCapacity) throws IOException {
+        MappedByteBuffer oldIndex = index;
+        FileChannel oldChannel = indexChannel;
+        long oldCapacity = capacity;
+        Path oldPath = indexPath(generation, oldCapacity);
+        long oldCount = count;
+        long oldLive = liveBytes;
+
+        createIndex(newCapacity);
+        for (long slot = 0; slot < oldCapacity; slot++) {
+            int slotPosition = slotPosition(slot);
+            long hash = oldIndex.getLong(slotPosition);
+            if (hash != 0) {
+                placeNew(index, newCapacity, hash, oldIndex.getLong(slotPosition + 8));
+            }
+        }
+        count = oldCount;
+        liveBytes = oldLive;
+        writeIndexHeader();
+        index.putLong(IDX_COVERED, logEnd);
+        oldChannel.close();
+        deleteQuietly(oldPath);
+    }
+
+    private void createIndex(long newCapacity) throws IOException {
+        Path indexPath = indexPath(generation, newCapacity);
+        Files.deleteIfExists(indexPath);
+        indexChannel = FileChannel.open(indexPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        if (INDEX_HEADER + newCapacity * SLOT > Integer.MAX_VALUE) {
+            throw new IOException("Index trop grand : " + newCapacity + " cases");
+        }
+        index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, INDEX_HEADER + newCapacity * SLOT);
+        capacity = newCapacity;
+        count = 0;
+        liveBytes = 0;
+        index.putInt(0, INDEX_MAGIC);
+        index.putInt(4, VERSION);
+        writeIndexHeader();
+    }
+
+    // Réindexe les enregistrements du journal à partir d'une position
+    private void replay(long from) throws IOException {
+        int position = (int) Math.max(LOG_HEADER, from);
+        while (position < logEnd) {
+            int length = log.getInt(position);
+            int keyLength = log.getInt(position + RECORD_HEADER);
+            byte[] keyBytes = new byte[keyLength];
+            log.get(position + RECORD_HEADER + 4, keyBytes);
+            insert(index, capacity, hash64(keyBytes), position, keyBytes);
+            if (count > capacity * 7 / 10) {
+                resize(capacity * 2);
+            }
+            position += RECORD_HEADER + length;
+        }
+        index.putLong(IDX_COVERED, logEnd);
+    }
+
+    private int countRecords() {
+        int records = 0;
+        int position = LOG_HEADER;
+        while (position < logEnd) {
+            records++;
+            position += RECORD_HEADER + log.getInt(position);
+        }
+        return records;
+    }
+
+    // ---------------------------------------------------------------- journal
+
+    private int append(byte[] keyBytes, byte[] valueBytes) throws IOException {
+        int payloadLength = 4 + keyBytes.length + valueBytes.length;
+        long needed = (long) logEnd + RECORD_HEADER + payloadLength;
+        if (needed > Integer.MAX_VALUE) {
+            throw new IOException("Journal plein, compactage nécessaire");
+        }
+        if (needed > log.capacity()) {
+            log = logChannel.map(FileChannel.MapMode.READ_WRITE, 0, roundToChunk(needed));
+        }
+        int offset = logEnd;
+        int payload = offset + RECORD_HEADER;
+        log.putInt(payload, keyBytes.length);
+        log.put(payload + 4, keyBytes);
+        log.put(payload + 4 + keyBytes.length, valueBytes);
+        CRC32 crc = new CRC32();
+        crc.update(log.slice(payload, payloadLength));
+        log.putInt(offset + 4, (int) crc.getValue());
+        log.putInt(offset, payloadLength);
+        logEnd = offset + RECORD_HEADER + payloadLength;
+        return offset;
+    }
+
+    private static void writeLogHeader(MappedByteBuffer buffer, boolean complete) {
+        buffer.putInt(0, LOG_MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(LOG_COMPLETE, complete ? 1 : 0);
+    }
+
+    private static boolean isCompleteLog(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < LOG_HEADER) {
+                return false;
+            }
+            ByteBuffer header = ByteBuffer.allocate(LOG_HEADER);
+            channel.read(header, 0);
+            return header.getInt(0) == LOG_MAGIC && header.getInt(LOG_COMPLETE) == 1;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // ---------------------------------------------------------------- index
+
+    private int find(long hash, byte[] keyBytes) {
+        long mask = capacity - 1;
+        long slot = hash & mask;
+        while (true) {
+            int slotPosition = slotPosition(slot);
+            long slotHash = index.getLong(slotPosition);
+            if (slotHash == 0) {
+                return -1;
+            }
+            if (slotHash == hash) {
+                int offset = (int) index.getLong(slotPosition + 8);
+                if (keyEquals(offset, keyBytes)) {
+                    return offset;
+                }
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private void insert(MappedByteBuffer target, long targetCapacity, long hash, int offset, byte[] keyBytes) {
+        long mask = targetCapacity - 1;
+        long slot = hash & mask;
+        int recordBytes = RECORD_HEADER + log.getInt(offset);
+        while (true) {
+            int slotPosition = slotPosition(slot);
+            long slotHash = target.getLong(slotPosition);
+            if (slotHash == 0) {
+                target.putLong(slotPosition + 8, offset);
+                target.putLong(slotPosition, hash);
+                count++;
+                liveBytes += recordBytes;
+                break;
+            }
+            if (slotHash == hash) {
+                int existing = (int) target.getLong(slotPosition + 8);
+                if (keyEquals(existing, keyBytes)) {
+                    liveBytes += recordBytes - (RECORD_HEADER + log.getInt(existing));
+                    target.putLong(slotPosition + 8, offset);
+                    break;
+                }
+            }
+            slot = (slot + 1) & mask;
+        }
+        writeIndexHeader();
+    }
+
+    private static void placeNew(MappedByteBuffer target, long targetCapacity, long hash, long offset) {
+        long mask = targetCapacity - 1;
+        long slot = hash & mask;
+        while (target.getLong(slotPosition(slot)) != 0) {
+            slot = (slot + 1) & mask;
+        }
+        target.putLong(slotPosition(slot) + 8, offset);
+        target.putLong(slotPosition(slot), hash);
+    }
+
+    private boolean keyEquals(int offset, byte[] keyBytes) {
+        int keyLength = log.getInt(offset + RECORD_HEADER);
+        if (keyLength != keyBytes.length) {
+            return false;
+        }
+        int start = offset + RECORD_HEADER + 4;
+        for (int i = 0; i < keyLength; i++) {
+            if (log.get(start + i) != keyBytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean valueEquals(int offset, byte[] valueBytes) {
+        int keyLength = log.getInt(offset + RECORD_HEADER);
+        int valueLength = log.getInt(offset) - 4 - keyLength;
+        return valueLength == valueBytes.length
+                && log.slice(offset + RECORD_HEADER + 4 + keyLength, valueLength).equals(ByteBuffer.wrap(valueBytes));
+    }
+
+    private void writeIndexHeader() {
+        index.putLong(IDX_CAPACITY, capacity);
+        index.putLong(IDX_COUNT, count);
+        index.putLong(IDX_LIVE, liveBytes);
+    }
+
+    // ---------------------------------------------------------------- fichiers
+
+    private void closeChannels(boolean markClean) throws IOException {
+        log.force();
+        index.putLong(IDX_COVERED, logEnd);
+        writeIndexHeader();
+        index.putInt(IDX_CLEAN, markClean ? 1 : 0);
+        index.force();
+        logChannel.close();
+        indexChannel.close();
+    }
+
+    private Path findIndex(long gen) throws IOException {
+        Path best = null;
+        long bestCapacity = -1;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "tm-" + gen + ".*.idx")) {
+            for (Path file : files) {
+                Matcher m = INDEX_FILE.matcher(file.getFileName().toString());
+                if (m.matches() && Long.parseLong(m.group(2)) > bestCapacity) {
+                    bestCapacity = Long.parseLong(m.group(2));
+                    best = file;
+                }
+            }
+        }
+        return best;
+    }
+
+    // Supprime les fichiers des anciennes générations et les index obsolètes
+    private void cleanupOtherGenerations() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "tm-*")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                Matcher logMatch = LOG_FILE.matcher(name);
+                Matcher indexMatch = INDEX_FILE.matcher(name);
+                if (logMatch.matches() && Long.parseLong(logMatch.group(1)) != generation) {
+                    deleteQuietly(file);
+                } else if (indexMatch.matches() && (Long.parseLong(indexMatch.group(1)) != generation
+                        || Long.parseLong(indexMatch.group(2)) != capacity)) {
+                    deleteQuietly(file);
+                }
+            }
+        }
+    }
+
+    private void deleteIndexes(long gen, long keepCapacity) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "tm-" + gen + ".*.idx")) {
+            for (Path file : files) {
+                Matcher m = INDEX_FILE.matcher(file.getFileName().toString());
+                if (m.matches() && Long.parseLong(m.group(2)) != keepCapacity) {
+                    deleteQuietly(file);
+                }
+            }
+        }
+    }
+
+    // Sous Windows un fichier encore mappé ne peut pas être supprimé : on réessaiera au prochain démarrage
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // ignoré
+        }
+    }
+
+    private static int slotPosition(long slot) {
+        return (int) (INDEX_HEADER + slot * SLOT);
+    }
+
+    private Path logPath(long gen) {
+        return dir.resolve("tm-" + gen + ".log");
+    }
+
+    private Path indexPath(long gen, long cap) {
+        return dir.resolve("tm-" + gen + "." + cap + ".idx");
+    }
+
+    private static long capacityFor(long entries) {
+        long needed = Math.max(MIN_CAPACITY, entries * 2);
+        return Long.highestOneBit(needed - 1) << 1;
+    }
+
+    private static long roundToChunk(long size) {
+        long rounded = Math.max(LOG_CHUNK, ((size + LOG_CHUNK - 1) / LOG_CHUNK) * LOG_CHUNK);
+        return Math.min(rounded, Integer.MAX_VALUE);
+    }
+
+    private static byte[] keyBytes(CacheKey key) {
+        return (key.getDirection() + '\u0001' + key.getModel() + '\u0001' + key.getText())
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    // FNV-1a 64 bits suivi d'un mélange final ; 0 est réservé aux cases vides
+    private static long hash64(byte[] bytes) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : bytes) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h == 0 ? 1 : h;
+    }
+}
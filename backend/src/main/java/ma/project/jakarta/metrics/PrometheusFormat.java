@@ -0,0 +1,144 @@
+package ma.project.jakarta.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.json.JSONObject;
+
+/**
+ * Export au format texte Prometheus 0.0.4.
+ *
+ * Les histogrammes sont exportés en "summary" (percentiles 50/90/99/99.9,
+ * somme et nombre, cumulés depuis le démarrage), les durées en secondes.
+ * Les statistiques JSON de /stats sont ajoutées en jauges
+ * translator_stats_* (ratios du cache, regroupement, admission...).
+ */
+public final class PrometheusFormat {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private PrometheusFormat() {
+    }
+
+    public static String format(TranslatorMetrics metrics, JSONObject stats) {
+        StringBuilder out = new StringBuilder(16_384);
+        Map<String, TranslatorMetrics.Endpoint> endpoints = new TreeMap<>(metrics.endpoints());
+
+        header(out, "translator_request_duration_seconds", "summary", "Durée de bout en bout des requêtes");
+        for (TranslatorMetrics.Endpoint endpoint : endpoints.values()) {
+            summary(out, "translator_request_duration_seconds", endpoint(endpoint), endpoint.latency(),
+                    NANOS_PER_SECOND);
+        }
+        header(out, "translator_request_size_bytes", "summary", "Taille des corps de requête");
+        for (TranslatorMetrics.Endpoint endpoint : endpoints.values()) {
+            summary(out, "translator_request_size_bytes", endpoint(endpoint), endpoint.requestBytes(), 1);
+        }
+        header(out, "translator_response_size_bytes", "summary", "Taille des corps de réponse");
+        for (TranslatorMetrics.Endpoint endpoint : endpoints.values()) {
+            summary(out, "translator_response_size_bytes", endpoint(endpoint), endpoint.responseBytes(), 1);
+        }
+        header(out, "translator_responses_total", "counter", "Réponses par statut HTTP");
+        for (TranslatorMetrics.Endpoint endpoint : endpoints.values()) {
+            statuses(out, "translator_responses_total", endpoint(endpoint) + ",", endpoint.statuses());
+        }
+        header(out, "translator_requests_in_flight", "gauge", "Requêtes en cours");
+        for (TranslatorMetrics.Endpoint endpoint : endpoints.values()) {
+            sample(out, "translator_requests_in_flight", endpoint(endpoint), endpoint.inFlight());
+        }
+
+        header(out, "translator_upstream_duration_seconds", "summary", "Durée des appels Gemini");
+        summary(out, "translator_upstream_duration_seconds", "", metrics.upstreamLatency(), NANOS_PER_SECOND);
+        header(out, "translator_upstream_responses_total", "counter",
+                "Réponses Gemini par statut (0 : pas de réponse)");
+        statuses(out, "translator_upstream_responses_total", "", metrics.upstreamStatuses());
+
+        header(out, "translator_json_parse_seconds", "summary", "Durée d'analyse JSON");
+        summary(out, "translator_json_parse_seconds", "phase=\"request\"", metrics.requestParse(), NANOS_PER_SECOND);
+        summary(out, "translator_json_parse_seconds", "phase=\"response\"", metrics.responseParse(),
+                NANOS_PER_SECOND);
+
+        if (stats != null) {
+            gauges(out, "translator_stats", stats);
+        }
+        return out.toString();
+    }
+
+    private static String endpoint(TranslatorMetrics.Endpoint endpoint) {
+        return "endpoint=\"" + endpoint.name() + "\"";
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void summary(StringBuilder out, String name, String labels, Histogram histogram, double scale) {
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        String separator = labels.isEmpty() ? "" : ",";
+        for (double quantile : QUANTILES) {
+            out.append(name).append("{").append(labels).append(separator)
+                    .append("quantile=\"").append(quantile).append("\"} ")
+                    .append(snapshot.valueAt(quantile) / scale).append('\n');
+        }
+        sample(out, name + "_sum", labels, snapshot.sum() / scale);
+        sample(out, name + "_count", labels, snapshot.count());
+    }
+
+    private static void statuses(StringBuilder out, String name, String labelPrefix, AtomicLongArray statuses) {
+        for (int status = 0; status < statuses.length(); status++) {
+            long count = statuses.get(status);
+            if (count > 0) {
+                out.append(name).append("{").append(labelPrefix)
+                        .append("status=\"").append(status).append("\"} ").append(count).append('\n');
+            }
+        }
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, double value) {
+        out.append(name);
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ');
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+        out.append('\n');
+    }
+
+    // Valeurs numériques du JSON, nommées par leur chemin : upstream.admission.inFlight -> ..._upstream_admission_in_flight
+    private static void gauges(StringBuilder out, String prefix, JSONObject json) {
+        for (String key : new TreeSet<>(json.keySet())) {
+            Object value = json.get(key);
+            String name = prefix + "_" + snakeCase(key);
+            if (value instanceof JSONObject) {
+                gauges(out, name, (JSONObject) value);
+            } else if (value instanceof Number) {
+                out.append("# TYPE ").append(name).append(" gauge\n");
+                sample(out, name, "", ((Number) value).doubleValue());
+            }
+        }
+    }
+
+    static String snakeCase(String key) {
+        StringBuilder name = new StringBuilder(key.length() + 4);
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (Character.isUpperCase(c)) {
+                name.append('_').append(Character.toLowerCase(c));
+            } else if (Character.isLetterOrDigit(c) && c < 0x80) {
+                name.append(c);
+            } else {
+                name.append('_');
+            }
+        }
+        return name.toString();
+    }
+}
@@ -0,0 +1,160 @@
+package ma.project.jakarta.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Mesures du chemin de traduction, exportées par /metrics au format
+ * Prometheus (voir {@link PrometheusFormat}).
+ *
+ * Tout est enregistré sans verrou ni allocation (incréments atomiques dans
+ * des tableaux fixes) : une mesure coûte quelques dizaines de nanosecondes,
+ * négligeable devant un appel Gemini. Les durées sont en nanosecondes.
+ */
+public final class TranslatorMetrics {
+
+    private static final TranslatorMetrics SHARED = new TranslatorMetrics();
+
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+    private final Histogram upstreamLatency = new Histogram();
+    private final AtomicLongArray upstreamStatuses = new AtomicLongArray(Endpoint.STATUSES);
+    private final Histogram requestParse = new Histogram();
+    private final Histogram responseParse = new Histogram();
+
+    public static TranslatorMetrics shared() {
+        return SHARED;
+    }
+
+    /**
+     * Mesures d'un point d'entrée (translate, batch, document, stream).
+     */
+    public Endpoint endpoint(String name) {
+        Endpoint endpoint = endpoints.get(name);
+        return endpoint != null ? endpoint : endpoints.computeIfAbsent(name, Endpoint::new);
+    }
+
+    /**
+     * Appel Gemini terminé ; status -1 si aucune réponse (timeout, réseau).
+     */
+    public void upstreamCall(long latencyNanos, int status) {
+        upstreamLatency.record(latencyNanos);
+        upstreamStatuses.incrementAndGet(Endpoint.statusIndex(status));
+    }
+
+    public void requestParsed(long nanos) {
+        requestParse.record(nanos);
+    }
+
+    public void responseParsed(long nanos) {
+        responseParse.record(nanos);
+    }
+
+    Map<String, Endpoint> endpoints() {
+        return endpoints;
+    }
+
+    Histogram upstreamLatency() {
+        return upstreamLatency;
+    }
+
+    AtomicLongArray upstreamStatuses() {
+        return upstreamStatuses;
+    }
+
+    Histogram requestParse() {
+        return requestParse;
+    }
+
+    Histogram responseParse() {
+        return responseParse;
+    }
+
+    public static final class Endpoint {
+
+        // Statuts HTTP 0..599 ; l'indice 0 compte les appels sans réponse
+        static final int STATUSES = 600;
+
+        private final String name;
+        private final Histogram latency = new Histogram();
+        private final Histogram requestBytes = new Histogram();
+        private final Histogram responseBytes = new Histogram();
+        private final AtomicLongArray statuses = new AtomicLongArray(STATUSES);
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        private Endpoint(String name) {
+            this.name = name;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        /**
+         * Début d'une requête ; retourne l'instant à passer à {@link #finished}.
+         */
+        public long started(int requestBytes) {
+            inFlight.incrementAndGet();
+            this.requestBytes.record(requestBytes);
+            return System.nanoTime();
+        }
+
+        public void finished(long startNanos, int status, int responseBytes) {
+            latency.record(System.nanoTime() - startNanos);
+            this.responseBytes.record(responseBytes);
+            statuses.incrementAndGet(statusIndex(status));
+            inFlight.decrementAndGet();
+        }
+
+        static int statusIndex(int status) {
+            return status > 0 && status < STATUSES ? status : 0;
+        }
+
+        Histogram latency() {
+            return latency;
+        }
+
+        Histogram requestBytes() {
+            return requestBytes;
+        }
+
+        Histogram responseBytes() {
+            return responseBytes;
+        }
+
+        AtomicLongArray statuses() {
+            return statuses;
+        }
+
+        int inFlight() {
+            return inFlight.get();
+        }
+    }
+
+    /**
+     * Taille UTF-8 d'une chaîne, sans l'encoder.
+     */
+    public static int utf8Length(String text) {
+        if (text == null) {
+            return 0;
+        }
+        int length = text.length();
+        int bytes = length;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= 0x80) {
+                if (c < 0x800) {
+                    bytes++;
+                } else if (Character.isHighSurrogate(c)) {
+                    // Paire de substitution : 4 octets pour 2 caractères
+                    bytes += 2;
+                    i++;
+                } else {
+                    bytes += 2;
+                }
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,176 @@
+package ma.project.jakarta.service;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import ma.project.jakarta.config.TranslatorConfig;
+import ma.project.jakarta.upstream.CircuitOpenException;
+import ma.project.jakarta.upstream.Deadline;
+import ma.project.jakarta.upstream.UpstreamException;
+import org.json.JSONObject;
+
+/**
+ * Traduction d'un long document : découpage en phrases/paragraphes,
+ * traduction des morceaux en parallèle (au plus maxParallel appels en cours
+ * par document), puis recomposition dans l'ordre d'origine.
+ *
+ * Chaque morceau passe par la chaîne habituelle (cache, mémoire, regroupement)
+ * : un paragraphe déjà traduit ne coûte pas d'appel Gemini. Seuls les
+ * morceaux en échec sont relancés ; s'ils échouent encore, le texte source
+ * reste à sa place et la réponse porte une erreur au lieu d'échouer en bloc.
+ */
+final class DocumentTranslator {
+
+    /**
+     * Traduction d'un morceau dans la direction du document.
+     */
+    interface ChunkTranslator {
+        CompletableFuture<Translation> translate(String text, String direction, Deadline deadline);
+    }
+
+    private final ChunkTranslator translator;
+    private final int chunkChars;
+    private final int maxParallel;
+    private final int retries;
+    private final long retryDelayMs;
+
+    private final LongAdder documents = new LongAdder();
+    private final LongAdder chunks = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder failedChunks = new LongAdder();
+
+    DocumentTranslator(ChunkTranslator translator,
+                       int chunkChars, int maxParallel, int retries, long retryDelayMs) {
+        this.translator = translator;
+        this.chunkChars = Math.max(50, chunkChars);
+        this.maxParallel = Math.max(1, maxParallel);
+        this.retries = Math.max(0, retries);
+        this.retryDelayMs = Math.max(0, retryDelayMs);
+    }
+
+    static DocumentTranslator fromConfig(ChunkTranslator translator) {
+        return new DocumentTranslator(translator,
+                TranslatorConfig.getInt("translator.document.chunk-chars", 800),
+                TranslatorConfig.getInt("translator.document.max-parallel", 16),
+                TranslatorConfig.getInt("translator.document.retries", 2),
+                TranslatorConfig.getLong("translator.document.retry-delay-ms", 500));
+    }
+
+    /**
+     * Les morceaux partagent le budget de la requête : pas de nouvel essai
+     * qui finirait après son expiration.
+     */
+    CompletableFuture<Translation> translate(String document, String direction, Deadline deadline) {
+        documents.increment();
+        List<SentenceSegmenter.Chunk> parts = SentenceSegmenter.chunks(document, chunkChars);
+        chunks.add(parts.size());
+        Translation[] results = new Translation[parts.size()];
+        AtomicReference<Throwable> lastError = new AtomicReference<>();
+
+        // Fenêtre glissante : chaque travailleur prend le morceau suivant à la fin du sien
+        AtomicInteger next = new AtomicInteger();
+        CompletableFuture<?>[] workers = new CompletableFuture<?>[Math.min(maxParallel, Math.max(1, parts.size()))];
+        for (int w = 0; w < workers.length; w++) {
+            workers[w] = work(parts, results, next, direction, deadline, lastError);
+        }
+
+        return CompletableFuture.allOf(workers)
+                .thenApply(done -> assemble(document, parts, results, lastError.get()));
+    }
+
+    private CompletableFuture<Void> work(List<SentenceSegmenter.Chunk> parts, Translation[] results,
+                                         AtomicInteger next, String direction, Deadline deadline,
+                                         AtomicReference<Throwable> lastError) {
+        int index = next.getAndIncrement();
+        if (index >= parts.size()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        String text = parts.get(index).text;
+        CompletableFuture<Translation> chunk = text.isBlank()
+                ? CompletableFuture.completedFuture(new Translation(text, text, "document"))
+                : attempt(text, 0, direction, deadline, lastError);
+        return chunk.thenCompose(translation -> {
+            results[index] = translation;
+            return work(parts, results, next, direction, deadline, lastError);
+        });
+    }
+
+    private CompletableFuture<Translation> attempt(String text, int attempt, String direction, Deadline deadline,
+                                                   AtomicReference<Throwable> lastError) {
+        return translator.translate(text, direction, deadline)
+                .handle((translation, error) -> {
+                    if (error == null) {
+                        return CompletableFuture.completedFuture(translation);
+                    }
+                    Throwable cause = TranslationService.unwrap(error);
+                    long delay = retryDelayMs * (attempt + 1);
+                    if (attempt >= retries || !isRetryable(cause) || deadline.remainingMillis() <= delay) {
+                        failedChunks.increment();
+                        lastError.set(cause);
+                        return CompletableFuture.completedFuture(
+                                Translation.failed(text, String.valueOf(cause.getMessage())));
+                    }
+                    retried.increment();
+                    return CompletableFuture.supplyAsync(() -> text,
+                                    CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS))
+                            .thenCompose(t -> attempt(t, attempt + 1, direction, deadline, lastError));
+                })
+                .thenCompose(future -> future);
+    }
+
+    // Les erreurs client (400, 403...) ne changeront pas au second essai, sauf 429 ;
+    // disjoncteur ouvert : Gemini ne sera pas rappelé avant plusieurs secondes
+    private static boolean isRetryable(Throwable cause) {
+        if (cause instanceof CircuitOpenException) {
+            return false;
+        }
+        if (cause instanceof UpstreamException) {
+            int status = ((UpstreamException) cause).getStatusCode();
+            return status == 429 || status >= 500;
+        }
+        return true;
+    }
+
+    private static Translation assemble(String document, List<SentenceSegmenter.Chunk> parts,
+                                        Translation[] results, Throwable lastError) {
+        StringBuilder translated = new StringBuilder(document.length());
+        int failed = 0;
+        int translatable = 0;
+        for (int i = 0; i < parts.size(); i++) {
+            SentenceSegmenter.Chunk part = parts.get(i);
+            Translation result = results[i];
+            if (!part.text.isBlank()) {
+                translatable++;
+            }
+            if (result.getError() != null) {
+                failed++;
+                translated.append(part.text);
+            } else {
+                translated.append(result.getTranslation().trim());
+            }
+            translated.append(part.separator);
+        }
+        if (failed == 0) {
+            return new Translation(document, translated.toString(), "document");
+        }
+        if (failed == translatable) {
+            // Rien de traduit : même erreur qu'une requête simple (429, 503...)
+            throw new CompletionException(lastError);
+        }
+        return Translation.partial(document, translated.toString(), "document",
+                failed + " segment(s) sur " + translatable + " non traduit(s) : " + lastError.getMessage());
+    }
+
+    JSONObject stats() {
+        return new JSONObject()
+                .put("documents", documents.sum())
+                .put("chunks", chunks.sum())
+                .put("retries", retried.sum())
+                .put("failedChunks", failedChunks.sum());
+    }
+}
@@ -0,0 +1,153 @@
+package ma.project.jakarta.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Découpe un document en morceaux traduisibles séparément.
+ *
+ * Les paragraphes (lignes vides) ne sont jamais fusionnés ; à l'intérieur
+ * d'un paragraphe, les phrases (fin sur . ! ? … ou ponctuation arabe ؟ ؛ ۔)
+ * sont regroupées jusqu'à maxChars. Un simple saut de ligne (texte coupé à
+ * largeur fixe : e-mail, copie de PDF) ne termine ni phrase ni paragraphe. Chaque morceau garde les blancs qui le
+ * suivent pour que le document soit recomposé avec la même mise en page.
+ */
+final class SentenceSegmenter {
+
+    private SentenceSegmenter() {
+    }
+
+    /**
+     * Morceau de texte et séparateur d'origine qui le suit.
+     */
+    static final class Chunk {
+        final String text;
+        final String separator;
+
+        Chunk(String text, String separator) {
+            this.text = text;
+            this.separator = separator;
+        }
+    }
+
+    static List<Chunk> chunks(String document, int maxChars) {
+        List<Chunk> chunks = new ArrayList<>();
+        int length = document.length();
+        int start = skipBlanks(document, 0);
+        String leading = document.substring(0, start);
+        if (!leading.isEmpty()) {
+            chunks.add(new Chunk("", leading));
+        }
+
+        StringBuilder current = new StringBuilder();
+        while (start < length) {
+            int end = sentenceEnd(document, start);
+            int next = skipBlanks(document, end);
+            String sentence = document.substring(start, end);
+            String separator = document.substring(end, next);
+            boolean paragraphEnd = next >= length || isBlankLine(separator);
+
+            if (current.length() > 0 && current.length() + sentence.length() > maxChars) {
+                // Le séparateur précédent est déjà dans current : on le rend au morceau
+                int trimmed = trimEnd(current);
+                chunks.add(new Chunk(current.substring(0, trimmed), current.substring(trimmed)));
+                current.setLength(0);
+            }
+            if (sentence.length() > maxChars) {
+                splitLong(sentence, maxChars, chunks);
+                Chunk last = chunks.remove(chunks.size() - 1);
+                current.append(last.text);
+            } else {
+                current.append(sentence);
+            }
+
+            if (paragraphEnd) {
+                chunks.add(new Chunk(current.toString(), separator));
+                current.setLength(0);
+            } else {
+                current.append(separator);
+            }
+            start = next;
+        }
+        return chunks;
+    }
+
+    // Fin de phrase : ponctuation finale suivie d'un blanc, ou ligne vide
+    private static int sentenceEnd(String text, int from) {
+        int length = text.length();
+        for (int i = from; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '\n' && isBlankLine(text.substring(i, skipBlanks(text, i)))) {
+                return trimEnd(text.subSequence(from, i)) + from;
+            }
+            if (!isTerminator(c)) {
+                continue;
+            }
+            int end = i + 1;
+            while (end < length && (isTerminator(text.charAt(end)) || isClosing(text.charAt(end)))) {
+                end++;
+            }
+            if (end >= length) {
+                return length;
+            }
+            if (!Character.isWhitespace(text.charAt(end))) {
+                continue;
+            }
+            // "e.g. the", "Mr. smith" : un point suivi d'une minuscule ne coupe pas
+            if (c == '.') {
+                int after = skipBlanks(text, end);
+                if (after < length && Character.isLowerCase(text.charAt(after))) {
+                    continue;
+                }
+            }
+            return end;
+        }
+        return length;
+    }
+
+    // Séparateur contenant une ligne vide : au moins deux sauts de ligne
+    private static boolean isBlankLine(String separator) {
+        int first = separator.indexOf('\n');
+        return first >= 0 && separator.indexOf('\n', first + 1) >= 0;
+    }
+
+    private static boolean isTerminator(char c) {
+        return c == '.' || c == '!' || c == '?' || c == '…'
+                || c == '؟' || c == '؛' || c == '۔';
+    }
+
+    private static boolean isClosing(char c) {
+        return c == '"' || c == '\'' || c == ')' || c == ']' || c == '»' || c == '”' || c == '’';
+    }
+
+    // Phrase trop longue : coupe sur un blanc avant la limite
+    private static void splitLong(String sentence, int maxChars, List<Chunk> chunks) {
+        int start = 0;
+        while (sentence.length() - start > maxChars) {
+            int cut = sentence.lastIndexOf(' ', start + maxChars);
+            if (cut <= start) {
+                cut = start + maxChars;
+            }
+            int next = skipBlanks(sentence, cut);
+            chunks.add(new Chunk(sentence.substring(start, cut), sentence.substring(cut, next)));
+            start = next;
+        }
+        chunks.add(new Chunk(sentence.substring(start), ""));
+    }
+
+    private static int skipBlanks(String text, int from) {
+        int i = from;
+        while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int trimEnd(CharSequence text) {
+        int end = text.length();
+        while (end > 0 && Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+}
@@ -0,0 +1,60 @@
+package ma.project.jakarta.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.json.JSONObject;
+
+/**
+ * Regroupe les appels concurrents pour une même clé : le premier appelant
+ * lance l'appel, les suivants reçoivent le même résultat (ou la même erreur).
+ * La table des appels en cours est une ConcurrentHashMap, sans verrou global.
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    public CompletableFuture<V> execute(K key, Supplier<CompletableFuture<V>> call) {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            coalesced.increment();
+            // Copie : l'annulation par un appelant n'affecte pas les autres
+            return existing.copy();
+        }
+        executed.increment();
+        CompletableFuture<V> source;
+        try {
+            source = call.get();
+        } catch (RuntimeException | Error e) {
+            source = CompletableFuture.failedFuture(e);
+        }
+        source.whenComplete((value, error) -> {
+            inFlight.remove(key, mine);
+            if (error != null) {
+                mine.completeExceptionally(TranslationService.unwrap(error));
+            } else {
+                mine.complete(value);
+            }
+        });
+        return mine.copy();
+    }
+
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+
+    public JSONObject stats() {
+        long e = executed.sum();
+        long c = coalesced.sum();
+        return new JSONObject()
+                .put("inFlight", inFlight.size())
+                .put("executed", e)
+                .put("coalesced", c)
+                .put("coalescedRatio", e + c == 0 ? 0.0 : (double) c / (e + c));
+    }
+}
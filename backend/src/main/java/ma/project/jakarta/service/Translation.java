@@ -0,0 +1,132 @@
+package ma.project.jakarta.service;
+
+import java.io.IOException;
+
+import ma.project.jakarta.json.JsonWriter;
+import org.json.JSONObject;
+
+/**
+ * Résultat d'une traduction et sa provenance ("gemini", "cache", "memory", ...).
+ */
+public class Translation {
+
+    private final String original;
+    private final String translation;
+    private final String mode;
+    private final String error;
+    // Ressemblance (0..1] avec le texte dont la traduction a été reprise ; null si correspondance exacte
+    private final Double score;
+
+    public Translation(String original, String translation, String mode) {
+        this(original, translation, mode, null, null);
+    }
+
+    private Translation(String original, String translation, String mode, String error, Double score) {
+        this.original = original;
+        this.translation = translation;
+        this.mode = mode;
+        this.error = error;
+        this.score = score;
+    }
+
+    /**
+     * Traduction reprise d'un texte voisin (mémoire approchée), avec sa ressemblance.
+     */
+    public static Translation approximate(String original, String translation, String mode, double score) {
+        return new Translation(original, translation, mode, null, score);
+    }
+
+    /**
+     * Segment non traduit (utilisé par les traitements par lot).
+     */
+    public static Translation failed(String original, String error) {
+        return new Translation(original, null, "error", error, null);
+    }
+
+    /**
+     * Traduction incomplète : le texte est utilisable mais une partie a échoué.
+     */
+    public static Translation partial(String original, String translation, String mode, String error) {
+        return new Translation(original, translation, mode, error, null);
+    }
+
+    public String getOriginal() {
+        return original;
+    }
+
+    public String getTranslation() {
+        return translation;
+    }
+
+    public String getMode() {
+        return mode;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public Double getScore() {
+        return score;
+    }
+
+    /**
+     * Même résultat pour un autre texte source (doublon normalisé, morceau de document).
+     */
+    public Translation withOriginal(String original) {
+        return new Translation(original, translation, mode, error, score);
+    }
+
+    public JSONObject toJson() {
+        JSONObject json = new JSONObject()
+                .put("original", original)
+                .put("translation", translation)
+                .put("mode", mode);
+        if (score != null) {
+            json.put("score", score.doubleValue());
+        }
+        if (error != null) {
+            json.put("error", error);
+        }
+        return json;
+    }
+
+    /**
+     * Même objet que {@link #toJson()}, écrit sans passer par un JSONObject.
+     */
+    public void writeJson(JsonWriter out) throws IOException {
+        out.raw("{").field("original", original, true);
+        // Comme JSONObject.put : une valeur null n'ajoute pas le champ
+        if (translation != null) {
+            out.field("translation", translation, false);
+        }
+        out.field("mode", mode, false);
+        if (score != null) {
+            out.raw(",\"score\":").raw(Double.toString(score));
+        }
+        if (error != null) {
+            out.field("error", error, false);
+        }
+        out.raw("}");
+    }
+
+    /**
+     * {@link #toJson()} sérialisé, pour les évènements SSE.
+     */
+    public String toJsonString() {
+        StringBuilder json = new StringBuilder(64 + 2 * (original.length()
+                + (translation == null ? 0 : translation.length())));
+        JsonWriter.quote(original, json.append("{\"original\":"));
+        if (translation != null) {
+            JsonWriter.quote(translation, json.append(",\"translation\":"));
+        }
+        JsonWriter.quote(mode, json.append(",\"mode\":"));
+        if (score != null) {
+            json.append(",\"score\":").append(score.doubleValue());
+        }
+        if (error != null) {
+            JsonWriter.quote(error, json.append(",\"error\":"));
+        }
+        return json.append('}').toString();
+    }
+}
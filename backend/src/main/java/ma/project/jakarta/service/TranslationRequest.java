@@ -0,0 +1,198 @@
+package ma.project.jakarta.service;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+import ma.project.jakarta.json.JsonScanner;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Requête de traduction, schéma v1 :
+ * {"v": 1, "text": "...", "source": "en", "target": "ary", "options": {"script": "latin"}}
+ *
+ * Le client n'envoie que le texte et la paire de langues ; la consigne
+ * envoyée à Gemini appartient au serveur (une par direction). La direction
+ * fait partie de la clé de cache : une traduction vers l'anglais ne répond
+ * jamais à une demande vers la darija.
+ *
+ * L'ancien corps {"text": "..."} reste accepté (anglais -> darija). Les
+ * anciennes versions de l'extension et de l'application de bureau y
+ * plaçaient leur propre consigne autour du texte : elle est reconnue et
+ * retirée, pour ne pas payer deux consignes par appel et pour que la clé ne
+ * dépende que du texte.
+ */
+public final class TranslationRequest {
+
+    public static final int VERSION = 1;
+
+    public static final String EN_DARIJA = "en-darija";
+    public static final String EN_DARIJA_LATIN = "en-darija-latn";
+    public static final String DARIJA_EN = "darija-en";
+
+    // Consignes des anciens clients : début reconnu, puis marqueur précédant le texte
+    private static final String LEGACY_TO_DARIJA = "Translate the following English text to Moroccan Darija.";
+    private static final String LEGACY_TO_ENGLISH = "Translate the following Moroccan Darija text (";
+    private static final String[] LEGACY_MARKERS = {
+            "Text to translate: ", "Provide only the English translation: ", "Text: "};
+
+    private static final LongAdder STRUCTURED = new LongAdder();
+    private static final LongAdder LEGACY = new LongAdder();
+    private static final LongAdder LEGACY_PROMPTS = new LongAdder();
+
+    private final String text;
+    private final String direction;
+
+    private TranslationRequest(String text, String direction) {
+        this.text = text;
+        this.direction = direction;
+    }
+
+    /**
+     * Paire de langues explicite ; codes acceptés : "en" ("eng", "english")
+     * et "ary" ("darija", "ar-MA"). Une seule des deux langues suffit,
+     * l'autre s'en déduit.
+     *
+     * @param script "arabic" (par défaut) ou "latin" pour une darija en lettres latines
+     * @throws IllegalArgumentException paire ou option non prise en charge
+     */
+    public static TranslationRequest of(String text, String source, String target, String script) {
+        return new TranslationRequest(text, direction(source, target, script));
+    }
+
+    /**
+     * Ancien corps {"text": "..."} : anglais -> darija, sauf consigne d'un
+     * ancien client qui indique l'autre sens.
+     */
+    public static TranslationRequest legacy(String text) {
+        LEGACY.increment();
+        String trimmed = text.stripLeading();
+        String direction = trimmed.startsWith(LEGACY_TO_ENGLISH) ? DARIJA_EN
+                : trimmed.startsWith(LEGACY_TO_DARIJA) ? EN_DARIJA
+                : null;
+        if (direction == null) {
+            return new TranslationRequest(text, EN_DARIJA);
+        }
+        for (String marker : LEGACY_MARKERS) {
+            int at = trimmed.indexOf(marker);
+            if (at >= 0) {
+                LEGACY_PROMPTS.increment();
+                return new TranslationRequest(trimmed.substring(at + marker.length()).strip(), direction);
+            }
+        }
+        return new TranslationRequest(text, EN_DARIJA);
+    }
+
+    /**
+     * Corps JSON reçu, lu sans construire de JSONObject : un passage pour
+     * les champs de premier niveau, un second pour "options" seulement
+     * quand une langue est indiquée.
+     *
+     * @throws JSONException corps mal formé ou sans "text"
+     * @throws IllegalArgumentException version, paire ou option non prise en charge
+     */
+    public static TranslationRequest parse(byte[] json) {
+        JsonScanner scanner = JsonScanner.of(json);
+        String[] fields = scanner.findStrings("text", "v", "source", "target");
+        if (fields[0] == null) {
+            throw new JSONException("JSONObject[\"text\"] not found.");
+        }
+        checkVersion(fields[1]);
+        if (fields[2] == null && fields[3] == null) {
+            return legacy(fields[0]);
+        }
+        return of(fields[0], fields[2], fields[3], scanner.findString("options", "script"));
+    }
+
+    /**
+     * Direction d'un lot {"segments": [...], "source": ..., "target": ...} ;
+     * {@link #EN_DARIJA} si aucune langue n'est indiquée.
+     */
+    public static String parseDirection(JsonScanner scanner) {
+        String[] fields = scanner.findStrings("v", "source", "target");
+        checkVersion(fields[0]);
+        if (fields[1] == null && fields[2] == null) {
+            return EN_DARIJA;
+        }
+        return direction(fields[1], fields[2], scanner.findString("options", "script"));
+    }
+
+    /**
+     * Direction d'après des paramètres de requête (tâches en masse) ;
+     * {@link #EN_DARIJA} si aucune langue n'est indiquée.
+     */
+    public static String parseDirection(String source, String target, String script) {
+        if (source == null && target == null) {
+            return EN_DARIJA;
+        }
+        return direction(source, target, script);
+    }
+
+    private static void checkVersion(String version) {
+        if (version != null && !version.equals(String.valueOf(VERSION))) {
+            throw new IllegalArgumentException("Version de schéma non prise en charge : " + version
+                    + " (attendue : " + VERSION + ")");
+        }
+    }
+
+    private static String direction(String source, String target, String script) {
+        String from = language(source);
+        String to = language(target);
+        if (from == null) {
+            from = "en".equals(to) ? "darija" : "en";
+        }
+        if (to == null) {
+            to = "en".equals(from) ? "darija" : "en";
+        }
+        boolean latin = script != null && script.equalsIgnoreCase("latin");
+        if (script != null && !latin && !script.equalsIgnoreCase("arabic")) {
+            throw new IllegalArgumentException("Option script inconnue : " + script + " (arabic ou latin)");
+        }
+        if (from.equals("en") && to.equals("darija")) {
+            STRUCTURED.increment();
+            return latin ? EN_DARIJA_LATIN : EN_DARIJA;
+        }
+        if (from.equals("darija") && to.equals("en")) {
+            STRUCTURED.increment();
+            return DARIJA_EN;
+        }
+        throw new IllegalArgumentException("Paire de langues non prise en charge : " + source + " -> " + target);
+    }
+
+    // Code normalisé ("en" ou "darija"), null si absent
+    private static String language(String code) {
+        if (code == null || code.isBlank()) {
+            return null;
+        }
+        switch (code.trim().toLowerCase(Locale.ROOT)) {
+            case "en": case "eng": case "english":
+                return "en";
+            case "ary": case "darija": case "ar-ma":
+                return "darija";
+            default:
+                throw new IllegalArgumentException("Langue non prise en charge : " + code);
+        }
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * {@link #EN_DARIJA}, {@link #EN_DARIJA_LATIN} ou {@link #DARIJA_EN}.
+     */
+    public String getDirection() {
+        return direction;
+    }
+
+    /**
+     * Requêtes reçues par schéma ; "legacyPrompts" compte les consignes
+     * d'anciens clients retirées du texte.
+     */
+    public static JSONObject stats() {
+        return new JSONObject()
+                .put("structured", STRUCTURED.sum())
+                .put("legacy", LEGACY.sum())
+                .put("legacyPrompts", LEGACY_PROMPTS.sum());
+    }
+}
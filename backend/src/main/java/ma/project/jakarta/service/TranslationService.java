@@ -0,0 +1,414 @@
+package ma.project.jakarta.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import ma.project.jakarta.cache.CacheKey;
+import ma.project.jakarta.config.TranslatorConfig;
+import ma.project.jakarta.engine.TranslationEngine;
+import ma.project.jakarta.engine.TranslationEngines;
+import ma.project.jakarta.upstream.CircuitOpenException;
+import ma.project.jakarta.upstream.Deadline;
+import ma.project.jakarta.upstream.UpstreamClient;
+import org.json.JSONObject;
+
+/**
+ * Chaîne de traduction partagée par les ressources. Les moteurs sont
+ * interrogés dans l'ordre de "translator.engines" (par défaut
+ * lexique -> cache -> mémoire persistante -> cache du cluster -> mémoire
+ * approchée -> Gemini) ;
+ * le premier qui répond gagne et les moteurs précédents apprennent sa
+ * traduction, sauf si elle est approchée.
+ * Les appels Gemini sont non bloquants : aucun thread n'attend la réponse.
+ *
+ * Quand le disjoncteur de Gemini est ouvert, la chaîne de secours
+ * "translator.engines.fallback" (vide par défaut, par exemple "simulation")
+ * répond à sa place ; ses réponses ne sont pas mémorisées.
+ */
+public class TranslationService {
+
+    // Direction des méthodes sans paire de langues (anglais -> darija en écriture arabe)
+    public static final String DIRECTION = TranslationRequest.EN_DARIJA;
+
+    private static volatile TranslationService shared;
+
+    private final UpstreamClient upstream;
+    private final List<TranslationEngine> engines;
+    private final List<TranslationEngine> fallback;
+    private final DocumentTranslator documents = DocumentTranslator.fromConfig(this::translateAsync);
+    private final LongAdder fallbacks = new LongAdder();
+
+    /**
+     * @param engines moteurs dans l'ordre d'interrogation
+     */
+    public TranslationService(UpstreamClient upstream, List<TranslationEngine> engines) {
+        this(upstream, engines, List.of());
+    }
+
+    /**
+     * @param fallback moteurs interrogés quand Gemini est indisponible (disjoncteur ouvert)
+     */
+    public TranslationService(UpstreamClient upstream, List<TranslationEngine> engines,
+                              List<TranslationEngine> fallback) {
+        this.upstream = upstream;
+        this.engines = List.copyOf(engines);
+        this.fallback = List.copyOf(fallback);
+    }
+
+    public static TranslationService fromConfig() {
+        UpstreamClient upstream = UpstreamClient.shared();
+        String fallback = TranslatorConfig.getString("translator.engines.fallback", "");
+        return new TranslationService(upstream, TranslationEngines.fromConfig(upstream),
+                fallback.isBlank() ? List.of() : TranslationEngines.create(fallback, upstream));
+    }
+
+    public static TranslationService shared() {
+        TranslationService service = shared;
+        if (service == null) {
+            synchronized (TranslationService.class) {
+                service = shared;
+                if (service == null) {
+                    service = fromConfig();
+                    shared = service;
+                }
+            }
+        }
+        return service;
+    }
+
+    /**
+     * Version bloquante de {@link #translateAsync(String)}.
+     */
+    public Translation translate(String englishText) throws Exception {
+        try {
+            return translateAsync(englishText).get();
+        } catch (ExecutionException e) {
+            throw asException(e.getCause());
+        }
+    }
+
+    public CompletableFuture<Translation> translateAsync(String englishText) {
+        return translateAsync(englishText, Deadline.none());
+    }
+
+    /**
+     * Traduction dans le budget de la requête : passé ce délai, l'appel
+     * Gemini échoue avec {@link ma.project.jakarta.upstream.DeadlineExceededException}.
+     */
+    public CompletableFuture<Translation> translateAsync(String englishText, Deadline deadline) {
+        return translateAsync(englishText, DIRECTION, deadline);
+    }
+
+    public CompletableFuture<Translation> translateAsync(TranslationRequest request, Deadline deadline) {
+        return translateAsync(request.getText(), request.getDirection(), deadline);
+    }
+
+    /**
+     * @param direction une des directions de {@link TranslationRequest}, qui fait partie de la clé
+     */
+    public CompletableFuture<Translation> translateAsync(String text, String direction, Deadline deadline) {
+        CacheKey cacheKey = key(text, direction);
+        return withFallback(translate(cacheKey, text, deadline, 0),
+                () -> translate(fallback, cacheKey, text, deadline, 0));
+    }
+
+    private CompletableFuture<Translation> translate(CacheKey cacheKey, String text, Deadline deadline, int from) {
+        if (from >= engines.size()) {
+            return CompletableFuture.failedFuture(noEngine());
+        }
+        return engines.get(from).translate(cacheKey, text, deadline).thenCompose(result -> {
+            if (result == null) {
+                return translate(cacheKey, text, deadline, from + 1);
+            }
+            learn(cacheKey, result, from);
+            return CompletableFuture.completedFuture(withOriginal(result, text));
+        });
+    }
+
+    // Chaîne de secours : rien n'y est appris, les moteurs principaux ne mémorisent pas une réponse dégradée
+    private CompletableFuture<Translation> translate(List<TranslationEngine> chain, CacheKey cacheKey, String text,
+                                                     Deadline deadline, int from) {
+        if (from >= chain.size()) {
+            return CompletableFuture.failedFuture(noEngine());
+        }
+        return chain.get(from).translate(cacheKey, text, deadline).thenCompose(result -> result == null
+                ? translate(chain, cacheKey, text, deadline, from + 1)
+                : CompletableFuture.completedFuture(withOriginal(result, text)));
+    }
+
+    /**
+     * Disjoncteur ouvert : la chaîne de secours répond si elle est configurée,
+     * sinon l'erreur 503 (avec Retry-After) est renvoyée telle quelle.
+     */
+    private CompletableFuture<Translation> withFallback(CompletableFuture<Translation> primary,
+                                                        Supplier<CompletableFuture<Translation>> secondary) {
+        if (fallback.isEmpty()) {
+            return primary;
+        }
+        return primary.handle((result, error) -> {
+            if (error == null) {
+                return CompletableFuture.completedFuture(result);
+            }
+            if (unwrap(error) instanceof CircuitOpenException) {
+                fallbacks.increment();
+                return secondary.get()
+                        .handle((fallbackResult, fallbackError) -> fallbackError == null
+                                ? CompletableFuture.completedFuture(fallbackResult)
+                                : CompletableFuture.<Translation>failedFuture(unwrap(error)))
+                        .thenCompose(future -> future);
+            }
+            return CompletableFuture.<Translation>failedFuture(unwrap(error));
+        }).thenCompose(future -> future);
+    }
+
+    /**
+     * Long document : découpé en phrases et paragraphes traduits en parallèle,
+     * puis recomposé dans l'ordre (voir {@link DocumentTranslator}).
+     */
+    public CompletableFuture<Translation> translateDocumentAsync(String document) {
+        return translateDocumentAsync(document, Deadline.none());
+    }
+
+    public CompletableFuture<Translation> translateDocumentAsync(String document, Deadline deadline) {
+        return documents.translate(document, DIRECTION, deadline);
+    }
+
+    public CompletableFuture<Translation> translateDocumentAsync(TranslationRequest request, Deadline deadline) {
+        return documents.translate(request.getText(), request.getDirection(), deadline);
+    }
+
+    /**
+     * Traduction en flux : chaque morceau produit par le moteur est transmis
+     * à onChunk dès sa réception. Une traduction déjà connue (lexique, cache,
+     * mémoire) est transmise en un seul morceau. Si onChunk lève une exception
+     * (client déconnecté), l'appel Gemini est interrompu et le texte complet
+     * n'est pas mémorisé.
+     */
+    public CompletableFuture<Translation> translateStream(String englishText, Consumer<String> onChunk) {
+        return translateStream(englishText, onChunk, Deadline.none());
+    }
+
+    public CompletableFuture<Translation> translateStream(String englishText, Consumer<String> onChunk,
+                                                          Deadline deadline) {
+        return translateStream(englishText, DIRECTION, onChunk, deadline);
+    }
+
+    public CompletableFuture<Translation> translateStream(TranslationRequest request, Consumer<String> onChunk,
+                                                          Deadline deadline) {
+        return translateStream(request.getText(), request.getDirection(), onChunk, deadline);
+    }
+
+    private CompletableFuture<Translation> translateStream(String englishText, String direction,
+                                                           Consumer<String> onChunk, Deadline deadline) {
+        CacheKey cacheKey = key(englishText, direction);
+        // Disjoncteur ouvert avant le premier morceau : la réponse de secours part en un seul morceau
+        return withFallback(translateStream(cacheKey, englishText, onChunk, deadline, 0),
+                () -> translate(fallback, cacheKey, englishText, deadline, 0).thenApply(translation -> {
+                    if (translation.getError() == null) {
+                        onChunk.accept(translation.getTranslation());
+                    }
+                    return translation;
+                }));
+    }
+
+    private CompletableFuture<Translation> translateStream(CacheKey cacheKey, String text,
+                                                           Consumer<String> onChunk, Deadline deadline, int from) {
+        if (from >= engines.size()) {
+            return CompletableFuture.failedFuture(noEngine());
+        }
+        return engines.get(from).translateStream(cacheKey, text, onChunk, deadline).thenCompose(result -> {
+            if (result == null) {
+                return translateStream(cacheKey, text, onChunk, deadline, from + 1);
+            }
+            learn(cacheKey, result, from);
+            return CompletableFuture.completedFuture(withOriginal(result, text));
+        });
+    }
+
+    /**
+     * Version bloquante de {@link #translateBatchAsync(List)}.
+     */
+    public List<Translation> translateBatch(List<String> texts) {
+        return translateBatchAsync(texts).join();
+    }
+
+    /**
+     * Traduit plusieurs segments. Chaque moteur reçoit en une fois les
+     * segments restés sans réponse au moteur précédent ; Gemini les regroupe
+     * dans le moins d'appels possible, envoyés en parallèle. Les résultats
+     * suivent l'ordre d'entrée ; un segment en échec porte une erreur au lieu
+     * de faire échouer le lot.
+     */
+    public CompletableFuture<List<Translation>> translateBatchAsync(List<String> texts) {
+        return translateBatchAsync(texts, Deadline.none());
+    }
+
+    public CompletableFuture<List<Translation>> translateBatchAsync(List<String> texts, Deadline deadline) {
+        return translateBatchAsync(texts, DIRECTION, deadline);
+    }
+
+    /**
+     * @param direction commune à tous les segments du lot
+     */
+    public CompletableFuture<List<Translation>> translateBatchAsync(List<String> texts, String direction,
+                                                                    Deadline deadline) {
+        // Dédoublonnage par clé normalisée
+        Map<CacheKey, List<Integer>> positions = new LinkedHashMap<>();
+        for (int i = 0; i < texts.size(); i++) {
+            positions.computeIfAbsent(key(texts.get(i), direction), k -> new ArrayList<>()).add(i);
+        }
+        List<CacheKey> keys = new ArrayList<>(positions.keySet());
+        List<String> unique = new ArrayList<>(keys.size());
+        for (CacheKey key : keys) {
+            unique.add(texts.get(positions.get(key).get(0)));
+        }
+
+        return translateAll(keys, unique, deadline, 0).thenApply(translations -> {
+            Translation[] results = new Translation[texts.size()];
+            for (int j = 0; j < keys.size(); j++) {
+                for (int index : positions.get(keys.get(j))) {
+                    results[index] = withOriginal(translations[j], texts.get(index));
+                }
+            }
+            return Arrays.asList(results);
+        });
+    }
+
+    // Les segments sans réponse passent au moteur suivant
+    private CompletableFuture<Translation[]> translateAll(List<CacheKey> keys, List<String> texts,
+                                                          Deadline deadline, int from) {
+        Translation[] results = new Translation[texts.size()];
+        if (from >= engines.size()) {
+            for (int j = 0; j < texts.size(); j++) {
+                results[j] = Translation.failed(texts.get(j), noEngine().getMessage());
+            }
+            return CompletableFuture.completedFuture(results);
+        }
+        return engines.get(from).translateAll(keys, texts, deadline).thenCompose(answers -> {
+            List<Integer> missing = new ArrayList<>();
+            for (int j = 0; j < texts.size(); j++) {
+                Translation answer = answers.get(j);
+                if (answer == null) {
+                    missing.add(j);
+                } else {
+                    results[j] = answer;
+                    learn(keys.get(j), answer, from);
+                }
+            }
+            if (missing.isEmpty()) {
+                return CompletableFuture.completedFuture(results);
+            }
+            List<CacheKey> nextKeys = new ArrayList<>(missing.size());
+            List<String> nextTexts = new ArrayList<>(missing.size());
+            for (int j : missing) {
+                nextKeys.add(keys.get(j));
+                nextTexts.add(texts.get(j));
+            }
+            return translateAll(nextKeys, nextTexts, deadline, from + 1).thenApply(rest -> {
+                for (int m = 0; m < missing.size(); m++) {
+                    results[missing.get(m)] = rest[m];
+                }
+                return results;
+            });
+        });
+    }
+
+    private CacheKey key(String text, String direction) {
+        return CacheKey.of(text, direction, upstream.getModel());
+    }
+
+    // Les moteurs placés avant celui qui a répondu mémorisent la traduction,
+    // sauf une traduction approchée : elle serait ensuite servie comme exacte
+    private void learn(CacheKey cacheKey, Translation result, int answeredBy) {
+        String translated = result.getTranslation();
+        if (result.getError() != null || result.getScore() != null || translated == null || translated.isBlank()) {
+            return;
+        }
+        for (int i = 0; i < answeredBy; i++) {
+            engines.get(i).learn(cacheKey, translated);
+        }
+    }
+
+    private static Translation withOriginal(Translation translation, String original) {
+        if (translation.getOriginal().equals(original)) {
+            return translation;
+        }
+        return translation.getError() != null
+                ? Translation.failed(original, translation.getError())
+                : translation.withOriginal(original);
+    }
+
+    private IllegalStateException noEngine() {
+        return new IllegalStateException("Aucun moteur n'a pu traduire ce texte (" + engineNames() + ")");
+    }
+
+    /**
+     * Noms des moteurs, dans l'ordre de la chaîne.
+     */
+    public String engineNames() {
+        return names(engines);
+    }
+
+    private static String names(List<TranslationEngine> chain) {
+        StringBuilder names = new StringBuilder();
+        for (TranslationEngine engine : chain) {
+            if (names.length() > 0) {
+                names.append(", ");
+            }
+            names.append(engine.name());
+        }
+        return names.toString();
+    }
+
+    /**
+     * Retire les enveloppes CompletionException/ExecutionException.
+     */
+    public static Throwable unwrap(Throwable error) {
+        Throwable current = error;
+        while ((current instanceof CompletionException || current instanceof ExecutionException)
+                && current.getCause() != null) {
+            current = current.getCause();
+        }
+        return current;
+    }
+
+    private static Exception asException(Throwable error) {
+        Throwable cause = unwrap(error);
+        if (cause instanceof Exception) {
+            return (Exception) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new Exception(cause);
+    }
+
+    public JSONObject stats() {
+        JSONObject result = new JSONObject()
+                .put("upstream", upstream.stats())
+                .put("engines", engineNames())
+                .put("requests", TranslationRequest.stats())
+                .put("document", documents.stats());
+        if (!fallback.isEmpty()) {
+            result.put("fallback", new JSONObject()
+                    .put("engines", names(fallback))
+                    .put("used", fallbacks.sum()));
+        }
+        for (TranslationEngine engine : engines) {
+            JSONObject engineStats = engine.stats();
+            if (engineStats != null) {
+                result.put(engine.name(), engineStats);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,386 @@
+package ma.project.jakarta.upstream;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import ma.project.jakarta.config.TranslatorConfig;
+import org.json.JSONObject;
+
+/**
+ * Contrôle d'admission devant Gemini.
+ *
+ * Un appel part quand il obtient à la fois un jeton (seau à jetons réglé
+ * sur le quota de l'API) et une place sous la limite de concurrence. Cette
+ * limite s'adapte (AIMD) : +1 environ à chaque "limite" réponses rapides,
+ * divisée par deux sur 429/503/timeout, réduite de 10 % quand la latence
+ * récente dérive au-dessus de la latence de fond.
+ *
+ * Les appels qui n'obtiennent pas de place attendent dans une file bornée ;
+ * file pleine, attente trop longue ou quota suspendu par un Retry-After de
+ * Gemini : échec immédiat avec {@link OverloadException}, qui porte le délai
+ * à renvoyer au client.
+ */
+public class AdmissionController {
+
+    // Pas plus d'une division de la limite par fenêtre : les 429 d'une même rafale comptent pour un
+    private static final long DECREASE_COOLDOWN_NANOS = TimeUnit.MILLISECONDS.toNanos(1_000);
+    private static final double LATENCY_TOLERANCE = 2.0;
+
+    private final double ratePerSecond;
+    private final double burst;
+    private final double minLimit;
+    private final double maxLimit;
+    private final int maxQueue;
+    private final long queueTimeoutMs;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ArrayDeque<CompletableFuture<Permit>> queue = new ArrayDeque<>();
+    private double limit;
+    private int inFlight;
+    private double tokens;
+    private long lastRefill = System.nanoTime();
+    private long pausedUntil;
+    private long lastDecrease;
+    private boolean dispatchScheduled;
+    // Latence récente (EWMA courte) et de fond (EWMA longue), en nanosecondes
+    private double shortLatency;
+    private double longLatency;
+
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+
+    /**
+     * @param ratePerSecond  appels autorisés par seconde (0 : pas de limite de débit)
+     * @param burst          jetons accumulables
+     * @param initialLimit   limite de concurrence de départ
+     * @param maxQueue       appels en attente au plus
+     * @param queueTimeoutMs attente maximale dans la file
+     */
+    public AdmissionController(double ratePerSecond, int burst, int initialLimit, int minLimit, int maxLimit,
+                               int maxQueue, long queueTimeoutMs) {
+        this.ratePerSecond = Math.max(0, ratePerSecond);
+        this.burst = Math.max(1, burst);
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+        this.maxQueue = Math.max(0, maxQueue);
+        this.queueTimeoutMs = Math.max(1, queueTimeoutMs);
+        this.tokens = this.burst;
+    }
+
+    public static AdmissionController fromConfig() {
+        return new AdmissionController(
+                TranslatorConfig.getInt("translator.admission.rate-per-second", 16),
+                TranslatorConfig.getInt("translator.admission.burst", 32),
+                TranslatorConfig.getInt("translator.admission.initial-limit", 16),
+                TranslatorConfig.getInt("translator.admission.min-limit", 1),
+                TranslatorConfig.getInt("translator.admission.max-limit", 256),
+                TranslatorConfig.getInt("translator.admission.queue-size", 200),
+                TranslatorConfig.getLong("translator.admission.queue-timeout-ms", 2_000));
+    }
+
+    /**
+     * Place pour un appel. Le futur se termine à l'admission, ou échoue avec
+     * {@link OverloadException} ; la place doit être rendue par
+     * {@link Permit#release}.
+     */
+    public CompletableFuture<Permit> acquire() {
+        return acquire(Deadline.none());
+    }
+
+    /**
+     * Comme {@link #acquire()}, l'attente étant bornée aussi par le budget de
+     * la requête : budget épuisé avant l'admission, échec avec
+     * {@link DeadlineExceededException}.
+     */
+    public CompletableFuture<Permit> acquire(Deadline deadline) {
+        long remainingMs = deadline.remainingMillis();
+        if (remainingMs <= 0) {
+            rejected.increment();
+            return CompletableFuture.failedFuture(new DeadlineExceededException(
+                    "Délai dépassé avant l'appel Gemini"));
+        }
+        boolean budgetBound = remainingMs < queueTimeoutMs;
+        long waitMs = budgetBound ? remainingMs : queueTimeoutMs;
+        long now = System.nanoTime();
+        CompletableFuture<Permit> waiter;
+        lock.lock();
+        try {
+            if (queue.isEmpty() && inFlight < (int) limit && takeToken(now)) {
+                inFlight++;
+                admitted.increment();
+                return CompletableFuture.completedFuture(new Permit(now));
+            }
+            long pause = pausedUntil - now;
+            if (pause > TimeUnit.MILLISECONDS.toNanos(waitMs)) {
+                // Quota épuisé pour plus longtemps que l'attente autorisée
+                rejected.increment();
+                return CompletableFuture.failedFuture(new OverloadException(
+                        "Quota Gemini épuisé", secondsCeil(pause)));
+            }
+            if (queue.size() >= maxQueue) {
+                // Les attentes expirées ne sont retirées qu'en tête de file : on purge
+                queue.removeIf(CompletableFuture::isDone);
+            }
+            if (queue.size() >= maxQueue) {
+                rejected.increment();
+                return CompletableFuture.failedFuture(new OverloadException(
+                        "File d'attente pleine", retryAfterEstimate()));
+            }
+            waiter = new CompletableFuture<>();
+            queue.add(waiter);
+            queued.increment();
+        } finally {
+            lock.unlock();
+        }
+
+        CompletableFuture.delayedExecutor(waitMs, TimeUnit.MILLISECONDS).execute(() -> {
+            UpstreamException timeout = budgetBound
+                    ? new DeadlineExceededException("Délai dépassé en attente de l'appel Gemini")
+                    : new OverloadException("Attente trop longue avant l'appel Gemini", retryAfterEstimate());
+            if (waiter.completeExceptionally(timeout)) {
+                rejected.increment();
+            }
+        });
+        dispatch();
+        return waiter;
+    }
+
+    /**
+     * Place immédiate ou null, sans file d'attente ni compteur de refus
+     * (requêtes de couverture, voir {@link UpstreamClient}).
+     */
+    public Permit tryAcquire() {
+        long now = System.nanoTime();
+        lock.lock();
+        try {
+            if (queue.isEmpty() && inFlight < (int) limit && takeToken(now)) {
+                inFlight++;
+                admitted.increment();
+                return new Permit(now);
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Capacité libre pour du travail de fond : personne n'attend, pas de
+     * pause demandée par Gemini, et moins de share x limite appels en cours.
+     * Les traductions interactives gardent ainsi le reste de la limite.
+     */
+    public boolean hasHeadroom(double share) {
+        long now = System.nanoTime();
+        lock.lock();
+        try {
+            return queue.isEmpty() && now >= pausedUntil && inFlight < Math.max(1.0, limit * share);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Admet les appels en attente tant qu'il reste des places et des jetons
+    private void dispatch() {
+        List<CompletableFuture<Permit>> ready = new ArrayList<>();
+        long wait = 0;
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            while (!queue.isEmpty() && inFlight < (int) limit) {
+                CompletableFuture<Permit> head = queue.peek();
+                if (head.isDone()) {
+                    queue.poll();
+                    continue;
+                }
+                if (!takeToken(now)) {
+                    wait = nanosUntilToken(now);
+                    break;
+                }
+                queue.poll();
+                inFlight++;
+                ready.add(head);
+            }
+            if (wait > 0 && !dispatchScheduled) {
+                dispatchScheduled = true;
+            } else {
+                wait = 0;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        long admittedAt = System.nanoTime();
+        for (CompletableFuture<Permit> waiter : ready) {
+            if (waiter.complete(new Permit(admittedAt))) {
+                admitted.increment();
+            } else {
+                // Expiré entre-temps : la place est rendue sans toucher à la limite
+                releaseSlot();
+            }
+        }
+        if (wait > 0) {
+            long delayMicros = Math.max(1, TimeUnit.NANOSECONDS.toMicros(wait));
+            CompletableFuture.delayedExecutor(delayMicros, TimeUnit.MICROSECONDS).execute(() -> {
+                lock.lock();
+                try {
+                    dispatchScheduled = false;
+                } finally {
+                    lock.unlock();
+                }
+                dispatch();
+            });
+        }
+    }
+
+    private boolean takeToken(long now) {
+        if (now < pausedUntil) {
+            return false;
+        }
+        if (ratePerSecond == 0) {
+            return true;
+        }
+        tokens = Math.min(burst, tokens + (now - lastRefill) * ratePerSecond / 1e9);
+        lastRefill = now;
+        if (tokens >= 1) {
+            tokens -= 1;
+            return true;
+        }
+        throttled.increment();
+        return false;
+    }
+
+    private long nanosUntilToken(long now) {
+        if (now < pausedUntil) {
+            return pausedUntil - now;
+        }
+        return (long) Math.ceil((1 - tokens) * 1e9 / ratePerSecond);
+    }
+
+    private void releaseSlot() {
+        lock.lock();
+        try {
+            inFlight--;
+        } finally {
+            lock.unlock();
+        }
+        dispatch();
+    }
+
+    private void onResponse(long latencyNanos, int status, long retryAfterSeconds) {
+        long now = System.nanoTime();
+        lock.lock();
+        try {
+            inFlight--;
+            if (status == 429 || status == 503 || status < 0) {
+                if (retryAfterSeconds > 0) {
+                    pausedUntil = Math.max(pausedUntil, now + TimeUnit.SECONDS.toNanos(retryAfterSeconds));
+                }
+                decrease(now, 0.5);
+            } else if (status < 500) {
+                shortLatency = shortLatency == 0 ? latencyNanos : shortLatency * 0.8 + latencyNanos * 0.2;
+                longLatency = longLatency == 0 ? latencyNanos : longLatency * 0.98 + latencyNanos * 0.02;
+                if (shortLatency > longLatency * LATENCY_TOLERANCE) {
+                    decrease(now, 0.9);
+                } else if (inFlight + 1 >= limit / 2) {
+                    // Croissance seulement si la limite est réellement utilisée
+                    limit = Math.min(maxLimit, limit + 1 / limit);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        dispatch();
+    }
+
+    private void decrease(long now, double factor) {
+        if (now - lastDecrease < DECREASE_COOLDOWN_NANOS) {
+            return;
+        }
+        lastDecrease = now;
+        limit = Math.max(minLimit, limit * factor);
+    }
+
+    // Délai conseillé au client : fin de la suspension, sinon le temps de vider la file
+    private long retryAfterEstimate() {
+        long now = System.nanoTime();
+        lock.lock();
+        try {
+            if (pausedUntil > now) {
+                return secondsCeil(pausedUntil - now);
+            }
+            double drainPerSecond = ratePerSecond > 0 ? ratePerSecond : limit;
+            return Math.max(1, (long) Math.ceil(queue.size() / drainPerSecond));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static long secondsCeil(long nanos) {
+        return Math.max(1, (nanos + 999_999_999L) / 1_000_000_000L);
+    }
+
+    public JSONObject stats() {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            return new JSONObject()
+                    .put("limit", (int) limit)
+                    .put("inFlight", inFlight)
+                    .put("queued", queue.size())
+                    .put("pausedMs", Math.max(0, TimeUnit.NANOSECONDS.toMillis(pausedUntil - now)))
+                    .put("admitted", admitted.sum())
+                    .put("waited", queued.sum())
+                    .put("rejected", rejected.sum())
+                    .put("throttled", throttled.sum());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Place obtenue ; à rendre une seule fois avec le résultat de l'appel.
+     */
+    public final class Permit {
+        private final long admittedAt;
+        private boolean released;
+
+        private Permit(long admittedAt) {
+            this.admittedAt = admittedAt;
+        }
+
+        /**
+         * @param status            statut HTTP, -1 si l'appel a échoué (timeout, réseau)
+         * @param retryAfterSeconds Retry-After renvoyé par Gemini, 0 si absent
+         */
+        public void release(int status, long retryAfterSeconds) {
+            synchronized (this) {
+                if (released) {
+                    return;
+                }
+                released = true;
+            }
+            onResponse(System.nanoTime() - admittedAt, status, retryAfterSeconds);
+        }
+
+        /**
+         * Appel abandonné avant réponse (annulation) : la limite n'est pas ajustée.
+         */
+        public void cancel() {
+            synchronized (this) {
+                if (released) {
+                    return;
+                }
+                released = true;
+            }
+            releaseSlot();
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package ma.project.jakarta.upstream;
+
+import java.util.concurrent.TimeUnit;
+
+import ma.project.jakarta.config.TranslatorConfig;
+import org.json.JSONObject;
+
+/**
+ * Disjoncteur devant Gemini, sur une fenêtre glissante des derniers appels.
+ *
+ * Fermé : tout passe. Au-delà du taux d'échec (5xx, 429, timeout) sur au
+ * moins minimumCalls appels, il s'ouvre : les appels échouent aussitôt
+ * pendant openMillis. Il passe ensuite en demi-ouverture et laisse passer
+ * quelques appels d'essai ; s'ils réussissent tous il se referme, sinon il
+ * se rouvre.
+ */
+public class CircuitBreaker {
+
+    enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final boolean[] window;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openNanos;
+    private final int halfOpenCalls;
+
+    private State state = State.CLOSED;
+    private int position;
+    private int recorded;
+    private int failures;
+    private long openedAt;
+    private int probesStarted;
+    private int probesSucceeded;
+    private long opened;
+    private long rejected;
+
+    public CircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold, long openMillis,
+                          int halfOpenCalls) {
+        this.window = new boolean[Math.max(1, windowSize)];
+        this.minimumCalls = Math.max(1, Math.min(minimumCalls, window.length));
+        this.failureRateThreshold = failureRateThreshold;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, openMillis));
+        this.halfOpenCalls = Math.max(1, halfOpenCalls);
+    }
+
+    public static CircuitBreaker fromConfig() {
+        return new CircuitBreaker(
+                TranslatorConfig.getInt("translator.breaker.window-size", 50),
+                TranslatorConfig.getInt("translator.breaker.minimum-calls", 20),
+                TranslatorConfig.getInt("translator.breaker.failure-rate-percent", 50) / 100.0,
+                TranslatorConfig.getLong("translator.breaker.open-ms", 10_000),
+                TranslatorConfig.getInt("translator.breaker.half-open-calls", 3));
+    }
+
+    /**
+     * Autorise un appel ; chaque appel autorisé doit se terminer par
+     * {@link #onSuccess}, {@link #onFailure} ou {@link #onIgnored}.
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAt < openNanos) {
+                rejected++;
+                return false;
+            }
+            state = State.HALF_OPEN;
+            probesStarted = 0;
+            probesSucceeded = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesStarted >= halfOpenCalls) {
+                rejected++;
+                return false;
+            }
+            probesStarted++;
+        }
+        return true;
+    }
+
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            if (++probesSucceeded >= halfOpenCalls) {
+                close();
+            }
+            return;
+        }
+        record(false);
+    }
+
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+            return;
+        }
+        if (state == State.CLOSED) {
+            record(true);
+            if (recorded >= minimumCalls && failures >= failureRateThreshold * recorded) {
+                open();
+            }
+        }
+    }
+
+    /**
+     * Appel abandonné sans résultat (annulé, refusé par l'admission).
+     */
+    public synchronized void onIgnored() {
+        if (state == State.HALF_OPEN && probesStarted > probesSucceeded) {
+            probesStarted--;
+        }
+    }
+
+    /**
+     * Fermé : Gemini répond normalement (ni ouvert, ni en demi-ouverture).
+     */
+    public synchronized boolean isClosed() {
+        return state == State.CLOSED;
+    }
+
+    /**
+     * Secondes avant le prochain appel d'essai.
+     */
+    public synchronized long retryAfterSeconds() {
+        long remaining = openNanos - (System.nanoTime() - openedAt);
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(remaining + 999_999_999L));
+    }
+
+    private void record(boolean failure) {
+        if (recorded == window.length) {
+            if (window[position]) {
+                failures--;
+            }
+        } else {
+            recorded++;
+        }
+        window[position] = failure;
+        if (failure) {
+            failures++;
+        }
+        position = (position + 1) % window.length;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.nanoTime();
+        opened++;
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        position = 0;
+        recorded = 0;
+        failures = 0;
+    }
+
+    public synchronized JSONObject stats() {
+        return new JSONObject()
+                .put("state", state.name())
+                .put("failureRate", recorded == 0 ? 0.0 : (double) failures / recorded)
+                .put("calls", recorded)
+                .put("opened", opened)
+                .put("rejected", rejected);
+    }
+}
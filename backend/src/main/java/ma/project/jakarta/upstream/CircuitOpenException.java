@@ -0,0 +1,21 @@
+package ma.project.jakarta.upstream;
+
+import org.json.JSONObject;
+
+/**
+ * Appel refusé sans contacter Gemini : le disjoncteur est ouvert après
+ * trop d'échecs récents. 503 avec Retry-After jusqu'au prochain essai.
+ */
+public class CircuitOpenException extends UpstreamException {
+
+    private static final long serialVersionUID = 1L;
+
+    public CircuitOpenException(long retryAfterSeconds) {
+        super("Gemini indisponible, nouvel essai dans " + retryAfterSeconds + " s", 503,
+                new JSONObject()
+                        .put("error", "Gemini indisponible (disjoncteur ouvert)")
+                        .put("retryAfter", retryAfterSeconds)
+                        .toString(),
+                retryAfterSeconds);
+    }
+}
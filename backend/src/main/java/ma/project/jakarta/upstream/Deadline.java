@@ -0,0 +1,62 @@
+package ma.project.jakarta.upstream;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Budget de temps d'une requête, fourni par le client (X-Deadline-Ms) ou
+ * par défaut. Il limite l'attente d'admission et le timeout de l'appel
+ * Gemini : on n'envoie pas d'appel qui ne pourrait plus répondre à temps.
+ */
+public final class Deadline {
+
+    private static final Deadline NONE = new Deadline(0, false);
+
+    private final long expiresAt;
+    private final boolean bounded;
+
+    private Deadline(long expiresAt, boolean bounded) {
+        this.expiresAt = expiresAt;
+        this.bounded = bounded;
+    }
+
+    /**
+     * Pas de budget : seuls les timeouts de configuration s'appliquent.
+     */
+    public static Deadline none() {
+        return NONE;
+    }
+
+    public static Deadline afterMillis(long millis) {
+        return new Deadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, millis)), true);
+    }
+
+    public boolean isBounded() {
+        return bounded;
+    }
+
+    public boolean isExpired() {
+        return bounded && expiresAt - System.nanoTime() <= 0;
+    }
+
+    /**
+     * Temps restant en millisecondes (Long.MAX_VALUE sans budget, 0 si expiré).
+     */
+    public long remainingMillis() {
+        if (!bounded) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(expiresAt - System.nanoTime()));
+    }
+
+    /**
+     * Le plus court entre le timeout donné et le temps restant.
+     */
+    public Duration cap(Duration timeout) {
+        if (!bounded) {
+            return timeout;
+        }
+        long remaining = remainingMillis();
+        return remaining < timeout.toMillis() ? Duration.ofMillis(Math.max(1, remaining)) : timeout;
+    }
+}
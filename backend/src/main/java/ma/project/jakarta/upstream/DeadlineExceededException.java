@@ -0,0 +1,26 @@
+package ma.project.jakarta.upstream;
+
+import org.json.JSONObject;
+
+/**
+ * Budget de la requête épuisé avant la réponse de Gemini : 504.
+ */
+public class DeadlineExceededException extends UpstreamException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Budget épuisé avant l'envoi (attente d'admission) : Gemini n'a pas été appelé.
+     */
+    public DeadlineExceededException(String message) {
+        super(message, 504, new JSONObject().put("error", message).toString(), 0);
+    }
+
+    /**
+     * Appel envoyé resté sans réponse dans le délai (cause : HttpTimeoutException).
+     */
+    public DeadlineExceededException(String message, Throwable cause) {
+        this(message);
+        initCause(cause);
+    }
+}
@@ -0,0 +1,52 @@
+package ma.project.jakarta.upstream;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Dernières latences des appels réussis, dans un tampon circulaire sans
+ * verrou. Le percentile est recalculé au plus une fois par
+ * {@link #REFRESH_EVERY} échantillons.
+ */
+final class LatencyWindow {
+
+    private static final int REFRESH_EVERY = 64;
+
+    private final AtomicLongArray samples;
+    private final AtomicLong count = new AtomicLong();
+    private final double percentile;
+    private volatile long cachedNanos = -1;
+    private volatile long cachedAt = -REFRESH_EVERY;
+
+    LatencyWindow(int size, double percentile) {
+        this.samples = new AtomicLongArray(size);
+        this.percentile = percentile;
+    }
+
+    void record(long nanos) {
+        long index = count.getAndIncrement();
+        samples.set((int) (index % samples.length()), nanos);
+    }
+
+    /**
+     * Percentile des latences récentes, -1 tant qu'il y a trop peu d'échantillons.
+     */
+    long percentileNanos(int minimumSamples) {
+        long total = count.get();
+        if (total < minimumSamples) {
+            return -1;
+        }
+        if (total - cachedAt >= REFRESH_EVERY) {
+            int size = (int) Math.min(total, samples.length());
+            long[] copy = new long[size];
+            for (int i = 0; i < size; i++) {
+                copy[i] = samples.get(i);
+            }
+            Arrays.sort(copy);
+            cachedNanos = copy[Math.min(size - 1, (int) Math.ceil(percentile * size) - 1)];
+            cachedAt = total;
+        }
+        return cachedNanos;
+    }
+}
@@ -0,0 +1,18 @@
+package ma.project.jakarta.upstream;
+
+import org.json.JSONObject;
+
+/**
+ * Appel refusé avant d'atteindre Gemini par le contrôle d'admission
+ * (file pleine, attente trop longue, quota suspendu) : 503 avec Retry-After.
+ */
+public class OverloadException extends UpstreamException {
+
+    private static final long serialVersionUID = 1L;
+
+    public OverloadException(String message, long retryAfterSeconds) {
+        super(message, 503,
+                new JSONObject().put("error", message).put("retryAfter", retryAfterSeconds).toString(),
+                retryAfterSeconds);
+    }
+}
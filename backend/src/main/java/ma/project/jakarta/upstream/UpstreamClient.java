@@ -0,0 +1,602 @@
+package ma.project.jakarta.upstream;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import javax.net.ssl.SSLSession;
+
+import ma.project.jakarta.config.TranslatorConfig;
+import ma.project.jakarta.metrics.TranslatorMetrics;
+import org.json.JSONObject;
+
+/**
+ * Client HTTP unique et partagé vers l'API Gemini.
+ * Un seul HttpClient (HTTP/2, keep-alive, executor borné) est créé pour toute
+ * l'application au lieu d'un client par requête.
+ * Avec translator.upstream.virtual-threads=true (JDK 21+), l'executor utilise
+ * des threads virtuels.
+ * Les appels asynchrones passent par le contrôle d'admission
+ * ({@link AdmissionController}) et le disjoncteur ({@link CircuitBreaker})
+ * quand ils sont configurés, dans le budget de temps de la requête
+ * ({@link Deadline}).
+ * Chaque appel part vers une cible du pool choisie par {@link UpstreamRouter}
+ * (clé, modèle, URL), selon la charge, la latence et l'indice de routage.
+ */
+public class UpstreamClient {
+
+    public static final String DEFAULT_BASE_URL = "https://generativelanguage.googleapis.com/v1beta/models";
+    public static final String DEFAULT_MODEL = "gemini-2.5-flash";
+    public static final String DEFAULT_API_KEY = "VOTRE_CLE_API_ICI";
+
+    // Latences retenues pour le p95 de la couverture, et minimum avant de couvrir
+    private static final int HEDGE_WINDOW = 512;
+    private static final int HEDGE_MIN_SAMPLES = 20;
+
+    private static volatile UpstreamClient shared;
+
+    private final HttpClient httpClient;
+    private final ExecutorService executor;
+    private final AdmissionController admission;
+    private final UpstreamRouter router;
+    private final String model;
+    private final Duration requestTimeout;
+    private final CircuitBreaker breaker;
+    // Délai minimal avant une requête de couverture, -1 : pas de couverture
+    private final long hedgeMinDelayNanos;
+    private final int hedgeMaxPercent;
+    private final LatencyWindow latencies = new LatencyWindow(HEDGE_WINDOW, 0.95);
+    private final TranslatorMetrics metrics = TranslatorMetrics.shared();
+
+    // Compteurs
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder http2Responses = new LongAdder();
+    private final LongAdder http11Responses = new LongAdder();
+    private final LongAdder newConnections = new LongAdder();
+    private final LongAdder reusedConnections = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder hedgeCandidates = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+    private final LongAdder unrouted = new LongAdder();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    // Une session TLS par connexion : on la reconnaît pour compter les réutilisations
+    private final Set<SSLSession> seenSessions = Collections.synchronizedSet(
+            Collections.newSetFromMap(new WeakHashMap<>()));
+
+    public UpstreamClient(String baseUrl, String model, String apiKey,
+                          Duration connectTimeout, Duration requestTimeout, int threads) {
+        this(baseUrl, model, apiKey, connectTimeout, requestTimeout, threads, false);
+    }
+
+    public UpstreamClient(String baseUrl, String model, String apiKey,
+                          Duration connectTimeout, Duration requestTimeout, int threads,
+                          boolean virtualThreads) {
+        this(baseUrl, model, apiKey, connectTimeout, requestTimeout, threads, virtualThreads, null);
+    }
+
+    public UpstreamClient(String baseUrl, String model, String apiKey,
+                          Duration connectTimeout, Duration requestTimeout, int threads,
+                          boolean virtualThreads, AdmissionController admission) {
+        this(baseUrl, model, apiKey, connectTimeout, requestTimeout, threads, virtualThreads, admission,
+                null, -1, 0);
+    }
+
+    /**
+     * @param admission       contrôle d'admission, null pour envoyer sans limite
+     * @param breaker         disjoncteur, null pour toujours appeler Gemini
+     * @param hedgeMinDelayMs délai minimal d'une requête de couverture, négatif pour ne pas couvrir
+     * @param hedgeMaxPercent requêtes de couverture au plus, en pourcentage des appels
+     */
+    public UpstreamClient(String baseUrl, String model, String apiKey,
+                          Duration connectTimeout, Duration requestTimeout, int threads,
+                          boolean virtualThreads, AdmissionController admission,
+                          CircuitBreaker breaker, long hedgeMinDelayMs, int hedgeMaxPercent) {
+        this(UpstreamRouter.single(baseUrl, model, apiKey), connectTimeout, requestTimeout, threads,
+                virtualThreads, admission, breaker, hedgeMinDelayMs, hedgeMaxPercent);
+    }
+
+    /**
+     * @param router cibles du pool ; le modèle de la première identifie le
+     *               pool dans les clés de cache
+     */
+    public UpstreamClient(UpstreamRouter router, Duration connectTimeout, Duration requestTimeout, int threads,
+                          boolean virtualThreads, AdmissionController admission,
+                          CircuitBreaker breaker, long hedgeMinDelayMs, int hedgeMaxPercent) {
+        this.router = router;
+        this.admission = admission;
+        this.breaker = breaker;
+        this.hedgeMinDelayNanos = hedgeMinDelayMs < 0 ? -1 : TimeUnit.MILLISECONDS.toNanos(hedgeMinDelayMs);
+        this.hedgeMaxPercent = Math.max(0, hedgeMaxPercent);
+        this.model = router.primary().model;
+        this.requestTimeout = requestTimeout;
+
+        this.executor = newExecutor(threads, virtualThreads);
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(connectTimeout)
+                .executor(executor)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build();
+    }
+
+    /**
+     * Client construit à partir de la configuration (translator.upstream.*).
+     */
+    public static UpstreamClient fromConfig() {
+        // Doit être positionné avant la création du premier HttpClient de la JVM
+        if (System.getProperty("jdk.httpclient.keepalive.timeout") == null) {
+            System.setProperty("jdk.httpclient.keepalive.timeout",
+                    String.valueOf(TranslatorConfig.getInt("translator.upstream.keepalive-seconds", 300)));
+        }
+        return new UpstreamClient(
+                UpstreamRouter.fromConfig(),
+                Duration.ofMillis(TranslatorConfig.getLong("translator.upstream.connect-timeout-ms", 5_000)),
+                Duration.ofMillis(TranslatorConfig.getLong("translator.upstream.request-timeout-ms", 30_000)),
+                TranslatorConfig.getInt("translator.upstream.threads", 8),
+                TranslatorConfig.getBoolean("translator.upstream.virtual-threads", false),
+                TranslatorConfig.getBoolean("translator.admission.enabled", true)
+                        ? AdmissionController.fromConfig()
+                        : null,
+                TranslatorConfig.getBoolean("translator.breaker.enabled", true)
+                        ? CircuitBreaker.fromConfig()
+                        : null,
+                TranslatorConfig.getBoolean("translator.hedging.enabled", false)
+                        ? TranslatorConfig.getLong("translator.hedging.min-delay-ms", 200)
+                        : -1,
+                TranslatorConfig.getInt("translator.hedging.max-percent", 10));
+    }
+
+    private static ExecutorService newExecutor(int threads, boolean virtualThreads) {
+        if (virtualThreads) {
+            try {
+                // Appel réflexif : le projet compile en Java 17
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                // JDK sans threads virtuels : pool classique
+            }
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread t = new Thread(r, "upstream-http-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Instance partagée par toutes les ressources JAX-RS.
+     */
+    public static UpstreamClient shared() {
+        UpstreamClient client = shared;
+        if (client == null) {
+            synchronized (UpstreamClient.class) {
+                client = shared;
+                if (client == null) {
+                    client = fromConfig();
+                    shared = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    /**
+     * Remplace l'instance partagée (tests contre un serveur local).
+     */
+    public static synchronized void setShared(UpstreamClient client) {
+        UpstreamClient previous = shared;
+        shared = client;
+        if (previous != null && previous != client) {
+            previous.close();
+        }
+    }
+
+    public CompletableFuture<HttpResponse<String>> generateContentAsync(String payload) {
+        return generateContentAsync(payload, Deadline.none());
+    }
+
+    /**
+     * Appel generateContent dans le budget de la requête : l'attente
+     * d'admission et le timeout HTTP sont bornés par le temps restant.
+     * Disjoncteur ouvert : échec immédiat avec {@link CircuitOpenException}.
+     * Avec la couverture activée, une seconde requête part si la première
+     * tarde au-delà du p95 récent ; la première réponse 200 l'emporte.
+     */
+    public CompletableFuture<HttpResponse<String>> generateContentAsync(String payload, Deadline deadline) {
+        return generateContentAsync(payload, deadline, null);
+    }
+
+    /**
+     * @param hint niveau de modèle souhaité ({@link UpstreamRouter#FAST},
+     *             {@link UpstreamRouter#QUALITY}), null pour n'importe lequel
+     */
+    public CompletableFuture<HttpResponse<String>> generateContentAsync(String payload, Deadline deadline,
+                                                                      String hint) {
+        return guarded(deadline, () -> hedgeMinDelayNanos >= 0
+                ? hedged(payload, deadline, hint)
+                : exchange(new Route(hint, null),
+                        target -> generateContentRequest(target.generateContentUri, payload,
+                                deadline.cap(requestTimeout)),
+                        HttpResponse.BodyHandlers.ofString(), acquire(deadline), true));
+    }
+
+    public CompletableFuture<HttpResponse<String>> streamGenerateContent(String payload,
+                                                                       Flow.Subscriber<String> lines) {
+        return streamGenerateContent(payload, lines, Deadline.none());
+    }
+
+    /**
+     * Appel streamGenerateContent (SSE) : chaque ligne de la réponse est
+     * transmise à l'abonné dès son arrivée. Annuler l'abonnement interrompt
+     * l'appel. Si le statut n'est pas 200, le corps d'erreur est renvoyé
+     * dans la réponse et l'abonné ne reçoit rien. Pas de couverture : les
+     * morceaux déjà transmis ne peuvent pas être repris.
+     */
+    public CompletableFuture<HttpResponse<String>> streamGenerateContent(String payload,
+                                                                       Flow.Subscriber<String> lines,
+                                                                       Deadline deadline) {
+        return streamGenerateContent(payload, lines, deadline, null);
+    }
+
+    public CompletableFuture<HttpResponse<String>> streamGenerateContent(String payload,
+                                                                       Flow.Subscriber<String> lines,
+                                                                       Deadline deadline, String hint) {
+        HttpResponse.BodyHandler<String> handler = info -> info.statusCode() == 200
+                ? HttpResponse.BodySubscribers.mapping(
+                        HttpResponse.BodySubscribers.fromLineSubscriber(lines), ignored -> (String) null)
+                : HttpResponse.BodySubscribers.ofString(StandardCharsets.UTF_8);
+        return guarded(deadline, () -> exchange(new Route(hint, null),
+                target -> generateContentRequest(target.streamGenerateContentUri, payload,
+                        deadline.cap(requestTimeout)),
+                handler, acquire(deadline), false));
+    }
+
+    private HttpRequest generateContentRequest(URI uri, String payload, Duration timeout) {
+        return HttpRequest.newBuilder()
+                .uri(uri)
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(payload))
+                .build();
+    }
+
+    // Budget et disjoncteur, vérifiés avant toute attente ; le résultat final nourrit le disjoncteur
+    private CompletableFuture<HttpResponse<String>> guarded(Deadline deadline,
+                                                            Supplier<CompletableFuture<HttpResponse<String>>> call) {
+        if (deadline.isExpired()) {
+            return CompletableFuture.failedFuture(new DeadlineExceededException("Délai dépassé avant l'appel Gemini"));
+        }
+        if (breaker == null) {
+            return call.get();
+        }
+        if (!breaker.tryAcquire()) {
+            return CompletableFuture.failedFuture(new CircuitOpenException(breaker.retryAfterSeconds()));
+        }
+        // Issue enregistrée avant que l'appelant ne la voie : un essai en demi-ouverture est compté à temps
+        CompletableFuture<HttpResponse<String>> response = call.get();
+        CompletableFuture<HttpResponse<String>> result = new CompletableFuture<>();
+        response.whenComplete((value, error) -> {
+            if (error == null) {
+                int status = value.statusCode();
+                if (status == 429 || status >= 500) {
+                    breaker.onFailure();
+                } else {
+                    breaker.onSuccess();
+                }
+                result.complete(value);
+                return;
+            }
+            Throwable cause = unwrap(error);
+            if (cause instanceof CancellationException || isLocalRefusal(cause)) {
+                breaker.onIgnored();
+            } else {
+                breaker.onFailure();
+            }
+            result.completeExceptionally(cause);
+        });
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                response.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    // Refus local (admission, budget épuisé avant l'envoi) : Gemini n'y est pour rien
+    private static boolean isLocalRefusal(Throwable error) {
+        return error instanceof OverloadException
+                || (error instanceof DeadlineExceededException && error.getCause() == null);
+    }
+
+    /**
+     * Requête de couverture : si la première n'a pas répondu après
+     * max(min-delay, p95 récent), une seconde part, dans la limite de
+     * max-percent des appels et seulement s'il reste une place d'admission
+     * libre. La première réponse 200 gagne et l'autre appel est annulé ;
+     * si les deux échouent, l'erreur de la première est renvoyée. La
+     * seconde va de préférence à une autre cible que la première.
+     */
+    private CompletableFuture<HttpResponse<String>> hedged(String payload, Deadline deadline, String hint) {
+        hedgeCandidates.increment();
+        Function<UpstreamTarget, HttpRequest> request =
+                target -> generateContentRequest(target.generateContentUri, payload, deadline.cap(requestTimeout));
+        Route first = new Route(hint, null);
+        CompletableFuture<HttpResponse<String>> primary =
+                exchange(first, request, HttpResponse.BodyHandlers.ofString(), acquire(deadline), true);
+        long p95 = latencies.percentileNanos(HEDGE_MIN_SAMPLES);
+        if (p95 < 0) {
+            return primary;
+        }
+
+        CompletableFuture<HttpResponse<String>> result = new CompletableFuture<>();
+        AtomicReference<CompletableFuture<HttpResponse<String>>> hedge = new AtomicReference<>();
+        primary.whenComplete((response, error) -> {
+            CompletableFuture<HttpResponse<String>> second = hedge.get();
+            if (isOk(response) || second == null || second.isDone()) {
+                forward(primary, result);
+            }
+        });
+        long delay = Math.max(hedgeMinDelayNanos, p95);
+        CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS).execute(() -> {
+            if (primary.isDone() || result.isDone() || deadline.isExpired()
+                    || hedges.sum() * 100 >= hedgeCandidates.sum() * hedgeMaxPercent) {
+                return;
+            }
+            AdmissionController.Permit permit = null;
+            if (admission != null && (permit = admission.tryAcquire()) == null) {
+                return;
+            }
+            hedges.increment();
+            CompletableFuture<HttpResponse<String>> second = exchange(new Route(hint, first), request,
+                    HttpResponse.BodyHandlers.ofString(), CompletableFuture.completedFuture(permit), true);
+            hedge.set(second);
+            second.whenComplete((response, error) -> {
+                if (isOk(response)) {
+                    if (result.complete(response)) {
+                        hedgeWins.increment();
+                    }
+                } else if (primary.isDone()) {
+                    forward(primary, result);
+                }
+            });
+            if (result.isDone()) {
+                second.cancel(true);
+            }
+        });
+        // Le perdant (ou les deux, si le résultat est annulé) est abandonné
+        result.whenComplete((response, error) -> {
+            primary.cancel(true);
+            CompletableFuture<HttpResponse<String>> second = hedge.get();
+            if (second != null) {
+                second.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    private static boolean isOk(HttpResponse<?> response) {
+        return response != null && response.statusCode() == 200;
+    }
+
+    private static void forward(CompletableFuture<HttpResponse<String>> from,
+                                CompletableFuture<HttpResponse<String>> to) {
+        from.whenComplete((response, error) -> {
+            if (error == null) {
+                to.complete(response);
+            } else {
+                to.completeExceptionally(unwrap(error));
+            }
+        });
+    }
+
+    private CompletableFuture<AdmissionController.Permit> acquire(Deadline deadline) {
+        return admission == null ? CompletableFuture.completedFuture(null) : admission.acquire(deadline);
+    }
+
+    /**
+     * Lance l'appel une fois admis ; la place est rendue avec le statut
+     * obtenu pour ajuster la limite. La cible et la requête ne sont choisies
+     * qu'à l'admission, pour tenir compte de la charge du moment et pour que
+     * le timeout tienne compte de l'attente. Annuler le futur retourné annule
+     * l'attente ou l'appel en cours.
+     *
+     * @param route cible à choisir par le routeur
+     * @param timed latence retenue pour le délai de couverture et le routage (appels complets seulement)
+     */
+    private CompletableFuture<HttpResponse<String>> exchange(Route route,
+                                                             Function<UpstreamTarget, HttpRequest> request,
+                                                             HttpResponse.BodyHandler<String> handler,
+                                                             CompletableFuture<AdmissionController.Permit> admitted,
+                                                             boolean timed) {
+        CompletableFuture<HttpResponse<String>> result = new CompletableFuture<>();
+        admitted.whenComplete((permit, refused) -> {
+            if (refused != null) {
+                result.completeExceptionally(unwrap(refused));
+                return;
+            }
+            if (result.isDone()) {
+                if (permit != null) {
+                    permit.cancel();
+                }
+                return;
+            }
+            UpstreamTarget chosen = router.acquire(route.hint, route.avoid == null ? null : route.avoid.target);
+            if (chosen == null) {
+                unrouted.increment();
+                if (permit != null) {
+                    permit.cancel();
+                }
+                result.completeExceptionally(new OverloadException(
+                        "Aucune cible Gemini disponible (quota atteint ou cibles évincées)",
+                        router.retryAfterSeconds()));
+                return;
+            }
+            route.target = chosen;
+            requests.increment();
+            inFlight.incrementAndGet();
+            long start = System.nanoTime();
+            CompletableFuture<HttpResponse<String>> response = httpClient.sendAsync(request.apply(chosen), handler);
+            response.whenComplete((value, error) -> {
+                inFlight.decrementAndGet();
+                long latency = System.nanoTime() - start;
+                if (error == null) {
+                    record(value);
+                    metrics.upstreamCall(latency, value.statusCode());
+                    if (timed && value.statusCode() == 200) {
+                        latencies.record(latency);
+                    }
+                    long retryAfter = UpstreamException.retryAfterSeconds(value);
+                    if (permit != null) {
+                        permit.release(value.statusCode(), retryAfter);
+                    }
+                    router.release(chosen, timed ? latency : -1, value.statusCode(), retryAfter);
+                    result.complete(value);
+                    return;
+                }
+                Throwable cause = unwrap(error);
+                if (cause instanceof CancellationException) {
+                    if (permit != null) {
+                        permit.cancel();
+                    }
+                    router.cancel(chosen);
+                    result.completeExceptionally(cause);
+                    return;
+                }
+                failures.increment();
+                metrics.upstreamCall(latency, -1);
+                if (permit != null) {
+                    permit.release(-1, 0);
+                }
+                router.release(chosen, latency, -1, 0);
+                if (cause instanceof HttpTimeoutException) {
+                    timeouts.increment();
+                    cause = new DeadlineExceededException("Pas de réponse de Gemini dans le délai", cause);
+                }
+                result.completeExceptionally(cause);
+            });
+            result.whenComplete((value, error) -> {
+                if (result.isCancelled()) {
+                    response.cancel(true);
+                }
+            });
+        });
+        return result;
+    }
+
+    /**
+     * Cible d'un appel, choisie à l'admission.
+     */
+    private static final class Route {
+        final String hint;
+        // Appel principal d'une requête de couverture : sa cible est évitée
+        final Route avoid;
+        volatile UpstreamTarget target;
+
+        Route(String hint, Route avoid) {
+            this.hint = hint;
+            this.avoid = avoid;
+        }
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        Throwable current = error;
+        while (current instanceof CompletionException && current.getCause() != null) {
+            current = current.getCause();
+        }
+        return current;
+    }
+
+    private void record(HttpResponse<?> response) {
+        if (response.version() == HttpClient.Version.HTTP_2) {
+            http2Responses.increment();
+        } else {
+            http11Responses.increment();
+        }
+        response.sslSession().ifPresent(session -> {
+            if (seenSessions.add(session)) {
+                newConnections.increment();
+            } else {
+                reusedConnections.increment();
+            }
+        });
+    }
+
+    /**
+     * Place pour un appel de fond (traductions par tâches) sans retarder les
+     * requêtes interactives : disjoncteur fermé et contrôle d'admission
+     * sous share de sa limite, sans file d'attente. Sans contrôle
+     * d'admission, seul le disjoncteur compte.
+     */
+    public boolean hasHeadroom(double share) {
+        return (breaker == null || breaker.isClosed()) && (admission == null || admission.hasHeadroom(share));
+    }
+
+    public JSONObject stats() {
+        JSONObject stats = new JSONObject()
+                .put("model", model)
+                .put("requests", requests.sum())
+                .put("failures", failures.sum())
+                .put("inFlight", inFlight.get())
+                .put("http2Responses", http2Responses.sum())
+                .put("http11Responses", http11Responses.sum())
+                .put("newConnections", newConnections.sum())
+                .put("reusedConnections", reusedConnections.sum());
+        stats.put("timeouts", timeouts.sum());
+        stats.put("routing", router.stats().put("unavailable", unrouted.sum()));
+        if (admission != null) {
+            stats.put("admission", admission.stats());
+        }
+        if (breaker != null) {
+            stats.put("breaker", breaker.stats());
+        }
+        if (hedgeMinDelayNanos >= 0) {
+            long p95 = latencies.percentileNanos(HEDGE_MIN_SAMPLES);
+            stats.put("hedging", new JSONObject()
+                    .put("hedges", hedges.sum())
+                    .put("wins", hedgeWins.sum())
+                    .put("p95Ms", p95 < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(p95)));
+        }
+        return stats;
+    }
+
+    public String getBaseUrl() {
+        return router.primary().baseUrl;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public String getApiKey() {
+        return router.primary().apiKey;
+    }
+
+    public Duration getRequestTimeout() {
+        return requestTimeout;
+    }
+
+    public void close() {
+        executor.shutdownNow();
+    }
+}
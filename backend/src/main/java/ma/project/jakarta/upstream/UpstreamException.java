@@ -0,0 +1,89 @@
+package ma.project.jakarta.upstream;
+
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Réponse non 200 de l'API Gemini : le statut et le corps sont renvoyés
+ * tels quels au client, avec le Retry-After éventuel.
+ */
+public class UpstreamException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    // google.rpc.RetryInfo dans le corps d'un 429 : "retryDelay": "17s"
+    private static final Pattern RETRY_DELAY = Pattern.compile("\"retryDelay\"\\s*:\\s*\"(\\d+)(?:\\.\\d+)?s\"");
+
+    private final int statusCode;
+    private final String body;
+    private final long retryAfterSeconds;
+
+    public UpstreamException(int statusCode, String body) {
+        this(statusCode, body, 0);
+    }
+
+    public UpstreamException(int statusCode, String body, long retryAfterSeconds) {
+        this("Erreur Gemini HTTP " + statusCode, statusCode, body, retryAfterSeconds);
+    }
+
+    protected UpstreamException(String message, int statusCode, String body, long retryAfterSeconds) {
+        super(message);
+        this.statusCode = statusCode;
+        this.body = body;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Erreur construite à partir d'une réponse non 200 de Gemini.
+     */
+    public static UpstreamException of(HttpResponse<String> response) {
+        return new UpstreamException(response.statusCode(), response.body(), retryAfterSeconds(response));
+    }
+
+    /**
+     * Délai demandé par Gemini (en-tête Retry-After, sinon RetryInfo du
+     * corps), 0 si aucun.
+     */
+    public static long retryAfterSeconds(HttpResponse<?> response) {
+        String header = response.headers().firstValue("Retry-After").orElse(null);
+        if (header != null) {
+            try {
+                return Math.max(0, Long.parseLong(header.trim()));
+            } catch (NumberFormatException e) {
+                try {
+                    ZonedDateTime date = ZonedDateTime.parse(header.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                    return Math.max(0, Duration.between(ZonedDateTime.now(date.getZone()), date).getSeconds());
+                } catch (DateTimeParseException ignored) {
+                    // En-tête illisible : on regarde le corps
+                }
+            }
+        }
+        if (response.body() instanceof String) {
+            Matcher matcher = RETRY_DELAY.matcher((String) response.body());
+            if (matcher.find()) {
+                return Long.parseLong(matcher.group(1));
+            }
+        }
+        return 0;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    /**
+     * Délai à transmettre au client dans Retry-After, 0 si inconnu.
+     */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,234 @@
+package ma.project.jakarta.upstream;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import ma.project.jakarta.config.TranslatorConfig;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Répartition des appels Gemini sur un pool de cibles (clés API, modèles,
+ * URL de base).
+ *
+ * Chaque appel va à la cible disponible de moindre coût estimé, latence
+ * lissée (EWMA) multipliée par ses appels en cours : une cible lente ou
+ * chargée reçoit moins. L'indice de routage de la requête ({@link #FAST},
+ * {@link #QUALITY}) restreint le choix aux cibles de ce niveau tant qu'il y
+ * en a une disponible, sinon n'importe quelle cible répond.
+ *
+ * Une cible est écartée quand son quota local (requêtes par minute, par
+ * jour) est atteint, pendant le Retry-After d'un 429, et évincée après
+ * eject-after échecs consécutifs (5xx, timeout, clé refusée), pour une durée
+ * qui double à chaque nouvelle éviction. La dernière cible saine n'est
+ * jamais évincée : le disjoncteur et le contrôle d'admission prennent alors
+ * le relais, comme avec une seule cible.
+ */
+public class UpstreamRouter {
+
+    /**
+     * Textes courts : modèle rapide.
+     */
+    public static final String FAST = "fast";
+
+    /**
+     * Lots, documents, flux : modèle de qualité.
+     */
+    public static final String QUALITY = "quality";
+
+    private final List<UpstreamTarget> targets;
+    private final double alpha;
+    private final int ejectAfter;
+    private final long ejectNanos;
+    private final long maxEjectNanos;
+    private final long quotaPauseNanos;
+
+    /**
+     * @param alpha        poids d'un nouvel appel dans la latence lissée (0 à 1)
+     * @param ejectAfter   échecs consécutifs avant éviction
+     * @param ejectMs      durée de la première éviction
+     * @param maxEjectMs   durée maximale d'une éviction
+     * @param quotaPauseMs pause sur un 429 sans Retry-After
+     */
+    UpstreamRouter(List<UpstreamTarget> targets, double alpha, int ejectAfter, long ejectMs, long maxEjectMs,
+                   long quotaPauseMs) {
+        if (targets.isEmpty()) {
+            throw new IllegalArgumentException("Aucune cible Gemini configurée");
+        }
+        this.targets = List.copyOf(targets);
+        this.alpha = Math.min(1.0, Math.max(0.01, alpha));
+        this.ejectAfter = Math.max(1, ejectAfter);
+        this.ejectNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, ejectMs));
+        this.maxEjectNanos = Math.max(ejectNanos, TimeUnit.MILLISECONDS.toNanos(maxEjectMs));
+        this.quotaPauseNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, quotaPauseMs));
+    }
+
+    /**
+     * Une seule cible, sans quota local.
+     */
+    public static UpstreamRouter single(String baseUrl, String model, String apiKey) {
+        return new UpstreamRouter(List.of(new UpstreamTarget("default", baseUrl, model, apiKey, "", 0, 0, 1_000)),
+                0.2, 3, 30_000, 300_000, 10_000);
+    }
+
+    /**
+     * Pool de "translator.upstream.targets" (noms séparés par des virgules),
+     * chaque cible lue sous translator.upstream.target.&lt;nom&gt;.* ; sans
+     * pool, une seule cible (translator.upstream.base-url, model, api-key).
+     */
+    public static UpstreamRouter fromConfig() {
+        String baseUrl = TranslatorConfig.getString("translator.upstream.base-url", UpstreamClient.DEFAULT_BASE_URL);
+        String model = TranslatorConfig.getString("translator.upstream.model", UpstreamClient.DEFAULT_MODEL);
+        String apiKey = TranslatorConfig.getString("translator.upstream.api-key", UpstreamClient.DEFAULT_API_KEY);
+        long initialLatencyMs = TranslatorConfig.getLong("translator.routing.initial-latency-ms", 1_000);
+
+        List<UpstreamTarget> targets = new ArrayList<>();
+        for (String name : TranslatorConfig.getString("translator.upstream.targets", "").split(",")) {
+            if (name.isBlank()) {
+                continue;
+            }
+            String prefix = "translator.upstream.target." + name.trim() + ".";
+            targets.add(new UpstreamTarget(name.trim(),
+                    TranslatorConfig.getString(prefix + "base-url", baseUrl),
+                    TranslatorConfig.getString(prefix + "model", model),
+                    TranslatorConfig.getString(prefix + "api-key", apiKey),
+                    TranslatorConfig.getString(prefix + "tier", ""),
+                    TranslatorConfig.getInt(prefix + "requests-per-minute", 0),
+                    TranslatorConfig.getInt(prefix + "requests-per-day", 0),
+                    initialLatencyMs));
+        }
+        if (targets.isEmpty()) {
+            targets.add(new UpstreamTarget("default", baseUrl, model, apiKey, "", 0, 0, initialLatencyMs));
+        }
+        return new UpstreamRouter(targets,
+                TranslatorConfig.getDouble("translator.routing.ewma-alpha", 0.2),
+                TranslatorConfig.getInt("translator.routing.eject-after", 3),
+                TranslatorConfig.getLong("translator.routing.eject-ms", 30_000),
+                TranslatorConfig.getLong("translator.routing.max-eject-ms", 300_000),
+                TranslatorConfig.getLong("translator.routing.quota-pause-ms", 10_000));
+    }
+
+    /**
+     * Première cible déclarée : son modèle identifie le pool dans les clés de cache.
+     */
+    UpstreamTarget primary() {
+        return targets.get(0);
+    }
+
+    /**
+     * Choisit une cible et lui compte l'appel ; null si aucune n'est disponible.
+     *
+     * @param hint  niveau souhaité, null pour n'importe lequel
+     * @param avoid cible à éviter si une autre convient (requête de couverture), ou null
+     */
+    synchronized UpstreamTarget acquire(String hint, UpstreamTarget avoid) {
+        long now = System.nanoTime();
+        UpstreamTarget best = null;
+        int bestRank = Integer.MAX_VALUE;
+        double bestScore = Double.MAX_VALUE;
+        for (UpstreamTarget target : targets) {
+            if (!target.isAvailable(now)) {
+                continue;
+            }
+            // Le niveau demandé passe avant l'évitement de la cible déjà sollicitée
+            int rank = (target.serves(hint) ? 0 : 2) + (target == avoid ? 1 : 0);
+            double score = target.score();
+            if (rank < bestRank || (rank == bestRank && score < bestScore)) {
+                best = target;
+                bestRank = rank;
+                bestScore = score;
+            }
+        }
+        if (best != null) {
+            best.start(now);
+        }
+        return best;
+    }
+
+    /**
+     * Secondes avant qu'une cible redevienne disponible.
+     */
+    long retryAfterSeconds() {
+        long now = System.nanoTime();
+        long soonest = Long.MAX_VALUE;
+        for (UpstreamTarget target : targets) {
+            soonest = Math.min(soonest, target.availableAt(now) - now);
+        }
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(soonest + 999_999_999L));
+    }
+
+    /**
+     * Issue d'un appel.
+     *
+     * @param latencyNanos      latence, négative si elle ne doit pas compter (flux)
+     * @param status            statut HTTP, -1 pour une erreur réseau ou un timeout
+     * @param retryAfterSeconds Retry-After d'un 429, 0 si absent
+     */
+    void release(UpstreamTarget target, long latencyNanos, int status, long retryAfterSeconds) {
+        if (status == 200) {
+            target.succeeded(latencyNanos, alpha);
+            return;
+        }
+        long now = System.nanoTime();
+        if (status == 429) {
+            synchronized (this) {
+                // Seule cible utilisable : le contrôle d'admission gère déjà le Retry-After
+                if (hasOtherAvailable(target, now)) {
+                    target.pauseQuota(now, retryAfterSeconds > 0
+                            ? TimeUnit.SECONDS.toNanos(retryAfterSeconds)
+                            : quotaPauseNanos);
+                } else {
+                    target.answered();
+                }
+            }
+            return;
+        }
+        if (status >= 0 && status < 500 && status != 401 && status != 403) {
+            target.answered();
+            return;
+        }
+        boolean threshold = target.failed(latencyNanos, alpha, status == 401 || status == 403 ? 1 : ejectAfter);
+        if (threshold) {
+            synchronized (this) {
+                if (hasOtherHealthy(target, now)) {
+                    target.eject(now, ejectNanos, maxEjectNanos);
+                }
+            }
+        }
+    }
+
+    /**
+     * Appel annulé avant sa réponse.
+     */
+    void cancel(UpstreamTarget target) {
+        target.cancel();
+    }
+
+    private boolean hasOtherAvailable(UpstreamTarget target, long now) {
+        for (UpstreamTarget other : targets) {
+            if (other != target && other.isAvailable(now)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean hasOtherHealthy(UpstreamTarget target, long now) {
+        for (UpstreamTarget other : targets) {
+            if (other != target && !other.isEjected(now)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public JSONObject stats() {
+        long now = System.nanoTime();
+        JSONArray list = new JSONArray();
+        for (UpstreamTarget target : targets) {
+            list.put(target.stats(now));
+        }
+        return new JSONObject().put("targets", list);
+    }
+}
@@ -0,0 +1,256 @@
+package ma.project.jakarta.upstream;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONObject;
+
+/**
+ * Une cible du pool : un modèle, une clé API, une URL de base. Garde son
+ * état pour le routeur : appels en cours, latence lissée (EWMA), quota
+ * consommé, échecs consécutifs et éviction.
+ *
+ * Tous les champs mutables sont sous le moniteur de la cible.
+ */
+final class UpstreamTarget {
+
+    final String name;
+    final String model;
+    // Vide : sert toutes les requêtes, quel que soit l'indice de routage
+    final String tier;
+    final String baseUrl;
+    final String apiKey;
+    final URI generateContentUri;
+    final URI streamGenerateContentUri;
+
+    private final RateWindow perMinute;
+    private final RateWindow perDay;
+
+    private int outstanding;
+    private double ewmaNanos;
+    private int consecutiveFailures;
+    private int ejectionsInRow;
+    private long ejectedUntil;
+    private long quotaPausedUntil;
+
+    private long requests;
+    private long failures;
+    private long ejections;
+    private long quotaPauses;
+
+    /**
+     * @param requestsPerMinute quota de la clé, 0 : pas de limite
+     * @param requestsPerDay    quota journalier de la clé, 0 : pas de limite
+     * @param initialLatencyMs  latence supposée avant le premier appel
+     */
+    UpstreamTarget(String name, String baseUrl, String model, String apiKey, String tier,
+                   int requestsPerMinute, int requestsPerDay, long initialLatencyMs) {
+        this.name = name;
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.model = model;
+        this.apiKey = apiKey;
+        this.tier = tier == null ? "" : tier;
+        this.generateContentUri = URI.create(this.baseUrl + "/" + model + ":generateContent?key=" + apiKey);
+        this.streamGenerateContentUri = URI.create(this.baseUrl + "/" + model
+                + ":streamGenerateContent?alt=sse&key=" + apiKey);
+        this.perMinute = requestsPerMinute > 0 ? new RateWindow(requestsPerMinute, TimeUnit.MINUTES.toNanos(1)) : null;
+        this.perDay = requestsPerDay > 0 ? new RateWindow(requestsPerDay, TimeUnit.DAYS.toNanos(1)) : null;
+        this.ewmaNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, initialLatencyMs));
+        // Instants relatifs à nanoTime, dont l'origine est arbitraire (éventuellement négative)
+        long now = System.nanoTime();
+        this.ejectedUntil = now;
+        this.quotaPausedUntil = now;
+    }
+
+    boolean serves(String hint) {
+        return hint == null || tier.isEmpty() || tier.equals(hint);
+    }
+
+    /**
+     * Ni évincée, ni en pause sur un 429, et quota local non atteint.
+     */
+    synchronized boolean isAvailable(long now) {
+        return isHealthy(now) && now - quotaPausedUntil >= 0
+                && (perMinute == null || perMinute.hasRoom(now))
+                && (perDay == null || perDay.hasRoom(now));
+    }
+
+    // Éviction seule, quotas non compris
+    private boolean isHealthy(long now) {
+        return now - ejectedUntil >= 0;
+    }
+
+    synchronized boolean isEjected(long now) {
+        return !isHealthy(now);
+    }
+
+    /**
+     * Coût estimé d'un appel de plus : latence lissée multipliée par les appels en cours.
+     */
+    synchronized double score() {
+        return ewmaNanos * (outstanding + 1);
+    }
+
+    /**
+     * Instant (nanoTime) où la cible redeviendra disponible, now si elle l'est.
+     */
+    synchronized long availableAt(long now) {
+        long at = later(now, later(ejectedUntil, quotaPausedUntil));
+        if (perMinute != null) {
+            at = later(at, perMinute.roomAt(now));
+        }
+        if (perDay != null) {
+            at = later(at, perDay.roomAt(now));
+        }
+        return at;
+    }
+
+    private static long later(long a, long b) {
+        return a - b >= 0 ? a : b;
+    }
+
+    synchronized void start(long now) {
+        outstanding++;
+        requests++;
+        if (perMinute != null) {
+            perMinute.add(now);
+        }
+        if (perDay != null) {
+            perDay.add(now);
+        }
+    }
+
+    /**
+     * Appel annulé : ni latence ni échec à retenir.
+     */
+    synchronized void cancel() {
+        outstanding--;
+    }
+
+    /**
+     * @param latencyNanos latence de l'appel, négative si elle n'est pas
+     *                     représentative (flux : durée de toute la génération)
+     */
+    synchronized void succeeded(long latencyNanos, double alpha) {
+        outstanding--;
+        if (latencyNanos >= 0) {
+            ewmaNanos += alpha * (latencyNanos - ewmaNanos);
+        }
+        consecutiveFailures = 0;
+        ejectionsInRow = 0;
+    }
+
+    /**
+     * Réponse reçue sans faute de la cible (400, 404...) : elle reste saine,
+     * mais la latence d'une erreur ne dit rien de celle d'une traduction.
+     */
+    synchronized void answered() {
+        outstanding--;
+        consecutiveFailures = 0;
+    }
+
+    /**
+     * 5xx, timeout, erreur réseau ou clé refusée.
+     *
+     * @return true si la cible a atteint le seuil d'éviction
+     */
+    synchronized boolean failed(long latencyNanos, double alpha, int ejectAfter) {
+        outstanding--;
+        failures++;
+        // Un timeout pèse sur la latence lissée : la cible est moins choisie avant même l'éviction
+        if (latencyNanos > ewmaNanos) {
+            ewmaNanos += alpha * (latencyNanos - ewmaNanos);
+        }
+        return ++consecutiveFailures >= ejectAfter;
+    }
+
+    /**
+     * Éviction, de plus en plus longue tant que la cible échoue à son retour.
+     */
+    synchronized void eject(long now, long baseNanos, long maxNanos) {
+        long duration = Math.min(maxNanos, baseNanos << Math.min(ejectionsInRow, 16));
+        ejectionsInRow++;
+        ejections++;
+        consecutiveFailures = 0;
+        ejectedUntil = now + Math.max(1, duration);
+    }
+
+    /**
+     * 429 : quota de la clé épuisé côté Gemini, cible écartée jusqu'au Retry-After.
+     */
+    synchronized void pauseQuota(long now, long durationNanos) {
+        outstanding--;
+        quotaPauses++;
+        quotaPausedUntil = now + Math.max(1, durationNanos);
+    }
+
+    synchronized JSONObject stats(long now) {
+        JSONObject stats = new JSONObject()
+                .put("name", name)
+                .put("model", model)
+                .put("tier", tier.isEmpty() ? "any" : tier)
+                .put("outstanding", outstanding)
+                .put("ewmaMs", Math.round(ewmaNanos / 1e5) / 10.0)
+                .put("requests", requests)
+                .put("failures", failures)
+                .put("ejected", !isHealthy(now))
+                .put("ejections", ejections)
+                .put("quotaPaused", now - quotaPausedUntil < 0)
+                .put("quotaPauses", quotaPauses);
+        if (perMinute != null) {
+            stats.put("minuteUsed", Math.round(perMinute.used(now))).put("minuteLimit", perMinute.limit);
+        }
+        if (perDay != null) {
+            stats.put("dayUsed", Math.round(perDay.used(now))).put("dayLimit", perDay.limit);
+        }
+        return stats;
+    }
+
+    /**
+     * Fenêtre glissante approchée à deux tranches : la tranche précédente
+     * compte au prorata du temps qu'elle recouvre encore.
+     */
+    static final class RateWindow {
+        final int limit;
+        private final long size;
+        private long sliceStart = System.nanoTime();
+        private int current;
+        private int previous;
+
+        RateWindow(int limit, long sizeNanos) {
+            this.limit = limit;
+            this.size = sizeNanos;
+        }
+
+        boolean hasRoom(long now) {
+            return used(now) + 1 <= limit;
+        }
+
+        void add(long now) {
+            roll(now);
+            current++;
+        }
+
+        double used(long now) {
+            roll(now);
+            double overlap = 1.0 - (double) (now - sliceStart) / size;
+            return previous * overlap + current;
+        }
+
+        /**
+         * Instant où un appel de plus devrait tenir dans la fenêtre (au plus tôt la fin de la tranche).
+         */
+        long roomAt(long now) {
+            return hasRoom(now) ? now : sliceStart + size;
+        }
+
+        private void roll(long now) {
+            long elapsed = now - sliceStart;
+            if (elapsed >= size) {
+                previous = elapsed >= 2 * size ? 0 : current;
+                current = 0;
+                sliceStart += elapsed / size * size;
+            }
+        }
+    }
+}
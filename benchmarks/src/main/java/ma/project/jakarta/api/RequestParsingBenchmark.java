@@ -0,0 +1,65 @@
+package ma.project.jakarta.api;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Analyse du corps reçu par /translate, ancien {"text": "..."} ou schéma v1
+ * avec langues et options : lecture en place des octets reçus
+ * (parseRequest) contre l'ancien chemin, String puis JSONObject
+ * (parseRequestDom). Avec -prof gc, comparer gc.alloc.rate.norm.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class RequestParsingBenchmark {
+
+    @Param({"32", "2000"})
+    int textChars;
+
+    @Param({"legacy", "v1"})
+    String schema;
+
+    byte[] body;
+
+    @Setup
+    public void setUp() {
+        StringBuilder text = new StringBuilder(textChars);
+        while (text.length() < textChars) {
+            text.append("Hello my friend, how are you \"today\"? ");
+        }
+        text.setLength(textChars);
+        JSONObject json = new JSONObject().put("text", text.toString());
+        if (schema.equals("v1")) {
+            json.put("v", 1).put("source", "en").put("target", "ary")
+                    .put("options", new JSONObject().put("script", "arabic"));
+        }
+        body = json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public String parseRequest() {
+        return TranslatorResource.parseRequest(body).getText();
+    }
+
+    @Benchmark
+    public String parseRequestDom() {
+        return new JSONObject(new String(body, StandardCharsets.UTF_8)).getString("text");
+    }
+}
@@ -0,0 +1,97 @@
+package ma.project.jakarta.api;
+
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ma.project.jakarta.bench.CompletedAsyncResponse;
+import ma.project.jakarta.bench.GeminiStub;
+import ma.project.jakarta.engine.TranslationEngines;
+import ma.project.jakarta.service.TranslationService;
+import ma.project.jakarta.upstream.UpstreamClient;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Chemin complet de TranslatorResource.translate (analyse, chaîne de
+ * moteurs, appel HTTP, réponse JSON) contre le faux Gemini de la JVM, sans
+ * latence simulée : on mesure le coût propre du backend.
+ *
+ * cached : texte déjà traduit, servi par le cache.
+ * upstream : texte nouveau à chaque appel, un aller-retour HTTP local.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class TranslateBenchmark {
+
+    GeminiStub stub;
+    UpstreamClient upstream;
+    TranslatorResource cachedResource;
+    TranslatorResource upstreamResource;
+    final AtomicLong sequence = new AtomicLong();
+    byte[] cachedBody;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        stub = GeminiStub.start(0, 0, 0);
+        // Ni contrôle d'admission ni disjoncteur : le débit mesuré est celui du code
+        upstream = new UpstreamClient(stub.baseUrl(), "gemini-2.5-flash", "bench",
+                Duration.ofSeconds(2), Duration.ofSeconds(10), 8, false, null);
+        cachedResource = new TranslatorResource(new TranslationService(upstream,
+                TranslationEngines.create("cache,gemini", upstream)));
+        upstreamResource = new TranslatorResource(new TranslationService(upstream,
+                TranslationEngines.create("gemini", upstream)));
+        cachedBody = new JSONObject().put("text", "Hello my friend, how are you today?").toString()
+                .getBytes(StandardCharsets.UTF_8);
+        translate(cachedResource, cachedBody);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        upstream.close();
+        stub.close();
+    }
+
+    @Benchmark
+    public Response cached() throws IOException {
+        return translate(cachedResource, cachedBody);
+    }
+
+    @Benchmark
+    public Response upstream() throws IOException {
+        String body = "{\"text\":\"Hello my friend, sentence " + sequence.incrementAndGet() + "\"}";
+        return translate(upstreamResource, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Le corps est écrit (dans le vide) comme le ferait le conteneur
+    private static Response translate(TranslatorResource resource, byte[] body) throws IOException {
+        CompletedAsyncResponse asyncResponse = new CompletedAsyncResponse();
+        resource.translate(body, null, asyncResponse);
+        Response response = asyncResponse.response().join();
+        if (response.getStatus() != 200) {
+            throw new IllegalStateException("HTTP " + response.getStatus() + " : " + response.getEntity());
+        }
+        ((StreamingOutput) response.getEntity()).write(OutputStream.nullOutputStream());
+        return response;
+    }
+}
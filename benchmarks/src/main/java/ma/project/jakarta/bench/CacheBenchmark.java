@@ -0,0 +1,66 @@
+package ma.project.jakarta.bench;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import ma.project.jakarta.cache.CacheKey;
+import ma.project.jakarta.cache.TranslationCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Lectures du cache de traductions : clé normalisée, succès, échec.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class CacheBenchmark {
+
+    private static final int ENTRIES = 50_000;
+
+    TranslationCache cache;
+    CacheKey[] present;
+    CacheKey[] absent;
+    String[] texts;
+
+    @Setup
+    public void setUp() {
+        cache = new TranslationCache(100_000_000, 100_000, Duration.ofHours(1));
+        present = new CacheKey[ENTRIES];
+        absent = new CacheKey[ENTRIES];
+        texts = new String[ENTRIES];
+        for (int i = 0; i < ENTRIES; i++) {
+            texts[i] = "  Hello   my friend number " + i + "!  ";
+            present[i] = CacheKey.of(texts[i], "en-darija", "gemini-2.5-flash");
+            absent[i] = CacheKey.of("Unknown sentence " + i, "en-darija", "gemini-2.5-flash");
+            cache.put(present[i], "سلام صاحبي رقم " + i);
+        }
+    }
+
+    @Benchmark
+    public CacheKey normalizeKey() {
+        return CacheKey.of(texts[ThreadLocalRandom.current().nextInt(ENTRIES)], "en-darija", "gemini-2.5-flash");
+    }
+
+    @Benchmark
+    public String hit() {
+        return cache.get(present[ThreadLocalRandom.current().nextInt(ENTRIES)]);
+    }
+
+    @Benchmark
+    public String miss() {
+        return cache.get(absent[ThreadLocalRandom.current().nextInt(ENTRIES)]);
+    }
+}
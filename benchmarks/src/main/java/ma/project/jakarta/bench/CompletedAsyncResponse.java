@@ -0,0 +1,93 @@
+package ma.project.jakarta.bench;
+
+import jakarta.ws.rs.container.AsyncResponse;
+import jakarta.ws.rs.container.TimeoutHandler;
+import jakarta.ws.rs.core.Response;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AsyncResponse hors conteneur : la réponse reprise termine un futur.
+ * Pas de timeout (le budget X-Deadline-Ms s'applique toujours).
+ */
+public final class CompletedAsyncResponse implements AsyncResponse {
+
+    private final CompletableFuture<Response> response = new CompletableFuture<>();
+
+    public CompletableFuture<Response> response() {
+        return response;
+    }
+
+    @Override
+    public boolean resume(Object entity) {
+        return response.complete(entity instanceof Response ? (Response) entity : Response.ok(entity).build());
+    }
+
+    @Override
+    public boolean resume(Throwable error) {
+        return response.completeExceptionally(error);
+    }
+
+    @Override
+    public boolean cancel() {
+        return response.cancel(false);
+    }
+
+    @Override
+    public boolean cancel(int retryAfter) {
+        return cancel();
+    }
+
+    @Override
+    public boolean cancel(Date retryAfter) {
+        return cancel();
+    }
+
+    @Override
+    public boolean isSuspended() {
+        return !response.isDone();
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return response.isCancelled();
+    }
+
+    @Override
+    public boolean isDone() {
+        return response.isDone();
+    }
+
+    @Override
+    public boolean setTimeout(long time, TimeUnit unit) {
+        return true;
+    }
+
+    @Override
+    public void setTimeoutHandler(TimeoutHandler handler) {
+    }
+
+    @Override
+    public Collection<Class<?>> register(Class<?> callback) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public Map<Class<?>, Collection<Class<?>>> register(Class<?> callback, Class<?>... callbacks) {
+        return Collections.emptyMap();
+    }
+
+    @Override
+    public Collection<Class<?>> register(Object callback) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public Map<Class<?>, Collection<Class<?>>> register(Object callback, Object... callbacks) {
+        return Collections.emptyMap();
+    }
+}
@@ -0,0 +1,183 @@
+package ma.project.jakarta.bench;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.json.JSONObject;
+
+/**
+ * Textes rejoués par le générateur de charge, dans l'ordre, en boucle.
+ *
+ * Fichier JSONL : une ligne par requête, soit {"text": "...", "kind": "..."}
+ * (kind facultatif, sert à ventiler le rapport), soit une simple chaîne JSON.
+ * Sans fichier, un mélange réaliste est généré : phrases courtes inédites,
+ * phrases populaires répétées et paragraphes.
+ */
+public final class Corpus {
+
+    public static final class Entry {
+        final String text;
+        final String kind;
+        final String body;
+
+        Entry(String text, String kind) {
+            this.text = text;
+            this.kind = kind;
+            this.body = new JSONObject().put("v", 1).put("text", text)
+                    .put("source", "en").put("target", "ary").toString();
+        }
+
+        public String text() {
+            return text;
+        }
+
+        public String kind() {
+            return kind;
+        }
+
+        /**
+         * Corps JSON de POST /translate (schéma v1), préparé une fois pour toutes.
+         */
+        public String body() {
+            return body;
+        }
+    }
+
+    private static final String[] SUBJECTS = {
+            "my brother", "the teacher", "our neighbour", "the driver", "my friend", "the doctor",
+            "your sister", "the shop owner", "my grandmother", "the new student"
+    };
+    private static final String[] VERBS = {
+            "is waiting for", "bought", "is looking for", "forgot", "brought", "needs",
+            "cooked", "found", "sold", "is cleaning"
+    };
+    private static final String[] OBJECTS = {
+            "the keys", "some bread", "a taxi", "the tea", "the tickets", "fresh mint",
+            "the old car", "a new phone", "the couscous", "the documents"
+    };
+    private static final String[] PLACES = {
+            "at the market", "near the station", "in Casablanca", "at home", "in the medina",
+            "after lunch", "before the prayer", "on Friday", "at the beach", "in the morning"
+    };
+    private static final String[] POPULAR = {
+            "Hello", "How are you?", "Thank you very much", "Good morning", "See you tomorrow",
+            "What is your name?", "How much does it cost?", "Where is the train station?",
+            "I don't understand", "Can you help me?", "Good night", "Excuse me",
+            "I am hungry", "Let's go", "No problem", "Welcome", "I love Morocco",
+            "Please speak slowly", "Where are you from?", "Have a nice day"
+    };
+
+    private final List<Entry> entries;
+    private final AtomicLong cursor = new AtomicLong();
+
+    private Corpus(List<Entry> entries) {
+        if (entries.isEmpty()) {
+            throw new IllegalArgumentException("Corpus vide");
+        }
+        this.entries = entries;
+    }
+
+    public static Corpus load(Path file) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int number = 0;
+            while ((line = reader.readLine()) != null) {
+                number++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                try {
+                    if (line.startsWith("\"")) {
+                        String text = new JSONObject("{\"text\":" + line + "}").getString("text");
+                        entries.add(new Entry(text, kindOf(text)));
+                    } else {
+                        JSONObject object = new JSONObject(line);
+                        String text = object.getString("text");
+                        entries.add(new Entry(text, object.optString("kind", kindOf(text))));
+                    }
+                } catch (RuntimeException e) {
+                    throw new IllegalArgumentException(file + ":" + number + " : ligne invalide (" + e.getMessage() + ")");
+                }
+            }
+        }
+        return new Corpus(entries);
+    }
+
+    /**
+     * Mélange par défaut : ~50 % de phrases courtes inédites, ~35 % de
+     * phrases populaires (qui reviennent, comme en production) et ~15 % de
+     * paragraphes d'environ 600 caractères. Déterministe pour une graine donnée.
+     */
+    public static Corpus generated(int size, long seed) {
+        Random random = new Random(seed);
+        List<Entry> entries = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            int roll = random.nextInt(100);
+            if (roll < 50) {
+                entries.add(new Entry(sentence(random, i), "short"));
+            } else if (roll < 85) {
+                // Loi de Zipf approchée : les premières phrases reviennent le plus souvent
+                int rank = (int) Math.floor(Math.pow(POPULAR.length + 1, random.nextDouble())) - 1;
+                entries.add(new Entry(POPULAR[Math.min(rank, POPULAR.length - 1)], "repeat"));
+            } else {
+                StringBuilder paragraph = new StringBuilder();
+                int sentence = 0;
+                while (paragraph.length() < 600) {
+                    paragraph.append(sentence(random, i * 31 + sentence++)).append(' ');
+                }
+                entries.add(new Entry(paragraph.toString().trim(), "paragraph"));
+            }
+        }
+        Collections.shuffle(entries, random);
+        return new Corpus(entries);
+    }
+
+    // Le numéro rend chaque phrase unique : elle ne sera servie ni par le cache ni par le lexique
+    private static String sentence(Random random, int number) {
+        return capitalize(SUBJECTS[random.nextInt(SUBJECTS.length)]) + " "
+                + VERBS[random.nextInt(VERBS.length)] + " "
+                + OBJECTS[random.nextInt(OBJECTS.length)] + " "
+                + PLACES[random.nextInt(PLACES.length)] + " for the " + ordinal(number + 1) + " time.";
+    }
+
+    private static String capitalize(String text) {
+        return Character.toUpperCase(text.charAt(0)) + text.substring(1);
+    }
+
+    private static String ordinal(int n) {
+        int mod100 = n % 100;
+        String suffix = (mod100 >= 11 && mod100 <= 13) ? "th"
+                : switch (n % 10) {
+                    case 1 -> "st";
+                    case 2 -> "nd";
+                    case 3 -> "rd";
+                    default -> "th";
+                };
+        return n + suffix;
+    }
+
+    private static String kindOf(String text) {
+        return text.length() > 200 ? "paragraph" : "short";
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Entrée suivante ; reprend au début en fin de corpus.
+     */
+    public Entry next() {
+        return entries.get((int) (cursor.getAndIncrement() % entries.size()));
+    }
+}
@@ -0,0 +1,161 @@
+package ma.project.jakarta.bench;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Faux serveur Gemini dans la JVM (generateContent et
+ * streamGenerateContent), pour mesurer le backend sans réseau ni quota.
+ *
+ * La réponse a la forme de celle de l'API (candidates, usageMetadata...) ;
+ * le texte renvoyé est dérivé de la requête. La latence est réglable :
+ * latencyMs fixe plus un tirage uniforme dans [0, jitterMs].
+ */
+public final class GeminiStub implements AutoCloseable {
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final long latencyMs;
+    private final long jitterMs;
+    private final LongAdder requests = new LongAdder();
+
+    private GeminiStub(HttpServer server, ExecutorService executor, long latencyMs, long jitterMs) {
+        this.server = server;
+        this.executor = executor;
+        this.latencyMs = latencyMs;
+        this.jitterMs = jitterMs;
+    }
+
+    /**
+     * @param port 0 pour un port libre
+     */
+    public static GeminiStub start(int port, long latencyMs, long jitterMs) throws IOException {
+        // Sans TCP_NODELAY, en-têtes et corps partent en deux paquets : +40 ms d'ACK retardé par réponse
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+        ExecutorService executor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "gemini-stub");
+            t.setDaemon(true);
+            return t;
+        });
+        GeminiStub stub = new GeminiStub(server, executor, Math.max(0, latencyMs), Math.max(0, jitterMs));
+        server.createContext("/", stub::handle);
+        server.setExecutor(executor);
+        server.start();
+        return stub;
+    }
+
+    /**
+     * URL à passer à translator.upstream.base-url.
+     */
+    public String baseUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort()
+                + "/v1beta/models";
+    }
+
+    public long requests() {
+        return requests.sum();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            requests.increment();
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            String answer = answer(body);
+            pause();
+            if (exchange.getRequestURI().getPath().endsWith(":streamGenerateContent")) {
+                stream(exchange, answer);
+                return;
+            }
+            byte[] response = responseJson(answer).toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json; charset=UTF-8");
+            exchange.sendResponseHeaders(200, response.length);
+            exchange.getResponseBody().write(response);
+        }
+    }
+
+    // Trois morceaux SSE, comme streamGenerateContent?alt=sse
+    private static void stream(HttpExchange exchange, String answer) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        int third = Math.max(1, answer.length() / 3);
+        for (int start = 0; start < answer.length(); start += third) {
+            String part = answer.substring(start, Math.min(answer.length(), start + third));
+            out.write(("data: " + responseJson(part) + "\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        }
+    }
+
+    private void pause() {
+        long delay = latencyMs + (jitterMs > 0 ? ThreadLocalRandom.current().nextLong(jitterMs + 1) : 0);
+        if (delay > 0) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static String answer(String requestBody) {
+        try {
+            String prompt = new JSONObject(requestBody)
+                    .getJSONArray("contents").getJSONObject(0)
+                    .getJSONArray("parts").getJSONObject(0)
+                    .getString("text");
+            return "ترجمة (" + Integer.toHexString(prompt.hashCode()) + ")";
+        } catch (RuntimeException e) {
+            return "ترجمة";
+        }
+    }
+
+    private static JSONObject responseJson(String text) {
+        JSONObject content = new JSONObject()
+                .put("parts", new JSONArray().put(new JSONObject().put("text", text)))
+                .put("role", "model");
+        return new JSONObject()
+                .put("candidates", new JSONArray().put(new JSONObject()
+                        .put("content", content)
+                        .put("finishReason", "STOP")
+                        .put("index", 0)))
+                .put("usageMetadata", new JSONObject()
+                        .put("promptTokenCount", 24)
+                        .put("candidatesTokenCount", 8)
+                        .put("totalTokenCount", 32))
+                .put("modelVersion", "gemini-2.5-flash");
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Serveur seul : java -cp benchmarks.jar ma.project.jakarta.bench.GeminiStub [port] [latencyMs] [jitterMs]
+     */
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8089;
+        long latency = args.length > 1 ? Long.parseLong(args[1]) : 300;
+        long jitter = args.length > 2 ? Long.parseLong(args[2]) : 0;
+        GeminiStub stub = start(port, latency, jitter);
+        System.out.println("Faux Gemini sur " + stub.baseUrl() + " (latence " + latency + " ms + [0, " + jitter + "] ms)");
+        Thread.currentThread().join();
+    }
+}
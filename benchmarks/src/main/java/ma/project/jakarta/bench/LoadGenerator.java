@@ -0,0 +1,523 @@
+package ma.project.jakarta.bench;
+
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Response;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import ma.project.jakarta.api.TranslatorResource;
+import ma.project.jakarta.metrics.Histogram;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.jersey.grizzly2.httpserver.GrizzlyHttpServerFactory;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Générateur de charge pour POST /api/translator/translate, en modèle
+ * ouvert : les requêtes partent à un débit fixé (régulier ou poissonien),
+ * que le serveur suive ou non.
+ *
+ * La latence est comptée depuis l'instant où la requête aurait dû partir,
+ * pas depuis son envoi effectif : si le serveur (ou la limite de
+ * concurrence) retarde les envois, ce retard est dans les percentiles au
+ * lieu d'être masqué (omission coordonnée). Le temps de service, depuis
+ * l'envoi, est donné à côté.
+ *
+ * Chaque palier de --rates est précédé d'un échauffement non compté ; le
+ * rapport indique le débit tenable le plus élevé (p99 sous --slo-ms et
+ * moins de 1 % d'erreurs).
+ *
+ * --embedded démarre dans la JVM le faux Gemini et l'API (Jersey sur
+ * Grizzly, qui sait suspendre les requêtes) avec la configuration
+ * translator.* habituelle.
+ */
+public final class LoadGenerator {
+
+    static final String DEFAULT_URL = "http://localhost:8080/darija-translator/api/translator/translate";
+
+    // Au-delà, le palier n'est pas tenable
+    private static final double MAX_ERROR_RATE = 0.01;
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999, 0.9999};
+
+    private final Options options;
+    private final Corpus corpus;
+    private final HttpClient client;
+    private final URI uri;
+    private final String authorization;
+    private final Semaphore permits;
+    private final Random random;
+
+    LoadGenerator(Options options, Corpus corpus, URI uri) {
+        this.options = options;
+        this.corpus = corpus;
+        this.uri = uri;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        this.authorization = options.user == null ? null : basic(options.user, options.password);
+        this.permits = new Semaphore(options.concurrency);
+        this.random = new Random(options.seed);
+    }
+
+    /**
+     * Un palier : requêtes envoyées pendant duration au débit rate.
+     */
+    Step run(double rate, Duration duration) throws InterruptedException {
+        Step step = new Step(rate, duration);
+        double intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        double intended = start;
+
+        while (intended < end) {
+            long due = (long) intended;
+            long now;
+            while ((now = System.nanoTime()) < due) {
+                LockSupport.parkNanos(due - now);
+            }
+            // La limite de concurrence retarde l'envoi, pas l'instant prévu
+            permits.acquire();
+            step.lag.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - due));
+            send(step, corpus.next(), due);
+            intended += options.poisson
+                    ? -Math.log(1 - random.nextDouble()) * intervalNanos
+                    : intervalNanos;
+        }
+
+        // Attente des réponses encore en vol
+        long timeout = options.timeout.toMillis() + 5_000;
+        if (permits.tryAcquire(options.concurrency, timeout, TimeUnit.MILLISECONDS)) {
+            permits.release(options.concurrency);
+        }
+        step.finish(start);
+        return step;
+    }
+
+    private void send(Step step, Corpus.Entry entry, long intendedStart) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri)
+                .timeout(options.timeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(entry.body(), StandardCharsets.UTF_8));
+        if (authorization != null) {
+            request.header("Authorization", authorization);
+        }
+        if (options.deadlineMs > 0) {
+            request.header(TranslatorResource.DEADLINE_HEADER, Long.toString(options.deadlineMs));
+        }
+        step.sent.increment();
+        long sent = System.nanoTime();
+        client.sendAsync(request.build(), HttpResponse.BodyHandlers.discarding())
+                .whenComplete((response, error) -> {
+                    long done = System.nanoTime();
+                    // 0 : pas de réponse HTTP (connexion refusée, délai dépassé...)
+                    step.completed(entry.kind(), error == null ? response.statusCode() : 0,
+                            done - intendedStart, done - sent, done);
+                    // Après l'enregistrement : run() attend tous les permis pour clore le palier
+                    permits.release();
+                });
+    }
+
+    /**
+     * Résultats d'un palier. Latences en microsecondes.
+     */
+    static final class Step {
+        final double rate;
+        final Duration duration;
+        final Histogram latency = new Histogram();
+        final Histogram service = new Histogram();
+        final Histogram lag = new Histogram();
+        final Map<String, Histogram> byKind = new ConcurrentHashMap<>();
+        final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+        final LongAdder sent = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final AtomicLong lastCompletion = new AtomicLong();
+        double elapsedSeconds;
+
+        Step(double rate, Duration duration) {
+            this.rate = rate;
+            this.duration = duration;
+        }
+
+        void completed(String kind, int status, long latencyNanos, long serviceNanos, long done) {
+            long micros = TimeUnit.NANOSECONDS.toMicros(latencyNanos);
+            latency.record(micros);
+            service.record(TimeUnit.NANOSECONDS.toMicros(serviceNanos));
+            byKind.computeIfAbsent(kind, k -> new Histogram()).record(micros);
+            statuses.computeIfAbsent(status, s -> new LongAdder()).increment();
+            if (status < 200 || status >= 300) {
+                errors.increment();
+            }
+            lastCompletion.accumulateAndGet(done, Math::max);
+        }
+
+        void finish(long start) {
+            long last = lastCompletion.get();
+            elapsedSeconds = last > start ? (last - start) / 1e9 : duration.toNanos() / 1e9;
+        }
+
+        long completed() {
+            return latency.snapshot().count();
+        }
+
+        double throughput() {
+            return completed() / elapsedSeconds;
+        }
+
+        double errorRate() {
+            long completed = completed();
+            return completed == 0 ? 1.0 : (double) errors.sum() / completed;
+        }
+
+        long p99Micros() {
+            return latency.snapshot().valueAt(0.99);
+        }
+
+        boolean sustainable(long sloMillis) {
+            // Toutes les requêtes prévues doivent avoir reçu une réponse
+            return completed() == sent.sum()
+                    && errorRate() < MAX_ERROR_RATE
+                    && p99Micros() <= TimeUnit.MILLISECONDS.toMicros(sloMillis);
+        }
+
+        JSONObject toJson(long sloMillis) {
+            JSONObject kinds = new JSONObject();
+            new TreeMap<>(byKind).forEach((kind, histogram) -> kinds.put(kind, percentiles(histogram)));
+            JSONObject status = new JSONObject();
+            new TreeMap<>(statuses).forEach((code, count) -> status.put(Integer.toString(code), count.sum()));
+            return new JSONObject()
+                    .put("rate", rate)
+                    .put("durationSeconds", duration.toSeconds())
+                    .put("sent", sent.sum())
+                    .put("completed", completed())
+                    .put("throughput", throughput())
+                    .put("errors", errors.sum())
+                    .put("errorRate", errorRate())
+                    .put("statuses", status)
+                    .put("latencyMs", percentiles(latency))
+                    .put("serviceTimeMs", percentiles(service))
+                    .put("schedulerLagMs", percentiles(lag))
+                    .put("byKind", kinds)
+                    .put("sustainable", sustainable(sloMillis));
+        }
+
+        private static JSONObject percentiles(Histogram histogram) {
+            Histogram.Snapshot snapshot = histogram.snapshot();
+            JSONObject json = new JSONObject().put("count", snapshot.count());
+            for (double q : QUANTILES) {
+                json.put("p" + label(q), millis(snapshot.valueAt(q)));
+            }
+            return json
+                    .put("max", millis(snapshot.max()))
+                    .put("mean", snapshot.count() == 0 ? 0.0 : millis(snapshot.sum()) / snapshot.count());
+        }
+
+        void print(long sloMillis) {
+            System.out.printf(Locale.ROOT, "%n== %.0f req/s, %d s ==%n", rate, duration.toSeconds());
+            System.out.printf(Locale.ROOT, "envoyées %d, terminées %d, débit %.1f req/s, erreurs %d (%.2f %%)%n",
+                    sent.sum(), completed(), throughput(), errors.sum(), errorRate() * 100);
+            StringBuilder codes = new StringBuilder();
+            new TreeMap<>(statuses).forEach((code, count) -> codes.append(' ').append(code).append('=').append(count.sum()));
+            System.out.println("statuts :" + codes);
+            System.out.println("latence (depuis l'instant prévu) : " + line(latency));
+            System.out.println("temps de service (depuis l'envoi) : " + line(service));
+            System.out.println("retard d'envoi                    : " + line(lag));
+            new TreeMap<>(byKind).forEach((kind, histogram) ->
+                    System.out.printf(Locale.ROOT, "  %-10s %s%n", kind, line(histogram)));
+            System.out.println(sustainable(sloMillis) ? "=> tenable" : "=> NON tenable (SLO p99 " + sloMillis + " ms)");
+        }
+
+        private static String line(Histogram histogram) {
+            Histogram.Snapshot snapshot = histogram.snapshot();
+            StringBuilder out = new StringBuilder("n=" + snapshot.count());
+            for (double q : QUANTILES) {
+                out.append(String.format(Locale.ROOT, " p%s=%.2f", label(q), millis(snapshot.valueAt(q))));
+            }
+            return out.append(String.format(Locale.ROOT, " max=%.2f ms", millis(snapshot.max()))).toString();
+        }
+
+        private static String label(double quantile) {
+            String label = String.format(Locale.ROOT, "%.2f", quantile * 100);
+            return label.replaceAll("\\.?0+$", "");
+        }
+
+        private static double millis(long micros) {
+            return micros / 1000.0;
+        }
+    }
+
+    /**
+     * Options de la ligne de commande, "--nom valeur" ou "--nom=valeur".
+     */
+    static final class Options {
+        String url;
+        Path corpus;
+        int corpusSize = 10_000;
+        List<Double> rates = List.of(50.0);
+        boolean poisson;
+        Duration duration = Duration.ofSeconds(30);
+        Duration warmup = Duration.ofSeconds(10);
+        int concurrency = 512;
+        String user;
+        String password = "";
+        long deadlineMs;
+        long sloMillis = 1000;
+        Duration timeout = Duration.ofSeconds(60);
+        long seed = 42;
+        Path out;
+        boolean embedded;
+        int port;
+        long stubLatencyMs = 300;
+        long stubJitterMs = 100;
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (!arg.startsWith("--")) {
+                    throw new IllegalArgumentException("Option inattendue : " + arg);
+                }
+                String name = arg.substring(2);
+                String value = null;
+                int equals = name.indexOf('=');
+                if (equals >= 0) {
+                    value = name.substring(equals + 1);
+                    name = name.substring(0, equals);
+                }
+                if (name.equals("poisson")) {
+                    options.poisson = true;
+                    continue;
+                }
+                if (name.equals("embedded")) {
+                    options.embedded = true;
+                    continue;
+                }
+                if (name.equals("help")) {
+                    usage();
+                    System.exit(0);
+                }
+                if (value == null) {
+                    if (i + 1 >= args.length) {
+                        throw new IllegalArgumentException("Valeur manquante pour --" + name);
+                    }
+                    value = args[++i];
+                }
+                switch (name) {
+                    case "url" -> options.url = value;
+                    case "corpus" -> options.corpus = Path.of(value);
+                    case "corpus-size" -> options.corpusSize = Integer.parseInt(value);
+                    case "rate", "rates" -> {
+                        List<Double> rates = new ArrayList<>();
+                        for (String rate : value.split(",")) {
+                            rates.add(Double.parseDouble(rate.trim()));
+                        }
+                        options.rates = rates;
+                    }
+                    case "duration" -> options.duration = Duration.ofSeconds(Long.parseLong(value));
+                    case "warmup" -> options.warmup = Duration.ofSeconds(Long.parseLong(value));
+                    case "concurrency" -> options.concurrency = Integer.parseInt(value);
+                    case "user" -> options.user = value;
+                    case "password" -> options.password = value;
+                    case "deadline-ms" -> options.deadlineMs = Long.parseLong(value);
+                    case "slo-ms" -> options.sloMillis = Long.parseLong(value);
+                    case "timeout-s" -> options.timeout = Duration.ofSeconds(Long.parseLong(value));
+                    case "seed" -> options.seed = Long.parseLong(value);
+                    case "out" -> options.out = Path.of(value);
+                    case "port" -> options.port = Integer.parseInt(value);
+                    case "stub-latency-ms" -> options.stubLatencyMs = Long.parseLong(value);
+                    case "stub-jitter-ms" -> options.stubJitterMs = Long.parseLong(value);
+                    default -> throw new IllegalArgumentException("Option inconnue : --" + name);
+                }
+            }
+            for (double rate : options.rates) {
+                if (rate <= 0) {
+                    throw new IllegalArgumentException("Débit invalide : " + rate);
+                }
+            }
+            if (options.concurrency < 1) {
+                throw new IllegalArgumentException("--concurrency doit être positif");
+            }
+            return options;
+        }
+
+        static void usage() {
+            System.out.println(String.join(System.lineSeparator(),
+                    "java -cp benchmarks.jar ma.project.jakarta.bench.LoadGenerator [options]",
+                    "  --url URL              cible (défaut " + DEFAULT_URL + ")",
+                    "  --embedded             API et faux Gemini démarrés dans la JVM (--url ignorée)",
+                    "  --port N               port de l'API embarquée (défaut : libre)",
+                    "  --stub-latency-ms N    latence du faux Gemini (défaut 300)",
+                    "  --stub-jitter-ms N     aléa ajouté, uniforme dans [0, N] (défaut 100)",
+                    "  --corpus FILE.jsonl    {\"text\":...,\"kind\":...} ou \"texte\" par ligne (défaut : mélange généré)",
+                    "  --corpus-size N        taille du mélange généré (défaut 10000)",
+                    "  --rates R1,R2,...      paliers en requêtes/s (défaut 50) ; --rate R pour un seul",
+                    "  --poisson              arrivées poissoniennes au lieu d'intervalles réguliers",
+                    "  --duration S           durée mesurée de chaque palier (défaut 30)",
+                    "  --warmup S             échauffement non compté avant chaque palier (défaut 10)",
+                    "  --concurrency N        requêtes en vol au plus (défaut 512)",
+                    "  --user U --password P  authentification BASIC (rôle \"user\" côté serveur)",
+                    "  --deadline-ms N        en-tête " + TranslatorResource.DEADLINE_HEADER,
+                    "  --slo-ms N             p99 visé pour le débit tenable (défaut 1000)",
+                    "  --timeout-s N          délai maximal d'une requête (défaut 60)",
+                    "  --seed N               graine des arrivées et du mélange (défaut 42)",
+                    "  --out FILE.json        rapport JSON"));
+        }
+    }
+
+    /**
+     * Refuse les requêtes sans les identifiants attendus, comme la
+     * contrainte BASIC de web.xml sur /api/*.
+     */
+    static final class BasicAuthFilter implements ContainerRequestFilter {
+        private final String expected;
+
+        BasicAuthFilter(String user, String password) {
+            this.expected = basic(user, password);
+        }
+
+        @Override
+        public void filter(ContainerRequestContext request) {
+            if (!expected.equals(request.getHeaderString(HttpHeaders.AUTHORIZATION))) {
+                request.abortWith(Response.status(Response.Status.UNAUTHORIZED)
+                        .header(HttpHeaders.WWW_AUTHENTICATE, "Basic realm=\"ApplicationRealm\"")
+                        .build());
+            }
+        }
+    }
+
+    static String basic(String user, String password) {
+        return "Basic " + Base64.getEncoder()
+                .encodeToString((user + ":" + password).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void setIfAbsent(String key, String value) {
+        if (System.getProperty(key) == null) {
+            System.setProperty(key, value);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            Options.usage();
+            System.exit(2);
+            return;
+        }
+
+        Corpus corpus = options.corpus != null
+                ? Corpus.load(options.corpus)
+                : Corpus.generated(options.corpusSize, options.seed);
+
+        GeminiStub stub = null;
+        HttpServer server = null;
+        URI uri = URI.create(options.url != null ? options.url : DEFAULT_URL);
+        if (options.embedded) {
+            stub = GeminiStub.start(0, options.stubLatencyMs, options.stubJitterMs);
+            // Lu à l'initialisation des classes du backend : avant toute requête
+            System.setProperty("translator.upstream.base-url", stub.baseUrl());
+            setIfAbsent("translator.upstream.api-key", "bench");
+            setIfAbsent("translator.memory.enabled", "false");
+
+            ResourceConfig config = new ResourceConfig(TranslatorResource.class);
+            if (options.user != null) {
+                config.register(new BasicAuthFilter(options.user, options.password));
+            }
+            server = GrizzlyHttpServerFactory.createHttpServer(
+                    URI.create("http://127.0.0.1:" + options.port + "/darija-translator/api/"), config);
+            uri = URI.create("http://127.0.0.1:" + server.getListener("grizzly").getPort()
+                    + "/darija-translator/api/translator/translate");
+            System.out.println("API embarquée sur " + uri + ", faux Gemini " + stub.baseUrl()
+                    + " (" + options.stubLatencyMs + " ms + [0, " + options.stubJitterMs + "] ms)");
+        }
+
+        System.out.printf(Locale.ROOT, "Cible %s, corpus %d textes, arrivées %s, concurrence max %d%n",
+                uri, corpus.size(), options.poisson ? "poissoniennes" : "régulières", options.concurrency);
+
+        LoadGenerator generator = new LoadGenerator(options, corpus, uri);
+        List<Step> steps = new ArrayList<>();
+        try {
+            for (double rate : options.rates) {
+                if (!options.warmup.isZero()) {
+                    generator.run(rate, options.warmup);
+                }
+                Step step = generator.run(rate, options.duration);
+                step.print(options.sloMillis);
+                steps.add(step);
+            }
+        } finally {
+            if (server != null) {
+                server.shutdownNow();
+            }
+            if (stub != null) {
+                stub.close();
+            }
+        }
+
+        Step best = null;
+        for (Step step : steps) {
+            if (step.sustainable(options.sloMillis) && (best == null || step.rate > best.rate)) {
+                best = step;
+            }
+        }
+        System.out.println();
+        System.out.println(best == null
+                ? "Aucun palier tenable (p99 <= " + options.sloMillis + " ms, erreurs < 1 %)"
+                : String.format(Locale.ROOT, "Débit tenable : %.0f req/s (p99 %.2f ms)",
+                        best.rate, best.p99Micros() / 1000.0));
+
+        if (options.out != null) {
+            JSONArray report = new JSONArray();
+            for (Step step : steps) {
+                report.put(step.toJson(options.sloMillis));
+            }
+            Map<String, Object> settings = new HashMap<>();
+            settings.put("url", uri.toString());
+            settings.put("poisson", options.poisson);
+            settings.put("concurrency", options.concurrency);
+            settings.put("sloMs", options.sloMillis);
+            settings.put("corpus", options.corpus == null ? "generated" : options.corpus.toString());
+            if (options.embedded) {
+                settings.put("stubLatencyMs", options.stubLatencyMs);
+                settings.put("stubJitterMs", options.stubJitterMs);
+            }
+            JSONObject json = new JSONObject()
+                    .put("settings", new JSONObject(settings))
+                    .put("steps", report)
+                    .put("sustainableRate", best == null ? 0 : best.rate);
+            try {
+                Files.writeString(options.out, json.toString(2), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                System.err.println("Écriture du rapport impossible : " + e.getMessage());
+            }
+        }
+        System.exit(0);
+    }
+}
@@ -0,0 +1,92 @@
+package ma.project.jakarta.engine;
+
+import java.util.concurrent.TimeUnit;
+
+import ma.project.jakarta.bench.StaticResponse;
+import ma.project.jakarta.service.TranslationService;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Construction du corps envoyé à generateContent et extraction du texte de
+ * sa réponse ; les variantes *Dom refont l'ancien chemin par JSONObject,
+ * pour comparer temps et allocations (-prof gc).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class GeminiPayloadBenchmark {
+
+    @Param({"32", "2000"})
+    int textChars;
+
+    String text;
+    StaticResponse response;
+
+    @Setup
+    public void setUp() {
+        StringBuilder builder = new StringBuilder(textChars);
+        while (builder.length() < textChars) {
+            builder.append("Hello my friend, how are you today? ");
+        }
+        builder.setLength(textChars);
+        text = builder.toString();
+
+        // Réponse de la forme renvoyée par l'API, traduction de même longueur
+        String translation = "سلام صاحبي، كيداير اليوم؟ ".repeat(Math.max(1, textChars / 26));
+        JSONObject body = new JSONObject()
+                .put("candidates", new JSONArray().put(new JSONObject()
+                        .put("content", new JSONObject()
+                                .put("parts", new JSONArray().put(new JSONObject().put("text", translation)))
+                                .put("role", "model"))
+                        .put("finishReason", "STOP")
+                        .put("index", 0)))
+                .put("usageMetadata", new JSONObject()
+                        .put("promptTokenCount", textChars / 4)
+                        .put("candidatesTokenCount", textChars / 4)
+                        .put("totalTokenCount", textChars / 2))
+                .put("modelVersion", "gemini-2.5-flash");
+        response = new StaticResponse(200, body.toString());
+    }
+
+    @Benchmark
+    public String buildPayload() {
+        return GeminiEngine.promptPayload(text, TranslationService.DIRECTION);
+    }
+
+    @Benchmark
+    public String buildPayloadDom() {
+        String prompt = "Translate the following English text to Moroccan Darija (Arabic dialect). " +
+                "Provide only the translation: " + text;
+        JSONObject content = new JSONObject().put("parts", new JSONArray().put(new JSONObject().put("text", prompt)));
+        return new JSONObject().put("contents", new JSONArray().put(content)).toString();
+    }
+
+    @Benchmark
+    public String extractText() {
+        return GeminiEngine.extractText(response);
+    }
+
+    @Benchmark
+    public String extractTextDom() {
+        return new JSONObject(response.body())
+                .getJSONArray("candidates").getJSONObject(0)
+                .getJSONObject("content")
+                .getJSONArray("parts").getJSONObject(0)
+                .getString("text");
+    }
+}
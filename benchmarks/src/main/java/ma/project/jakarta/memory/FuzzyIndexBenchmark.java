@@ -0,0 +1,88 @@
+package ma.project.jakarta.memory;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import ma.project.jakarta.cache.CacheKey;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Recherches dans la mémoire approchée (100 000 textes) : même gabarit
+ * (nombre, casse, ponctuation), une lettre changée, aucun voisin.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class FuzzyIndexBenchmark {
+
+    private static final int ENTRIES = 100_000;
+    private static final int VOCABULARY = 3_000;
+    private static final String DIRECTION = "en-darija";
+    private static final String MODEL = "gemini-2.5-flash";
+
+    FuzzyIndex index;
+    CacheKey[] sameTemplate;
+    CacheKey[] oneEdit;
+    CacheKey[] unrelated;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        String[] words = new String[VOCABULARY];
+        for (int i = 0; i < VOCABULARY; i++) {
+            StringBuilder word = new StringBuilder();
+            for (int c = 2 + random.nextInt(7); c > 0; c--) {
+                word.append((char) ('a' + random.nextInt(26)));
+            }
+            words[i] = word.toString();
+        }
+        index = new FuzzyIndex(0.9, 300, ENTRIES, 64, 50_000);
+        sameTemplate = new CacheKey[ENTRIES];
+        oneEdit = new CacheKey[ENTRIES];
+        unrelated = new CacheKey[ENTRIES];
+        for (int i = 0; i < ENTRIES; i++) {
+            StringBuilder text = new StringBuilder();
+            for (int w = 4 + random.nextInt(8); w > 0; w--) {
+                text.append(words[random.nextInt(VOCABULARY)]).append(' ');
+            }
+            String sentence = text.toString();
+            index.put(key(sentence + i), "ترجمة " + i);
+            sameTemplate[i] = key(sentence.toUpperCase() + ", " + (i + 1) + "!");
+            int middle = sentence.length() / 2;
+            oneEdit[i] = key(sentence.substring(0, middle) + 'x' + sentence.substring(middle + 1) + i);
+            unrelated[i] = key("completely unrelated sentence about the weather " + i);
+        }
+    }
+
+    private static CacheKey key(String text) {
+        return CacheKey.of(text, DIRECTION, MODEL);
+    }
+
+    @Benchmark
+    public FuzzyIndex.Match sameTemplate() {
+        return index.find(sameTemplate[ThreadLocalRandom.current().nextInt(ENTRIES)]);
+    }
+
+    @Benchmark
+    public FuzzyIndex.Match oneEdit() {
+        return index.find(oneEdit[ThreadLocalRandom.current().nextInt(ENTRIES)]);
+    }
+
+    @Benchmark
+    public FuzzyIndex.Match miss() {
+        return index.find(unrelated[ThreadLocalRandom.current().nextInt(ENTRIES)]);
+    }
+}
@@ -72,24 +72,19 @@ async function translate() {
     copyBtn.disabled = true;
     
     try {
-        // Préparer le prompt selon la direction
-        let prompt;
-        if (isEnglishToDarija) {
-            prompt = `Translate the following English text to Moroccan Darija. ` +
-                    `IMPORTANT: Write the translation ONLY in Arabic script (not Latin letters). ` +
-                    `Use Arabic letters: ا، ب، ت، ث، etc. ` +
-                    `Text: ${text}`;
-        } else {
-            prompt = `Translate the following Moroccan Darija text (in Arabic script) to English. ` +
-                    `Text: ${text}`;
-        }
-        
+        // Le serveur choisit la consigne selon la paire de langues : seul le texte est envoyé
         const response = await fetch(API_URL, {
             method: 'POST',
             headers: {
                 'Content-Type': 'application/json'
             },
-            body: JSON.stringify({ text: prompt })
+            body: JSON.stringify({
+                v: 1,
+                text: text,
+                source: isEnglishToDarija ? 'en' : 'ary',
+                target: isEnglishToDarija ? 'ary' : 'en',
+                options: { script: 'arabic' }
+            })
         });
         
         if (!response.ok) {
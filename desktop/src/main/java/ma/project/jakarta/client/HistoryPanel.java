@@ -0,0 +1,177 @@
+package ma.project.jakarta.client;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.*;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Historique consultable, du plus récent au plus ancien. Reste fluide avec
+ * des centaines de milliers d'entrées : le filtrage se fait hors du thread
+ * Swing (seul le dernier résultat est affiché) et la liste, à hauteur de
+ * ligne fixe, ne dessine que les lignes visibles.
+ */
+class HistoryPanel extends JPanel {
+
+    private static final int MAX_CHARS = 140;
+    private static final Font ENTRY_FONT = new Font("Segoe UI", Font.PLAIN, 13);
+    // Même rouge que les erreurs de la fenêtre principale
+    private static final Color FAILED_COLOR = new Color(239, 68, 68);
+
+    private final LocalStore store;
+    private final Consumer<LocalStore.Entry> onSelect;
+    private final JTextField searchField = new JTextField();
+    private final JLabel countLabel = new JLabel(" ");
+    private final EntryListModel model = new EntryListModel();
+    private final JList<LocalStore.Entry> list = new JList<>(model);
+    private final Timer searchTimer = new Timer(200, e -> refresh());
+    private final ExecutorService filterExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "translator-history-search");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Lu et modifié sur le thread Swing uniquement
+    private int generation;
+
+    /**
+     * @param onSelect entrée choisie (double-clic ou Entrée), sur le thread Swing
+     */
+    HistoryPanel(LocalStore store, Consumer<LocalStore.Entry> onSelect) {
+        super(new BorderLayout(8, 8));
+        this.store = store;
+        this.onSelect = onSelect;
+        setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+
+        searchTimer.setRepeats(false);
+        searchField.setFont(new Font("Segoe UI", Font.PLAIN, 14));
+        searchField.setToolTipText("Rechercher dans le texte source ou la traduction");
+        searchField.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+            public void changedUpdate(javax.swing.event.DocumentEvent e) { searchTimer.restart(); }
+            public void removeUpdate(javax.swing.event.DocumentEvent e) { searchTimer.restart(); }
+            public void insertUpdate(javax.swing.event.DocumentEvent e) { searchTimer.restart(); }
+        });
+
+        // Hauteur et largeur fixes : la liste ne mesure pas chaque ligne
+        list.setFixedCellHeight(44);
+        list.setFixedCellWidth(400);
+        list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        list.setCellRenderer(new EntryRenderer());
+        list.addMouseListener(new MouseAdapter() {
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2) {
+                    select();
+                }
+            }
+        });
+        list.addKeyListener(new KeyAdapter() {
+            public void keyPressed(KeyEvent e) {
+                if (e.getKeyCode() == KeyEvent.VK_ENTER) {
+                    select();
+                }
+            }
+        });
+
+        JPanel top = new JPanel(new BorderLayout(8, 0));
+        top.add(new JLabel("Rechercher :"), BorderLayout.WEST);
+        top.add(searchField, BorderLayout.CENTER);
+        add(top, BorderLayout.NORTH);
+        add(new JScrollPane(list), BorderLayout.CENTER);
+        countLabel.setForeground(Color.GRAY);
+        add(countLabel, BorderLayout.SOUTH);
+    }
+
+    /**
+     * Relance la recherche en cours sur l'historique à jour.
+     */
+    void refresh() {
+        int mine = ++generation;
+        String query = LocalStore.normalize(searchField.getText());
+        filterExecutor.execute(() -> {
+            List<LocalStore.Entry> entries = store.liveEntries();
+            LocalStore.Entry[] matches = new LocalStore.Entry[entries.size()];
+            int count = 0;
+            for (int i = entries.size() - 1; i >= 0; i--) {
+                LocalStore.Entry entry = entries.get(i);
+                if (query.isEmpty() || entry.searchable.contains(query)) {
+                    matches[count++] = entry;
+                }
+            }
+            LocalStore.Entry[] result = Arrays.copyOf(matches, count);
+            SwingUtilities.invokeLater(() -> {
+                if (mine != generation) {
+                    return;
+                }
+                model.setEntries(result);
+                countLabel.setText(result.length + (query.isEmpty() ? " traductions" : " résultats")
+                        + " sur " + entries.size());
+            });
+        });
+    }
+
+    private void select() {
+        LocalStore.Entry entry = list.getSelectedValue();
+        if (entry != null) {
+            onSelect.accept(entry);
+        }
+    }
+
+    private static final class EntryListModel extends AbstractListModel<LocalStore.Entry> {
+        private LocalStore.Entry[] entries = new LocalStore.Entry[0];
+
+        void setEntries(LocalStore.Entry[] entries) {
+            int previous = this.entries.length;
+            this.entries = entries;
+            if (previous > 0) {
+                fireIntervalRemoved(this, 0, previous - 1);
+            }
+            if (entries.length > 0) {
+                fireIntervalAdded(this, 0, entries.length - 1);
+            }
+        }
+
+        @Override
+        public int getSize() {
+            return entries.length;
+        }
+
+        @Override
+        public LocalStore.Entry getElementAt(int index) {
+            return entries[index];
+        }
+    }
+
+    private static final class EntryRenderer extends DefaultListCellRenderer {
+        private final SimpleDateFormat dateFormat = new SimpleDateFormat("dd/MM HH:mm");
+
+        @Override
+        public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                      boolean isSelected, boolean cellHasFocus) {
+            LocalStore.Entry entry = (LocalStore.Entry) value;
+            String translation = entry.isPending() ? "(en attente de connexion)"
+                    : entry.isFailed() ? "(refusée par le serveur)" : shorten(entry.translation);
+            String label = dateFormat.format(new Date(entry.time))
+                    + (entry.englishToDarija ? "  EN → DA  " : "  DA → EN  ")
+                    + shorten(entry.text) + "  →  " + translation;
+            super.getListCellRendererComponent(list, label, index, isSelected, cellHasFocus);
+            setFont(ENTRY_FONT);
+            if (entry.isPending() && !isSelected) {
+                setForeground(Color.GRAY);
+            } else if (entry.isFailed() && !isSelected) {
+                setForeground(FAILED_COLOR);
+            }
+            return this;
+        }
+
+        private static String shorten(String text) {
+            String single = text.replace('\n', ' ');
+            return single.length() <= MAX_CHARS ? single : single.substring(0, MAX_CHARS) + "…";
+        }
+    }
+}
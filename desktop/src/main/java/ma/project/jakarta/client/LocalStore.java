@@ -0,0 +1,403 @@
+package ma.project.jakarta.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Historique local des traductions, persistant entre deux lancements :
+ * les textes déjà traduits s'affichent sans réseau et les traductions
+ * demandées hors ligne attendent ici leur synchronisation.
+ *
+ * Fichier history.log append-only d'enregistrements
+ * [longueur][crc32][date][sens][texte][traduction][mode], relu au
+ * démarrage jusqu'au premier enregistrement invalide. Un texte retraduit
+ * ajoute un enregistrement ; le plus récent l'emporte. Au démarrage, le
+ * fichier est réécrit sans les enregistrements remplacés quand ceux-ci sont
+ * majoritaires.
+ *
+ * L'index (texte normalisé + sens) et l'historique sont en mémoire ; les
+ * écritures partent sur un thread dédié pour ne jamais bloquer l'interface.
+ */
+final class LocalStore implements Closeable {
+
+    private static final int MAGIC = 0x44544848;   // "DTHH"
+    private static final int VERSION = 1;
+    private static final int HEADER = 8;
+    private static final int RECORD_HEADER = 8;
+    private static final int MAX_RECORD = 16 << 20;
+
+    /**
+     * Mode d'une entrée abandonnée : le serveur a refusé le texte à chaque synchronisation.
+     */
+    static final String SYNC_FAILED = "sync-failed";
+
+    /**
+     * Une traduction de l'historique ; translation null : en attente de
+     * synchronisation, ou abandonnée si mode vaut {@link #SYNC_FAILED}.
+     */
+    static final class Entry {
+        final long time;
+        final boolean englishToDarija;
+        final String text;
+        final String translation;
+        final String mode;
+        // Recherche de l'historique : calculé une fois
+        final String searchable;
+        volatile boolean replaced;
+
+        Entry(long time, boolean englishToDarija, String text, String translation, String mode) {
+            this.time = time;
+            this.englishToDarija = englishToDarija;
+            this.text = text;
+            this.translation = translation;
+            this.mode = mode;
+            this.searchable = normalize(text) + '\n' + (translation == null ? "" : normalize(translation));
+        }
+
+        boolean isPending() {
+            return translation == null && mode == null;
+        }
+
+        boolean isFailed() {
+            return translation == null && SYNC_FAILED.equals(mode);
+        }
+
+        boolean isTranslated() {
+            return translation != null;
+        }
+    }
+
+    // Sans fichier (historique en mémoire seulement) tant que attach n'a pas été appelé
+    private FileChannel channel;
+    private ExecutorService writer;
+
+    private final Map<String, Entry> byKey = new HashMap<>();
+    // Ordre chronologique, entrées remplacées comprises (filtrées à la lecture)
+    private Entry[] history = new Entry[1024];
+    private int size;
+    private int live;
+
+    private LocalStore() {
+    }
+
+    /**
+     * Ouvre (ou crée) l'historique dans le répertoire donné.
+     */
+    static LocalStore open(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        Path file = dir.resolve("history.log");
+        long[] end = {HEADER};
+        List<Entry> records = read(file, end);
+        LocalStore store = new LocalStore();
+        for (Entry entry : records) {
+            store.index(entry);
+        }
+        // Réécriture dès qu'un tiers du fichier n'est plus que des versions remplacées
+        int replaced = records.size() - store.live;
+        if (records.size() > 1000 && replaced > records.size() / 3) {
+            List<Entry> live = store.liveEntries();
+            rewrite(file, live);
+            end[0] = Files.size(file);
+            store = new LocalStore();
+            for (Entry entry : live) {
+                store.index(entry);
+            }
+        }
+        store.attach(file, end[0]);
+        return store;
+    }
+
+    /**
+     * Historique sans fichier, quand le répertoire n'est pas accessible.
+     */
+    static LocalStore memoryOnly() {
+        return new LocalStore();
+    }
+
+    // Écritures à la suite de la partie valide : un enregistrement tronqué (arrêt brutal) est écrasé
+    private void attach(Path file, long end) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        if (end <= HEADER) {
+            channel.truncate(0);
+            channel.write(ByteBuffer.allocate(HEADER).putInt(MAGIC).putInt(VERSION).flip(), 0);
+            end = HEADER;
+        }
+        channel.truncate(end);
+        channel.position(end);
+        writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "translator-history");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // -Dtranslator.store.dir, sinon ~/.darija-translator/desktop
+    static Path defaultDirectory() {
+        String configured = System.getProperty("translator.store.dir");
+        if (configured != null && !configured.isBlank()) {
+            return Paths.get(configured);
+        }
+        return Paths.get(System.getProperty("user.home"), ".darija-translator", "desktop");
+    }
+
+    /**
+     * Traduction connue (ou en attente) pour ce texte, à la casse et aux
+     * espaces près ; null sinon.
+     */
+    synchronized Entry find(String text, boolean englishToDarija) {
+        return byKey.get(key(text, englishToDarija));
+    }
+
+    synchronized void put(String text, boolean englishToDarija, String translation, String mode) {
+        Entry existing = byKey.get(key(text, englishToDarija));
+        if (existing != null && translation.equals(existing.translation)) {
+            return;
+        }
+        append(new Entry(System.currentTimeMillis(), englishToDarija, text, translation, mode));
+    }
+
+    /**
+     * Met le texte en file pour la prochaine synchronisation ; false s'il
+     * est déjà traduit ou en attente. Un texte abandonné est remis en file
+     * (nouvelle demande explicite).
+     */
+    synchronized boolean queue(String text, boolean englishToDarija) {
+        Entry existing = byKey.get(key(text, englishToDarija));
+        if (existing != null && !existing.isFailed()) {
+            return false;
+        }
+        append(new Entry(System.currentTimeMillis(), englishToDarija, text, null, null));
+        return true;
+    }
+
+    /**
+     * Abandonne la synchronisation d'une entrée en attente ; sans effet si
+     * elle a été traduite ou remplacée entre-temps.
+     */
+    synchronized void markFailed(Entry entry) {
+        if (entry.isPending() && byKey.get(key(entry.text, entry.englishToDarija)) == entry) {
+            append(new Entry(System.currentTimeMillis(), entry.englishToDarija, entry.text, null, SYNC_FAILED));
+        }
+    }
+
+    synchronized List<Entry> pending() {
+        List<Entry> pending = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            Entry entry = history[i];
+            if (!entry.replaced && entry.isPending()) {
+                pending.add(entry);
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * Entrées courantes, de la plus ancienne à la plus récente.
+     */
+    synchronized List<Entry> liveEntries() {
+        List<Entry> entries = new ArrayList<>(live);
+        for (int i = 0; i < size; i++) {
+            if (!history[i].replaced) {
+                entries.add(history[i]);
+            }
+        }
+        return entries;
+    }
+
+    synchronized int size() {
+        return live;
+    }
+
+    private void append(Entry entry) {
+        index(entry);
+        if (writer != null) {
+            byte[] record = encode(entry);
+            writer.execute(() -> write(record));
+        }
+    }
+
+    private void index(Entry entry) {
+        Entry previous = byKey.put(key(entry.text, entry.englishToDarija), entry);
+        if (previous != null) {
+            previous.replaced = true;
+        } else {
+            live++;
+        }
+        if (size == history.length) {
+            history = Arrays.copyOf(history, size * 2);
+        }
+        history[size++] = entry;
+    }
+
+    private void write(byte[] record) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(record);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (writer == null) {
+            return;
+        }
+        writer.shutdown();
+        try {
+            writer.awaitTermination(5, TimeUnit.SECONDS);
+            channel.force(false);
+            channel.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Clé de recherche : sens, puis texte en NFC, minuscules, espaces réduits.
+     */
+    static String key(String text, boolean englishToDarija) {
+        return (englishToDarija ? "en-ary\u0001" : "ary-en\u0001") + normalize(text);
+    }
+
+    static String normalize(String text) {
+        String nfc = Normalizer.normalize(text, Normalizer.Form.NFC).toLowerCase(Locale.ROOT);
+        StringBuilder out = new StringBuilder(nfc.length());
+        boolean space = false;
+        for (int i = 0; i < nfc.length(); i++) {
+            char c = nfc.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = out.length() > 0;
+            } else {
+                if (space) {
+                    out.append(' ');
+                    space = false;
+                }
+                out.append(c);
+            }
+        }
+        return out.toString();
+    }
+
+    // ---------------------------------------------------------------- format
+
+    private static byte[] encode(Entry entry) {
+        byte[] text = entry.text.getBytes(StandardCharsets.UTF_8);
+        byte[] translation = entry.translation == null ? null : entry.translation.getBytes(StandardCharsets.UTF_8);
+        byte[] mode = entry.mode == null ? null : entry.mode.getBytes(StandardCharsets.UTF_8);
+        int payload = 8 + 1 + 4 + text.length + 4 + length(translation) + 4 + length(mode);
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER + payload);
+        buffer.putInt(payload).putInt(0)
+                .putLong(entry.time)
+                .put((byte) (entry.englishToDarija ? 1 : 0));
+        putBytes(buffer, text);
+        putBytes(buffer, translation);
+        putBytes(buffer, mode);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), RECORD_HEADER, payload);
+        buffer.putInt(4, (int) crc.getValue());
+        return buffer.array();
+    }
+
+    private static int length(byte[] bytes) {
+        return bytes == null ? 0 : bytes.length;
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(bytes.length).put(bytes);
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    // Enregistrements valides, dans l'ordre ; la lecture s'arrête au premier tronqué ou corrompu, dont la position va dans end
+    private static List<Entry> read(Path file, long[] end) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        if (!Files.exists(file)) {
+            return entries;
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        if (bytes.length < HEADER) {
+            return entries;
+        }
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Format d'historique inconnu : " + file);
+        }
+        int position = HEADER;
+        CRC32 crc = new CRC32();
+        while (position + RECORD_HEADER <= bytes.length) {
+            int payload = buffer.getInt(position);
+            if (payload <= 0 || payload > MAX_RECORD || position + RECORD_HEADER + payload > bytes.length) {
+                break;
+            }
+            crc.reset();
+            crc.update(bytes, position + RECORD_HEADER, payload);
+            if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                break;
+            }
+            ByteBuffer record = ByteBuffer.wrap(bytes, position + RECORD_HEADER, payload).slice();
+            long time = record.getLong();
+            boolean englishToDarija = record.get() == 1;
+            String text = getString(record);
+            String translation = getString(record);
+            String mode = getString(record);
+            entries.add(new Entry(time, englishToDarija, text, translation, mode));
+            position += RECORD_HEADER + payload;
+        }
+        end[0] = position;
+        return entries;
+    }
+
+    // Nouveau fichier complet puis remplacement atomique : l'ancien reste valide jusqu'au bout
+    private static void rewrite(Path file, List<Entry> entries) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            out.write(ByteBuffer.allocate(HEADER).putInt(MAGIC).putInt(VERSION).flip());
+            for (Entry entry : entries) {
+                ByteBuffer record = ByteBuffer.wrap(encode(entry));
+                while (record.hasRemaining()) {
+                    out.write(record);
+                }
+            }
+            out.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
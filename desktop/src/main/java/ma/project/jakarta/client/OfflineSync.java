@@ -0,0 +1,137 @@
+package ma.project.jakarta.client;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntConsumer;
+import org.json.JSONObject;
+
+/**
+ * Envoie au serveur les traductions demandées hors ligne, une par une, à
+ * intervalle régulier et dès qu'un appel réussit à nouveau. Un passage
+ * s'arrête à la première erreur réseau ou temporaire (429, 5xx : surcharge,
+ * disjoncteur ouvert, délai dépassé) : le serveur n'est pas en état de
+ * répondre. Un texte refusé par le serveur (4xx) maxAttempts fois de suite
+ * est marqué en échec dans l'historique et n'est plus renvoyé.
+ */
+final class OfflineSync implements AutoCloseable {
+
+    private final LocalStore store;
+    private final TranslatorClient client;
+    private final long intervalSeconds;
+    private final int maxAttempts;
+    private final IntConsumer onSynced;
+    private final IntConsumer onFailed;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicBoolean queued = new AtomicBoolean();
+    // Refus par texte, thread de synchronisation seulement
+    private final Map<String, Integer> refusals = new HashMap<>();
+
+    /**
+     * @param onSynced reçoit le nombre de traductions synchronisées par passage (thread de synchronisation)
+     * @param onFailed reçoit le nombre de textes abandonnés par passage (thread de synchronisation)
+     */
+    OfflineSync(LocalStore store, TranslatorClient client, long intervalSeconds, int maxAttempts,
+                IntConsumer onSynced, IntConsumer onFailed) {
+        this.store = store;
+        this.client = client;
+        this.intervalSeconds = Math.max(1, intervalSeconds);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.onSynced = onSynced;
+        this.onFailed = onFailed;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "translator-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    void start() {
+        scheduler.scheduleWithFixedDelay(this::syncPending, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Passage immédiat (le serveur vient de répondre), sauf s'il y en a déjà un en attente.
+     */
+    void syncSoon() {
+        if (queued.compareAndSet(false, true)) {
+            scheduler.execute(() -> {
+                queued.set(false);
+                syncPending();
+            });
+        }
+    }
+
+    private void syncPending() {
+        List<LocalStore.Entry> pending = store.pending();
+        int synced = 0;
+        int failed = 0;
+        for (LocalStore.Entry entry : pending) {
+            String key = LocalStore.key(entry.text, entry.englishToDarija);
+            TranslatorClient.Call call = client.translate(entry.text, entry.englishToDarija, chunk -> { });
+            try {
+                JSONObject done = call.result().get(60, TimeUnit.SECONDS);
+                store.put(entry.text, entry.englishToDarija, done.getString("translation"),
+                        done.optString("mode", "unknown"));
+                refusals.remove(key);
+                synced++;
+            } catch (ExecutionException e) {
+                if (isTemporary(e.getCause())) {
+                    break;
+                }
+                // Refus du serveur pour ce texte : les suivants sont tentés
+                if (refused(entry, key)) {
+                    failed++;
+                }
+            } catch (TimeoutException e) {
+                call.cancel();
+                break;
+            } catch (InterruptedException e) {
+                call.cancel();
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                // Réponse sans traduction : même traitement qu'un refus
+                if (refused(entry, key)) {
+                    failed++;
+                }
+            }
+        }
+        if (synced > 0) {
+            onSynced.accept(synced);
+        }
+        if (failed > 0) {
+            onFailed.accept(failed);
+        }
+    }
+
+    // Réseau ou serveur indisponible : ne dit rien du texte lui-même
+    private static boolean isTemporary(Throwable cause) {
+        return cause instanceof IOException
+                || cause instanceof TranslatorClient.ServerException
+                && ((TranslatorClient.ServerException) cause).isTemporary();
+    }
+
+    // true si le texte atteint maxAttempts refus et passe en échec
+    private boolean refused(LocalStore.Entry entry, String key) {
+        int count = refusals.merge(key, 1, Integer::sum);
+        if (count < maxAttempts) {
+            return false;
+        }
+        refusals.remove(key);
+        store.markFailed(entry);
+        return true;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
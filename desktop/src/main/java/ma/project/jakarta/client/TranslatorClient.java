@@ -0,0 +1,253 @@
+package ma.project.jakarta.client;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import org.json.JSONObject;
+
+/**
+ * Accès à l'API de traduction pour l'interface : un seul HttpClient partagé
+ * sur un petit pool de threads, flux SSE lu sans thread bloqué, appels
+ * annulables, et cache LRU des traductions déjà reçues.
+ */
+final class TranslatorClient implements AutoCloseable {
+
+    private final URI streamUri;
+    private final ExecutorService executor;
+    private final HttpClient http;
+    private final Map<String, JSONObject> recent;
+
+    TranslatorClient(String streamUrl, int cacheSize) {
+        this.streamUri = URI.create(streamUrl);
+        AtomicInteger threads = new AtomicInteger();
+        // Démons : la fermeture de la fenêtre ne doit pas attendre un appel en cours
+        this.executor = Executors.newFixedThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "translator-client-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.http = HttpClient.newBuilder()
+                .executor(executor)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        this.recent = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, JSONObject> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Traduction déjà reçue pour ce texte et ce sens, sinon null.
+     */
+    synchronized JSONObject cached(String text, boolean englishToDarija) {
+        return recent.get(key(text, englishToDarija));
+    }
+
+    private synchronized void remember(String text, boolean englishToDarija, JSONObject result) {
+        recent.put(key(text, englishToDarija), result);
+    }
+
+    private static String key(String text, boolean englishToDarija) {
+        return (englishToDarija ? "en-ary\u0001" : "ary-en\u0001") + text;
+    }
+
+    /**
+     * Traduction en flux : onChunk reçoit chaque morceau (sur un thread du
+     * pool), le résultat est l'objet de l'évènement "done".
+     */
+    Call translate(String text, boolean englishToDarija, Consumer<String> onChunk) {
+        // Schéma v1 : le serveur choisit la consigne selon la paire de langues
+        JSONObject requestBody = new JSONObject();
+        requestBody.put("v", 1);
+        requestBody.put("text", text);
+        requestBody.put("source", englishToDarija ? "en" : "ary");
+        requestBody.put("target", englishToDarija ? "ary" : "en");
+        requestBody.put("options", new JSONObject().put("script", "arabic"));
+
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(streamUri)
+                .header("Content-Type", "application/json")
+                .header("Accept", "text/event-stream")
+                .POST(HttpRequest.BodyPublishers.ofString(requestBody.toString()))
+                .build();
+
+        EventReader reader = new EventReader(onChunk);
+        CompletableFuture<HttpResponse<EventReader>> sent =
+                http.sendAsync(request, HttpResponse.BodyHandlers.fromLineSubscriber(reader, r -> r, null));
+        CompletableFuture<JSONObject> result = sent.thenApply(response -> {
+            if (response.statusCode() != 200 && reader.error == null) {
+                throw new CompletionException(
+                        new ServerException("Erreur HTTP " + response.statusCode(), response.statusCode()));
+            }
+            return reader.result();
+        });
+        result.thenAccept(done -> remember(text, englishToDarija, done));
+        return new Call(sent, reader, result);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Appel en cours ; {@link #cancel()} interrompt la requête et plus aucun
+     * morceau n'est transmis.
+     */
+    static final class Call {
+        private final CompletableFuture<?> sent;
+        private final EventReader reader;
+        private final CompletableFuture<JSONObject> result;
+
+        private Call(CompletableFuture<?> sent, EventReader reader, CompletableFuture<JSONObject> result) {
+            this.sent = sent;
+            this.reader = reader;
+            this.result = result;
+        }
+
+        CompletableFuture<JSONObject> result() {
+            return result;
+        }
+
+        void cancel() {
+            reader.cancel();
+            sent.cancel(true);
+            result.cancel(true);
+        }
+    }
+
+    /**
+     * Erreur rapportée par le serveur : statut HTTP de la réponse ou champ
+     * "status" de l'évènement "error", 0 si le flux s'est interrompu.
+     */
+    static final class ServerException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+
+        ServerException(String message, int status) {
+            super(message);
+            this.status = status;
+        }
+
+        int status() {
+            return status;
+        }
+
+        /**
+         * Surcharge (429), panne, disjoncteur ouvert ou délai dépassé (5xx),
+         * flux coupé : le texte n'a pas été jugé, il peut être renvoyé.
+         */
+        boolean isTemporary() {
+            return status == 0 || status == 429 || status >= 500;
+        }
+    }
+
+    /**
+     * Lecture des évènements SSE : "event: ..." puis une ou plusieurs lignes
+     * "data: ...", terminés par une ligne vide.
+     */
+    private static final class EventReader implements Flow.Subscriber<String> {
+        private final Consumer<String> onChunk;
+        private volatile Flow.Subscription subscription;
+        private volatile boolean cancelled;
+
+        private String event = "message";
+        private final StringBuilder data = new StringBuilder();
+        private volatile JSONObject done;
+        private volatile String error;
+        private volatile int errorStatus;
+
+        EventReader(Consumer<String> onChunk) {
+            this.onChunk = onChunk;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (cancelled) {
+                subscription.cancel();
+            } else {
+                subscription.request(Long.MAX_VALUE);
+            }
+        }
+
+        @Override
+        public void onNext(String line) {
+            if (cancelled) {
+                return;
+            }
+            if (line.startsWith("event:")) {
+                event = line.substring(6).trim();
+            } else if (line.startsWith("data:")) {
+                if (data.length() > 0) {
+                    data.append('\n');
+                }
+                String value = line.substring(5);
+                data.append(value.startsWith(" ") ? value.substring(1) : value);
+            } else if (line.isEmpty() && data.length() > 0) {
+                dispatch(event, data.toString());
+                event = "message";
+                data.setLength(0);
+            }
+        }
+
+        private void dispatch(String name, String value) {
+            switch (name) {
+                case "chunk":
+                    onChunk.accept(value);
+                    break;
+                case "done":
+                    done = new JSONObject(value);
+                    break;
+                case "error":
+                    JSONObject failure = new JSONObject(value);
+                    errorStatus = failure.optInt("status", 500);
+                    error = failure.optString("error", "Erreur de traduction");
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            // Rapporté par l'échec de sendAsync
+        }
+
+        @Override
+        public void onComplete() {
+        }
+
+        void cancel() {
+            cancelled = true;
+            Flow.Subscription current = subscription;
+            if (current != null) {
+                current.cancel();
+            }
+        }
+
+        JSONObject result() {
+            if (error != null) {
+                throw new CompletionException(new ServerException(error, errorStatus));
+            }
+            if (done == null) {
+                throw new CompletionException(new ServerException("Flux interrompu", 0));
+            }
+            return done;
+        }
+    }
+}
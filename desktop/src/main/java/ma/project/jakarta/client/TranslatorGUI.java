@@ -5,15 +5,13 @@ import javax.swing.border.*;
 import java.awt.*;
 import java.awt.datatransfer.*;
 import java.awt.event.*;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
 import org.json.JSONObject;
 
 public class TranslatorGUI extends JFrame {
     
     private static final String API_URL = "http://localhost:8080/darija-translator/api/translator/translate";
+    // Flux SSE : la traduction s'affiche au fur et à mesure
+    private static final String STREAM_URL = API_URL + "/stream";
     
     // Couleurs modernes
     private static final Color PRIMARY_COLOR = new Color(79, 70, 229);
@@ -33,7 +31,30 @@ public class TranslatorGUI extends JFrame {
     private JLabel statusLabel;
     private JLabel charCountLabel;
     private JComboBox<String> languageCombo;
+    private JCheckBox liveCheck;
     private boolean isEnglishToDarija = true;
+    
+    // Client partagé par toutes les traductions (un HttpClient, deux threads)
+    private final TranslatorClient client = new TranslatorClient(STREAM_URL,
+            Integer.getInteger("translator.live.cache-size", 256));
+    // Historique persistant : textes déjà traduits et traductions en attente de réseau
+    private final LocalStore store = openStore();
+    private final OfflineSync sync = new OfflineSync(store, client,
+            Long.getLong("translator.sync.interval-s", 30), Integer.getInteger("translator.sync.max-attempts", 3),
+            this::onSynced, this::onSyncFailed);
+    private JDialog historyDialog;
+    private HistoryPanel historyPanel;
+    private JButton historyButton;
+    
+    // Traduction en direct : délai sans frappe avant l'envoi
+    private final Timer liveTimer = new Timer(Integer.getInteger("translator.live.debounce-ms", 400),
+            e -> translateLive());
+    
+    // État de la traduction en cours, lu et modifié sur le thread Swing uniquement
+    private TranslatorClient.Call currentCall;
+    private int generation;
+    private String lastRequest;
+    private Timer loadingTimer;
 
     public TranslatorGUI() {
         setTitle("Traducteur Intelligent - English ↔ Darija");
@@ -41,8 +62,33 @@ public class TranslatorGUI extends JFrame {
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setLocationRelativeTo(null);
         setMinimumSize(new Dimension(800, 600));
+        liveTimer.setRepeats(false);
         
         initComponents();
+        
+        addWindowListener(new WindowAdapter() {
+            public void windowClosing(WindowEvent e) {
+                sync.close();
+                store.close();
+                client.close();
+            }
+        });
+        sync.start();
+        int pending = store.pending().size();
+        if (pending > 0) {
+            showNotification(pending + " traduction(s) en attente de connexion", PRIMARY_COLOR);
+            sync.syncSoon();
+        }
+    }
+    
+    // Répertoire inaccessible : l'application fonctionne, sans historique entre deux lancements
+    private static LocalStore openStore() {
+        try {
+            return LocalStore.open(LocalStore.defaultDirectory());
+        } catch (java.io.IOException e) {
+            e.printStackTrace();
+            return LocalStore.memoryOnly();
+        }
     }
 
     private void initComponents() {
@@ -89,6 +135,19 @@ public class TranslatorGUI extends JFrame {
         styleComboBox(languageCombo);
         optionsPanel.add(languageCombo);
         
+        // Désactivée par défaut : chaque pause de frappe coûte un appel
+        liveCheck = new JCheckBox("Traduction en direct");
+        liveCheck.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        liveCheck.setOpaque(false);
+        liveCheck.addActionListener(e -> {
+            if (liveCheck.isSelected()) {
+                liveTimer.restart();
+            } else {
+                liveTimer.stop();
+            }
+        });
+        optionsPanel.add(liveCheck);
+        
         headerPanel.add(titlePanel, BorderLayout.WEST);
         headerPanel.add(optionsPanel, BorderLayout.EAST);
         
@@ -151,8 +210,8 @@ public class TranslatorGUI extends JFrame {
             
             inputArea.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
                 public void changedUpdate(javax.swing.event.DocumentEvent e) { updateCharCount(); }
-                public void removeUpdate(javax.swing.event.DocumentEvent e) { updateCharCount(); }
-                public void insertUpdate(javax.swing.event.DocumentEvent e) { updateCharCount(); }
+                public void removeUpdate(javax.swing.event.DocumentEvent e) { updateCharCount(); scheduleLiveTranslation(); }
+                public void insertUpdate(javax.swing.event.DocumentEvent e) { updateCharCount(); scheduleLiveTranslation(); }
             });
         } else {
             outputArea = new JTextArea();
@@ -205,9 +264,13 @@ public class TranslatorGUI extends JFrame {
         swapButton = createStyledButton("Inverser", new Color(59, 130, 246));
         swapButton.addActionListener(e -> swapLanguages());
         
+        historyButton = createStyledButton("Historique", new Color(16, 185, 129));
+        historyButton.addActionListener(e -> showHistory());
+        
         actionPanel.add(clearButton);
         actionPanel.add(translateButton);
         actionPanel.add(swapButton);
+        actionPanel.add(historyButton);
         
         JPanel statusPanel = new JPanel(new BorderLayout());
         statusPanel.setOpaque(false);
@@ -277,6 +340,7 @@ public class TranslatorGUI extends JFrame {
         
         statusLabel.setText("Mode changé: " + (isEnglishToDarija ? "English → Darija" : "Darija → English"));
         statusLabel.setForeground(PRIMARY_COLOR);
+        scheduleLiveTranslation();
     }
 
     private void translateText() {
@@ -287,79 +351,215 @@ public class TranslatorGUI extends JFrame {
             return;
         }
         
-        setButtonsEnabled(false);
-        statusLabel.setText("Traduction en cours...");
-        statusLabel.setForeground(PRIMARY_COLOR);
-        outputArea.setText("");
-        copyButton.setEnabled(false);
+        startTranslation(text, false);
+    }
+    
+    // Relance le délai à chaque frappe : la traduction part après une pause
+    private void scheduleLiveTranslation() {
+        if (liveCheck.isSelected()) {
+            liveTimer.restart();
+        }
+    }
+    
+    private void translateLive() {
+        String text = inputArea.getText().trim();
+        if (text.isEmpty()) {
+            cancelCurrent();
+            lastRequest = null;
+            outputArea.setText("");
+            copyButton.setEnabled(false);
+            showNotification("Prêt à traduire", new Color(107, 114, 128));
+            return;
+        }
+        // Frappe sans effet sur le texte (espaces en fin) : rien à relancer
+        if ((isEnglishToDarija + text).equals(lastRequest)) {
+            return;
+        }
+        startTranslation(text, true);
+    }
+    
+    /**
+     * Lance une traduction et abandonne la précédente : seule la dernière
+     * demandée est affichée. Appelée sur le thread Swing, comme les rappels
+     * qui comparent leur génération à la génération courante.
+     */
+    private void startTranslation(String text, boolean live) {
+        cancelCurrent();
+        int mine = ++generation;
+        boolean englishToDarija = isEnglishToDarija;
+        lastRequest = englishToDarija + text;
+        
+        // Texte déjà traduit (retour arrière, aller-retour de sens) : affichage immédiat
+        JSONObject cached = client.cached(text, englishToDarija);
+        if (cached != null) {
+            showResult(cached, "récent");
+            return;
+        }
+        // Puis l'historique persistant, à la casse et aux espaces près : sans réseau
+        LocalStore.Entry saved = store.find(text, englishToDarija);
+        if (saved != null && saved.isTranslated()) {
+            showResult(new JSONObject().put("translation", saved.translation).put("mode", saved.mode), "historique");
+            return;
+        }
         
-        Timer loadingTimer = new Timer(500, null);
-        final int[] dots = {0};
-        loadingTimer.addActionListener(e -> {
-            dots[0] = (dots[0] + 1) % 4;
-            statusLabel.setText("Traduction en cours" + ".".repeat(dots[0]));
-        });
-        loadingTimer.start();
-        
-        new Thread(() -> {
-            try {
-                // ✅ MODIFICATION ICI - Prompts améliorés pour forcer l'écriture arabe
-                String prompt;
-                if (isEnglishToDarija) {
-                    // Pour English → Darija : FORCER l'écriture en arabe
-                    prompt = "Translate the following English text to Moroccan Darija. " +
-                             "IMPORTANT: Write the translation ONLY in Arabic script (not Latin letters). " +
-                             "Use Arabic letters like: ا، ب، ت، ث، etc. " +
-                             "Text to translate: " + text;
-                } else {
-                    // Pour Darija → English
-                    prompt = "Translate the following Moroccan Darija text (written in Arabic script) to English. " +
-                             "Provide only the English translation: " + text;
-                }
-                
-                JSONObject requestBody = new JSONObject();
-                requestBody.put("text", prompt);
-                
-                HttpClient client = HttpClient.newHttpClient();
-                HttpRequest request = HttpRequest.newBuilder()
-                        .uri(URI.create(API_URL))
-                        .header("Content-Type", "application/json")
-                        .POST(HttpRequest.BodyPublishers.ofString(requestBody.toString()))
-                        .build();
-                
-                HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
-                
-                loadingTimer.stop();
-                
-                if (response.statusCode() == 200) {
-                    JSONObject responseJson = new JSONObject(response.body());
-                    String translation = responseJson.getString("translation");
-                    String mode = responseJson.optString("mode", "unknown");
-                    
-                    SwingUtilities.invokeLater(() -> {
-                        outputArea.setText(translation);
-                        copyButton.setEnabled(true);
-                        statusLabel.setText("Traduction réussie (Mode: " + mode + ")");
-                        statusLabel.setForeground(SUCCESS_COLOR);
-                        setButtonsEnabled(true);
-                        
-                        flashButton(translateButton, SUCCESS_COLOR);
-                    });
-                } else {
-                    throw new Exception("Erreur HTTP " + response.statusCode());
+        if (live) {
+            statusLabel.setText("Traduction en direct...");
+            statusLabel.setForeground(PRIMARY_COLOR);
+            setButtonsEnabled(true);
+        } else {
+            setButtonsEnabled(false);
+            statusLabel.setText("Traduction en cours...");
+            statusLabel.setForeground(PRIMARY_COLOR);
+            outputArea.setText("");
+            copyButton.setEnabled(false);
+            
+            final int[] dots = {0};
+            loadingTimer = new Timer(500, e -> {
+                dots[0] = (dots[0] + 1) % 4;
+                statusLabel.setText("Traduction en cours" + ".".repeat(dots[0]));
+            });
+            loadingTimer.start();
+        }
+        
+        // La traduction affichée reste en place jusqu'au premier morceau de la suivante
+        final boolean[] first = {true};
+        currentCall = client.translate(text, englishToDarija, chunk -> SwingUtilities.invokeLater(() -> {
+            if (mine != generation) {
+                return;
+            }
+            // Premier morceau : on arrête l'animation d'attente
+            stopLoading();
+            statusLabel.setText("Réception de la traduction...");
+            if (first[0]) {
+                outputArea.setText(chunk);
+                first[0] = false;
+            } else {
+                outputArea.append(chunk);
+            }
+        }));
+        currentCall.result().whenComplete((result, error) -> SwingUtilities.invokeLater(() -> {
+            if (mine != generation) {
+                return;
+            }
+            currentCall = null;
+            if (error == null) {
+                store.put(text, englishToDarija, result.optString("translation", ""), result.optString("mode", "unknown"));
+                showResult(result, null);
+                refreshHistory();
+                // Le serveur répond : les traductions en attente peuvent partir
+                sync.syncSoon();
+                return;
+            }
+            stopLoading();
+            lastRequest = null;
+            setButtonsEnabled(true);
+            Throwable cause = error.getCause() != null ? error.getCause() : error;
+            if (cause instanceof java.io.IOException) {
+                // Hors ligne : une demande explicite est gardée pour la synchronisation, pas la frappe en direct
+                if (!live && store.queue(text, englishToDarija)) {
+                    refreshHistory();
                 }
-                
-            } catch (Exception e) {
-                loadingTimer.stop();
-                SwingUtilities.invokeLater(() -> {
-                    showNotification("Erreur: " + e.getMessage(), ERROR_COLOR);
-                    statusLabel.setText("Échec de la traduction");
-                    statusLabel.setForeground(ERROR_COLOR);
-                    setButtonsEnabled(true);
-                });
+                showNotification(live ? "Hors ligne" : "Hors ligne : traduction en attente, envoyée au retour du réseau",
+                        ERROR_COLOR);
+                return;
             }
-        }).start();
+            showNotification("Erreur: " + cause.getMessage(), ERROR_COLOR);
+            statusLabel.setText("Échec de la traduction");
+            statusLabel.setForeground(ERROR_COLOR);
+        }));
     }
+    
+    /**
+     * @param origin "récent" ou "historique" pour une traduction locale, null si elle vient du serveur
+     */
+    private void showResult(JSONObject result, String origin) {
+        stopLoading();
+        outputArea.setText(result.optString("translation", ""));
+        copyButton.setEnabled(true);
+        String mode = result.optString("mode", "unknown");
+        statusLabel.setText("Traduction réussie (Mode: " + (origin != null ? origin + ", " + mode : mode) + ")");
+        statusLabel.setForeground(SUCCESS_COLOR);
+        setButtonsEnabled(true);
+        if (origin == null) {
+            flashButton(translateButton, SUCCESS_COLOR);
+        }
+    }
+    
+    // Fenêtre non modale : on peut traduire en gardant l'historique ouvert
+    private void showHistory() {
+        if (historyDialog == null) {
+            historyPanel = new HistoryPanel(store, this::loadFromHistory);
+            historyDialog = new JDialog(this, "Historique des traductions", false);
+            historyDialog.setContentPane(historyPanel);
+            historyDialog.setSize(700, 500);
+            historyDialog.setLocationRelativeTo(this);
+        }
+        historyPanel.refresh();
+        historyDialog.setVisible(true);
+    }
+    
+    private void refreshHistory() {
+        if (historyDialog != null && historyDialog.isVisible()) {
+            historyPanel.refresh();
+        }
+    }
+    
+    private void loadFromHistory(LocalStore.Entry entry) {
+        liveTimer.stop();
+        cancelCurrent();
+        if (entry.englishToDarija != isEnglishToDarija) {
+            languageCombo.setSelectedIndex(entry.englishToDarija ? 0 : 1);
+        }
+        inputArea.setText(entry.text);
+        liveTimer.stop();
+        lastRequest = entry.englishToDarija + entry.text.trim();
+        if (entry.isPending()) {
+            outputArea.setText("");
+            copyButton.setEnabled(false);
+            showNotification("Traduction en attente de connexion", PRIMARY_COLOR);
+        } else if (entry.isFailed()) {
+            outputArea.setText("");
+            copyButton.setEnabled(false);
+            lastRequest = null;
+            showNotification("Refusée par le serveur lors de la synchronisation : cliquez sur Traduire pour réessayer",
+                    ERROR_COLOR);
+        } else {
+            showResult(new JSONObject().put("translation", entry.translation).put("mode", entry.mode), "historique");
+        }
+    }
+    
+    // Thread de synchronisation
+    private void onSynced(int count) {
+        SwingUtilities.invokeLater(() -> {
+            showNotification(count + " traduction(s) hors ligne synchronisée(s)", SUCCESS_COLOR);
+            refreshHistory();
+        });
+    }
+    
+    // Thread de synchronisation
+    private void onSyncFailed(int count) {
+        SwingUtilities.invokeLater(() -> {
+            showNotification(count + " traduction(s) hors ligne refusée(s) par le serveur (voir l'historique)",
+                    ERROR_COLOR);
+            refreshHistory();
+        });
+    }
+    
+    private void cancelCurrent() {
+        if (currentCall != null) {
+            currentCall.cancel();
+            currentCall = null;
+        }
+        stopLoading();
+    }
+    
+    private void stopLoading() {
+        if (loadingTimer != null) {
+            loadingTimer.stop();
+            loadingTimer = null;
+        }
+    }
+    
     private void copyToClipboard() {
         String text = outputArea.getText();
         if (!text.isEmpty()) {
@@ -373,7 +573,10 @@ public class TranslatorGUI extends JFrame {
     }
 
     private void clearAll() {
+        cancelCurrent();
+        lastRequest = null;
         inputArea.setText("");
+        liveTimer.stop();
         outputArea.setText("");
         statusLabel.setText("Prêt à traduire");
         statusLabel.setForeground(new Color(107, 114, 128));
@@ -393,6 +596,7 @@ public class TranslatorGUI extends JFrame {
 
     private void setButtonsEnabled(boolean enabled) {
         translateButton.setEnabled(enabled);
+        historyButton.setEnabled(enabled);
         clearButton.setEnabled(enabled);
         swapButton.setEnabled(enabled);
     }